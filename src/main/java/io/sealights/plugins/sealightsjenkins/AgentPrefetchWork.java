@@ -0,0 +1,248 @@
+package io.sealights.plugins.sealightsjenkins;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.AbstractProject;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Project;
+import hudson.model.TaskListener;
+import hudson.tasks.Builder;
+import hudson.tasks.Publisher;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.BuildStatusNotifier;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.CommandMode;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.SealightsCLIBuildStep;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.NodeAgentJarCache;
+import io.sealights.plugins.sealightsjenkins.entities.TokenData;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.AgentPrefetcher;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.AgentPrefetchTarget;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.Version;
+import io.sealights.plugins.sealightsjenkins.utils.Logger;
+import io.sealights.plugins.sealightsjenkins.utils.PropertiesUtils;
+import io.sealights.plugins.sealightsjenkins.utils.StringUtils;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms the agent caches shortly after Jenkins starts and then periodically: scans the jobs that use SeaLights steps,
+ * and resolves the recommended 'sealights-java' and 'sl-maven-plugin' versions of their distinct
+ * server/app/branch combinations (downloading the agents into the files storage).
+ * <p>
+ * The downloaded agent jars are then copied to the online nodes (see {@link NodeAgentJarCache}), unless
+ * 'sl.agentReplication.enabled' is 'false'.
+ * <p>
+ * Steps whose values depend on build variables are skipped. Set 'sl.agentPrefetch.enabled' to 'false' to disable
+ * the prefetch, and 'sl.agentPrefetch.periodMinutes' to change its period (60 minutes by default).
+ */
+@Extension
+public class AgentPrefetchWork extends AsyncPeriodicWork {
+
+    public static final String ENABLED_PROPERTY = "sl.agentPrefetch.enabled";
+    public static final String PERIOD_PROPERTY = "sl.agentPrefetch.periodMinutes";
+    public static final String REPLICATION_ENABLED_PROPERTY = "sl.agentReplication.enabled";
+    private static final int DEFAULT_PERIOD_MINUTES = 60;
+    private static final long INITIAL_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    public AgentPrefetchWork() {
+        super("SeaLights agent prefetch");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.MINUTES.toMillis(Math.max(1, Integer.getInteger(PERIOD_PROPERTY, DEFAULT_PERIOD_MINUTES)));
+    }
+
+    @Override
+    public long getInitialDelay() {
+        return INITIAL_DELAY_MILLIS;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        Logger logger = new Logger(listener.getLogger(), "SeaLights agent prefetch");
+        if (!Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"))) {
+            logger.info("The agent prefetch is disabled.");
+            return;
+        }
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return;
+        }
+
+        Set<AgentPrefetchTarget> targets = collectTargets(jenkins);
+        logger.info("Found " + targets.size() + " distinct configurations to prefetch.");
+        AgentPrefetcher prefetcher = new AgentPrefetcher(logger);
+        int succeeded = prefetcher.prefetch(targets);
+        logger.info("Prefetched " + succeeded + " of " + targets.size() + " configurations.");
+
+        replicateToNodes(logger, jenkins, prefetcher.getPrefetchedAgents());
+    }
+
+    /*
+    * Nodes that already have a jar only verify its checksum, so after an upgrade only the new jars are sent.
+    * */
+    private void replicateToNodes(Logger logger, Jenkins jenkins, Set<File> agents) throws InterruptedException {
+        if (!Boolean.parseBoolean(System.getProperty(REPLICATION_ENABLED_PROPERTY, "true"))) {
+            return;
+        }
+        List<FilePath> nodeRoots = NodeAgentJarCache.getOnlineNodeRoots(jenkins);
+        if (nodeRoots.isEmpty()) {
+            return;
+        }
+        NodeAgentJarCache agentJarCache = new NodeAgentJarCache(logger);
+        for (File agent : agents) {
+            int replicated = agentJarCache.replicate(agent, nodeRoots);
+            logger.info("Agent jar '" + agent.getName() + "' is cached on " + replicated + " of " + nodeRoots.size() + " nodes.");
+        }
+    }
+
+    static Set<AgentPrefetchTarget> collectTargets(Jenkins jenkins) {
+        BeginAnalysis.DescriptorImpl globalConfiguration = jenkins.getDescriptorByType(BeginAnalysis.DescriptorImpl.class);
+        TargetsCollector collector = new TargetsCollector(globalConfiguration);
+        for (AbstractProject<?, ?> project : jenkins.getAllItems(AbstractProject.class)) {
+            if (!project.isDisabled()) {
+                collector.addProject(project);
+            }
+        }
+        return collector.getTargets();
+    }
+
+    /*
+    * Resolves the configuration of each step the same way the step does when it runs (step arguments first, then the
+    * global SeaLights configuration), without the build variables.
+    * */
+    static class TargetsCollector {
+        private final BeginAnalysis.DescriptorImpl globalConfiguration;
+        private final Set<AgentPrefetchTarget> targets = new LinkedHashSet<>();
+
+        TargetsCollector(BeginAnalysis.DescriptorImpl globalConfiguration) {
+            this.globalConfiguration = globalConfiguration;
+        }
+
+        void add(Object step) {
+            if (step instanceof SealightsCLIBuildStep) {
+                addCliStep((SealightsCLIBuildStep) step);
+            } else if (step instanceof BuildStatusNotifier) {
+                addBuildStatusNotifier((BuildStatusNotifier) step);
+            } else if (step instanceof MavenSealightsBuildStep) {
+                addMavenStep((MavenSealightsBuildStep) step);
+            }
+        }
+
+        void addProject(AbstractProject<?, ?> project) {
+            if (project instanceof Project) {
+                for (Builder builder : ((Project<?, ?>) project).getBuilders()) {
+                    add(builder);
+                }
+            }
+            for (Publisher publisher : project.getPublishersList()) {
+                add(publisher);
+            }
+        }
+
+        Set<AgentPrefetchTarget> getTargets() {
+            return targets;
+        }
+
+        private void addCliStep(SealightsCLIBuildStep step) {
+            CommandMode commandMode = step.getCommandMode();
+            if (!step.isEnable() || commandMode == null) {
+                return;
+            }
+            Properties props = PropertiesUtils.toProperties(commandMode.getAdditionalArguments());
+            String appName = props.getProperty("appname");
+            String branchName = props.getProperty("branchname");
+            String labId = props.getProperty("labid");
+            if (commandMode instanceof CommandMode.ConfigView) {
+                CommandMode.ConfigView configView = (CommandMode.ConfigView) commandMode;
+                appName = configView.getAppName();
+                branchName = configView.getBranchName();
+                labId = null;
+            } else if (commandMode instanceof CommandMode.BatchView) {
+                CommandMode.BatchView batchView = (CommandMode.BatchView) commandMode;
+                appName = batchView.getAppName();
+                branchName = batchView.getBranchName();
+                labId = batchView.getLabId();
+            }
+            addTarget(AgentPrefetcher.SEALIGHTS_JAVA_COMPONENT, props, appName, branchName, labId, null, null);
+        }
+
+        private void addBuildStatusNotifier(BuildStatusNotifier notifier) {
+            if (!notifier.isEnabled()) {
+                return;
+            }
+            Properties props = PropertiesUtils.toProperties(notifier.getAdditionalArguments());
+            addTarget(AgentPrefetcher.SEALIGHTS_JAVA_COMPONENT, props, notifier.getAppName(), notifier.getBranchName(),
+                    null, null, null);
+        }
+
+        private void addMavenStep(MavenSealightsBuildStep step) {
+            BeginAnalysis beginAnalysis = step.beginAnalysis;
+            if (beginAnalysis == null) {
+                return;
+            }
+            Properties props = PropertiesUtils.toProperties(beginAnalysis.getAdditionalArguments());
+            if (Version.isValidVersion(props.getProperty("mvnpluginversion"))) {
+                // The job does not query the recommended version.
+                return;
+            }
+            String appName = firstNonEmpty(props.getProperty("appname"), beginAnalysis.getAppName());
+            String branchName = firstNonEmpty(props.getProperty("branch"), beginAnalysis.getBranch());
+            addTarget(AgentPrefetcher.MAVEN_PLUGIN_COMPONENT, props, appName, branchName, beginAnalysis.getTestStage(),
+                    beginAnalysis.getOverride_customerId(), beginAnalysis.getOverride_url());
+        }
+
+        private void addTarget(String componentName, Properties props, String appName, String branchName,
+                               String environmentName, String overrideCustomerId, String overrideServer) {
+            String token = null;
+            String customerId = firstNonEmpty(props.getProperty("customerid"), overrideCustomerId,
+                    globalConfiguration.getCustomerId());
+            String server = firstNonEmpty(props.getProperty("server"), overrideServer, globalConfiguration.getUrl());
+            TokenData tokenData = tryParseToken(firstNonEmpty(props.getProperty("token"), globalConfiguration.getToken()));
+            if (tokenData != null) {
+                token = tokenData.getToken();
+                customerId = tokenData.getCustomerId();
+                server = tokenData.getServer();
+            } else if (!StringUtils.isNullOrEmpty(props.getProperty("tokenfile"))) {
+                // The token is read from the build workspace.
+                return;
+            }
+            String proxy = firstNonEmpty(props.getProperty("proxy"), globalConfiguration.getProxy());
+            String filesStorage = firstNonEmpty(props.getProperty("filesstorage"), globalConfiguration.getFilesStorage(),
+                    System.getProperty("java.io.tmpdir"));
+
+            AgentPrefetchTarget target = new AgentPrefetchTarget(componentName, token, customerId, appName,
+                    environmentName, branchName, server, proxy, filesStorage);
+            if (target.isResolvable()) {
+                targets.add(target);
+            }
+        }
+
+        private static TokenData tryParseToken(String token) {
+            if (StringUtils.isNullOrEmpty(token) || token.contains("$")) {
+                return null;
+            }
+            try {
+                TokenData tokenData = TokenData.parse(token);
+                return StringUtils.isNullOrEmpty(tokenData.getServer()) ? null : tokenData;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        private static String firstNonEmpty(String... values) {
+            for (String value : values) {
+                if (!StringUtils.isNullOrEmpty(value)) {
+                    return value;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package io.sealights.plugins.sealightsjenkins;
 
 import hudson.*;
+import hudson.init.Terminator;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.BuildListener;
 import hudson.model.Computer;
+import hudson.model.Node;
 import hudson.remoting.VirtualChannel;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Builder;
@@ -20,13 +22,19 @@ import io.sealights.agents.infra.pomIntegration.integration.MavenIntegration;
 import io.sealights.agents.infra.pomIntegration.integration.MavenIntegrationInfo;
 import io.sealights.agents.infra.pomIntegration.integration.PomIntegrationLogger;
 import io.sealights.onpremise.agents.java.agent.infra.logging.ILogger;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.AgentExecutionScheduler;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.ExecutionMetrics;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.NodeAgentJarCache;
 import io.sealights.plugins.sealightsjenkins.entities.FileBackupInfo;
 import io.sealights.plugins.sealightsjenkins.entities.TokenData;
 import io.sealights.plugins.sealightsjenkins.entities.ValidationError;
 import io.sealights.plugins.sealightsjenkins.exceptions.SeaLightsIllegalStateException;
 import io.sealights.plugins.sealightsjenkins.integration.JenkinsPomFile;
 import io.sealights.plugins.sealightsjenkins.integration.JenkinsSeaLightsPluginInfo;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.AgentCacheManager;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.ArtifactMirrors;
 import io.sealights.plugins.sealightsjenkins.integration.upgrade.MavenPluginUpgradeManager;
+import io.sealights.plugins.sealightsjenkins.services.HttpClientPool;
 import io.sealights.plugins.sealightsjenkins.utils.*;
 import jenkins.model.Jenkins;
 import net.sf.json.JSONObject;
@@ -446,26 +454,66 @@ public class BeginAnalysis extends Builder {
         this.additionalArguments = additionalArguments;
     }
 
-    private void copyAgentsToSlaveIfNeeded(Logger logger, CleanupManager cleanupManager, Properties additionalProps) throws IOException, InterruptedException {
-        if (additionalProps.get("buildscannerjar") != null) {
-            CustomFile customFile = new CustomFile(logger, cleanupManager, additionalProps.get("buildscannerjar").toString());
-            customFile.copyToSlave();
+    /**
+     * Keeps the agent jars given by their path on the master (e.g. jars of the agents cache) in the agents store
+     * until the returned pins are closed, so they are not evicted while the build uses them.
+     */
+    public List<AgentCacheManager.Pin> pinAgentJars(EnvVars envVars) {
+        Properties additionalProps = PropertiesUtils.toProperties(additionalArguments);
+        List<AgentCacheManager.Pin> pins = new ArrayList<>();
+        for (String propertyName : Arrays.asList("buildscannerjar", "testlistenerjar")) {
+            String jarPath = JenkinsUtils.resolveEnvVarsInString(envVars, additionalProps.getProperty(propertyName));
+            if (!StringUtils.isNullOrEmpty(jarPath) && new File(jarPath).isFile()) {
+                pins.add(AgentCacheManager.getInstance().pin(jarPath));
+            }
+        }
+        return pins;
+    }
+
+    /*
+    * Agent jars that are given by their path on the master are cached on the build node (see NodeAgentJarCache),
+    * and the build uses the cached copies, so a jar is sent over the channel only once per node.
+    * */
+    private void copyAgentsToSlaveIfNeeded(Logger logger, AbstractBuild<?, ?> build, FilePath ws,
+                                           Properties additionalProps, EnvVars envVars) throws IOException, InterruptedException {
+        if (!ws.isRemote()) {
+            return;
         }
+        Node node = build.getBuiltOn();
+        FilePath nodeRoot = node == null ? null : node.getRootPath();
+        if (nodeRoot == null) {
+            nodeRoot = ws.child(".sealights");
+        }
+        NodeAgentJarCache agentJarCache = new NodeAgentJarCache(logger);
+        useAgentCopyOnNode(logger, agentJarCache, nodeRoot, "buildscannerjar", additionalProps, envVars);
+        useAgentCopyOnNode(logger, agentJarCache, nodeRoot, "testlistenerjar", additionalProps, envVars);
+    }
 
-        if (additionalProps.get("testlistenerjar") != null) {
-            CustomFile customFile = new CustomFile(logger, cleanupManager, additionalProps.get("testlistenerjar").toString());
-            customFile.copyToSlave();
+    private void useAgentCopyOnNode(Logger logger, NodeAgentJarCache agentJarCache, FilePath nodeRoot, String propertyName,
+                                    Properties additionalProps, EnvVars envVars) throws IOException, InterruptedException {
+        String jarPath = JenkinsUtils.resolveEnvVarsInString(envVars, additionalProps.getProperty(propertyName));
+        if (StringUtils.isNullOrEmpty(jarPath)) {
+            return;
         }
+        File localJar = new File(jarPath);
+        if (!localJar.isFile()) {
+            logger.warning("The agent jar '" + jarPath + "' was not found on the master, using it as a path on the node.");
+            return;
+        }
+        FilePath jarOnNode = agentJarCache.ensureOnNode(localJar, nodeRoot);
+        additionalProps.setProperty(propertyName, jarOnNode.getRemote());
     }
 
-    private String tryGetSlMvnPluginVersion(SeaLightsPluginInfo slInfo, ILogger logger, Properties additionalProps) {
+    private String tryGetSlMvnPluginVersion(AbstractBuild<?, ?> build, SeaLightsPluginInfo slInfo, ILogger logger,
+                                            Properties additionalProps) {
 
         String recommendedVersion = additionalProps.getProperty("mvnpluginversion");
 
         try {
             if (!isValidVersion(recommendedVersion)) {
                 MavenPluginUpgradeManager upgradeManager = new MavenPluginUpgradeManager(slInfo, logger);
-                recommendedVersion = upgradeManager.queryServerForMavenPluginVersion();
+                recommendedVersion = upgradeManager.queryServerForMavenPluginVersion(
+                        RecommendedVersionsAction.getVersionResolver(build, logger));
             }
         } catch (FileNotFoundException e) {
             logger.error("Error while trying to resolve Sealights maven plugin version. " +
@@ -497,7 +545,7 @@ public class BeginAnalysis extends Builder {
                 return true;
             }
 
-            copyAgentsToSlaveIfNeeded(logger, cleanupManager, additionalProps);
+            copyAgentsToSlaveIfNeeded(logger, build, ws, additionalProps, envVars);
 
             String workingDir = ws.getRemote();
 
@@ -517,7 +565,7 @@ public class BeginAnalysis extends Builder {
 
             configureBuildFilePublisher(build, slInfo.getBuildFilesFolders());
 
-            String mvnPluginVersionToUse = tryGetSlMvnPluginVersion(slInfo, logger, additionalProps);
+            String mvnPluginVersionToUse = tryGetSlMvnPluginVersion(build, slInfo, logger, additionalProps);
             if (!isValidVersion(mvnPluginVersionToUse)) {
                 //Don't integrate with maven if we can't decide our maven plugin version.
                 //Return true so we do it quietly.
@@ -935,6 +983,9 @@ public class BeginAnalysis extends Builder {
         private String filesStorage;
         private boolean createBuildSessionId;
         private String toolsPathOnMaster;
+        private int maxConcurrentAgentProcesses;
+        private String agentsMirror;
+        private int agentCacheMaxMegabytes = (int) (AgentCacheManager.DEFAULT_MAX_BYTES / (1024 * 1024));
         private final String DEFAULT_TOOLS_PATH = "/var/lib/jenkins/tools";
 
         // TODO: this is for testing. need to find more elegant way to mock.
@@ -945,6 +996,14 @@ public class BeginAnalysis extends Builder {
         public DescriptorImpl() {
             super(BeginAnalysis.class);
             load();
+            AgentExecutionScheduler.getInstance().setMaxConcurrentProcesses(maxConcurrentAgentProcesses);
+            applyAgentCacheSize();
+            ArtifactMirrors.getInstance().setLocation(agentsMirror);
+        }
+
+        @Terminator
+        public static void shutdownHttpClients() {
+            HttpClientPool.getInstance().shutdown();
         }
 
         @Override
@@ -988,6 +1047,12 @@ public class BeginAnalysis extends Builder {
             proxy = json.getString("proxy");
             filesStorage = json.getString("filesStorage");
             toolsPathOnMaster = json.getString("toolsPathOnMaster");
+            maxConcurrentAgentProcesses = json.optInt("maxConcurrentAgentProcesses", 0);
+            AgentExecutionScheduler.getInstance().setMaxConcurrentProcesses(maxConcurrentAgentProcesses);
+            agentCacheMaxMegabytes = json.optInt("agentCacheMaxMegabytes", agentCacheMaxMegabytes);
+            applyAgentCacheSize();
+            agentsMirror = json.optString("agentsMirror", null);
+            ArtifactMirrors.getInstance().setLocation(agentsMirror);
             save();
             return super.configure(req, json);
         }
@@ -1032,6 +1097,48 @@ public class BeginAnalysis extends Builder {
             this.filesStorage = filesStorage;
         }
 
+        public int getMaxConcurrentAgentProcesses() {
+            return maxConcurrentAgentProcesses;
+        }
+
+        public void setMaxConcurrentAgentProcesses(int maxConcurrentAgentProcesses) {
+            this.maxConcurrentAgentProcesses = maxConcurrentAgentProcesses;
+        }
+
+        public String getAgentsMirror() {
+            return agentsMirror;
+        }
+
+        public void setAgentsMirror(String agentsMirror) {
+            this.agentsMirror = agentsMirror;
+        }
+
+        public int getAgentCacheMaxMegabytes() {
+            return agentCacheMaxMegabytes;
+        }
+
+        public void setAgentCacheMaxMegabytes(int agentCacheMaxMegabytes) {
+            this.agentCacheMaxMegabytes = agentCacheMaxMegabytes;
+        }
+
+        public AgentCacheManager getAgentCache() {
+            return AgentCacheManager.getInstance();
+        }
+
+        private void applyAgentCacheSize() {
+            // 0 (or less) means no size limit
+            long maxBytes = agentCacheMaxMegabytes > 0 ? agentCacheMaxMegabytes * 1024L * 1024 : -1;
+            AgentCacheManager.getInstance().setMaxBytes(maxBytes);
+        }
+
+        public List<AgentExecutionScheduler.NodeStats> getAgentExecutionQueues() {
+            return AgentExecutionScheduler.getInstance().getStats();
+        }
+
+        public List<ExecutionMetrics.CommandStats> getAgentExecutionMetrics() {
+            return ExecutionMetrics.getInstance().getStats();
+        }
+
         public boolean isCreateBuildSessionId() {
             return createBuildSessionId;
         }
@@ -12,6 +12,7 @@ import hudson.slaves.SlaveComputer;
 import hudson.tools.ToolLocationNodeProperty;
 import hudson.util.DescribableList;
 import io.sealights.plugins.sealightsjenkins.enums.BuildStepModes;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.AgentCacheManager;
 import io.sealights.plugins.sealightsjenkins.utils.CustomFile;
 import io.sealights.plugins.sealightsjenkins.utils.Logger;
 import jenkins.model.Jenkins;
@@ -19,6 +20,7 @@ import org.apache.commons.lang.StringUtils;
 
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -31,6 +33,7 @@ public class MavenBuildStepHelper {
     private BuildStepModes currentMode;
     private CleanupManager cleanupManager;
     private BeginAnalysis beginAnalysis;
+    private final List<AgentCacheManager.Pin> agentPins = new ArrayList<>();
 
 
     public MavenBuildStepHelper(BuildStepModes currentMode, CleanupManager cleanupManager, BeginAnalysis beginAnalysis) {
@@ -45,9 +48,18 @@ public class MavenBuildStepHelper {
             return;
 
         EnvVars envVars = build.getEnvironment(listener);
+        // The agents are kept in the cache until the step is done
+        agentPins.addAll(beginAnalysis.pinAgentJars(envVars));
         beginAnalysis.perform(build, cleanupManager, logger, pom, envVars);
     }
 
+    public void releaseAgentPins() {
+        for (AgentCacheManager.Pin pin : agentPins) {
+            pin.close();
+        }
+        agentPins.clear();
+    }
+
     public MavenSealightsBuildStep.MavenInstallation overrideMavenHomeIfNeed(MavenSealightsBuildStep.MavenInstallation mavenInstallation, Logger logger) {
         if (!isSealightsEnabled)
             return mavenInstallation;
@@ -320,6 +320,7 @@ public class MavenSealightsBuildStep extends Builder {
             } catch (Exception e) {
                 logger.error("Failed to restore.", e);
             }
+            mavenBuildStepHelper.releaseAgentPins();
         }
         return true;
     }
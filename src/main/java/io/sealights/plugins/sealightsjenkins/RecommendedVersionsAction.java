@@ -0,0 +1,51 @@
+package io.sealights.plugins.sealightsjenkins;
+
+import hudson.model.AbstractBuild;
+import hudson.model.InvisibleAction;
+import io.sealights.onpremise.agents.java.agent.infra.logging.ILogger;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.BatchVersionResolver;
+import jenkins.model.Jenkins;
+
+/**
+ * Shares the recommended agent versions between the SeaLights steps of a build (see {@link BatchVersionResolver}).
+ * <p>
+ * When the first step of a build asks for a version, the versions of all the SeaLights steps of the job are
+ * requested concurrently, with the configuration the steps have before the build variables are resolved
+ * (see {@link AgentPrefetchWork}). Steps whose configuration differs at runtime request their own version.
+ */
+public class RecommendedVersionsAction extends InvisibleAction {
+
+    private static final Object lock = new Object();
+
+    // Not saved with the build.
+    private transient BatchVersionResolver versionResolver;
+
+    /**
+     * @return the recommended versions of the given build.
+     */
+    public static BatchVersionResolver getVersionResolver(AbstractBuild<?, ?> build, ILogger logger) {
+        synchronized (lock) {
+            RecommendedVersionsAction action = build.getAction(RecommendedVersionsAction.class);
+            if (action == null) {
+                action = new RecommendedVersionsAction();
+                build.addAction(action);
+            }
+            if (action.versionResolver == null) {
+                action.versionResolver = new BatchVersionResolver();
+                resolveJobVersions(build, action.versionResolver, logger);
+            }
+            return action.versionResolver;
+        }
+    }
+
+    private static void resolveJobVersions(AbstractBuild<?, ?> build, BatchVersionResolver versionResolver, ILogger logger) {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return;
+        }
+        AgentPrefetchWork.TargetsCollector collector =
+                new AgentPrefetchWork.TargetsCollector(jenkins.getDescriptorByType(BeginAnalysis.DescriptorImpl.class));
+        collector.addProject(build.getProject());
+        versionResolver.resolveInBackground(collector.getTargets(), logger);
+    }
+}
@@ -0,0 +1,88 @@
+package io.sealights.plugins.sealightsjenkins;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.AgentExecutionScheduler;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.ExecutionMetrics;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.AgentCacheManager;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.DownloadMetrics;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.RecommendedVersionCache;
+import io.sealights.plugins.sealightsjenkins.services.HttpMetrics;
+import io.sealights.plugins.sealightsjenkins.utils.JsonSerializer;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The 'SeaLights Diagnostics' page of 'Manage Jenkins': the http requests of the plugin (latencies per endpoint,
+ * split into DNS, connect, TLS and time to first byte, to tell a slow server from a slow proxy or network), the agent
+ * downloads and caches, and the agent executions, since Jenkins started.
+ * <p>
+ * The same data is available as JSON at 'JENKINS_URL/sealights-diagnostics/json'.
+ */
+@Extension
+public class SeaLightsDiagnostics extends ManagementLink {
+
+    @Override
+    public String getIconFileName() {
+        return "monitor.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "SeaLights Diagnostics";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "sealights-diagnostics";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Latencies of the requests to the SeaLights server, and statistics of the SeaLights agents downloads, caches and executions.";
+    }
+
+    public List<HttpMetrics.EndpointStats> getHttpMetrics() {
+        return HttpMetrics.getInstance().getStats();
+    }
+
+    public DownloadMetrics getDownloads() {
+        return DownloadMetrics.getInstance();
+    }
+
+    public RecommendedVersionCache getRecommendedVersions() {
+        return RecommendedVersionCache.getInstance();
+    }
+
+    public AgentCacheManager getAgentCache() {
+        return AgentCacheManager.getInstance();
+    }
+
+    public List<AgentExecutionScheduler.NodeStats> getAgentExecutionQueues() {
+        return AgentExecutionScheduler.getInstance().getStats();
+    }
+
+    public List<ExecutionMetrics.CommandStats> getAgentExecutionMetrics() {
+        return ExecutionMetrics.getInstance().getStats();
+    }
+
+    public void doJson(StaplerRequest request, StaplerResponse response) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        Map<String, Object> diagnostics = new LinkedHashMap<>();
+        diagnostics.put("http", getHttpMetrics());
+        diagnostics.put("downloads", getDownloads());
+        diagnostics.put("recommendedVersions", getRecommendedVersions());
+        diagnostics.put("agentCache", getAgentCache());
+        diagnostics.put("agentExecutionQueues", getAgentExecutionQueues());
+        diagnostics.put("agentExecutions", getAgentExecutionMetrics());
+
+        response.setContentType("application/json;charset=UTF-8");
+        response.getWriter().write(JsonSerializer.serialize(diagnostics, true));
+    }
+}
@@ -0,0 +1,74 @@
+package io.sealights.plugins.sealightsjenkins;
+
+import hudson.Extension;
+import hudson.cli.CLICommand;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.AgentPrefetcher;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.ArtifactMirrorSync;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.ArtifactMirrors;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.FileSystemArtifactMirror;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.AgentPrefetchTarget;
+import io.sealights.plugins.sealightsjenkins.utils.Logger;
+import io.sealights.plugins.sealightsjenkins.utils.StringUtils;
+import jenkins.model.Jenkins;
+import org.kohsuke.args4j.Argument;
+
+import java.io.File;
+import java.util.Set;
+
+/**
+ * Jenkins CLI command that downloads the recommended agents of all the jobs that use SeaLights steps (see
+ * {@link AgentPrefetchWork}) into an agents mirror folder:
+ * <pre>
+ * java -jar jenkins-cli.jar -s JENKINS_URL sealights-sync-agents-mirror [FOLDER]
+ * </pre>
+ * The folder defaults to the configured agents mirror. To fill an http mirror, sync the folder that it serves.
+ */
+@Extension
+public class SyncAgentsMirrorCommand extends CLICommand {
+
+    @Argument(metaVar = "FOLDER", usage = "The mirror folder. Defaults to the configured agents mirror.")
+    public String folder;
+
+    @Override
+    public String getName() {
+        return "sealights-sync-agents-mirror";
+    }
+
+    @Override
+    public String getShortDescription() {
+        return "Downloads the recommended SeaLights agents of all jobs into the agents mirror folder.";
+    }
+
+    @Override
+    protected int run() throws Exception {
+        Jenkins jenkins = Jenkins.getInstance();
+        jenkins.checkPermission(Jenkins.ADMINISTER);
+
+        String location = StringUtils.isNullOrEmpty(folder) ? ArtifactMirrors.getInstance().getLocation() : folder;
+        if (StringUtils.isNullOrEmpty(location)) {
+            stderr.println("No mirror folder was given, and no agents mirror is configured.");
+            return 2;
+        }
+        if (ArtifactMirrors.isHttpLocation(location)) {
+            stderr.println("The agents mirror '" + location + "' is an http mirror. Give the folder that it serves.");
+            return 2;
+        }
+
+        Logger logger = new Logger(stdout, "SeaLights mirror sync");
+        Set<AgentPrefetchTarget> targets = AgentPrefetchWork.collectTargets(jenkins);
+        ArtifactMirrorSync sync = new ArtifactMirrorSync(new FileSystemArtifactMirror(new File(location)), logger);
+        int synced = sync.sync(targets);
+        logger.info("Synced " + synced + " configurations into '" + location + "'.");
+        return synced < countAgentTargets(targets) ? 1 : 0;
+    }
+
+    private static int countAgentTargets(Set<AgentPrefetchTarget> targets) {
+        int count = 0;
+        for (AgentPrefetchTarget target : targets) {
+            if (AgentPrefetcher.SEALIGHTS_JAVA_COMPONENT.equals(target.getComponentName())) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
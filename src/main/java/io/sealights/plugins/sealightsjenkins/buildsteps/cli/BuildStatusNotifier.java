@@ -11,6 +11,8 @@ import hudson.tasks.Notifier;
 import hudson.tasks.Publisher;
 import io.sealights.plugins.sealightsjenkins.BeginAnalysis;
 import io.sealights.plugins.sealightsjenkins.CleanupManager;
+import io.sealights.plugins.sealightsjenkins.RecommendedVersionsAction;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.AgentExecutionMode;
 import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.BaseCommandArguments;
 import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.ExternalReportCommandArguments;
 import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.SealightsBuildStatus;
@@ -102,6 +104,7 @@ public class BuildStatusNotifier extends Notifier {
             ExternalReportCommandArguments externalReportArguments = new ExternalReportCommandArguments(reportFilePath);
             CLIHandler cliHandler =
                     new CLIHandler(baseCommandArguments, externalReportArguments, filesStorage, logger);
+            cliHandler.setVersionResolver(RecommendedVersionsAction.getVersionResolver(build, logger));
 
             boolean isSuccess = cliHandler.handle();
 
@@ -278,6 +281,8 @@ public class BuildStatusNotifier extends Notifier {
 
         baseArgs.setAgentPath(resolveEnvVar(envVars, (String) additionalProps.get("agentpath")));
         baseArgs.setJavaPath(resolveEnvVar(envVars, (String) additionalProps.get("javapath")));
+        baseArgs.setExecutionMode(AgentExecutionMode.fromName(resolveEnvVar(envVars, (String) additionalProps.get("executionmode"))));
+        baseArgs.setCommandTimeoutSeconds(PropertiesUtils.toLong(resolveEnvVar(envVars, (String) additionalProps.get("commandtimeout")), 0));
 
         baseArgs.setBuild(build);
         baseArgs.setEnvVars(envVars);
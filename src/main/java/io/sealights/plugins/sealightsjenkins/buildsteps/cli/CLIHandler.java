@@ -2,19 +2,29 @@ package io.sealights.plugins.sealightsjenkins.buildsteps.cli;
 
 import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.AbstractCommandArgument;
 import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.BaseCommandArguments;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.BatchCommandArguments;
 import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.CommandModes;
 import io.sealights.plugins.sealightsjenkins.buildsteps.cli.executors.CommandExecutorsFactory;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.executors.ConfigCommandExecutor;
 import io.sealights.plugins.sealightsjenkins.buildsteps.cli.executors.ICommandExecutor;
 import io.sealights.plugins.sealightsjenkins.entities.TokenData;
 import io.sealights.plugins.sealightsjenkins.integration.upgrade.AbstractUpgradeManager;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.AgentCacheManager;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.AgentPrefetcher;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.BatchVersionResolver;
 import io.sealights.plugins.sealightsjenkins.integration.upgrade.BuildScannerUpgradeManager;
 import io.sealights.plugins.sealightsjenkins.integration.upgrade.TestListenerUpgradeManager;
 import io.sealights.plugins.sealightsjenkins.integration.upgrade.UpgradeProxy;
 import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.UpgradeConfiguration;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.UpgradeResponse;
 import io.sealights.plugins.sealightsjenkins.utils.Logger;
 import io.sealights.plugins.sealightsjenkins.utils.StringUtils;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * This class is responsible to invoke the right command executor.
@@ -25,6 +35,8 @@ public class CLIHandler {
     private String filesStorage;
     private BaseCommandArguments baseArgs;
     private AbstractCommandArgument commandArgument;
+    private BatchVersionResolver versionResolver;
+    private final List<AgentCacheManager.Pin> agentPins = new ArrayList<>();
 
     public CLIHandler(Logger logger) {
         this.logger = logger;
@@ -40,27 +52,108 @@ public class CLIHandler {
     public boolean handle() {
         logger.info("Base Arguments Provided for the cli execution: " + baseArgs.toString());
 
-        String agentPath = tryGetAgentPath(logger, baseArgs);
-        baseArgs.setAgentPath(agentPath);
+        try {
+            if (commandArgument instanceof BatchCommandArguments) {
+                return handleBatch((BatchCommandArguments) commandArgument);
+            }
 
+            String agentPath = tryGetAgentPath(logger, baseArgs, commandArgument.getMode(), null);
+            baseArgs.setAgentPath(agentPath);
+
+            CommandExecutorsFactory commandExecutorsFactory = new CommandExecutorsFactory();
+            ICommandExecutor executor = commandExecutorsFactory.createExecutor(logger, baseArgs, commandArgument);
+
+            return executor.execute();
+        } finally {
+            releaseAgentPins();
+        }
+    }
+
+    /*
+     * Runs the commands one after the other. The recommended agent version is queried once for all of them,
+     * and each agent jar is resolved once. The agent CLI runs a single command per invocation, so each command
+     * is still run by the runner of the execution mode (by default, a separate java process per command).
+     */
+    private boolean handleBatch(BatchCommandArguments batchArguments) {
+        String configuredAgentPath = baseArgs.getAgentPath();
+        UpgradeResponse recommendedVersion = null;
+        Map<Boolean, String> agentPathByIsBuildScanner = new HashMap<>();
         CommandExecutorsFactory commandExecutorsFactory = new CommandExecutorsFactory();
-        ICommandExecutor executor = commandExecutorsFactory.createExecutor(logger, baseArgs, commandArgument);
 
-        return executor.execute();
+        for (AbstractCommandArgument command : batchArguments.getCommands()) {
+            String commandName = command.getMode().getName();
+            logger.info("Batch - running the '" + commandName + "' command.");
+
+            boolean isBuildScanner = isBuildScannerCommand(command.getMode());
+            String agentPath = agentPathByIsBuildScanner.get(isBuildScanner);
+            if (agentPath == null) {
+                baseArgs.setAgentPath(configuredAgentPath);
+                if (recommendedVersion == null && !isExistingFile(configuredAgentPath)) {
+                    recommendedVersion = queryRecommendedVersion();
+                }
+                agentPath = tryGetAgentPath(logger, baseArgs, command.getMode(), recommendedVersion);
+                agentPathByIsBuildScanner.put(isBuildScanner, agentPath);
+            }
+            baseArgs.setAgentPath(agentPath);
+
+            ICommandExecutor executor = commandExecutorsFactory.createExecutor(logger, baseArgs, command);
+            if (!executor.execute()) {
+                logger.error("Batch - the '" + commandName + "' command failed. Skipping the remaining commands.");
+                return false;
+            }
+
+            if (executor instanceof ConfigCommandExecutor) {
+                // The following commands report to the build session that was just created
+                baseArgs.setBuildSessionId(((ConfigCommandExecutor) executor).getCreatedBuildSessionId());
+            }
+        }
+        return true;
     }
 
-    private String tryGetAgentPath(Logger logger, BaseCommandArguments baseArgs) {
-        if (!StringUtils.isNullOrEmpty(baseArgs.getAgentPath()) && new File(baseArgs.getAgentPath()).isFile()) {
+    private UpgradeResponse queryRecommendedVersion() {
+        UpgradeConfiguration upgradeConfiguration = createUpgradeConfiguration(baseArgs);
+        try {
+            if (versionResolver != null) {
+                return versionResolver.resolve(AgentPrefetcher.SEALIGHTS_JAVA_COMPONENT, upgradeConfiguration, logger);
+            }
+            UpgradeProxy upgradeProxy = new UpgradeProxy(upgradeConfiguration, logger);
+            return upgradeProxy.getRecommendedVersion(AgentPrefetcher.SEALIGHTS_JAVA_COMPONENT);
+        } catch (Exception e) {
+            throw new RuntimeException("Error while trying to resolve Sealights recommended agents version.", e);
+        }
+    }
+
+    private String tryGetAgentPath(
+            Logger logger, BaseCommandArguments baseArgs, CommandModes mode, UpgradeResponse recommendedVersion) {
+        if (isExistingFile(baseArgs.getAgentPath())) {
             return baseArgs.getAgentPath();
         }
-        AbstractUpgradeManager upgradeManager = createUpgradeManager(logger, baseArgs);
-        return upgradeManager.ensureLatestAgentPresentLocally();
+        if (recommendedVersion == null && versionResolver != null) {
+            // Shared with the other SeaLights steps of the build
+            recommendedVersion = queryRecommendedVersion();
+        }
+        AbstractUpgradeManager upgradeManager = createUpgradeManager(logger, baseArgs, mode);
+        String agentPath = upgradeManager.ensureLatestAgentPresentLocally(recommendedVersion);
+        // The agent is kept in the cache until the commands are done
+        agentPins.add(AgentCacheManager.getInstance().pin(agentPath));
+        return agentPath;
     }
 
-    private AbstractUpgradeManager createUpgradeManager(Logger logger, BaseCommandArguments baseArgs) {
+    private void releaseAgentPins() {
+        for (AgentCacheManager.Pin pin : agentPins) {
+            pin.close();
+        }
+        agentPins.clear();
+    }
+
+    private static boolean isExistingFile(String path) {
+        return !StringUtils.isNullOrEmpty(path) && new File(path).isFile();
+    }
+
+    private AbstractUpgradeManager createUpgradeManager(Logger logger, BaseCommandArguments baseArgs, CommandModes mode) {
         UpgradeConfiguration upgradeConfiguration = createUpgradeConfiguration(baseArgs);
         UpgradeProxy upgradeProxy = new UpgradeProxy(upgradeConfiguration, logger);
-        return getRelevantUpgradeManager(upgradeProxy, upgradeConfiguration);
+        return getRelevantUpgradeManager(upgradeProxy, upgradeConfiguration, mode);
     }
 
     private UpgradeConfiguration createUpgradeConfiguration(BaseCommandArguments baseArgs) {
@@ -109,15 +202,23 @@ public class CLIHandler {
         this.commandArgument = commandArgument;
     }
 
-    private AbstractUpgradeManager getRelevantUpgradeManager(
-            UpgradeProxy upgradeProxy, UpgradeConfiguration upgradeConfiguration) {
+    /**
+     * @param versionResolver the recommended versions of the current build, or 'null' to query the server directly
+     */
+    public void setVersionResolver(BatchVersionResolver versionResolver) {
+        this.versionResolver = versionResolver;
+    }
 
-        boolean useScannerUpgradeManager = CommandModes.Config.equals(commandArgument.getMode());
+    private AbstractUpgradeManager getRelevantUpgradeManager(
+            UpgradeProxy upgradeProxy, UpgradeConfiguration upgradeConfiguration, CommandModes mode) {
 
-        if (useScannerUpgradeManager) {
+        if (isBuildScannerCommand(mode)) {
             return new BuildScannerUpgradeManager(upgradeProxy, upgradeConfiguration, logger);
         }
         return new TestListenerUpgradeManager(upgradeProxy, upgradeConfiguration, logger);
     }
-}
 
+    private static boolean isBuildScannerCommand(CommandModes mode) {
+        return CommandModes.Config.equals(mode);
+    }
+}
@@ -10,7 +10,9 @@ import hudson.model.BuildListener;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Builder;
 import io.sealights.plugins.sealightsjenkins.BeginAnalysis;
+import io.sealights.plugins.sealightsjenkins.RecommendedVersionsAction;
 import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.AbstractCommandArgument;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.AgentExecutionMode;
 import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.BaseCommandArguments;
 import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.CommandBuildNamingStrategy;
 import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.CommandModes;
@@ -143,6 +145,7 @@ public class CLIRunner extends Builder {
 
             baseArgs.setBuild(build);
             baseArgs.setEnvVars(envVars);
+            baseArgs.setLauncher(launcher);
             baseArgs.setLogger(logger);
 
             String filesStorage = resolveFilesStorage(additionalProps, envVars);
@@ -153,6 +156,7 @@ public class CLIRunner extends Builder {
             AbstractCommandArgument commandArguments = modeToArgumentsConverter.convert(commandMode);
             cliHandler.setCommandArgument(commandArguments);
             cliHandler.setFilesStorage(filesStorage);
+            cliHandler.setVersionResolver(RecommendedVersionsAction.getVersionResolver(build, logger));
 
             return cliHandler.handle();
         } catch (Exception e) {
@@ -164,7 +168,7 @@ public class CLIRunner extends Builder {
 
     private void validateCommandMode(CommandMode commandMode, Properties additionalProps) {
         String buildsessionidfilePath = additionalProps.getProperty("buildsessionidfile");
-        if (CommandModes.Config.equals(commandMode.getCurrentMode())) {
+        if (CommandModes.Config.equals(commandMode.getCurrentMode()) || isBatchWithConfig(commandMode)) {
             validateConfigMode();
             return;
         }
@@ -182,6 +186,14 @@ public class CLIRunner extends Builder {
         }
     }
 
+    private boolean isBatchWithConfig(CommandMode commandMode) {
+        if (!CommandModes.Batch.equals(commandMode.getCurrentMode())) {
+            return false;
+        }
+        String commands = ((CommandMode.BatchView) commandMode).getCommands();
+        return ModeToArgumentsConverter.parseBatchCommands(commands).contains(CommandModes.Config);
+    }
+
     private void validateConfigMode() {
         if (StringUtils.isNullOrEmpty(appName) || StringUtils.isNullOrEmpty(branchName) ||
                 CommandBuildNamingStrategy.EMPTY_BUILD.equals(buildName.getBuildNamingStrategy()) ||
@@ -200,6 +212,8 @@ public class CLIRunner extends Builder {
 
         baseArgs.setAgentPath(resolveEnvVar(envVars, (String) additionalProps.get("agentpath")));
         baseArgs.setJavaPath(resolveEnvVar(envVars, (String) additionalProps.get("javapath")));
+        baseArgs.setExecutionMode(AgentExecutionMode.fromName(resolveEnvVar(envVars, (String) additionalProps.get("executionmode"))));
+        baseArgs.setCommandTimeoutSeconds(PropertiesUtils.toLong(resolveEnvVar(envVars, (String) additionalProps.get("commandtimeout")), 0));
 
         return baseArgs;
     }
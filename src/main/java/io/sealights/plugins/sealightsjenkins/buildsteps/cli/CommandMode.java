@@ -343,4 +343,131 @@ public class CommandMode implements Describable<CommandMode>, ExtensionPoint, Se
     }
 
 
+    public static class BatchView extends CommandMode {
+
+        public static final String DEFAULT_COMMANDS = "config, start, uploadReports, end";
+
+        private String commands;
+        private DescribableList<TechnologyOptions, TechnologyOptionsDescriptor> techOptions;
+        private String appName;
+        private String branchName;
+        private CommandBuildName buildName;
+        private String labId;
+        private String testStage;
+        private String reportFiles;
+        private String reportsFolders;
+
+        @DataBoundConstructor
+        public BatchView(String commands, String appName, String branchName, CommandBuildName buildName,
+                         String labId, String testStage, String reportFiles, String reportsFolders,
+                         String buildSessionId, String additionalArguments, List<TechnologyOptions> techOptions) {
+            super(CommandModes.Batch, buildSessionId, additionalArguments);
+            this.commands = commands;
+            this.appName = appName;
+            this.branchName = branchName;
+            this.buildName = buildName;
+            this.labId = labId;
+            this.testStage = testStage;
+            this.reportFiles = reportFiles;
+            this.reportsFolders = reportsFolders;
+            this.techOptions = new DescribableList<>(this.getDescriptor(), techOptions);
+        }
+
+        public String getCommands() {
+            return commands;
+        }
+
+        public void setCommands(String commands) {
+            this.commands = commands;
+        }
+
+        public DescribableList<TechnologyOptions, TechnologyOptionsDescriptor> getTechOptions() {
+            return techOptions;
+        }
+
+        public void setTechOptions(DescribableList<TechnologyOptions, TechnologyOptionsDescriptor> techOptions) {
+            this.techOptions = techOptions;
+        }
+
+        @Exported
+        public String getAppName() {
+            return appName;
+        }
+
+        @Exported
+        public void setAppName(String appName) {
+            this.appName = appName;
+        }
+
+        @Exported
+        public String getBranchName() {
+            return branchName;
+        }
+
+        @Exported
+        public void setBranchName(String branchName) {
+            this.branchName = branchName;
+        }
+
+        @Exported
+        public CommandBuildName getBuildName() {
+            return buildName;
+        }
+
+        @Exported
+        public void setBuildName(CommandBuildName buildName) {
+            this.buildName = buildName;
+        }
+
+        @Exported
+        public String getLabId() {
+            return labId;
+        }
+
+        @Exported
+        public void setLabId(String labId) {
+            this.labId = labId;
+        }
+
+        public String getTestStage() {
+            return testStage;
+        }
+
+        public void setTestStage(String testStage) {
+            this.testStage = testStage;
+        }
+
+        public String getReportFiles() {
+            return reportFiles;
+        }
+
+        public void setReportFiles(String reportFiles) {
+            this.reportFiles = reportFiles;
+        }
+
+        public String getReportsFolders() {
+            return reportsFolders;
+        }
+
+        public void setReportsFolders(String reportsFolders) {
+            this.reportsFolders = reportsFolders;
+        }
+
+        @Extension
+        public static class BatchDescriptor extends CommandModeDescriptor {
+
+            public BatchDescriptor() {
+                super(BatchView.class, CommandModes.Batch.getDisplayName());
+            }
+
+            public DescriptorExtensionList<TechnologyOptions, TechnologyOptionsDescriptor> getTechnologiesDescriptors() {
+                return TechnologyOptionsDescriptor.all();
+            }
+
+            public DescriptorExtensionList<CommandBuildName, CommandBuildName.CommandBuildNameDescriptor> getBuildNameDescriptorList() {
+                return Jenkins.getInstance().getDescriptorList(CommandBuildName.class);
+            }
+        }
+    }
+
 }
@@ -3,6 +3,7 @@ package io.sealights.plugins.sealightsjenkins.buildsteps.cli;
 import hudson.DescriptorExtensionList;
 import hudson.Extension;
 import hudson.Launcher;
+import hudson.init.Terminator;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.BuildListener;
@@ -14,6 +15,7 @@ import io.sealights.plugins.sealightsjenkins.buildsteps.cli.configurationtechnol
 import io.sealights.plugins.sealightsjenkins.buildsteps.cli.configurationtechnologies.TechnologyOptions;
 import io.sealights.plugins.sealightsjenkins.buildsteps.cli.configurationtechnologies.TechnologyOptionsDescriptor;
 import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.CommandBuildNamingStrategy;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.AgentDaemonRegistry;
 import io.sealights.plugins.sealightsjenkins.exceptions.SeaLightsIllegalStateException;
 import io.sealights.plugins.sealightsjenkins.utils.Logger;
 import io.sealights.plugins.sealightsjenkins.utils.PropertiesUtils;
@@ -172,6 +174,11 @@ public class SealightsCLIBuildStep extends Builder {
             load();
         }
 
+        @Terminator
+        public static void shutdownAgentDaemons() {
+            AgentDaemonRegistry.getInstance().shutdownAll();
+        }
+
         public DescriptorExtensionList<CommandMode, CommandMode.CommandModeDescriptor> getCommandModeDescriptorList() {
             DescriptorExtensionList<CommandMode, CommandMode.CommandModeDescriptor> descriptorList = Jenkins.getInstance().getDescriptorList(CommandMode.class);
             return descriptorList;
@@ -203,6 +210,10 @@ public class SealightsCLIBuildStep extends Builder {
             CommandMode.ConfigView configView=(CommandMode.ConfigView) commandMode;
             return new CLIRunner(configView.getBuildSessionId(),configView.getAppName(),configView.getBranchName(),
                     configView.getBuildName(),configView.getAdditionalArguments(),null);
+        }else if(commandMode instanceof CommandMode.BatchView){
+            CommandMode.BatchView batchView=(CommandMode.BatchView) commandMode;
+            return new CLIRunner(batchView.getBuildSessionId(),batchView.getAppName(),batchView.getBranchName(),
+                    batchView.getBuildName(),batchView.getAdditionalArguments(),batchView.getLabId());
         }else {
             Properties properties = PropertiesUtils.toProperties(commandMode.getAdditionalArguments());
             String appName = (properties.get("appname")!= null)? properties.get("appname").toString():null;
@@ -0,0 +1,54 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities;
+
+/**
+ * The ways the SeaLights agent jar can be executed by the CLI executors.
+ */
+public enum AgentExecutionMode {
+    FORK("fork") {
+        @Override public String getDisplayName() {
+            return "Run the agent in a separate java process";
+        }
+    },
+    IN_PROCESS("inprocess") {
+        @Override public String getDisplayName() {
+            return "Run the agent inside the Jenkins process";
+        }
+    },
+    DAEMON("daemon") {
+        @Override public String getDisplayName() {
+            return "Run the agent in a long-lived worker process";
+        }
+    },
+    REMOTE("remote") {
+        @Override public String getDisplayName() {
+            return "Run the agent on the node that owns the build's workspace";
+        }
+    };
+
+    private final String name;
+
+    AgentExecutionMode(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public abstract String getDisplayName();
+
+    /**
+     * @return the mode matching the given name (case insensitive), or 'FORK' when it is empty or unknown.
+     */
+    public static AgentExecutionMode fromName(String name) {
+        if (name == null) {
+            return FORK;
+        }
+        for (AgentExecutionMode mode : values()) {
+            if (mode.getName().equalsIgnoreCase(name.trim())) {
+                return mode;
+            }
+        }
+        return FORK;
+    }
+}
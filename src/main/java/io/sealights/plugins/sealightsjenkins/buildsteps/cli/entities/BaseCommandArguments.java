@@ -1,6 +1,7 @@
 package io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities;
 
 import hudson.EnvVars;
+import hudson.Launcher;
 import hudson.model.AbstractBuild;
 import io.sealights.plugins.sealightsjenkins.entities.TokenData;
 import io.sealights.plugins.sealightsjenkins.utils.Logger;
@@ -25,12 +26,15 @@ public class BaseCommandArguments {
     private String labId;
     private String agentPath;
     private String javaPath;
+    private AgentExecutionMode executionMode = AgentExecutionMode.FORK;
+    private long commandTimeoutSeconds;
 
     private String buildSessionId;
     private String buildSessionIdFile;
 
     private AbstractBuild<?, ?> build;
     private EnvVars envVars;
+    private Launcher launcher;
     private Logger logger;
 
     public String getAppName() {
@@ -113,6 +117,29 @@ public class BaseCommandArguments {
         this.javaPath = javaPath;
     }
 
+    public AgentExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public void setExecutionMode(AgentExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    /**
+     * @return the maximum time a single agent command may run, or 0 for no limit.
+     */
+    public long getCommandTimeoutSeconds() {
+        return commandTimeoutSeconds;
+    }
+
+    public long getCommandTimeoutMillis() {
+        return commandTimeoutSeconds * 1000;
+    }
+
+    public void setCommandTimeoutSeconds(long commandTimeoutSeconds) {
+        this.commandTimeoutSeconds = commandTimeoutSeconds;
+    }
+
     public String getToken() {
         return token;
     }
@@ -161,6 +188,14 @@ public class BaseCommandArguments {
         this.envVars = envVars;
     }
 
+    public Launcher getLauncher() {
+        return launcher;
+    }
+
+    public void setLauncher(Launcher launcher) {
+        this.launcher = launcher;
+    }
+
     public Logger getLogger() {
         return logger;
     }
@@ -184,6 +219,8 @@ public class BaseCommandArguments {
                 ", labId='" + labId + '\'' +
                 ", agentPath='" + agentPath + '\'' +
                 ", javaPath='" + javaPath + '\'' +
+                ", executionMode=" + executionMode +
+                ", commandTimeoutSeconds=" + commandTimeoutSeconds +
                 ", buildSessionId='" + buildSessionId + '\'' +
                 ", buildSessionIdFile='" + buildSessionIdFile + '\'' +
                 '}';
@@ -0,0 +1,25 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities;
+
+import java.util.List;
+
+/**
+ * Arguments for a batch of commands that run one after the other with the same base arguments.
+ * The agent is resolved once for the batch, but every command is still a separate agent invocation.
+ */
+public class BatchCommandArguments extends AbstractCommandArgument {
+
+    private List<AbstractCommandArgument> commands;
+
+    public BatchCommandArguments(List<AbstractCommandArgument> commands) {
+        this.commands = commands;
+    }
+
+    public List<AbstractCommandArgument> getCommands() {
+        return commands;
+    }
+
+    @Override
+    public CommandModes getMode() {
+        return CommandModes.Batch;
+    }
+}
@@ -28,6 +28,11 @@ public enum CommandModes {
         @Override public String getDisplayName() {
             return "Config - Create build session data";
         }
+    },
+    Batch("batch") {
+        @Override public String getDisplayName() {
+            return "Batch - Run several commands in one step, resolving the agent once";
+        }
     };
 
     private final String name;
@@ -41,4 +46,19 @@ public enum CommandModes {
     }
 
     public abstract String getDisplayName();
+
+    /**
+     * @return the mode with the given name (case insensitive), or 'null' if there is no such mode.
+     */
+    public static CommandModes fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (CommandModes mode : values()) {
+            if (mode.getName().equalsIgnoreCase(name.trim())) {
+                return mode;
+            }
+        }
+        return null;
+    }
 }
@@ -9,6 +9,8 @@ public class UploadReportsCommandArguments extends AbstractCommandArgument {
     private String reportsFolders;
     private boolean hasMoreRequests;
     private String source;
+    private int shards = 1;
+    private int parallelism = 0;
 
     public UploadReportsCommandArguments(String reportFiles, String reportsFolders, boolean hasMoreRequests, String source) {
         this.reportFiles = reportFiles;
@@ -17,6 +19,17 @@ public class UploadReportsCommandArguments extends AbstractCommandArgument {
         this.source = source;
     }
 
+    /**
+     * @param shards      the number of shards to split the reports into (1 for a single upload)
+     * @param parallelism the maximum number of shards uploaded at the same time (0 for all of them)
+     */
+    public UploadReportsCommandArguments(String reportFiles, String reportsFolders, boolean hasMoreRequests,
+                                         String source, int shards, int parallelism) {
+        this(reportFiles, reportsFolders, hasMoreRequests, source);
+        this.shards = shards;
+        this.parallelism = parallelism;
+    }
+
     public String getReportFiles() {
         return reportFiles;
     }
@@ -33,6 +46,14 @@ public class UploadReportsCommandArguments extends AbstractCommandArgument {
         return source;
     }
 
+    public int getShards() {
+        return shards;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
     public void setReportFiles(String reportFiles) {
         this.reportFiles = reportFiles;
     }
@@ -0,0 +1,209 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import io.sealights.plugins.sealightsjenkins.utils.ChecksumUtils;
+import io.sealights.plugins.sealightsjenkins.utils.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Class data sharing (CDS) archives of the agent jars. Starting a forked agent with the archive of its jar saves
+ * most of the JVM startup and class loading time of every command.
+ * <p>
+ * An archive is created once per agent jar and JVM by the first forked command of the jar, which runs with
+ * '-XX:ArchiveClassesAtExit' (Java 13 or later) and so dumps the classes that a real command loads when it exits. The
+ * other commands run without an archive until it exists. A failed creation (e.g. the command was killed) is retried
+ * by a later command after {@link #RETRY_BACKOFF_MILLIS}. The archive name holds a digest of the jar content and of
+ * the JVM identity, so a replaced jar or JVM gets a new archive instead of using a stale one. The archives are kept in
+ * a 'cds' folder next to the agent jar. For a jar of the agents store that is its store folder, so the archives count
+ * towards the agents cache budget and are evicted with the jar (see AgentStore). Set the 'sl.agentCds.enabled'
+ * system property to 'false' to disable them.
+ */
+public class AgentCdsArchives {
+
+    public static final String ENABLED_PROPERTY = "sl.agentCds.enabled";
+    public static final String ARCHIVES_FOLDER_NAME = "cds";
+    public static final long RETRY_BACKOFF_MILLIS = 10 * 60 * 1000;
+    private static final String ARCHIVE_EXTENSION = ".jsa";
+    private static final int MIN_JAVA_VERSION = 13;
+
+    private static final AgentCdsArchives instance = new AgentCdsArchives();
+
+    // The time the creation of an archive was started, or failed. Removed once the archive is created.
+    private final ConcurrentMap<String, Long> creationAttempts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> jarDigestsCache = new ConcurrentHashMap<>();
+
+    public static AgentCdsArchives getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return the run of a forked agent command, with the JVM options that start it with the archive of its jar, or
+     * that create the archive when the command exits. It must be closed once the process ended.
+     */
+    public Run prepareRun(String javaPath, File agentJar, Logger logger) {
+        File archive = resolveArchive(javaPath, agentJar, logger);
+        if (archive == null) {
+            return Run.NONE;
+        }
+        if (archive.isFile()) {
+            return new Run(Arrays.asList("-XX:SharedArchiveFile=" + archive.getAbsolutePath(), "-Xshare:auto"), null, null);
+        }
+        if (!claimCreation(archive) || !ensureFolderExists(archive.getParentFile())) {
+            return Run.NONE;
+        }
+        logger.info("Creating a class data sharing archive for '" + agentJar.getName() + "' when the command exits.");
+        File tempArchive = new File(archive.getParentFile(), archive.getName() + "." + UUID.randomUUID() + ".tmp");
+        return new Run(Collections.singletonList("-XX:ArchiveClassesAtExit=" + tempArchive.getAbsolutePath()),
+                tempArchive, archive);
+    }
+
+    /*
+    * Only one command at a time creates an archive, and a failed creation is not retried before the backoff passed.
+    * */
+    private boolean claimCreation(File archive) {
+        String key = archive.getAbsolutePath();
+        long now = System.currentTimeMillis();
+        Long lastAttempt = creationAttempts.putIfAbsent(key, now);
+        if (lastAttempt == null) {
+            return true;
+        }
+        return now - lastAttempt >= RETRY_BACKOFF_MILLIS && creationAttempts.replace(key, lastAttempt, now);
+    }
+
+    private void onRunEnded(File tempArchive, File archive) {
+        try {
+            if (tempArchive.isFile()) {
+                moveAtomically(tempArchive, archive);
+                // Allows to create it again if it is deleted later on.
+                creationAttempts.remove(archive.getAbsolutePath());
+                deleteArchivesOfMissingJars(archive.getParentFile().getParentFile(), archive.getParentFile());
+                return;
+            }
+        } catch (IOException e) {
+            // Retried after the backoff
+        } finally {
+            tempArchive.delete();
+        }
+        creationAttempts.put(archive.getAbsolutePath(), System.currentTimeMillis());
+    }
+
+    /**
+     * @return the archive file for the given jar and JVM (it may not exist), or null if archives are not used.
+     */
+    private File resolveArchive(String javaPath, File agentJar, Logger logger) {
+        if (!isEnabled() || !agentJar.isFile() || JavaVersionDetector.getMajorVersion(javaPath) < MIN_JAVA_VERSION) {
+            return null;
+        }
+        try {
+            String identity = getJarDigest(agentJar) + "\n" + new File(javaPath).getCanonicalPath() + "\n"
+                    + JavaVersionDetector.getVersionOutput(javaPath);
+            String key = ChecksumUtils.sha256(new ByteArrayInputStream(identity.getBytes("UTF-8"))).substring(0, 16);
+            File archivesFolder = new File(agentJar.getParentFile(), ARCHIVES_FOLDER_NAME);
+            return new File(archivesFolder, removeJarExtension(agentJar.getName()) + "-" + key + ARCHIVE_EXTENSION);
+        } catch (IOException e) {
+            logger.warning("Unable to resolve the class data sharing archive of '" + agentJar + "'. Error: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private String getJarDigest(File agentJar) throws IOException {
+        String cacheKey = agentJar.getAbsolutePath() + "|" + agentJar.length() + "|" + agentJar.lastModified();
+        String digest = jarDigestsCache.get(cacheKey);
+        if (digest == null) {
+            digest = ChecksumUtils.sha256(agentJar);
+            jarDigestsCache.put(cacheKey, digest);
+        }
+        return digest;
+    }
+
+    private static boolean ensureFolderExists(File folder) {
+        return folder.isDirectory() || folder.mkdirs() || folder.isDirectory();
+    }
+
+    private static void moveAtomically(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Deletes the archives whose jar is not in the folder anymore. The store folder of an evicted jar is deleted as
+     * a whole, so this only applies to jars that are kept outside of the agents store.
+     */
+    private static void deleteArchivesOfMissingJars(File jarsFolder, File archivesFolder) {
+        File[] archives = archivesFolder.listFiles();
+        if (archives == null) {
+            return;
+        }
+        for (File archive : archives) {
+            String name = archive.getName();
+            int keySeparatorIndex = name.lastIndexOf('-');
+            if (!name.endsWith(ARCHIVE_EXTENSION) || keySeparatorIndex < 0) {
+                continue;
+            }
+            File jar = new File(jarsFolder, name.substring(0, keySeparatorIndex) + ".jar");
+            if (!jar.isFile()) {
+                archive.delete();
+            }
+        }
+    }
+
+    private static String removeJarExtension(String jarName) {
+        return jarName.endsWith(".jar") ? jarName.substring(0, jarName.length() - ".jar".length()) : jarName;
+    }
+
+    private static boolean isEnabled() {
+        return !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY));
+    }
+
+    /**
+     * A forked agent command that may use or create an archive. Closing the run more than once has no effect.
+     */
+    public static class Run implements Closeable {
+
+        public static final Run NONE = new Run(Collections.<String>emptyList(), null, null);
+
+        private final List<String> jvmOptions;
+        private final File tempArchive;
+        private final File archive;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Run(List<String> jvmOptions, File tempArchive, File archive) {
+            this.jvmOptions = jvmOptions;
+            this.tempArchive = tempArchive;
+            this.archive = archive;
+        }
+
+        /**
+         * @return the JVM options to add before '-jar', or an empty list.
+         */
+        public List<String> getJvmOptions() {
+            return jvmOptions;
+        }
+
+        /**
+         * Moves the archive that the command created into place.
+         */
+        @Override
+        public void close() {
+            if (tempArchive != null && closed.compareAndSet(false, true)) {
+                instance.onRunEnded(tempArchive, archive);
+            }
+        }
+    }
+}
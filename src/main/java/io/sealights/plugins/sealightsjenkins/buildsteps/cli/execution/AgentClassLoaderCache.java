@@ -0,0 +1,215 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.AgentCacheManager;
+import io.sealights.plugins.sealightsjenkins.utils.ChecksumUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * Keeps isolated class loaders of agent jars, keyed by the SHA-256 of the jar.
+ * <p>
+ * A jar that was replaced on disk (e.g. after an upgrade) gets a new checksum and therefore a new class loader.
+ * The least recently used class loaders are evicted once more than {@link #MAX_CACHED_LOADERS} are held. An evicted
+ * class loader is closed once it is no longer leased. The jar of a class loader is pinned in the agents store, and
+ * the exit trap (see {@link ExitTrappingSecurityManager}) is kept installed, until the class loader is closed, since
+ * threads started by the agent may keep running after its invocation.
+ */
+public class AgentClassLoaderCache {
+
+    public static final int MAX_CACHED_LOADERS = 4;
+
+    private static final java.util.logging.Logger LOGGER = java.util.logging.Logger.getLogger(AgentClassLoaderCache.class.getName());
+
+    private static final AgentClassLoaderCache INSTANCE = new AgentClassLoaderCache();
+
+    private final LinkedHashMap<String, CachedLoader> loadersByChecksum = new LinkedHashMap<>(8, 0.75f, true);
+    private final Map<String, FileChecksum> checksumsByPath = new HashMap<>();
+
+    public static AgentClassLoaderCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Keeps the class loader of the jar open until the returned lease is closed.
+     */
+    public synchronized Lease lease(File agentJar) throws IOException, CommandRunnerUnavailableException {
+        String checksum = getChecksum(agentJar);
+        CachedLoader cachedLoader = loadersByChecksum.get(checksum);
+        if (cachedLoader == null) {
+            ExitTrappingSecurityManager.Installation exitTrap = ExitTrappingSecurityManager.install();
+            URLClassLoader classLoader = new AgentClassLoader(new URL[]{agentJar.toURI().toURL()}, getIsolatedParent());
+            cachedLoader = new CachedLoader(classLoader, AgentCacheManager.getInstance().pin(agentJar.getAbsolutePath()),
+                    exitTrap);
+            loadersByChecksum.put(checksum, cachedLoader);
+        }
+        cachedLoader.leases++;
+        Lease lease = new Lease(cachedLoader);
+        evictIfNeeded();
+        return lease;
+    }
+
+    /**
+     * @return true if the class was loaded from an agent jar (by a class loader of this cache).
+     */
+    public static boolean isAgentClass(Class<?> clazz) {
+        return clazz.getClassLoader() instanceof AgentClassLoader;
+    }
+
+    public synchronized int size() {
+        return loadersByChecksum.size();
+    }
+
+    private String getChecksum(File agentJar) throws IOException {
+        String path = agentJar.getAbsolutePath();
+        FileChecksum known = checksumsByPath.get(path);
+        if (known != null && known.matches(agentJar)) {
+            return known.checksum;
+        }
+        FileChecksum calculated = new FileChecksum(agentJar.length(), agentJar.lastModified(),
+                ChecksumUtils.sha256(agentJar));
+        checksumsByPath.put(path, calculated);
+        return calculated.checksum;
+    }
+
+    private void evictIfNeeded() {
+        Iterator<CachedLoader> iterator = loadersByChecksum.values().iterator();
+        while (loadersByChecksum.size() > MAX_CACHED_LOADERS && iterator.hasNext()) {
+            CachedLoader evicted = iterator.next();
+            iterator.remove();
+            evicted.evicted = true;
+            if (evicted.leases == 0) {
+                evicted.close();
+            }
+        }
+    }
+
+    private synchronized void invalidate(CachedLoader cachedLoader) {
+        Iterator<CachedLoader> iterator = loadersByChecksum.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() == cachedLoader) {
+                iterator.remove();
+                cachedLoader.evicted = true;
+                break;
+            }
+        }
+    }
+
+    private synchronized void release(CachedLoader cachedLoader) {
+        cachedLoader.leases--;
+        if (cachedLoader.evicted && cachedLoader.leases == 0) {
+            cachedLoader.close();
+        }
+    }
+
+    /*
+     * The parent of the system class loader only exposes the JDK classes, so the agent never sees Jenkins
+     * or plugin classes (and their versions of shared libraries).
+     */
+    private static ClassLoader getIsolatedParent() {
+        return ClassLoader.getSystemClassLoader().getParent();
+    }
+
+    /**
+     * A class loader that is in use. Closing the lease more than once has no effect.
+     */
+    public class Lease implements Closeable {
+        private final CachedLoader cachedLoader;
+        private boolean closed;
+
+        private Lease(CachedLoader cachedLoader) {
+            this.cachedLoader = cachedLoader;
+        }
+
+        public ClassLoader getClassLoader() {
+            return cachedLoader.classLoader;
+        }
+
+        /**
+         * @return the lock that serializes the invocations of the agent in this class loader, since the agent keeps
+         * its state (token, session, configuration) in static fields.
+         */
+        public Object getRunLock() {
+            return cachedLoader.runLock;
+        }
+
+        /**
+         * Drops the class loader from the cache, e.g. when an invocation in it got stuck. The next lease of the jar
+         * gets a new class loader, and this one is closed once it is no longer leased.
+         */
+        public void invalidate() {
+            AgentClassLoaderCache.this.invalidate(cachedLoader);
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            release(cachedLoader);
+        }
+    }
+
+    /*
+     * Guarded by the cache.
+     */
+    private static class CachedLoader {
+        private final URLClassLoader classLoader;
+        // Keeps the jar in the agents store while the class loader is open
+        private final AgentCacheManager.Pin pin;
+        private final ExitTrappingSecurityManager.Installation exitTrap;
+        private final Object runLock = new Object();
+        private int leases;
+        private boolean evicted;
+
+        CachedLoader(URLClassLoader classLoader, AgentCacheManager.Pin pin, ExitTrappingSecurityManager.Installation exitTrap) {
+            this.classLoader = classLoader;
+            this.pin = pin;
+            this.exitTrap = exitTrap;
+        }
+
+        void close() {
+            try {
+                classLoader.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Failed to close an agent class loader.", e);
+            } finally {
+                pin.close();
+                exitTrap.close();
+            }
+        }
+    }
+
+    private static class AgentClassLoader extends URLClassLoader {
+        AgentClassLoader(URL[] urls, ClassLoader parent) {
+            super(urls, parent);
+        }
+    }
+
+    private static class FileChecksum {
+        private final long length;
+        private final long lastModified;
+        private final String checksum;
+
+        FileChecksum(long length, long lastModified, String checksum) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+        }
+
+        boolean matches(File file) {
+            return file.length() == length && file.lastModified() == lastModified;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * A parsed 'java -jar agent.jar command ...' command line, as created by the command executors.
+ */
+public class AgentCommandLine {
+
+    private static final String JAR_FLAG = "-jar";
+
+    private final String javaPath;
+    private final File agentJar;
+    private final String[] agentArgs;
+
+    private AgentCommandLine(String javaPath, File agentJar, String[] agentArgs) {
+        this.javaPath = javaPath;
+        this.agentJar = agentJar;
+        this.agentArgs = agentArgs;
+    }
+
+    /**
+     * @throws CommandRunnerUnavailableException if the command line cannot be run without a dedicated java process.
+     */
+    public static AgentCommandLine parse(String[] execCommand) throws CommandRunnerUnavailableException {
+        int jarFlagIndex = Arrays.asList(execCommand).indexOf(JAR_FLAG);
+        if (jarFlagIndex < 0 || jarFlagIndex + 1 >= execCommand.length) {
+            throw new CommandRunnerUnavailableException("The command line does not contain '" + JAR_FLAG + " <jar>'.");
+        }
+        if (jarFlagIndex != 1) {
+            // JVM options (e.g. -Xmx) cannot be applied to an already running JVM.
+            throw new CommandRunnerUnavailableException("The command line contains JVM options.");
+        }
+
+        File agentJar = new File(execCommand[jarFlagIndex + 1]);
+        if (!agentJar.isFile()) {
+            throw new CommandRunnerUnavailableException("The agent jar '" + agentJar + "' does not exist on this machine.");
+        }
+
+        String[] agentArgs = Arrays.copyOfRange(execCommand, jarFlagIndex + 2, execCommand.length);
+        return new AgentCommandLine(execCommand[0], agentJar, agentArgs);
+    }
+
+    public String getJavaPath() {
+        return javaPath;
+    }
+
+    public File getAgentJar() {
+        return agentJar;
+    }
+
+    public String[] getAgentArgs() {
+        return agentArgs;
+    }
+}
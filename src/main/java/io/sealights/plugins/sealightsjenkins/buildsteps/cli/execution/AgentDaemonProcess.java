@@ -0,0 +1,375 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.AgentCacheManager;
+import io.sealights.plugins.sealightsjenkins.utils.ChecksumUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.security.CodeSource;
+import java.net.SocketTimeoutException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A handle to a running agent daemon worker process (see {@link AgentDaemonWorker}).
+ * <p>
+ * Commands run on a {@link Lease} of the daemon. A daemon that is retired (e.g. because its agent jar was replaced)
+ * is shut down only once its last lease is closed, so a command that is running is never killed.
+ * <p>
+ * The response of a command is read on a background thread, so the build thread can give up on it when the command
+ * timeout expires or the build is aborted.
+ */
+public class AgentDaemonProcess {
+
+    private static final int STARTUP_TIMEOUT_MILLIS = 30 * 1000;
+    private static final int CONNECT_TIMEOUT_MILLIS = 2 * 1000;
+    private static final int PING_TIMEOUT_MILLIS = 5 * 1000;
+    private static final int STARTUP_POLL_MILLIS = 50;
+    private static final ExecutorService responseReader = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "SeaLights agent daemon response");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Process process;
+    private final File agentJar;
+    private final long agentJarLength;
+    private final long agentJarLastModified;
+    private final File workFolder;
+    private final String secret;
+    private final int port;
+    private int leases;
+    private boolean retired;
+    private boolean stopped;
+
+    private AgentDaemonProcess(Process process, File agentJar, File workFolder, String secret, int port) {
+        this.process = process;
+        this.agentJar = agentJar;
+        this.agentJarLength = agentJar.length();
+        this.agentJarLastModified = agentJar.lastModified();
+        this.workFolder = workFolder;
+        this.secret = secret;
+        this.port = port;
+    }
+
+    /**
+     * Starts a new worker for the given agent jar and waits until it accepts requests.
+     */
+    public static AgentDaemonProcess start(String javaPath, File agentJar, int idleTimeoutMillis)
+            throws IOException, InterruptedException, CommandRunnerUnavailableException {
+        File workFolder = Files.createTempDirectory("sl-agent-daemon").toFile();
+        File portFile = new File(workFolder, "port");
+        File logFile = new File(workFolder, "daemon.log");
+        String secret = createSecret();
+
+        List<String> command = Arrays.asList(javaPath, "-cp", getWorkerClasspath(),
+                AgentDaemonWorker.class.getName(), agentJar.getAbsolutePath(), portFile.getAbsolutePath(),
+                String.valueOf(idleTimeoutMillis));
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(logFile)
+                .start();
+        pinAgentJarWhileAlive(process, agentJar);
+        try (OutputStream stdin = process.getOutputStream()) {
+            stdin.write((secret + "\n").getBytes("UTF-8"));
+        }
+
+        int port = waitForPort(process, portFile, logFile);
+        return new AgentDaemonProcess(process, agentJar, workFolder, secret, port);
+    }
+
+    /*
+    * The worker loads the agent classes from the jar while it runs, so the jar is kept in the agents store until
+    * the process exits, including when it exits on its own after being idle.
+    * */
+    private static void pinAgentJarWhileAlive(final Process process, File agentJar) {
+        final AgentCacheManager.Pin pin = AgentCacheManager.getInstance().pin(agentJar.getAbsolutePath());
+        Thread watcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    process.waitFor();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    pin.close();
+                }
+            }
+        }, "SeaLights agent daemon pin");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * @return true if the agent jar this worker was started with was replaced or removed since.
+     */
+    public boolean isStale(File currentAgentJar) {
+        return !agentJar.getAbsolutePath().equals(currentAgentJar.getAbsolutePath())
+                || agentJar.length() != agentJarLength
+                || agentJar.lastModified() != agentJarLastModified;
+    }
+
+    /**
+     * Keeps the daemon running until the returned lease is closed.
+     */
+    public synchronized Lease lease() {
+        leases++;
+        return new Lease();
+    }
+
+    /**
+     * @return true if a command is running (or about to run) on the daemon.
+     */
+    public synchronized boolean isLeased() {
+        return leases > 0;
+    }
+
+    /**
+     * @return the number of commands that are running (or waiting to run) on the daemon.
+     */
+    public synchronized int getLeaseCount() {
+        return leases;
+    }
+
+    public synchronized boolean isRetired() {
+        return retired;
+    }
+
+    /**
+     * Shuts the daemon down now, or when its last lease is closed.
+     */
+    public void retire() {
+        synchronized (this) {
+            retired = true;
+            if (leases > 0 || stopped) {
+                return;
+            }
+            stopped = true;
+        }
+        shutdown();
+    }
+
+    private void release() {
+        synchronized (this) {
+            leases--;
+            if (leases > 0 || !retired || stopped) {
+                return;
+            }
+            stopped = true;
+        }
+        shutdown();
+    }
+
+    public boolean isHealthy() {
+        if (!isAlive()) {
+            return false;
+        }
+        try (Socket socket = connect(PING_TIMEOUT_MILLIS)) {
+            DataOutputStream out = sendRequest(socket, AgentDaemonProtocol.PING);
+            out.flush();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            return AgentDaemonProtocol.STATUS_OK.equals(AgentDaemonProtocol.readString(in));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Runs the agent command on the daemon. When the timeout expires or the thread is interrupted, the connection is
+     * closed while the command may still run, so the daemon must not be used anymore.
+     *
+     * @param workingDir    the working directory of the command, or null for the daemon's own.
+     * @param env           the environment variables of the build.
+     * @param timeoutMillis the maximum time the command may run, or 0 for no limit.
+     */
+    public AgentExecutionResult run(String[] agentArgs, String workingDir, Map<String, String> env, long timeoutMillis)
+            throws IOException, InterruptedException, CommandRunnerUnavailableException, CommandTimeoutException {
+        final Socket socket;
+        try {
+            socket = connect((int) Math.min(timeoutMillis, Integer.MAX_VALUE));
+        } catch (IOException e) {
+            throw new CommandRunnerUnavailableException("Unable to connect to the agent daemon on port " + port + ".", e);
+        }
+        try {
+            DataOutputStream out = sendRequest(socket, AgentDaemonProtocol.RUN);
+            AgentDaemonProtocol.writeStrings(out, agentArgs);
+            AgentDaemonProtocol.writeString(out, workingDir);
+            AgentDaemonProtocol.writeMap(out, env);
+            out.flush();
+            Future<AgentExecutionResult> response = responseReader.submit(new Callable<AgentExecutionResult>() {
+                @Override
+                public AgentExecutionResult call() throws Exception {
+                    DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                    return AgentDaemonProtocol.readResult(in);
+                }
+            });
+            return waitForResponse(response, timeoutMillis);
+        } finally {
+            // Also stops the response reader, when the command is abandoned
+            socket.close();
+        }
+    }
+
+    private static AgentExecutionResult waitForResponse(Future<AgentExecutionResult> response, long timeoutMillis)
+            throws IOException, InterruptedException, CommandRunnerUnavailableException, CommandTimeoutException {
+        try {
+            return timeoutMillis > 0 ? response.get(timeoutMillis, TimeUnit.MILLISECONDS) : response.get();
+        } catch (TimeoutException e) {
+            throw new CommandTimeoutException("The agent daemon did not finish the command within " + timeoutMillis + "ms.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SocketTimeoutException) {
+                throw new CommandTimeoutException("The agent daemon did not finish the command within " + timeoutMillis + "ms.");
+            }
+            if (cause instanceof CommandRunnerUnavailableException) {
+                throw (CommandRunnerUnavailableException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to read the response of the agent daemon.", cause);
+        }
+    }
+
+    private void shutdown() {
+        try (Socket socket = connect(PING_TIMEOUT_MILLIS)) {
+            sendRequest(socket, AgentDaemonProtocol.SHUTDOWN).flush();
+            new DataInputStream(socket.getInputStream()).read();
+        } catch (IOException e) {
+            // The process is destroyed below anyway.
+        }
+        process.destroy();
+        deleteWorkFolder();
+    }
+
+    public boolean isAlive() {
+        try {
+            process.exitValue();
+            return false;
+        } catch (IllegalThreadStateException e) {
+            return true;
+        }
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    private Socket connect(int readTimeoutMillis) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT_MILLIS);
+            socket.setSoTimeout(readTimeoutMillis);
+            return socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private DataOutputStream sendRequest(Socket socket, String requestType) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        AgentDaemonProtocol.writeString(out, secret);
+        AgentDaemonProtocol.writeString(out, requestType);
+        return out;
+    }
+
+    private void deleteWorkFolder() {
+        File[] files = workFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        workFolder.delete();
+    }
+
+    private static int waitForPort(Process process, File portFile, File logFile)
+            throws IOException, InterruptedException, CommandRunnerUnavailableException {
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            if (portFile.isFile()) {
+                String content = new String(Files.readAllBytes(portFile.toPath()), "UTF-8").trim();
+                return Integer.parseInt(content);
+            }
+            try {
+                int exitCode = process.exitValue();
+                throw new CommandRunnerUnavailableException("The agent daemon exited with code " + exitCode
+                        + " during startup. See '" + logFile + "'.");
+            } catch (IllegalThreadStateException e) {
+                // Still starting.
+            }
+            Thread.sleep(STARTUP_POLL_MILLIS);
+        }
+        process.destroy();
+        throw new CommandRunnerUnavailableException("The agent daemon did not start within "
+                + STARTUP_TIMEOUT_MILLIS + "ms. See '" + logFile + "'.");
+    }
+
+    private static String getWorkerClasspath() throws CommandRunnerUnavailableException {
+        CodeSource codeSource = AgentDaemonWorker.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            throw new CommandRunnerUnavailableException("Unable to resolve the plugin classpath for the agent daemon.");
+        }
+        try {
+            return new File(codeSource.getLocation().toURI()).getAbsolutePath();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new CommandRunnerUnavailableException("Unable to resolve the plugin classpath for the agent daemon.", e);
+        }
+    }
+
+    private static String createSecret() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        return ChecksumUtils.toHex(bytes);
+    }
+
+    /**
+     * A daemon that is in use. Closing the lease more than once has no effect.
+     */
+    public class Lease implements Closeable {
+        private boolean closed;
+
+        private Lease() {
+        }
+
+        public AgentDaemonProcess getDaemon() {
+            return AgentDaemonProcess.this;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            release();
+        }
+    }
+}
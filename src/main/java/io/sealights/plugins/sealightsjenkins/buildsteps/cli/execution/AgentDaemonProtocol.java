@@ -0,0 +1,106 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The wire format used between the plugin and an agent daemon worker.
+ * <p>
+ * Every request starts with the daemon secret and the request type. 'RUN' requests carry the agent arguments, the
+ * working directory (empty for the daemon's own) and the environment variables of the build, and are answered with a status, followed by the exit code and outputs (for 'OK') or a message (for 'UNAVAILABLE').
+ */
+public class AgentDaemonProtocol {
+
+    public static final String PING = "PING";
+    public static final String RUN = "RUN";
+    public static final String SHUTDOWN = "SHUTDOWN";
+
+    public static final String STATUS_OK = "OK";
+    public static final String STATUS_UNAVAILABLE = "UNAVAILABLE";
+    public static final String STATUS_DENIED = "DENIED";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    public static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    public static String[] readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid array length: " + count);
+        }
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = readString(in);
+        }
+        return values;
+    }
+
+    public static void writeMap(DataOutputStream out, Map<String, String> values) throws IOException {
+        out.writeInt(values.size());
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+    }
+
+    public static Map<String, String> readMap(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid map size: " + count);
+        }
+        Map<String, String> values = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            values.put(readString(in), readString(in));
+        }
+        return values;
+    }
+
+    public static void writeResult(DataOutputStream out, AgentExecutionResult result) throws IOException {
+        writeString(out, STATUS_OK);
+        out.writeInt(result.getExitCode());
+        writeString(out, result.getOutput());
+        writeString(out, result.getErrors());
+    }
+
+    /**
+     * @throws CommandRunnerUnavailableException when the daemon could not run the agent.
+     */
+    public static AgentExecutionResult readResult(DataInputStream in) throws IOException, CommandRunnerUnavailableException {
+        String status = readString(in);
+        if (STATUS_UNAVAILABLE.equals(status) || STATUS_DENIED.equals(status)) {
+            throw new CommandRunnerUnavailableException("The agent daemon could not run the command: " + readString(in));
+        }
+        if (!STATUS_OK.equals(status)) {
+            throw new IOException("Unexpected agent daemon status: " + status);
+        }
+        int exitCode = in.readInt();
+        String output = readString(in);
+        String errors = readString(in);
+        return new AgentExecutionResult(exitCode, output, errors);
+    }
+}
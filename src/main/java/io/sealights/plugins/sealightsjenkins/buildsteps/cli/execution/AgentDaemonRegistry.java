@@ -0,0 +1,172 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps a small pool of agent daemons per java executable and agent component (e.g. 'sl-test-listener' in a given
+ * folder).
+ * <p>
+ * A daemon runs one command at a time, since the agent keeps its state in static fields, so concurrent builds use
+ * different daemons of the pool ('sl.agentDaemon.poolSize', {@link #DEFAULT_POOL_SIZE} by default). Only when all
+ * the daemons of a full pool are busy, a command waits for the least busy one.
+ * <p>
+ * A daemon is respawned when it stopped answering health checks (e.g. it exited after being idle) or when the
+ * agent jar changed, e.g. after a newer agent version was downloaded into 'sl-cache'. A daemon that is running a
+ * command is not pinged (it would answer only after the command) and is never shut down; a replaced daemon is
+ * retired, and stops after its running commands (see {@link AgentDaemonProcess#retire}).
+ */
+public class AgentDaemonRegistry {
+
+    public static final int DEFAULT_IDLE_TIMEOUT_MINUTES = 10;
+    public static final int DEFAULT_POOL_SIZE = 4;
+
+    private static final AgentDaemonRegistry INSTANCE = new AgentDaemonRegistry();
+
+    private final ConcurrentMap<String, DaemonPool> pools = new ConcurrentHashMap<>();
+
+    public static AgentDaemonRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return a lease of a running daemon for the given agent jar, which must be closed after the command.
+     */
+    public AgentDaemonProcess.Lease lease(String javaPath, File agentJar)
+            throws IOException, InterruptedException, CommandRunnerUnavailableException {
+        DaemonPool pool = getPool(createKey(javaPath, agentJar));
+        while (true) {
+            List<AgentDaemonProcess> unusable = new ArrayList<>();
+            AgentDaemonProcess.Lease lease = null;
+            boolean idle = false;
+            synchronized (pool) {
+                removeUnusable(pool, agentJar, unusable);
+                AgentDaemonProcess leastBusy = null;
+                for (AgentDaemonProcess daemon : pool.daemons) {
+                    if (!daemon.isLeased()) {
+                        lease = daemon.lease();
+                        idle = true;
+                        break;
+                    }
+                    if (leastBusy == null || daemon.getLeaseCount() < leastBusy.getLeaseCount()) {
+                        leastBusy = daemon;
+                    }
+                }
+                if (lease == null && pool.daemons.size() + pool.starting >= getPoolSize() && leastBusy != null) {
+                    lease = leastBusy.lease();
+                }
+                if (lease == null) {
+                    pool.starting++;
+                }
+            }
+            for (AgentDaemonProcess daemon : unusable) {
+                daemon.retire();
+            }
+
+            if (lease == null) {
+                return startDaemon(pool, javaPath, agentJar);
+            }
+            // Only an idle daemon answers pings right away, a busy one is only checked to be alive (above).
+            if (!idle || lease.getDaemon().isHealthy()) {
+                return lease;
+            }
+            lease.close();
+            remove(lease.getDaemon());
+        }
+    }
+
+    /**
+     * Drops the given daemon (e.g. after it failed to run a command). It stops after its other running commands.
+     */
+    public void remove(AgentDaemonProcess daemon) {
+        for (DaemonPool pool : pools.values()) {
+            synchronized (pool) {
+                pool.daemons.remove(daemon);
+            }
+        }
+        daemon.retire();
+    }
+
+    public void shutdownAll() {
+        List<AgentDaemonProcess> running = new ArrayList<>();
+        for (DaemonPool pool : pools.values()) {
+            synchronized (pool) {
+                running.addAll(pool.daemons);
+                pool.daemons.clear();
+            }
+        }
+        for (AgentDaemonProcess daemon : running) {
+            daemon.retire();
+        }
+    }
+
+    /*
+    * Starting a daemon takes a while, so it is done outside of the pool lock. The pool counts it as 'starting', so
+    * concurrent builds do not start more daemons than the pool size.
+    * */
+    private AgentDaemonProcess.Lease startDaemon(DaemonPool pool, String javaPath, File agentJar)
+            throws IOException, InterruptedException, CommandRunnerUnavailableException {
+        AgentDaemonProcess daemon = null;
+        try {
+            daemon = AgentDaemonProcess.start(javaPath, agentJar, getIdleTimeoutMillis());
+            return daemon.lease();
+        } finally {
+            synchronized (pool) {
+                pool.starting--;
+                if (daemon != null) {
+                    pool.daemons.add(daemon);
+                }
+            }
+        }
+    }
+
+    /*
+    * Removes the daemons of a previous agent jar, retired daemons and daemons whose process exited.
+    * */
+    private static void removeUnusable(DaemonPool pool, File agentJar, List<AgentDaemonProcess> unusable) {
+        Iterator<AgentDaemonProcess> iterator = pool.daemons.iterator();
+        while (iterator.hasNext()) {
+            AgentDaemonProcess daemon = iterator.next();
+            if (daemon.isStale(agentJar) || daemon.isRetired() || !daemon.isAlive()) {
+                iterator.remove();
+                unusable.add(daemon);
+            }
+        }
+    }
+
+    private DaemonPool getPool(String key) {
+        DaemonPool pool = pools.get(key);
+        if (pool == null) {
+            pools.putIfAbsent(key, new DaemonPool());
+            pool = pools.get(key);
+        }
+        return pool;
+    }
+
+    static String createKey(String javaPath, File agentJar) {
+        // Strip the version, so a newer jar of the same component replaces the previous daemons.
+        String component = agentJar.getName().replaceAll("-[0-9][^-]*\\.jar$", "");
+        return javaPath + File.pathSeparator + new File(agentJar.getAbsoluteFile().getParentFile(), component);
+    }
+
+    private static int getIdleTimeoutMillis() {
+        return Integer.getInteger("sl.agentDaemon.idleTimeoutMinutes", DEFAULT_IDLE_TIMEOUT_MINUTES) * 60 * 1000;
+    }
+
+    private static int getPoolSize() {
+        return Math.max(1, Integer.getInteger("sl.agentDaemon.poolSize", DEFAULT_POOL_SIZE));
+    }
+
+    /*
+    * Guarded by itself.
+    * */
+    private static class DaemonPool {
+        private final List<AgentDaemonProcess> daemons = new ArrayList<>();
+        private int starting;
+    }
+}
@@ -0,0 +1,201 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Entry point of the long-lived agent daemon process.
+ * <p>
+ * The worker keeps the agent jar loaded and runs the commands it receives on a loopback socket, one at a time (the
+ * plugin keeps a pool of daemons for concurrent builds). Requests are handled on their own threads, so pings are
+ * answered while a command runs.
+ * <p>
+ * A command runs with the working directory of the build as 'user.dir', which is restored afterwards. The process
+ * environment cannot be changed, so a command whose SeaLights ('SL_*') environment variables differ from the
+ * daemon's is refused, and the plugin runs it in a separate java process.
+ * The secret that every request must carry is read from the first line of stdin (so it is not visible in the process
+ * list). The worker writes its port into the port file once it is ready, and exits after being idle for the given time.
+ * <p>
+ * Usage: AgentDaemonWorker &lt;agent jar&gt; &lt;port file&gt; &lt;idle timeout millis&gt;
+ */
+public class AgentDaemonWorker {
+
+    private static final String AGENT_ENV_PREFIX = "SL_";
+
+    private final File agentJar;
+    private final String secret;
+    private final InProcessAgentInvoker invoker = new InProcessAgentInvoker();
+    private final Object runLock = new Object();
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private volatile boolean stopping;
+    private volatile long lastActivityMillis = System.currentTimeMillis();
+
+    private AgentDaemonWorker(File agentJar, String secret) {
+        this.agentJar = agentJar;
+        this.secret = secret;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: AgentDaemonWorker <agent jar> <port file> <idle timeout millis>");
+            System.exit(2);
+        }
+        File agentJar = new File(args[0]);
+        File portFile = new File(args[1]);
+        int idleTimeoutMillis = Integer.parseInt(args[2]);
+        String secret = new BufferedReader(new InputStreamReader(System.in, "UTF-8")).readLine();
+        if (secret == null || secret.isEmpty()) {
+            System.err.println("No secret was provided on stdin.");
+            System.exit(2);
+        }
+
+        AgentDaemonWorker worker = new AgentDaemonWorker(agentJar, secret);
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            serverSocket.setSoTimeout(idleTimeoutMillis);
+            writePortFile(portFile, serverSocket.getLocalPort());
+            worker.serve(serverSocket, idleTimeoutMillis);
+        } finally {
+            portFile.delete();
+        }
+        System.exit(0);
+    }
+
+    private void serve(final ServerSocket serverSocket, int idleTimeoutMillis) throws IOException {
+        while (!stopping) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketTimeoutException e) {
+                if (activeRequests.get() == 0 && System.currentTimeMillis() - lastActivityMillis >= idleTimeoutMillis) {
+                    // Idle for too long.
+                    return;
+                }
+                continue;
+            } catch (SocketException e) {
+                if (stopping) {
+                    return;
+                }
+                throw e;
+            }
+            activeRequests.incrementAndGet();
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try (Socket connection = socket) {
+                        if (!handle(connection)) {
+                            stopping = true;
+                            serverSocket.close();
+                        }
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    } finally {
+                        lastActivityMillis = System.currentTimeMillis();
+                        activeRequests.decrementAndGet();
+                    }
+                }
+            }, "SeaLights agent daemon request");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * @return false if the worker should shut down.
+     */
+    private boolean handle(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        String requestSecret = AgentDaemonProtocol.readString(in);
+        String requestType = AgentDaemonProtocol.readString(in);
+        if (!secret.equals(requestSecret)) {
+            AgentDaemonProtocol.writeString(out, AgentDaemonProtocol.STATUS_DENIED);
+            AgentDaemonProtocol.writeString(out, "Invalid secret");
+            out.flush();
+            return true;
+        }
+
+        if (AgentDaemonProtocol.PING.equals(requestType)) {
+            AgentDaemonProtocol.writeString(out, AgentDaemonProtocol.STATUS_OK);
+        } else if (AgentDaemonProtocol.RUN.equals(requestType)) {
+            String[] agentArgs = AgentDaemonProtocol.readStrings(in);
+            String workingDir = AgentDaemonProtocol.readString(in);
+            Map<String, String> env = AgentDaemonProtocol.readMap(in);
+            try {
+                verifyAgentEnv(env);
+                AgentExecutionResult result;
+                synchronized (runLock) {
+                    result = invoke(agentArgs, workingDir);
+                }
+                AgentDaemonProtocol.writeResult(out, result);
+            } catch (CommandRunnerUnavailableException e) {
+                AgentDaemonProtocol.writeString(out, AgentDaemonProtocol.STATUS_UNAVAILABLE);
+                AgentDaemonProtocol.writeString(out, e.getMessage());
+            }
+        } else if (AgentDaemonProtocol.SHUTDOWN.equals(requestType)) {
+            AgentDaemonProtocol.writeString(out, AgentDaemonProtocol.STATUS_OK);
+            out.flush();
+            return false;
+        } else {
+            AgentDaemonProtocol.writeString(out, AgentDaemonProtocol.STATUS_UNAVAILABLE);
+            AgentDaemonProtocol.writeString(out, "Unknown request type: " + requestType);
+        }
+        out.flush();
+        return true;
+    }
+
+    private AgentExecutionResult invoke(String[] agentArgs, String workingDir) throws CommandRunnerUnavailableException {
+        if (workingDir.isEmpty()) {
+            return invoker.invoke(agentJar, agentArgs);
+        }
+        String originalWorkingDir = System.getProperty("user.dir");
+        System.setProperty("user.dir", workingDir);
+        try {
+            return invoker.invoke(agentJar, agentArgs);
+        } finally {
+            System.setProperty("user.dir", originalWorkingDir);
+        }
+    }
+
+    private static void verifyAgentEnv(Map<String, String> env) throws CommandRunnerUnavailableException {
+        Map<String, String> daemonEnv = System.getenv();
+        for (Map.Entry<String, String> entry : env.entrySet()) {
+            if (entry.getKey().startsWith(AGENT_ENV_PREFIX) && !entry.getValue().equals(daemonEnv.get(entry.getKey()))) {
+                throw new CommandRunnerUnavailableException("The environment variable '" + entry.getKey()
+                        + "' of the build differs from the agent daemon's.");
+            }
+        }
+        for (String name : daemonEnv.keySet()) {
+            if (name.startsWith(AGENT_ENV_PREFIX) && !env.containsKey(name)) {
+                throw new CommandRunnerUnavailableException("The environment variable '" + name
+                        + "' of the agent daemon is not set for the build.");
+            }
+        }
+    }
+
+    private static void writePortFile(File portFile, int port) throws IOException {
+        File tempFile = new File(portFile.getParentFile(), portFile.getName() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), "UTF-8")) {
+            writer.write(String.valueOf(port));
+        }
+        if (!tempFile.renameTo(portFile)) {
+            throw new IOException("Unable to create the port file '" + portFile + "'.");
+        }
+    }
+}
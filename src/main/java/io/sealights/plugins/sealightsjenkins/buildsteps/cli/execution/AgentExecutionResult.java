@@ -0,0 +1,59 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+/**
+ * The outcome of a single SeaLights agent execution: its exit code and the output it produced.
+ */
+public class AgentExecutionResult {
+
+    private int exitCode;
+    private String output;
+    private String errors;
+    private boolean streamedToLog;
+    private long spawnMillis = ExecutionTiming.UNKNOWN;
+
+    public AgentExecutionResult(int exitCode, String output, String errors) {
+        this(exitCode, output, errors, false);
+    }
+
+    /**
+     * @param streamedToLog true if the outputs were already written to the log while the agent ran. In that case
+     *                      'output' and 'errors' only hold the tail of each stream.
+     */
+    public AgentExecutionResult(int exitCode, String output, String errors, boolean streamedToLog) {
+        this.exitCode = exitCode;
+        this.output = output;
+        this.errors = errors;
+        this.streamedToLog = streamedToLog;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public String getErrors() {
+        return errors;
+    }
+
+    public boolean isStreamedToLog() {
+        return streamedToLog;
+    }
+
+    /**
+     * @return the time it took to start the agent process, or {@link ExecutionTiming#UNKNOWN} if no process was started.
+     */
+    public long getSpawnMillis() {
+        return spawnMillis;
+    }
+
+    public void setSpawnMillis(long spawnMillis) {
+        this.spawnMillis = spawnMillis;
+    }
+
+    public boolean isSuccess() {
+        return exitCode == 0;
+    }
+}
@@ -0,0 +1,203 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Limits the number of agent processes that run at the same time on each node.
+ * <p>
+ * Executions that cannot run yet wait in a first-in-first-out queue per node. Short commands (e.g. 'start' and 'end')
+ * wait in a separate priority lane, which is served first, so they are not stuck behind long uploads.
+ * The limit is set from the global configuration; 0 means no limit.
+ */
+public class AgentExecutionScheduler {
+
+    public static final String MASTER_NODE_NAME = "master";
+
+    private static final AgentExecutionScheduler instance = new AgentExecutionScheduler();
+
+    private final Map<String, NodeQueue> queuesByNode = new TreeMap<>();
+    private int maxConcurrentProcesses = 0;
+
+    public static AgentExecutionScheduler getInstance() {
+        return instance;
+    }
+
+    public synchronized int getMaxConcurrentProcesses() {
+        return maxConcurrentProcesses;
+    }
+
+    public synchronized void setMaxConcurrentProcesses(int maxConcurrentProcesses) {
+        this.maxConcurrentProcesses = Math.max(0, maxConcurrentProcesses);
+        // Waiting executions may be able to run with the new limit.
+        notifyAll();
+    }
+
+    /**
+     * Waits until an agent process may start on the given node. Every successful call must be followed by a call
+     * to {@link Slot#release()}.
+     */
+    public Slot acquire(String nodeName, boolean isPriority) throws InterruptedException {
+        Ticket ticket = new Ticket(isPriority);
+        synchronized (this) {
+            NodeQueue queue = getQueue(nodeName);
+            queue.enqueue(ticket);
+            try {
+                while (!queue.canRun(ticket, maxConcurrentProcesses)) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                queue.remove(ticket);
+                notifyAll();
+                throw e;
+            }
+            queue.start(ticket);
+        }
+        return new Slot(nodeName);
+    }
+
+    /**
+     * @return a copy of the current queue statistics, sorted by node name.
+     */
+    public synchronized List<NodeStats> getStats() {
+        List<NodeStats> stats = new ArrayList<>();
+        for (Map.Entry<String, NodeQueue> entry : queuesByNode.entrySet()) {
+            stats.add(entry.getValue().toStats(entry.getKey()));
+        }
+        return stats;
+    }
+
+    private synchronized void release(String nodeName) {
+        getQueue(nodeName).finish();
+        notifyAll();
+    }
+
+    private NodeQueue getQueue(String nodeName) {
+        NodeQueue queue = queuesByNode.get(nodeName);
+        if (queue == null) {
+            queue = new NodeQueue();
+            queuesByNode.put(nodeName, queue);
+        }
+        return queue;
+    }
+
+    /**
+     * A permission to run one agent process.
+     */
+    public class Slot {
+        private final String nodeName;
+        private boolean released;
+
+        private Slot(String nodeName) {
+            this.nodeName = nodeName;
+        }
+
+        public void release() {
+            if (!released) {
+                released = true;
+                AgentExecutionScheduler.this.release(nodeName);
+            }
+        }
+    }
+
+    private static class Ticket {
+        private final boolean isPriority;
+        private final long enqueueTime = System.currentTimeMillis();
+
+        Ticket(boolean isPriority) {
+            this.isPriority = isPriority;
+        }
+    }
+
+    /**
+     * Not thread safe, guarded by the scheduler.
+     */
+    private static class NodeQueue {
+        private final LinkedList<Ticket> priorityLane = new LinkedList<>();
+        private final LinkedList<Ticket> normalLane = new LinkedList<>();
+        private int running;
+        private long started;
+        private long totalWaitMillis;
+        private long maxWaitMillis;
+
+        void enqueue(Ticket ticket) {
+            (ticket.isPriority ? priorityLane : normalLane).addLast(ticket);
+        }
+
+        void remove(Ticket ticket) {
+            priorityLane.remove(ticket);
+            normalLane.remove(ticket);
+        }
+
+        boolean canRun(Ticket ticket, int maxConcurrentProcesses) {
+            if (maxConcurrentProcesses > 0 && running >= maxConcurrentProcesses) {
+                return false;
+            }
+            Ticket next = priorityLane.isEmpty() ? normalLane.peekFirst() : priorityLane.peekFirst();
+            return next == ticket;
+        }
+
+        void start(Ticket ticket) {
+            remove(ticket);
+            running++;
+            started++;
+            long waitMillis = System.currentTimeMillis() - ticket.enqueueTime;
+            totalWaitMillis += waitMillis;
+            maxWaitMillis = Math.max(maxWaitMillis, waitMillis);
+        }
+
+        void finish() {
+            running--;
+        }
+
+        NodeStats toStats(String nodeName) {
+            return new NodeStats(nodeName, running, priorityLane.size() + normalLane.size(), started,
+                    started == 0 ? 0 : totalWaitMillis / started, maxWaitMillis);
+        }
+    }
+
+    public static class NodeStats {
+        private final String nodeName;
+        private final int running;
+        private final int queued;
+        private final long started;
+        private final long averageWaitMillis;
+        private final long maxWaitMillis;
+
+        NodeStats(String nodeName, int running, int queued, long started, long averageWaitMillis, long maxWaitMillis) {
+            this.nodeName = nodeName;
+            this.running = running;
+            this.queued = queued;
+            this.started = started;
+            this.averageWaitMillis = averageWaitMillis;
+            this.maxWaitMillis = maxWaitMillis;
+        }
+
+        public String getNodeName() {
+            return nodeName;
+        }
+
+        public int getRunning() {
+            return running;
+        }
+
+        public int getQueued() {
+            return queued;
+        }
+
+        public long getStarted() {
+            return started;
+        }
+
+        public long getAverageWaitMillis() {
+            return averageWaitMillis;
+        }
+
+        public long getMaxWaitMillis() {
+            return maxWaitMillis;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes the arguments of a java command line into an argument file ('java @file', supported since Java 9), so very
+ * long command lines (e.g. thousands of '-reportFile' arguments) do not hit the OS command line length limits.
+ * The file is written into the temporary folder of the build's workspace, and deleted after the command.
+ */
+public class ArgumentFile {
+
+    public static final String THRESHOLD_PROPERTY = "sl.argFile.thresholdChars";
+    private static final int DEFAULT_THRESHOLD_CHARS = 16 * 1024;
+    private static final int MIN_JAVA_VERSION = 9;
+
+    /**
+     * @return true if the command line is long enough to be passed through an argument file.
+     */
+    public static boolean isNeeded(String[] execCommand) {
+        return getLength(execCommand) > getThreshold();
+    }
+
+    /**
+     * @return the longest command line (in characters) that is passed as is.
+     */
+    public static int getThreshold() {
+        return Integer.getInteger(THRESHOLD_PROPERTY, DEFAULT_THRESHOLD_CHARS);
+    }
+
+    public static boolean isSupported(int javaMajorVersion) {
+        return javaMajorVersion >= MIN_JAVA_VERSION;
+    }
+
+    public static long getLength(String[] execCommand) {
+        long length = 0;
+        for (String argument : execCommand) {
+            length += argument.length() + 1;
+        }
+        return length;
+    }
+
+    /**
+     * @return the command to run instead: the java executable followed by '@&lt;file&gt;'.
+     */
+    public static String[] createCommand(String[] execCommand, String argumentFilePath) {
+        return new String[]{execCommand[0], "@" + argumentFilePath};
+    }
+
+    /**
+     * Writes all the arguments but the java executable into a new file in the given scratch folder.
+     */
+    public static File write(String commandName, String[] execCommand, File scratchFolder) throws IOException {
+        if (!scratchFolder.isDirectory() && !scratchFolder.mkdirs() && !scratchFolder.isDirectory()) {
+            throw new IOException("Unable to create the folder '" + scratchFolder + "'.");
+        }
+        File argumentFile = File.createTempFile(commandName + "-", ".args", scratchFolder);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(argumentFile), "UTF-8"))) {
+            writer.write(toContent(execCommand));
+        } catch (IOException e) {
+            argumentFile.delete();
+            throw e;
+        }
+        return argumentFile;
+    }
+
+    /**
+     * @return the content of the argument file of the command: all the arguments but the java executable.
+     */
+    public static String toContent(String[] execCommand) {
+        List<String> arguments = Arrays.asList(execCommand).subList(1, execCommand.length);
+        StringBuilder content = new StringBuilder();
+        for (String argument : arguments) {
+            content.append(quote(argument)).append('\n');
+        }
+        return content.toString();
+    }
+
+    /**
+     * Quotes an argument the way the java launcher reads it from an argument file. Inside double quotes a backslash
+     * escapes the next character, so backslashes (e.g. in Windows paths) and quotes are escaped.
+     */
+    static String quote(String argument) {
+        StringBuilder quoted = new StringBuilder(argument.length() + 2);
+        quoted.append('"');
+        for (int i = 0; i < argument.length(); i++) {
+            char c = argument.charAt(i);
+            switch (c) {
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
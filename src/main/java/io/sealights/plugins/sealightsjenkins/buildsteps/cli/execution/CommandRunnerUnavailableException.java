@@ -0,0 +1,15 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+/**
+ * Thrown by a command runner when it is unable to run the agent in the current environment.
+ */
+public class CommandRunnerUnavailableException extends Exception {
+
+    public CommandRunnerUnavailableException(String message) {
+        super(message);
+    }
+
+    public CommandRunnerUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
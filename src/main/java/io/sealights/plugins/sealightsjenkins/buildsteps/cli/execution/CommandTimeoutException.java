@@ -0,0 +1,11 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+/**
+ * Thrown when the agent did not finish within the configured command timeout. The agent process was killed.
+ */
+public class CommandTimeoutException extends Exception {
+
+    public CommandTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,64 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import hudson.FilePath;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.BaseCommandArguments;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Sends the agent command line to a warm agent daemon (see {@link AgentDaemonRegistry}) instead of starting a new
+ * java process for every command.
+ * <p>
+ * The command runs with the build's workspace (when it is on the master) and environment, and within the command
+ * timeout. A daemon that failed to answer is dropped, and the command falls back to a separate java process.
+ */
+public class DaemonCommandRunner implements ICommandRunner {
+
+    private final BaseCommandArguments baseArgs;
+    private final AgentDaemonRegistry registry;
+
+    public DaemonCommandRunner(BaseCommandArguments baseArgs) {
+        this(baseArgs, AgentDaemonRegistry.getInstance());
+    }
+
+    public DaemonCommandRunner(BaseCommandArguments baseArgs, AgentDaemonRegistry registry) {
+        this.baseArgs = baseArgs;
+        this.registry = registry;
+    }
+
+    @Override
+    public AgentExecutionResult run(String[] execCommand) throws Exception {
+        AgentCommandLine commandLine = AgentCommandLine.parse(execCommand);
+        try (AgentDaemonProcess.Lease lease = registry.lease(commandLine.getJavaPath(), commandLine.getAgentJar())) {
+            try {
+                return lease.getDaemon().run(commandLine.getAgentArgs(), getWorkingDir(), getEnv(),
+                        baseArgs.getCommandTimeoutMillis());
+            } catch (IOException e) {
+                // The daemon died while running the command. Drop it so the next command starts a new one.
+                registry.remove(lease.getDaemon());
+                throw new CommandRunnerUnavailableException("The agent daemon failed to run the command.", e);
+            } catch (CommandTimeoutException | InterruptedException e) {
+                // The command may still run on the daemon, dropping it kills the daemon once the lease is closed.
+                registry.remove(lease.getDaemon());
+                throw e;
+            }
+        }
+    }
+
+    private String getWorkingDir() {
+        FilePath workspace = baseArgs.getBuild() == null ? null : baseArgs.getBuild().getWorkspace();
+        if (workspace == null || workspace.isRemote()) {
+            return null;
+        }
+        return workspace.getRemote();
+    }
+
+    private Map<String, String> getEnv() {
+        if (baseArgs.getEnvVars() == null) {
+            return Collections.emptyMap();
+        }
+        return baseArgs.getEnvVars();
+    }
+}
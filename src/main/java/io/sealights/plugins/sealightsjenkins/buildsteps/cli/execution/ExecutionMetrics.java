@@ -0,0 +1,143 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aggregated timing data of the agent executions since Jenkins started, per command.
+ */
+public class ExecutionMetrics {
+
+    private static final ExecutionMetrics instance = new ExecutionMetrics();
+
+    private final Map<String, CommandStats> statsByCommand = new TreeMap<>();
+
+    public static ExecutionMetrics getInstance() {
+        return instance;
+    }
+
+    public synchronized void record(ExecutionTiming timing) {
+        CommandStats stats = statsByCommand.get(timing.getCommandName());
+        if (stats == null) {
+            stats = new CommandStats(timing.getCommandName());
+            statsByCommand.put(timing.getCommandName(), stats);
+        }
+        stats.add(timing);
+    }
+
+    /**
+     * @return a copy of the current statistics, sorted by command name.
+     */
+    public synchronized List<CommandStats> getStats() {
+        List<CommandStats> stats = new ArrayList<>();
+        for (CommandStats commandStats : statsByCommand.values()) {
+            stats.add(commandStats.copy());
+        }
+        return stats;
+    }
+
+    public synchronized void reset() {
+        statsByCommand.clear();
+    }
+
+    public static class CommandStats {
+        private final String commandName;
+        private long count;
+        private long failures;
+        private long timeouts;
+        private long totalQueueMillis;
+        private long maxQueueMillis;
+        private long spawnCount;
+        private long totalSpawnMillis;
+        private long maxSpawnMillis;
+        private long totalRunMillis;
+        private long maxRunMillis;
+        private int lastExitCode;
+
+        CommandStats(String commandName) {
+            this.commandName = commandName;
+        }
+
+        void add(ExecutionTiming timing) {
+            count++;
+            if (timing.getExitCode() != 0) {
+                failures++;
+            }
+            if (timing.isTimedOut()) {
+                timeouts++;
+            }
+            totalQueueMillis += timing.getQueueMillis();
+            maxQueueMillis = Math.max(maxQueueMillis, timing.getQueueMillis());
+            if (timing.getSpawnMillis() != ExecutionTiming.UNKNOWN) {
+                spawnCount++;
+                totalSpawnMillis += timing.getSpawnMillis();
+                maxSpawnMillis = Math.max(maxSpawnMillis, timing.getSpawnMillis());
+            }
+            totalRunMillis += timing.getRunMillis();
+            maxRunMillis = Math.max(maxRunMillis, timing.getRunMillis());
+            lastExitCode = timing.getExitCode();
+        }
+
+        CommandStats copy() {
+            CommandStats copy = new CommandStats(commandName);
+            copy.count = count;
+            copy.failures = failures;
+            copy.timeouts = timeouts;
+            copy.totalQueueMillis = totalQueueMillis;
+            copy.maxQueueMillis = maxQueueMillis;
+            copy.spawnCount = spawnCount;
+            copy.totalSpawnMillis = totalSpawnMillis;
+            copy.maxSpawnMillis = maxSpawnMillis;
+            copy.totalRunMillis = totalRunMillis;
+            copy.maxRunMillis = maxRunMillis;
+            copy.lastExitCode = lastExitCode;
+            return copy;
+        }
+
+        public String getCommandName() {
+            return commandName;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        public long getAverageQueueMillis() {
+            return count == 0 ? 0 : totalQueueMillis / count;
+        }
+
+        public long getMaxQueueMillis() {
+            return maxQueueMillis;
+        }
+
+        public long getAverageSpawnMillis() {
+            return spawnCount == 0 ? 0 : totalSpawnMillis / spawnCount;
+        }
+
+        public long getMaxSpawnMillis() {
+            return maxSpawnMillis;
+        }
+
+        public long getAverageRunMillis() {
+            return count == 0 ? 0 : totalRunMillis / count;
+        }
+
+        public long getMaxRunMillis() {
+            return maxRunMillis;
+        }
+
+        public int getLastExitCode() {
+            return lastExitCode;
+        }
+    }
+}
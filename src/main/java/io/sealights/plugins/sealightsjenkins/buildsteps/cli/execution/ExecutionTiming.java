@@ -0,0 +1,65 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+/**
+ * Where the time of a single agent execution went.
+ */
+public class ExecutionTiming {
+
+    public static final long UNKNOWN = -1;
+    public static final int NO_EXIT_CODE = Integer.MIN_VALUE;
+
+    private final String commandName;
+    private final long queueMillis;
+    private final long spawnMillis;
+    private final long runMillis;
+    private final int exitCode;
+    private final boolean timedOut;
+
+    /**
+     * @param queueMillis the time from the start of the step until the agent was launched.
+     * @param spawnMillis the time it took to start the agent process, or {@link #UNKNOWN} when no process was started.
+     * @param runMillis   the time from launching the agent until it finished.
+     * @param exitCode    the agent exit code, or {@link #NO_EXIT_CODE} when it did not finish.
+     */
+    public ExecutionTiming(String commandName, long queueMillis, long spawnMillis, long runMillis, int exitCode, boolean timedOut) {
+        this.commandName = commandName;
+        this.queueMillis = queueMillis;
+        this.spawnMillis = spawnMillis;
+        this.runMillis = runMillis;
+        this.exitCode = exitCode;
+        this.timedOut = timedOut;
+    }
+
+    public String getCommandName() {
+        return commandName;
+    }
+
+    public long getQueueMillis() {
+        return queueMillis;
+    }
+
+    public long getSpawnMillis() {
+        return spawnMillis;
+    }
+
+    public long getRunMillis() {
+        return runMillis;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    @Override
+    public String toString() {
+        return "queue=" + queueMillis + "ms" +
+                ", spawn=" + (spawnMillis == UNKNOWN ? "n/a" : spawnMillis + "ms") +
+                ", run=" + runMillis + "ms" +
+                ", exitCode=" + (exitCode == NO_EXIT_CODE ? "n/a" : String.valueOf(exitCode)) +
+                (timedOut ? ", timed out" : "");
+    }
+}
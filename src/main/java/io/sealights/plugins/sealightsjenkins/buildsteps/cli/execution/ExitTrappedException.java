@@ -0,0 +1,18 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+/**
+ * Thrown instead of terminating the JVM when an in-process agent execution calls 'System.exit'.
+ */
+public class ExitTrappedException extends SecurityException {
+
+    private final int status;
+
+    public ExitTrappedException(int status) {
+        super("Agent requested exit with status " + status);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,112 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import java.io.Closeable;
+import java.security.Permission;
+
+/**
+ * Security manager that turns 'System.exit' calls made by an in-process agent execution into an
+ * {@link ExitTrappedException}, so the agent cannot terminate the Jenkins process.
+ * All other checks are delegated to the security manager that was installed before (if any).
+ * <p>
+ * The trap is installed only while agent class loaders are open (see {@link AgentClassLoaderCache}), including
+ * threads the agent started, and the previous security manager is restored when the last of them is closed.
+ */
+public class ExitTrappingSecurityManager extends SecurityManager {
+
+    private static ExitTrappingSecurityManager installed;
+    private static int installations = 0;
+
+    private final SecurityManager previous;
+
+    private ExitTrappingSecurityManager(SecurityManager previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * Installs the exit trap, until the returned installation is closed.
+     *
+     * @throws CommandRunnerUnavailableException if the JVM does not allow replacing the security manager.
+     */
+    public static synchronized Installation install() throws CommandRunnerUnavailableException {
+        if (installations == 0) {
+            try {
+                ExitTrappingSecurityManager securityManager = new ExitTrappingSecurityManager(System.getSecurityManager());
+                System.setSecurityManager(securityManager);
+                installed = securityManager;
+            } catch (SecurityException | UnsupportedOperationException e) {
+                throw new CommandRunnerUnavailableException("Unable to install an exit trap for the agent.", e);
+            }
+        }
+        installations++;
+        return new Installation();
+    }
+
+    private static synchronized void uninstall() {
+        installations--;
+        if (installations > 0) {
+            return;
+        }
+        // Another security manager may have been installed on top of the trap, it is kept (and keeps delegating to the trap)
+        if (System.getSecurityManager() == installed) {
+            System.setSecurityManager(installed.previous);
+        }
+        installed = null;
+    }
+
+    @Override
+    public void checkExit(int status) {
+        if (InProcessOutputCapture.isCapturing() || isCalledByAgent()) {
+            throw new ExitTrappedException(status);
+        }
+        if (previous != null) {
+            previous.checkExit(status);
+        }
+    }
+
+    /*
+     * Threads started by the agent are not captured, so they are recognized by the agent classes on their stack.
+     */
+    private boolean isCalledByAgent() {
+        for (Class<?> clazz : getClassContext()) {
+            if (AgentClassLoaderCache.isAgentClass(clazz)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void checkPermission(Permission perm) {
+        if (previous != null) {
+            previous.checkPermission(perm);
+        }
+    }
+
+    @Override
+    public void checkPermission(Permission perm, Object context) {
+        if (previous != null) {
+            previous.checkPermission(perm, context);
+        }
+    }
+
+    /**
+     * Keeps the exit trap installed. Closing the installation more than once has no effect.
+     */
+    public static class Installation implements Closeable {
+        private boolean closed;
+
+        private Installation() {
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            uninstall();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+/**
+ * Interface for the different ways to run a SeaLights agent command line.
+ */
+public interface ICommandRunner {
+
+    /**
+     * @param execCommand the full command line, as created by the command executor ('java -jar agent.jar command ...')
+     * @throws CommandRunnerUnavailableException when this runner cannot run the command and the caller
+     *                                           should fall back to a separate java process.
+     */
+    AgentExecutionResult run(String[] execCommand) throws Exception;
+}
@@ -0,0 +1,190 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * Invokes the 'main' method of an agent jar inside the current JVM.
+ * <p>
+ * Each invocation runs with the jar's isolated class loader as the context class loader, with its standard streams
+ * captured and with 'System.exit' translated into an exit code. Invocations of the same jar are serialized, because
+ * the agent keeps its state (token, session, configuration) in static fields. The class loader is leased for the
+ * duration of the invocation, so it is not closed while in use.
+ * <p>
+ * An invocation with a timeout runs on a background thread. When the timeout expires (or the waiting thread is
+ * interrupted) the invocation is interrupted and its class loader is dropped from the cache, so the next invocations
+ * get a new class loader instead of waiting for the stuck one. The dropped class loader is closed once the stuck
+ * invocation ends.
+ */
+public class InProcessAgentInvoker {
+
+    private static final int UNHANDLED_ERROR_EXIT_CODE = 1;
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "SeaLights in-process agent");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final AgentClassLoaderCache classLoaderCache;
+
+    public InProcessAgentInvoker() {
+        this(AgentClassLoaderCache.getInstance());
+    }
+
+    public InProcessAgentInvoker(AgentClassLoaderCache classLoaderCache) {
+        this.classLoaderCache = classLoaderCache;
+    }
+
+    public AgentExecutionResult invoke(File agentJar, String[] args) throws CommandRunnerUnavailableException {
+        try (AgentClassLoaderCache.Lease lease = leaseClassLoader(agentJar)) {
+            Method mainMethod = resolveMainMethod(agentJar, lease.getClassLoader());
+            return invokeLocked(lease, mainMethod, args, new AtomicBoolean());
+        }
+    }
+
+    /**
+     * @param timeoutMillis the maximum time to wait for the agent, or 0 to wait until it ends.
+     */
+    public AgentExecutionResult invoke(File agentJar, final String[] args, long timeoutMillis)
+            throws CommandRunnerUnavailableException, CommandTimeoutException, InterruptedException {
+        if (timeoutMillis <= 0) {
+            return invoke(agentJar, args);
+        }
+
+        final AgentClassLoaderCache.Lease lease = leaseClassLoader(agentJar);
+        Future<AgentExecutionResult> result;
+        final AtomicBoolean started = new AtomicBoolean();
+        try {
+            final Method mainMethod = resolveMainMethod(agentJar, lease.getClassLoader());
+            result = executor.submit(new Callable<AgentExecutionResult>() {
+                @Override
+                public AgentExecutionResult call() {
+                    try {
+                        return invokeLocked(lease, mainMethod, args, started);
+                    } finally {
+                        lease.close();
+                    }
+                }
+            });
+        } catch (CommandRunnerUnavailableException | RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+
+        try {
+            return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            abandon(result, lease, started);
+            throw new CommandTimeoutException("The agent did not finish within " + timeoutMillis + "ms.");
+        } catch (InterruptedException e) {
+            abandon(result, lease, started);
+            throw e;
+        } catch (ExecutionException e) {
+            // The invocation itself turns the errors of the agent into an exit code, so this is an Error
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /*
+    * A stuck invocation keeps the run lock of its class loader, so the class loader is dropped from the cache. An
+    * invocation that is still waiting for the lock is only cancelled.
+    * */
+    private static void abandon(Future<AgentExecutionResult> result, AgentClassLoaderCache.Lease lease, AtomicBoolean started) {
+        result.cancel(true);
+        if (started.get()) {
+            lease.invalidate();
+        }
+    }
+
+    private AgentExecutionResult invokeLocked(AgentClassLoaderCache.Lease lease, Method mainMethod, String[] args,
+                                              AtomicBoolean started) {
+        synchronized (lease.getRunLock()) {
+            started.set(true);
+            return invokeMain(mainMethod, args);
+        }
+    }
+
+    private AgentClassLoaderCache.Lease leaseClassLoader(File agentJar) throws CommandRunnerUnavailableException {
+        try {
+            return classLoaderCache.lease(agentJar);
+        } catch (IOException e) {
+            throw new CommandRunnerUnavailableException("Unable to load the agent from '" + agentJar + "'.", e);
+        }
+    }
+
+    private AgentExecutionResult invokeMain(Method mainMethod, String[] args) {
+        Thread currentThread = Thread.currentThread();
+        ClassLoader originalContextClassLoader = currentThread.getContextClassLoader();
+        InProcessOutputCapture capture = InProcessOutputCapture.begin();
+        int exitCode = 0;
+        try {
+            currentThread.setContextClassLoader(mainMethod.getDeclaringClass().getClassLoader());
+            mainMethod.invoke(null, new Object[]{args});
+        } catch (InvocationTargetException e) {
+            exitCode = toExitCode(e.getCause(), capture);
+        } catch (ExitTrappedException e) {
+            exitCode = e.getStatus();
+        } catch (Exception e) {
+            exitCode = toExitCode(e, capture);
+        } finally {
+            currentThread.setContextClassLoader(originalContextClassLoader);
+            capture.end();
+        }
+        return new AgentExecutionResult(exitCode, capture.getOutput(), capture.getErrors());
+    }
+
+    private static int toExitCode(Throwable error, InProcessOutputCapture capture) {
+        if (error instanceof ExitTrappedException) {
+            return ((ExitTrappedException) error).getStatus();
+        }
+        error.printStackTrace(capture.getErrorsPrintStream());
+        return UNHANDLED_ERROR_EXIT_CODE;
+    }
+
+    private Method resolveMainMethod(File agentJar, ClassLoader classLoader) throws CommandRunnerUnavailableException {
+        try {
+            String mainClassName = readMainClassName(agentJar);
+            Class<?> mainClass = Class.forName(mainClassName, false, classLoader);
+            Method mainMethod = mainClass.getMethod("main", String[].class);
+            if (!Modifier.isStatic(mainMethod.getModifiers())) {
+                throw new CommandRunnerUnavailableException("'main' of '" + mainClassName + "' is not static.");
+            }
+            return mainMethod;
+        } catch (IOException | ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+            throw new CommandRunnerUnavailableException("Unable to load the agent from '" + agentJar + "'.", e);
+        }
+    }
+
+    private static String readMainClassName(File agentJar) throws IOException, CommandRunnerUnavailableException {
+        try (JarFile jarFile = new JarFile(agentJar)) {
+            Manifest manifest = jarFile.getManifest();
+            String mainClassName = manifest == null ? null : manifest.getMainAttributes().getValue(Attributes.Name.MAIN_CLASS);
+            if (mainClassName == null) {
+                throw new CommandRunnerUnavailableException("The agent jar '" + agentJar + "' has no 'Main-Class' attribute.");
+            }
+            return mainClassName.trim();
+        }
+    }
+}
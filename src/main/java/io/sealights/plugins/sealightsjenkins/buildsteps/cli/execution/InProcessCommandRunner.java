@@ -0,0 +1,34 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+/**
+ * Runs the agent command line inside the Jenkins JVM instead of starting a new java process.
+ * Saves the JVM startup and class loading time on every call, which is most of the cost of short commands.
+ * The agent runs within the command timeout, see {@link InProcessAgentInvoker}.
+ */
+public class InProcessCommandRunner implements ICommandRunner {
+
+    private final InProcessAgentInvoker invoker;
+    private final long timeoutMillis;
+
+    public InProcessCommandRunner() {
+        this(0);
+    }
+
+    /**
+     * @param timeoutMillis the maximum time to wait for the agent, or 0 to wait until it ends.
+     */
+    public InProcessCommandRunner(long timeoutMillis) {
+        this(new InProcessAgentInvoker(), timeoutMillis);
+    }
+
+    public InProcessCommandRunner(InProcessAgentInvoker invoker, long timeoutMillis) {
+        this.invoker = invoker;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public AgentExecutionResult run(String[] execCommand) throws Exception {
+        AgentCommandLine commandLine = AgentCommandLine.parse(execCommand);
+        return invoker.invoke(commandLine.getAgentJar(), commandLine.getAgentArgs(), timeoutMillis);
+    }
+}
@@ -0,0 +1,131 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Routes 'System.out' and 'System.err' of an in-process agent execution into private buffers.
+ * <p>
+ * The standard streams are replaced once (globally) by routing streams. The thread that runs inside a capture writes
+ * into the capture buffers, all other threads (including threads started by the agent, which may outlive the capture)
+ * write to the original streams.
+ */
+public class InProcessOutputCapture {
+
+    private static final String ENCODING = "UTF-8";
+
+    private static final ThreadLocal<InProcessOutputCapture> CURRENT_CAPTURE = new ThreadLocal<>();
+
+    private static boolean routingInstalled = false;
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+    private final PrintStream errorsPrintStream;
+
+    private InProcessOutputCapture() {
+        try {
+            this.errorsPrintStream = new PrintStream(errors, true, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Starts capturing the standard streams of the current thread.
+     */
+    public static InProcessOutputCapture begin() {
+        installRouting();
+        InProcessOutputCapture capture = new InProcessOutputCapture();
+        CURRENT_CAPTURE.set(capture);
+        return capture;
+    }
+
+    /**
+     * @return true if the current thread is running inside an in-process agent execution.
+     */
+    public static boolean isCapturing() {
+        return CURRENT_CAPTURE.get() != null;
+    }
+
+    public void end() {
+        CURRENT_CAPTURE.remove();
+    }
+
+    public PrintStream getErrorsPrintStream() {
+        return errorsPrintStream;
+    }
+
+    public String getOutput() {
+        return toString(output);
+    }
+
+    public String getErrors() {
+        return toString(errors);
+    }
+
+    private static String toString(ByteArrayOutputStream stream) {
+        synchronized (stream) {
+            try {
+                return stream.toString(ENCODING);
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static synchronized void installRouting() {
+        if (routingInstalled) {
+            return;
+        }
+        System.setOut(createRoutingPrintStream(System.out, false));
+        System.setErr(createRoutingPrintStream(System.err, true));
+        routingInstalled = true;
+    }
+
+    private static PrintStream createRoutingPrintStream(PrintStream original, boolean isErrorStream) {
+        try {
+            return new PrintStream(new RoutingOutputStream(original, isErrorStream), true, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class RoutingOutputStream extends OutputStream {
+
+        private final PrintStream original;
+        private final boolean isErrorStream;
+
+        RoutingOutputStream(PrintStream original, boolean isErrorStream) {
+            this.original = original;
+            this.isErrorStream = isErrorStream;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            InProcessOutputCapture capture = CURRENT_CAPTURE.get();
+            if (capture == null) {
+                original.write(b, off, len);
+                return;
+            }
+            ByteArrayOutputStream target = isErrorStream ? capture.errors : capture.output;
+            synchronized (target) {
+                target.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (CURRENT_CAPTURE.get() == null) {
+                original.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Detects the version of a java executable by running 'java -version'. The result is cached per executable.
+ */
+public class JavaVersionDetector {
+
+    public static final int UNKNOWN_VERSION = 0;
+
+    private static final Pattern VERSION_PATTERN = Pattern.compile("version \"([^\"]+)\"");
+    // Keyed by the path and the modification time of the executable, so a JVM replaced in place is detected again.
+    private static final ConcurrentMap<String, String> versionOutputsCache = new ConcurrentHashMap<>();
+
+    public static int getMajorVersion(String javaPath) {
+        return parseMajorVersion(getVersionOutput(javaPath));
+    }
+
+    /**
+     * @return the output of 'java -version', or an empty string if it could not be run.
+     */
+    public static String getVersionOutput(String javaPath) {
+        String cacheKey = javaPath + "|" + new File(javaPath).lastModified();
+        String versionOutput = versionOutputsCache.get(cacheKey);
+        if (versionOutput == null) {
+            versionOutput = runVersionCommand(javaPath);
+            versionOutputsCache.put(cacheKey, versionOutput);
+        }
+        return versionOutput;
+    }
+
+    private static String runVersionCommand(String javaPath) {
+        try {
+            Process process = new ProcessBuilder(javaPath, "-version").redirectErrorStream(true).start();
+            StringBuilder output = new StringBuilder();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    output.append(line).append('\n');
+                }
+            }
+            process.waitFor();
+            return output.toString();
+        } catch (IOException e) {
+            return "";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "";
+        }
+    }
+
+    /**
+     * Parses the output of 'java -version', e.g. 'version "1.8.0_392"' is 8 and 'version "11.0.21"' is 11.
+     */
+    static int parseMajorVersion(String versionOutput) {
+        Matcher matcher = VERSION_PATTERN.matcher(versionOutput);
+        if (!matcher.find()) {
+            return UNKNOWN_VERSION;
+        }
+        String[] parts = matcher.group(1).split("[._\\-+]");
+        try {
+            int major = Integer.parseInt(parts[0]);
+            if (major == 1 && parts.length > 1) {
+                major = Integer.parseInt(parts[1]);
+            }
+            return major;
+        } catch (NumberFormatException e) {
+            return UNKNOWN_VERSION;
+        }
+    }
+}
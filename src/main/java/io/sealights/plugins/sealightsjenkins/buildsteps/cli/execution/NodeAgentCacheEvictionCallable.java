@@ -0,0 +1,113 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import io.sealights.plugins.sealightsjenkins.utils.TotalSizeCallable;
+import org.jenkinsci.remoting.RoleChecker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Removes the least recently used agent copies from the agents cache folder of a build node (see
+ * {@link NodeAgentJarCache}) until it fits the given size, and the copies that were not used for longer than the
+ * given time. Copies that were used in the grace period are kept. Runs on the node.
+ * <p>
+ * Returns the names (checksums) of the removed version folders.
+ */
+public class NodeAgentCacheEvictionCallable implements FilePath.FileCallable<List<String>> {
+    private static final long serialVersionUID = 1L;
+
+    private final long maxBytes;
+    private final long maxIdleMillis;
+    private final long graceMillis;
+    private final long now;
+
+    /**
+     * @param maxBytes      the size budget of the folder, or a negative value for no budget
+     * @param maxIdleMillis the time after which an unused copy is removed, or a negative value to keep it
+     * @param now           the current time on the master, which records the uses of the copies
+     */
+    public NodeAgentCacheEvictionCallable(long maxBytes, long maxIdleMillis, long graceMillis, long now) {
+        this.maxBytes = maxBytes;
+        this.maxIdleMillis = maxIdleMillis;
+        this.graceMillis = graceMillis;
+        this.now = now;
+    }
+
+    @Override
+    public List<String> invoke(File cacheFolder, VirtualChannel channel) throws IOException, InterruptedException {
+        List<String> evicted = new ArrayList<>();
+        File[] folders = cacheFolder.listFiles();
+        if (folders == null) {
+            return evicted;
+        }
+
+        long totalBytes = 0;
+        List<VersionFolder> candidates = new ArrayList<>();
+        for (File folder : folders) {
+            if (!folder.isDirectory()) {
+                continue;
+            }
+            VersionFolder versionFolder = new VersionFolder(folder, new TotalSizeCallable().invoke(folder, channel));
+            totalBytes += versionFolder.size;
+            if (now - versionFolder.lastUseTime > graceMillis) {
+                candidates.add(versionFolder);
+            }
+        }
+        Collections.sort(candidates, new Comparator<VersionFolder>() {
+            @Override
+            public int compare(VersionFolder first, VersionFolder second) {
+                return Long.compare(first.lastUseTime, second.lastUseTime);
+            }
+        });
+
+        for (VersionFolder versionFolder : candidates) {
+            boolean overBudget = maxBytes >= 0 && totalBytes > maxBytes;
+            boolean idle = maxIdleMillis >= 0 && now - versionFolder.lastUseTime > maxIdleMillis;
+            if (!overBudget && !idle) {
+                continue;
+            }
+            if (deleteRecursively(versionFolder.folder)) {
+                totalBytes -= versionFolder.size;
+                evicted.add(versionFolder.folder.getName());
+            }
+        }
+        return evicted;
+    }
+
+    @Override
+    public void checkRoles(RoleChecker roleChecker) throws SecurityException {
+
+    }
+
+    /*
+    * A jar that is in use may not be deletable (e.g. on Windows), so the folder is kept when it is not fully deleted.
+    * */
+    private static boolean deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        return file.delete() || !file.exists();
+    }
+
+    private static class VersionFolder {
+        private final File folder;
+        private final long size;
+        private final long lastUseTime;
+
+        VersionFolder(File folder, long size) {
+            this.folder = folder;
+            this.size = size;
+            File lastUseFile = new File(folder, NodeAgentJarCache.LAST_USE_FILE_NAME);
+            this.lastUseTime = lastUseFile.isFile() ? lastUseFile.lastModified() : folder.lastModified();
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.Node;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.AgentCacheManager;
+import io.sealights.plugins.sealightsjenkins.utils.ChecksumUtils;
+import io.sealights.plugins.sealightsjenkins.utils.Logger;
+import io.sealights.plugins.sealightsjenkins.utils.Sha256Callable;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Keeps copies of the agent jars on a build node, under '&lt;node root&gt;/sealights/sl-cache/agents/&lt;sha256&gt;/'.
+ * <p>
+ * A jar is transferred to a node only when the node reports a missing copy or a copy with another checksum, so it
+ * is transferred at most once per agent version. A copy that was verified is remembered, so later builds only check
+ * that it still exists. Copies are written to a temp file and renamed, so a partially copied jar is never used, and
+ * concurrent builds on the same node wait for a single transfer.
+ * <p>
+ * The cache of a node is kept within the size budget and idle time of the agents cache (see {@link AgentCacheManager}):
+ * each use of a copy is recorded on the node, and the least recently used copies are removed when a new copy was
+ * added. Copies that were used in the last hour are kept. The records of the copies and of the local checksums are
+ * pruned at the same time: records of copies that were not used within the idle time (e.g. of removed nodes), and
+ * checksums of jars that no longer exist (e.g. evicted from the agents store).
+ */
+public class NodeAgentJarCache {
+
+    public static final String PARALLELISM_PROPERTY = "sl.agentReplication.parallelism";
+    private static final int DEFAULT_PARALLELISM = 8;
+    private static final String CACHE_FOLDER = "sealights/sl-cache/agents";
+    static final String LAST_USE_FILE_NAME = ".lastuse";
+    private static final long EVICTION_GRACE_MILLIS = 60 * 60 * 1000;
+    // The use of a copy is written to the node at most this often.
+    private static final long LAST_USE_UPDATE_MILLIS = 10 * 60 * 1000;
+    private static final int MAX_VERIFIED_COPIES = 1000;
+
+    // Checksums of the local jars, by path. Recomputed when a jar changes.
+    private static final ConcurrentMap<String, LocalChecksum> localChecksums = new ConcurrentHashMap<>();
+    // Copies whose checksum was verified on the node, with the last time their use was written to the node.
+    private static final ConcurrentMap<String, Long> verifiedCopies = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, FutureTask<FilePath>> copiesInProgress = new ConcurrentHashMap<>();
+
+    private final Logger logger;
+
+    public NodeAgentJarCache(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * @return the path of the given (local) agent jar on the node, copying it there if needed.
+     */
+    public FilePath ensureOnNode(final File localAgentJar, FilePath nodeRoot) throws IOException, InterruptedException {
+        final String checksum = getLocalChecksum(localAgentJar);
+        final FilePath versionFolder = nodeRoot.child(CACHE_FOLDER).child(checksum);
+        final FilePath jarOnNode = versionFolder.child(localAgentJar.getName());
+        String copyKey = getCopyKey(jarOnNode);
+        Long recordedUse = verifiedCopies.get(copyKey);
+        if (recordedUse != null && jarOnNode.exists()) {
+            logger.debug("Agent jar '" + localAgentJar.getName() + "' is already cached on the node at '" + jarOnNode.getRemote() + "'.");
+            recordUse(copyKey, versionFolder, recordedUse);
+            return jarOnNode;
+        }
+
+        FutureTask<FilePath> copyTask = new FutureTask<>(new Callable<FilePath>() {
+            @Override
+            public FilePath call() throws Exception {
+                return verifyOrCopy(localAgentJar, checksum, versionFolder, jarOnNode);
+            }
+        });
+        FutureTask<FilePath> existingTask = copiesInProgress.putIfAbsent(copyKey, copyTask);
+        if (existingTask == null) {
+            try {
+                copyTask.run();
+            } finally {
+                copiesInProgress.remove(copyKey, copyTask);
+            }
+            FilePath result = getResult(copyTask);
+            recordUse(copyKey, versionFolder, null);
+            evict(nodeRoot.child(CACHE_FOLDER));
+            return result;
+        }
+        logger.info("Waiting for another build to copy agent jar '" + localAgentJar.getName() + "' to the node.");
+        return getResult(existingTask);
+    }
+
+    /**
+     * Copies the given jar to all the given nodes, several nodes at a time (e.g. after an agent upgrade).
+     *
+     * @return the number of nodes that have the jar.
+     */
+    public int replicate(final File localAgentJar, Collection<FilePath> nodeRoots) throws InterruptedException {
+        int parallelism = Math.max(1, Integer.getInteger(PARALLELISM_PROPERTY, DEFAULT_PARALLELISM));
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, nodeRoots.size())));
+        try {
+            List<Future<FilePath>> copies = new ArrayList<>();
+            for (final FilePath nodeRoot : nodeRoots) {
+                copies.add(executor.submit(new Callable<FilePath>() {
+                    @Override
+                    public FilePath call() throws Exception {
+                        return ensureOnNode(localAgentJar, nodeRoot);
+                    }
+                }));
+            }
+            int replicated = 0;
+            for (Future<FilePath> copy : copies) {
+                try {
+                    copy.get();
+                    replicated++;
+                } catch (ExecutionException e) {
+                    logger.warning("Failed to copy agent jar '" + localAgentJar.getName() + "' to a node. Error: "
+                            + e.getCause().getMessage());
+                }
+            }
+            return replicated;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the root folders of the online agent nodes (the master is not included).
+     */
+    public static List<FilePath> getOnlineNodeRoots(Jenkins jenkins) {
+        List<FilePath> nodeRoots = new ArrayList<>();
+        for (Node node : jenkins.getNodes()) {
+            Computer computer = node.toComputer();
+            FilePath rootPath = node.getRootPath();
+            if (computer != null && computer.isOnline() && rootPath != null) {
+                nodeRoots.add(rootPath);
+            }
+        }
+        return nodeRoots;
+    }
+
+    private FilePath verifyOrCopy(File localAgentJar, String checksum, FilePath versionFolder, FilePath jarOnNode)
+            throws IOException, InterruptedException {
+        String checksumOnNode = jarOnNode.act(new Sha256Callable());
+        if (checksum.equals(checksumOnNode)) {
+            logger.debug("Agent jar '" + localAgentJar.getName() + "' is already cached on the node at '" + jarOnNode.getRemote() + "'.");
+            return jarOnNode;
+        }
+        if (checksumOnNode != null) {
+            logger.warning("The cached agent jar '" + jarOnNode.getRemote() + "' on the node is corrupt, copying it again.");
+        }
+
+        logger.info("Copying agent jar '" + localAgentJar + "' to the node at '" + jarOnNode.getRemote() + "'.");
+        versionFolder.mkdirs();
+        FilePath tempFile = versionFolder.createTempFile(localAgentJar.getName(), ".tmp");
+        try {
+            tempFile.copyFrom(new FilePath(localAgentJar));
+            String copiedChecksum = tempFile.act(new Sha256Callable());
+            if (!checksum.equals(copiedChecksum)) {
+                throw new IOException("The checksum of the agent jar copied to '" + jarOnNode.getRemote()
+                        + "' does not match the original jar.");
+            }
+            tempFile.renameTo(jarOnNode);
+        } finally {
+            tempFile.delete();
+        }
+        return jarOnNode;
+    }
+
+    private static void recordUse(String copyKey, FilePath versionFolder, Long recordedUse)
+            throws IOException, InterruptedException {
+        long now = System.currentTimeMillis();
+        if (recordedUse == null || now - recordedUse > LAST_USE_UPDATE_MILLIS) {
+            versionFolder.child(LAST_USE_FILE_NAME).touch(now);
+            verifiedCopies.put(copyKey, now);
+        }
+    }
+
+    /*
+    * Removes the least recently used copies from the cache folder of the node. The records of the removed copies are
+    * dropped as well, so they are copied again when needed.
+    * */
+    private void evict(FilePath cacheFolder) throws InterruptedException {
+        AgentCacheManager cacheManager = AgentCacheManager.getInstance();
+        List<String> evicted;
+        try {
+            evicted = cacheFolder.act(new NodeAgentCacheEvictionCallable(cacheManager.getMaxBytes(),
+                    cacheManager.getMaxIdleMillis(), EVICTION_GRACE_MILLIS, System.currentTimeMillis()));
+        } catch (IOException e) {
+            pruneRecords(cacheManager.getMaxIdleMillis());
+            logger.warning("Failed to evict the agents cache on the node at '" + cacheFolder.getRemote() + "'. Error: " + e.getMessage());
+            return;
+        }
+        for (String checksum : evicted) {
+            FilePath versionFolder = cacheFolder.child(checksum);
+            logger.info("Evicted the agent copy '" + versionFolder.getRemote() + "' from the node.");
+            String folderKey = getCopyKey(versionFolder);
+            for (String copyKey : verifiedCopies.keySet()) {
+                if (copyKey.startsWith(folderKey) && copyKey.length() > folderKey.length()) {
+                    verifiedCopies.remove(copyKey);
+                }
+            }
+        }
+        pruneRecords(cacheManager.getMaxIdleMillis());
+    }
+
+    /*
+    * Drops the records of copies that were not used within the idle time, then the least recently used records beyond
+    * MAX_VERIFIED_COPIES, and the checksums of local jars that no longer exist. A dropped copy is verified again on
+    * its next use.
+    * */
+    private static void pruneRecords(long maxIdleMillis) {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String, Long>> records = new ArrayList<>();
+        for (Map.Entry<String, Long> record : verifiedCopies.entrySet()) {
+            if (now - record.getValue() > maxIdleMillis) {
+                verifiedCopies.remove(record.getKey(), record.getValue());
+            } else {
+                records.add(record);
+            }
+        }
+        if (records.size() > MAX_VERIFIED_COPIES) {
+            Collections.sort(records, new Comparator<Map.Entry<String, Long>>() {
+                @Override
+                public int compare(Map.Entry<String, Long> first, Map.Entry<String, Long> second) {
+                    return Long.compare(first.getValue(), second.getValue());
+                }
+            });
+            for (Map.Entry<String, Long> record : records.subList(0, records.size() - MAX_VERIFIED_COPIES)) {
+                verifiedCopies.remove(record.getKey(), record.getValue());
+            }
+        }
+
+        for (Map.Entry<String, LocalChecksum> localChecksum : localChecksums.entrySet()) {
+            if (!new File(localChecksum.getKey()).isFile()) {
+                localChecksums.remove(localChecksum.getKey(), localChecksum.getValue());
+            }
+        }
+    }
+
+    private static FilePath getResult(FutureTask<FilePath> copyTask) throws IOException, InterruptedException {
+        try {
+            return copyTask.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static String getCopyKey(FilePath jarOnNode) {
+        return jarOnNode.getChannel() + "|" + jarOnNode.getRemote();
+    }
+
+    private static String getLocalChecksum(File localAgentJar) throws IOException {
+        String path = localAgentJar.getAbsolutePath();
+        LocalChecksum cached = localChecksums.get(path);
+        if (cached != null && cached.isUpToDate(localAgentJar)) {
+            return cached.checksum;
+        }
+        LocalChecksum checksum = new LocalChecksum(localAgentJar.length(), localAgentJar.lastModified(),
+                ChecksumUtils.sha256(localAgentJar));
+        localChecksums.put(path, checksum);
+        return checksum.checksum;
+    }
+
+    private static class LocalChecksum {
+        private final long length;
+        private final long lastModified;
+        private final String checksum;
+
+        LocalChecksum(long length, long lastModified, String checksum) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+        }
+
+        boolean isUpToDate(File file) {
+            return file.length() == length && file.lastModified() == lastModified;
+        }
+    }
+}
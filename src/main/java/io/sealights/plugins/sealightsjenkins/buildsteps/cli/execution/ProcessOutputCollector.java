@@ -0,0 +1,47 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import io.sealights.plugins.sealightsjenkins.utils.Logger;
+import io.sealights.plugins.sealightsjenkins.utils.TailBuffer;
+
+/**
+ * Receives the lines pumped from a process' stdout and stderr.
+ * <p>
+ * Lines are written to the build log as they arrive. Both streams go through this single (synchronized) sink,
+ * so lines keep the order in which they were read. Only the tail of each stream is kept in memory.
+ */
+public class ProcessOutputCollector {
+
+    public static final int DEFAULT_TAIL_SIZE = 64 * 1024;
+
+    private final Logger logger;
+    private final TailBuffer outputTail;
+    private final TailBuffer errorsTail;
+
+    public ProcessOutputCollector(Logger logger) {
+        this(logger, DEFAULT_TAIL_SIZE);
+    }
+
+    public ProcessOutputCollector(Logger logger, int tailSize) {
+        this.logger = logger;
+        this.outputTail = new TailBuffer(tailSize);
+        this.errorsTail = new TailBuffer(tailSize);
+    }
+
+    public synchronized void onOutputLine(String line) {
+        outputTail.appendLine(line);
+        logger.info(line);
+    }
+
+    public synchronized void onErrorLine(String line) {
+        errorsTail.appendLine(line);
+        logger.error(line);
+    }
+
+    public TailBuffer getOutputTail() {
+        return outputTail;
+    }
+
+    public TailBuffer getErrorsTail() {
+        return errorsTail;
+    }
+}
@@ -0,0 +1,121 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import hudson.util.ProcessTree;
+import io.sealights.plugins.sealightsjenkins.utils.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Waits for a forked agent process with an optional timeout, and kills it (with its child processes) when the
+ * timeout expires or the waiting thread is interrupted (e.g. when the build is aborted).
+ * <p>
+ * The process is first asked to terminate, and its whole process tree is killed if it is still running after
+ * a grace period (the 'sl.process.killGraceSeconds' system property, 10 seconds by default).
+ */
+public class ProcessWatchdog {
+
+    public static final String KILL_GRACE_PROPERTY = "sl.process.killGraceSeconds";
+    private static final int DEFAULT_KILL_GRACE_SECONDS = 10;
+    private static final long POLL_MILLIS = 100;
+
+    private final Logger logger;
+
+    public ProcessWatchdog(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * @param timeoutMillis the maximum time to wait, or 0 to wait until the process ends.
+     * @return the exit code of the process.
+     */
+    public int waitFor(Process process, long timeoutMillis) throws InterruptedException, CommandTimeoutException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            try {
+                return process.exitValue();
+            } catch (IllegalThreadStateException e) {
+                // Still running.
+            }
+            if (timeoutMillis > 0 && System.currentTimeMillis() >= deadline) {
+                logger.error("The agent process did not finish within " + timeoutMillis + "ms, killing it.");
+                terminate(process);
+                throw new CommandTimeoutException("The agent process did not finish within " + timeoutMillis + "ms.");
+            }
+            try {
+                Thread.sleep(POLL_MILLIS);
+            } catch (InterruptedException e) {
+                logger.warning("Interrupted while waiting for the agent process, killing it.");
+                terminate(process);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Asks the process to terminate, then kills its process tree if it is still running after the grace period.
+     * Does not throw, and keeps the interrupted status of the current thread.
+     */
+    public void terminate(Process process) {
+        // Captured before the process ends, since its children are re-parented after that.
+        List<ProcessTree.OSProcess> processTree = captureProcessTree(process);
+
+        process.destroy();
+        boolean wasInterrupted = Thread.interrupted();
+        try {
+            try {
+                if (!waitForExit(process, getKillGraceMillis())) {
+                    logger.warning("The agent process is still running after the grace period, killing its process tree.");
+                }
+            } catch (InterruptedException e) {
+                // Interrupted again (e.g. the build was aborted twice), kill without waiting any longer.
+                wasInterrupted = true;
+            }
+            for (ProcessTree.OSProcess osProcess : processTree) {
+                try {
+                    osProcess.killRecursively();
+                } catch (InterruptedException e) {
+                    wasInterrupted = true;
+                } catch (RuntimeException e) {
+                    logger.warning("Unable to kill process " + osProcess.getPid() + ". Error: " + e.getMessage());
+                }
+            }
+        } finally {
+            if (wasInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private List<ProcessTree.OSProcess> captureProcessTree(Process process) {
+        List<ProcessTree.OSProcess> processTree = new ArrayList<>();
+        try {
+            ProcessTree.OSProcess osProcess = ProcessTree.get().get(process);
+            if (osProcess != null) {
+                processTree.addAll(osProcess.getChildren());
+                processTree.add(osProcess);
+            }
+        } catch (RuntimeException e) {
+            logger.warning("Unable to resolve the agent process tree. Error: " + e.getMessage());
+        }
+        return processTree;
+    }
+
+    private static boolean waitForExit(Process process, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                process.exitValue();
+                return true;
+            } catch (IllegalThreadStateException e) {
+                // Still running.
+            }
+            Thread.sleep(POLL_MILLIS);
+        }
+        return false;
+    }
+
+    private static long getKillGraceMillis() {
+        return Integer.getInteger(KILL_GRACE_PROPERTY, DEFAULT_KILL_GRACE_SECONDS) * 1000L;
+    }
+}
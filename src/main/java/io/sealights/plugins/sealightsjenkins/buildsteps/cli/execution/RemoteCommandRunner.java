@@ -0,0 +1,230 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Proc;
+import hudson.console.LineTransformationOutputStream;
+import hudson.model.AbstractBuild;
+import hudson.model.Node;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.BaseCommandArguments;
+import io.sealights.plugins.sealightsjenkins.utils.JavaHomeCallable;
+import io.sealights.plugins.sealightsjenkins.utils.JavaVersionCallable;
+import io.sealights.plugins.sealightsjenkins.utils.JenkinsUtils;
+import io.sealights.plugins.sealightsjenkins.utils.Logger;
+import io.sealights.plugins.sealightsjenkins.utils.StringUtils;
+import jenkins.util.Timer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the agent command line on the node that owns the build's workspace, using the build's {@link Launcher}.
+ * <p>
+ * The agent jar is cached on the node (see {@link NodeAgentJarCache}), so files referenced by the command
+ * (e.g. report files, the build session id file) can stay on the node instead of being copied to the master.
+ * A very long command line is passed through an argument file (see {@link ArgumentFile}) in the temporary folder of
+ * the workspace, when the java of the node supports it.
+ */
+public class RemoteCommandRunner implements ICommandRunner {
+
+    private static final String JAR_FLAG = "-jar";
+
+    private final Logger logger;
+    private final BaseCommandArguments baseArgs;
+    private final NodeAgentJarCache agentJarCache;
+
+    public RemoteCommandRunner(Logger logger, BaseCommandArguments baseArgs) {
+        this.logger = logger;
+        this.baseArgs = baseArgs;
+        this.agentJarCache = new NodeAgentJarCache(logger);
+    }
+
+    /**
+     * @return true if a remote execution of the given arguments will run on another machine than the master.
+     */
+    public static boolean isRemoteWorkspace(BaseCommandArguments baseArgs) {
+        AbstractBuild<?, ?> build = baseArgs.getBuild();
+        FilePath workspace = build == null ? null : build.getWorkspace();
+        return baseArgs.getLauncher() != null && workspace != null && workspace.isRemote();
+    }
+
+    /**
+     * @return the major version of the java that runs the agent on the node of the workspace.
+     */
+    public static int getJavaMajorVersion(BaseCommandArguments baseArgs) throws IOException, InterruptedException {
+        Launcher launcher = baseArgs.getLauncher();
+        return launcher.getChannel().call(new JavaVersionCallable(resolveJavaPathOnNode(baseArgs, launcher)));
+    }
+
+    @Override
+    public AgentExecutionResult run(String[] execCommand) throws Exception {
+        if (!isRemoteWorkspace(baseArgs)) {
+            throw new CommandRunnerUnavailableException("The workspace is not on a remote node.");
+        }
+        int jarFlagIndex = Arrays.asList(execCommand).indexOf(JAR_FLAG);
+        if (jarFlagIndex < 1 || jarFlagIndex + 1 >= execCommand.length) {
+            throw new IllegalArgumentException("The command line does not contain '" + JAR_FLAG + " <jar>'.");
+        }
+
+        AbstractBuild<?, ?> build = baseArgs.getBuild();
+        FilePath workspace = build.getWorkspace();
+        Launcher launcher = baseArgs.getLauncher();
+
+        String[] remoteCommand = execCommand.clone();
+        remoteCommand[0] = resolveJavaPathOnNode(baseArgs, launcher);
+        FilePath agentJarOnNode = agentJarCache.ensureOnNode(new File(execCommand[jarFlagIndex + 1]), resolveNodeRoot(build, workspace));
+        remoteCommand[jarFlagIndex + 1] = agentJarOnNode.getRemote();
+
+        ProcessOutputCollector collector = new ProcessOutputCollector(logger);
+        CollectorOutputStream stdout = new CollectorOutputStream(collector, false);
+        CollectorOutputStream stderr = new CollectorOutputStream(collector, true);
+        FilePath argumentFile = createArgumentFileIfNeeded(launcher, workspace, remoteCommand);
+        int exitCode;
+        long spawnMillis;
+        try {
+            if (argumentFile != null) {
+                remoteCommand = ArgumentFile.createCommand(remoteCommand, argumentFile.getRemote());
+            }
+            long spawnStartTime = System.currentTimeMillis();
+            Proc proc = launcher.launch()
+                    .cmds(remoteCommand)
+                    .pwd(workspace)
+                    .envs(baseArgs.getEnvVars())
+                    .stdout(stdout)
+                    .stderr(stderr)
+                    // The command line contains the token, it is logged (masked) by the executor.
+                    .quiet(true)
+                    .start();
+            spawnMillis = System.currentTimeMillis() - spawnStartTime;
+            exitCode = waitFor(proc, baseArgs.getCommandTimeoutMillis());
+        } finally {
+            // Flushes a last line that has no line separator.
+            stdout.close();
+            stderr.close();
+            if (argumentFile != null) {
+                argumentFile.delete();
+            }
+        }
+
+        AgentExecutionResult result = new AgentExecutionResult(exitCode, collector.getOutputTail().toString(),
+                collector.getErrorsTail().toString(), true);
+        result.setSpawnMillis(spawnMillis);
+        return result;
+    }
+
+    /**
+     * Waits for the remote process, and kills its process tree on the node when the timeout expires or
+     * the build is aborted. Like {@link Proc#joinWithTimeout}, the kill is scheduled on the Jenkins timer and the
+     * exit is awaited with a single {@link Proc#join()}, instead of polling the node.
+     */
+    private int waitFor(final Proc proc, final long timeoutMillis)
+            throws IOException, InterruptedException, CommandTimeoutException {
+        final AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> killer = null;
+        if (timeoutMillis > 0) {
+            killer = Timer.get().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    timedOut.set(true);
+                    logger.error("The agent process did not finish within " + timeoutMillis + "ms, killing it.");
+                    try {
+                        proc.kill();
+                    } catch (IOException | InterruptedException e) {
+                        logger.warning("Failed to kill the agent process. Error: " + e.getMessage());
+                    }
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        int exitCode;
+        try {
+            exitCode = proc.join();
+        } catch (InterruptedException e) {
+            logger.warning("Interrupted while waiting for the agent process, killing it.");
+            proc.kill();
+            throw e;
+        } finally {
+            if (killer != null) {
+                killer.cancel(false);
+            }
+        }
+        if (timedOut.get()) {
+            throw new CommandTimeoutException("The agent process did not finish within " + timeoutMillis + "ms.");
+        }
+        return exitCode;
+    }
+
+    /**
+     * @return an argument file on the node with the arguments of the command when the command line is too long,
+     * or null to pass the arguments as is.
+     */
+    private FilePath createArgumentFileIfNeeded(Launcher launcher, FilePath workspace, String[] remoteCommand)
+            throws IOException, InterruptedException {
+        if (!ArgumentFile.isNeeded(remoteCommand)) {
+            return null;
+        }
+        long length = ArgumentFile.getLength(remoteCommand);
+        int javaVersion = launcher.getChannel().call(new JavaVersionCallable(remoteCommand[0]));
+        if (!ArgumentFile.isSupported(javaVersion)) {
+            logger.warning("The command line is " + length + " characters long, but '" + remoteCommand[0]
+                    + "' on the node does not support argument files (Java 9 or later is required). Passing the arguments as is.");
+            return null;
+        }
+        FilePath tempDir = JenkinsUtils.getWorkspaceTempDir(workspace);
+        tempDir.mkdirs();
+        FilePath argumentFile = tempDir.createTextTempFile("sl-agent-", ".args", ArgumentFile.toContent(remoteCommand));
+        logger.info("The command line is " + length + " characters long, passing its " + (remoteCommand.length - 1)
+                + " arguments through the argument file '" + argumentFile.getRemote() + "' on the node.");
+        return argumentFile;
+    }
+
+    private static String resolveJavaPathOnNode(BaseCommandArguments baseArgs, Launcher launcher)
+            throws IOException, InterruptedException {
+        if (!StringUtils.isNullOrEmpty(baseArgs.getJavaPath())) {
+            return baseArgs.getJavaPath();
+        }
+        return launcher.getChannel().call(new JavaHomeCallable());
+    }
+
+    private static FilePath resolveNodeRoot(AbstractBuild<?, ?> build, FilePath workspace) {
+        Node node = build.getBuiltOn();
+        FilePath nodeRoot = node == null ? null : node.getRootPath();
+        if (nodeRoot == null) {
+            return workspace.child(".sealights");
+        }
+        return nodeRoot;
+    }
+
+    private static class CollectorOutputStream extends LineTransformationOutputStream {
+
+        private final ProcessOutputCollector collector;
+        private final boolean isErrorStream;
+
+        CollectorOutputStream(ProcessOutputCollector collector, boolean isErrorStream) {
+            this.collector = collector;
+            this.isErrorStream = isErrorStream;
+        }
+
+        @Override
+        protected void eol(byte[] bytes, int len) throws IOException {
+            String line = trimEol(new String(bytes, 0, len, Charset.defaultCharset()));
+            if (isErrorStream) {
+                collector.onErrorLine(line);
+            } else {
+                collector.onOutputLine(line);
+            }
+        }
+
+        private static String trimEol(String line) {
+            int end = line.length();
+            while (end > 0 && (line.charAt(end - 1) == '\n' || line.charAt(end - 1) == '\r')) {
+                end--;
+            }
+            return line.substring(0, end);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+/**
+ * A thread that reads a process stream line by line and hands the lines to a {@link ProcessOutputCollector}.
+ * Reading while the process runs prevents it from blocking on a full OS pipe buffer. Lines longer than
+ * {@link #MAX_LINE_LENGTH} characters are truncated, so a single huge line does not have to be held in memory.
+ */
+public class StreamPumper extends Thread {
+
+    public static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final String TRUNCATED_LINE_SUFFIX = " ... (line truncated)";
+
+    private final InputStream inputStream;
+    private final ProcessOutputCollector collector;
+    private final boolean isErrorStream;
+    private volatile IOException failure;
+
+    public StreamPumper(String name, InputStream inputStream, ProcessOutputCollector collector, boolean isErrorStream) {
+        super(name);
+        setDaemon(true);
+        this.inputStream = inputStream;
+        this.collector = collector;
+        this.isErrorStream = isErrorStream;
+    }
+
+    public static StreamPumper start(String name, InputStream inputStream, ProcessOutputCollector collector,
+                                     boolean isErrorStream) {
+        StreamPumper pumper = new StreamPumper(name, inputStream, collector, isErrorStream);
+        pumper.start();
+        return pumper;
+    }
+
+    @Override
+    public void run() {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, Charset.defaultCharset()))) {
+            String line;
+            while ((line = readLine(reader)) != null) {
+                if (isErrorStream) {
+                    collector.onErrorLine(line);
+                } else {
+                    collector.onOutputLine(line);
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /*
+    * Like BufferedReader.readLine, a line ends with '\n', '\r' or "\r\n". The characters beyond the maximal length
+    * are skipped.
+    * */
+    private static String readLine(BufferedReader reader) throws IOException {
+        StringBuilder line = new StringBuilder();
+        boolean isTruncated = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '\n') {
+                return toLine(line, isTruncated);
+            }
+            if (c == '\r') {
+                reader.mark(1);
+                if (reader.read() != '\n') {
+                    reader.reset();
+                }
+                return toLine(line, isTruncated);
+            }
+            if (line.length() < MAX_LINE_LENGTH) {
+                line.append((char) c);
+            } else {
+                isTruncated = true;
+            }
+        }
+        return line.length() > 0 || isTruncated ? toLine(line, isTruncated) : null;
+    }
+
+    private static String toLine(StringBuilder line, boolean isTruncated) {
+        return isTruncated ? line.append(TRUNCATED_LINE_SUFFIX).toString() : line.toString();
+    }
+
+    /**
+     * @return the error that stopped the pumping, or 'null' if the stream was read to its end.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+}
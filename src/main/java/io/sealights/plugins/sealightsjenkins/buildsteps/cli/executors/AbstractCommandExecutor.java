@@ -1,13 +1,30 @@
 package io.sealights.plugins.sealightsjenkins.buildsteps.cli.executors;
 
 
+import hudson.FilePath;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.AgentExecutionMode;
 import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.BaseCommandArguments;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.AgentCdsArchives;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.AgentExecutionResult;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.AgentExecutionScheduler;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.ArgumentFile;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.CommandRunnerUnavailableException;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.CommandTimeoutException;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.ExecutionMetrics;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.ExecutionTiming;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.ICommandRunner;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.JavaVersionDetector;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.ProcessOutputCollector;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.ProcessWatchdog;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.RemoteCommandRunner;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.StreamPumper;
+import io.sealights.plugins.sealightsjenkins.utils.JenkinsUtils;
 import io.sealights.plugins.sealightsjenkins.utils.Logger;
 import io.sealights.plugins.sealightsjenkins.utils.PathUtils;
-import io.sealights.plugins.sealightsjenkins.utils.StreamUtils;
 import io.sealights.plugins.sealightsjenkins.utils.StringUtils;
 
-import java.io.InputStream;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -17,9 +34,12 @@ import java.util.List;
  */
 public abstract class AbstractCommandExecutor implements ICommandExecutor {
 
+    private static final int MAX_LOGGED_ARGUMENTS = 40;
+
     protected Logger logger;
     protected BaseCommandArguments baseArgs;
     private Runtime runtime;
+    private ICommandRunner commandRunner;
 
     public AbstractCommandExecutor(Logger logger, BaseCommandArguments baseArgs) {
         this.logger = logger;
@@ -28,42 +48,205 @@ public abstract class AbstractCommandExecutor implements ICommandExecutor {
     }
 
     public boolean execute() {
+        long startTime = System.currentTimeMillis();
+        long launchTime = startTime;
+        AgentExecutionResult result = null;
+        boolean timedOut = false;
         try {
             String[] execCommand = createExecutionCommand();
 
-            // Run a java app in a separate system process
-            logger.info("About to execute command: " + Arrays.toString(prettifyToken(execCommand)));
+            logger.info("About to execute command: " + summarizeCommand(prettifyToken(execCommand)));
 
-            Process process = runtime.exec(execCommand);
-            process.waitFor();
+            AgentExecutionScheduler.Slot slot = AgentExecutionScheduler.getInstance().acquire(getExecutionNodeName(), isPriorityCommand());
+            try {
+                launchTime = System.currentTimeMillis();
+                result = runCommand(execCommand);
+            } finally {
+                slot.release();
+            }
 
-            printStreams(process);
+            printResult(result);
 
-            if (process.exitValue() == 0) {
+            if (result.isSuccess()) {
                 return true;
             }
 
+        } catch (CommandTimeoutException e) {
+            timedOut = true;
+            logger.error("Unable to perform '" + getCommandName() + "' command. Error: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("The '" + getCommandName() + "' command was interrupted.");
         } catch (Exception e) {
             logger.error("Unable to perform '" + getCommandName() + "' command. Error: ", e);
+        } finally {
+            recordTiming(startTime, launchTime, result, timedOut);
         }
 
         return false;
     }
 
-    private void printStreams(Process process) {
-        // Receive the process output
-        InputStream inputStream = process.getInputStream();
-        InputStream errorStream = process.getErrorStream();
-        String outputInfo = StreamUtils.toString(inputStream);
-        String outputErrors = StreamUtils.toString(errorStream);
-        logger.info("Process ended with exit code: " + process.exitValue());
-        if (!StringUtils.isNullOrEmpty(outputInfo)) {
+    private void recordTiming(long startTime, long launchTime, AgentExecutionResult result, boolean timedOut) {
+        ExecutionTiming timing = new ExecutionTiming(getCommandName(),
+                launchTime - startTime,
+                result == null ? ExecutionTiming.UNKNOWN : result.getSpawnMillis(),
+                System.currentTimeMillis() - launchTime,
+                result == null ? ExecutionTiming.NO_EXIT_CODE : result.getExitCode(),
+                timedOut);
+        logger.info("Execution timing: " + timing);
+        ExecutionMetrics.getInstance().record(timing);
+    }
+
+    private AgentExecutionResult runCommand(String[] execCommand) throws Exception {
+        if (commandRunner != null) {
+            try {
+                return commandRunner.run(execCommand);
+            } catch (CommandRunnerUnavailableException e) {
+                logger.warning("Unable to run the agent using '" + commandRunner.getClass().getSimpleName()
+                        + "', falling back to a separate java process. Reason: " + e.getMessage());
+            }
+        }
+        return runInSeparateProcess(execCommand);
+    }
+
+    private AgentExecutionResult runInSeparateProcess(String[] execCommand) throws Exception {
+        try (AgentCdsArchives.Run cdsRun = prepareCdsRun(execCommand)) {
+            String[] processCommand = addJvmOptions(execCommand, cdsRun.getJvmOptions());
+            File argumentFile = createArgumentFileIfNeeded(processCommand);
+            try {
+                if (argumentFile != null) {
+                    processCommand = ArgumentFile.createCommand(processCommand, argumentFile.getAbsolutePath());
+                }
+                return runProcess(processCommand);
+            } finally {
+                if (argumentFile != null && !argumentFile.delete()) {
+                    argumentFile.deleteOnExit();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the run that uses (or creates) the class data sharing archive of the agent jar.
+     */
+    private AgentCdsArchives.Run prepareCdsRun(String[] execCommand) {
+        if (execCommand.length < 3 || !"-jar".equals(execCommand[1])) {
+            return AgentCdsArchives.Run.NONE;
+        }
+        return AgentCdsArchives.getInstance().prepareRun(execCommand[0], new File(execCommand[2]), logger);
+    }
+
+    private static String[] addJvmOptions(String[] execCommand, List<String> jvmOptions) {
+        if (jvmOptions.isEmpty()) {
+            return execCommand;
+        }
+        List<String> command = new ArrayList<>(Arrays.asList(execCommand));
+        command.addAll(1, jvmOptions);
+        return command.toArray(new String[command.size()]);
+    }
+
+    /**
+     * @return an argument file with the command arguments when the command line is too long,
+     * or null to pass the arguments as is.
+     */
+    private File createArgumentFileIfNeeded(String[] execCommand) {
+        if (!ArgumentFile.isNeeded(execCommand)) {
+            return null;
+        }
+        long length = ArgumentFile.getLength(execCommand);
+        int javaVersion = JavaVersionDetector.getMajorVersion(execCommand[0]);
+        if (!ArgumentFile.isSupported(javaVersion)) {
+            logger.warning("The command line is " + length + " characters long, but '" + execCommand[0]
+                    + "' does not support argument files (Java 9 or later is required). Passing the arguments as is.");
+            return null;
+        }
+        try {
+            File argumentFile = ArgumentFile.write(getCommandName(), execCommand, getScratchFolder());
+            logger.info("The command line is " + length + " characters long, passing its " + (execCommand.length - 1)
+                    + " arguments through the argument file '" + argumentFile + "'.");
+            return argumentFile;
+        } catch (IOException e) {
+            logger.warning("Unable to create an argument file, passing the arguments as is. Error: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /*
+    * The temporary folder of the workspace, when the workspace is on this machine. Otherwise the agent runs on the
+    * master with copies of the workspace files, so the master's temp folder is used.
+    * */
+    private File getScratchFolder() {
+        FilePath workspace = baseArgs.getBuild() == null ? null : baseArgs.getBuild().getWorkspace();
+        if (workspace != null && !workspace.isRemote()) {
+            return new File(JenkinsUtils.getWorkspaceTempDir(workspace).getRemote());
+        }
+        return new File(System.getProperty("java.io.tmpdir"), "sl-argfiles");
+    }
+
+    /**
+     * @return true if the command line is too long to be passed as is, and the java that runs it cannot read argument
+     * files (Java 8 or older), so the command has to be split.
+     */
+    protected boolean isCommandLineTooLong(String[] execCommand) throws IOException, InterruptedException {
+        if (!ArgumentFile.isNeeded(execCommand)) {
+            return false;
+        }
+        int javaVersion = isRunningOnBuildNode()
+                ? RemoteCommandRunner.getJavaMajorVersion(baseArgs)
+                : JavaVersionDetector.getMajorVersion(execCommand[0]);
+        return !ArgumentFile.isSupported(javaVersion);
+    }
+
+    private AgentExecutionResult runProcess(String[] execCommand) throws Exception {
+        // Run a java app in a separate system process
+        long spawnStartTime = System.currentTimeMillis();
+        Process process = runtime.exec(execCommand);
+        long spawnMillis = System.currentTimeMillis() - spawnStartTime;
+
+        // Pump the process output while it runs, so it never blocks on a full pipe
+        ProcessOutputCollector collector = new ProcessOutputCollector(logger);
+        StreamPumper outputPumper = StreamPumper.start(getCommandName() + " stdout", process.getInputStream(), collector, false);
+        StreamPumper errorsPumper = StreamPumper.start(getCommandName() + " stderr", process.getErrorStream(), collector, true);
+
+        int exitCode = new ProcessWatchdog(logger).waitFor(process, baseArgs.getCommandTimeoutMillis());
+        outputPumper.join();
+        errorsPumper.join();
+        warnIfPumpingFailed(outputPumper);
+        warnIfPumpingFailed(errorsPumper);
+
+        AgentExecutionResult result = new AgentExecutionResult(exitCode, collector.getOutputTail().toString(),
+                collector.getErrorsTail().toString(), true);
+        result.setSpawnMillis(spawnMillis);
+        return result;
+    }
+
+    /*
+    * The exit code still tells whether the command succeeded, only its output may be incomplete.
+    * */
+    private void warnIfPumpingFailed(StreamPumper pumper) {
+        if (pumper.getFailure() != null) {
+            logger.warning("Failed to read the agent output of '" + pumper.getName() + "', it may be incomplete. Error: "
+                    + pumper.getFailure().getMessage());
+        }
+    }
+
+    private void printResult(AgentExecutionResult result) {
+        logger.info("Process ended with exit code: " + result.getExitCode());
+        if (result.isStreamedToLog()) {
+            // The output was already logged line by line, repeat the errors as a summary of a failure
+            if (!result.isSuccess() && !StringUtils.isNullOrEmpty(result.getErrors())) {
+                logger.info("Process errors output (tail):");
+                logger.error(result.getErrors());
+            }
+            return;
+        }
+        if (!StringUtils.isNullOrEmpty(result.getOutput())) {
             logger.info("Process output:");
-            logger.info(outputInfo);
+            logger.info(result.getOutput());
         }
-        if (!StringUtils.isNullOrEmpty(outputErrors)) {
+        if (!StringUtils.isNullOrEmpty(result.getErrors())) {
             logger.info("Process errors output:");
-            logger.error(outputErrors);
+            logger.error(result.getErrors());
         }
     }
 
@@ -128,6 +311,55 @@ public abstract class AbstractCommandExecutor implements ICommandExecutor {
     public void setRuntime(Runtime runtime) {
         this.runtime = runtime;
     }
+
+    /**
+     * @return true if the agent runs on the remote node that owns the workspace, so it can access workspace files
+     * directly and nothing needs to be copied to (or from) the master.
+     */
+    protected boolean isRunningOnBuildNode() {
+        return AgentExecutionMode.REMOTE.equals(baseArgs.getExecutionMode())
+                && RemoteCommandRunner.isRemoteWorkspace(baseArgs);
+    }
+
+    /**
+     * @return true for short commands, which are not queued behind long ones when the agent executions are throttled.
+     */
+    protected boolean isPriorityCommand() {
+        return false;
+    }
+
+    private String getExecutionNodeName() {
+        if (isRunningOnBuildNode()) {
+            return baseArgs.getBuild().getBuiltOnStr();
+        }
+        return AgentExecutionScheduler.MASTER_NODE_NAME;
+    }
+
+    protected Runtime getRuntime() {
+        return runtime;
+    }
+
+    protected ICommandRunner getCommandRunner() {
+        return commandRunner;
+    }
+
+    public void setCommandRunner(ICommandRunner commandRunner) {
+        this.commandRunner = commandRunner;
+    }
+
+    /**
+     * @return the command as a string, with only the first arguments of very long commands.
+     */
+    protected String summarizeCommand(String[] command) {
+        if (command.length <= MAX_LOGGED_ARGUMENTS) {
+            return Arrays.toString(command);
+        }
+        String[] loggedArguments = Arrays.copyOf(command, MAX_LOGGED_ARGUMENTS);
+        String logged = Arrays.toString(loggedArguments);
+        return logged.substring(0, logged.length() - 1) + ", ...] (" + (command.length - MAX_LOGGED_ARGUMENTS)
+                + " more arguments, " + ArgumentFile.getLength(command) + " characters in total)";
+    }
+
     public String[] prettifyToken(String[] commands){
         String[] commandsClone = commands.clone();
           for (int i =0;i<=commandsClone.length;i++){
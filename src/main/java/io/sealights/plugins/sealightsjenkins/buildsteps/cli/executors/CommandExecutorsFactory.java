@@ -1,6 +1,10 @@
 package io.sealights.plugins.sealightsjenkins.buildsteps.cli.executors;
 
 import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.*;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.DaemonCommandRunner;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.ICommandRunner;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.InProcessCommandRunner;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.RemoteCommandRunner;
 import io.sealights.plugins.sealightsjenkins.utils.Logger;
 
 /**
@@ -30,8 +34,32 @@ public class CommandExecutorsFactory {
                 logger.error("Current mode is invalid! Cannot create executor.");
                 executor = new NullCommandExecutor();
             }
+            setCommandRunner(logger, executor, baseArgs);
         }
         return executor;
     }
 
+    private void setCommandRunner(Logger logger, ICommandExecutor executor, BaseCommandArguments baseArgs) {
+        if (executor instanceof AbstractCommandExecutor) {
+            ((AbstractCommandExecutor) executor).setCommandRunner(createCommandRunner(logger, executor, baseArgs));
+        }
+    }
+
+    /**
+     * @return the runner for the configured execution mode, or 'null' to run the agent in a separate java process.
+     */
+    protected ICommandRunner createCommandRunner(Logger logger, ICommandExecutor executor, BaseCommandArguments baseArgs) {
+        if (AgentExecutionMode.IN_PROCESS.equals(baseArgs.getExecutionMode())) {
+            return new InProcessCommandRunner(baseArgs.getCommandTimeoutMillis());
+        }
+        if (AgentExecutionMode.REMOTE.equals(baseArgs.getExecutionMode())) {
+            return new RemoteCommandRunner(logger, baseArgs);
+        }
+        // The config command uses the build scanner and runs once per build, so it is not worth a daemon.
+        if (AgentExecutionMode.DAEMON.equals(baseArgs.getExecutionMode()) && !(executor instanceof ConfigCommandExecutor)) {
+            return new DaemonCommandRunner(baseArgs);
+        }
+        return null;
+    }
+
 }
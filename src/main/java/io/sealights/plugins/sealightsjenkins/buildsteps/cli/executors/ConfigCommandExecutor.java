@@ -28,6 +28,7 @@ public class ConfigCommandExecutor extends AbstractCommandExecutor {
     private String buildSessionIdFileOnMaster = null;
     private String buildSessionIdFileOnSlave = null;
     private boolean isSlaveMachine = false;
+    private String createdBuildSessionId = null;
 
     private ConfigCommandArguments configCommandArguments;
     private JenkinsUtils jenkinsUtils = new JenkinsUtils();
@@ -71,7 +72,11 @@ public class ConfigCommandExecutor extends AbstractCommandExecutor {
     }
 
     private void resolveBuildSessionIdFileOnMaster(FilePath workspace) {
-        if (isSlaveMachine) {
+        if (isSlaveMachine && isRunningOnBuildNode()) {
+            // The agent creates the file on the node directly
+            this.buildSessionIdFileOnSlave = PathUtils.join(workspace.getRemote(), BUILD_SESSION_ID_FILE_NAME);
+            this.buildSessionIdFileOnMaster = this.buildSessionIdFileOnSlave;
+        } else if (isSlaveMachine) {
             this.buildSessionIdFileOnMaster = createTempPathToFileOnMaster();
             this.buildSessionIdFileOnSlave = PathUtils.join(workspace.getRemote(), BUILD_SESSION_ID_FILE_NAME);
         } else {
@@ -101,6 +106,14 @@ public class ConfigCommandExecutor extends AbstractCommandExecutor {
     private void onSuccess(
             AbstractBuild<?, ?> build, FilePath workspace, Logger logger) throws IOException, InterruptedException {
 
+        if (workspace.isRemote() && isRunningOnBuildNode()) {
+            // the file was created on the slave, there is nothing to copy
+            FilePath fileOnSlave = workspace.child(BUILD_SESSION_ID_FILE_NAME);
+            String buildSessionId = fileOnSlave.readToString().trim();
+            injectBuildSessionIdEnvVars(build, buildSessionId, this.buildSessionIdFileOnSlave, logger);
+            return;
+        }
+
         // get the buildSessionId from the created file
         ArgumentFileResolver argumentFileResolver = new ArgumentFileResolver();
         String buildSessionId = argumentFileResolver.resolve(logger, null/*force get from file*/, buildSessionIdFileOnMaster);
@@ -121,6 +134,7 @@ public class ConfigCommandExecutor extends AbstractCommandExecutor {
 
     private void injectBuildSessionIdEnvVars(
             AbstractBuild<?, ?> build, String buildSessionId, String createdFile, Logger logger) {
+        this.createdBuildSessionId = buildSessionId;
         try {
             EnvVarsInjector envVarsInjector = new EnvVarsInjector(build, logger);
             envVarsInjector.addEnvVariableToBuild(BUILD_SESSION_ID_ENV_VAR, buildSessionId);
@@ -138,9 +152,12 @@ public class ConfigCommandExecutor extends AbstractCommandExecutor {
         // in order to avoid unrecognizedArgumentException, we make sure to NOT set this value.
         // this value is currently showed in the UI even in config mode,
         // so there is possibility for it to be set.
+        // the original value is restored, since other commands (e.g. in a batch) may use the same base arguments.
+        String labId = baseArgs.getLabId();
         baseArgs.setLabId(null);
 
         super.addBaseArgumentsLine(commandsList);
+        baseArgs.setLabId(labId);
     }
 
     @Override
@@ -162,11 +179,23 @@ public class ConfigCommandExecutor extends AbstractCommandExecutor {
         commandsList.add("-enableNoneZeroErrorCode");
     }
 
+    @Override
+    protected boolean isPriorityCommand() {
+        return true;
+    }
+
     @Override
     protected String getCommandName() {
         return "-config";
     }
 
+    /**
+     * @return the build session id created by a successful execution, or 'null'.
+     */
+    public String getCreatedBuildSessionId() {
+        return createdBuildSessionId;
+    }
+
     public void setJenkinsUtils(JenkinsUtils jenkinsUtils) {
         this.jenkinsUtils = jenkinsUtils;
     }
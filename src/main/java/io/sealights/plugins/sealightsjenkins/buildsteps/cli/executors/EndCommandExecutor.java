@@ -24,6 +24,11 @@ public class EndCommandExecutor extends AbstractCommandExecutor {
 
     }
 
+    @Override
+    protected boolean isPriorityCommand() {
+        return true;
+    }
+
     @Override
     protected String getCommandName() {
         return "end";
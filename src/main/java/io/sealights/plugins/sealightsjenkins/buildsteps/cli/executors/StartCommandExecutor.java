@@ -25,6 +25,11 @@ public class StartCommandExecutor extends AbstractCommandExecutor {
         addArgumentKeyVal("testStage", JenkinsUtils.resolveEnvVarsInString(baseArgs.getEnvVars(), startCommandArguments.getTestStage()), commandsList);
     }
 
+    @Override
+    protected boolean isPriorityCommand() {
+        return true;
+    }
+
     @Override
     protected String getCommandName() {
         return "start";
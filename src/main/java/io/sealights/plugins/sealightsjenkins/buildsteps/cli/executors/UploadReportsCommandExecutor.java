@@ -2,13 +2,25 @@ package io.sealights.plugins.sealightsjenkins.buildsteps.cli.executors;
 
 import hudson.FilePath;
 import io.sealights.plugins.sealightsjenkins.CleanupManager;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.AgentExecutionMode;
 import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.BaseCommandArguments;
 import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.UploadReportsCommandArguments;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.ArgumentFile;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.ICommandRunner;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.RemoteCommandRunner;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.utils.ReportFolderItemCallable;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.utils.ReportShardsPartitioner;
 import io.sealights.plugins.sealightsjenkins.utils.*;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Executor for the 'uploadReports' command.
@@ -19,6 +31,8 @@ public class UploadReportsCommandExecutor extends AbstractCommandExecutor {
     private List<String> reportFiles;
     private List<String> reportFilesFolders;
     private CleanupManager cleanupManager;
+    private boolean isShard = false;
+    private boolean isChunk = false;
 
     public UploadReportsCommandExecutor(
             Logger logger, BaseCommandArguments baseCommandArguments, UploadReportsCommandArguments uploadReportsCommandArguments) {
@@ -29,19 +43,29 @@ public class UploadReportsCommandExecutor extends AbstractCommandExecutor {
 
     @Override
     public boolean execute() {
+        if (isShard) {
+            // The files were already resolved by the executor that created this shard
+            try {
+                return executeWithinCommandLineLimit();
+            } catch (Exception e) {
+                logger.error("Failed to upload report due to an error. Error:", e);
+                return false;
+            }
+        }
 
         try {
             this.reportFiles = resolveFilesList(uploadReportsCommandArguments.getReportFiles());
             this.reportFilesFolders = resolveFilesList(uploadReportsCommandArguments.getReportsFolders());
 
             FilePath workspace = baseArgs.getBuild().getWorkspace();
-            boolean isSlaveMachine = workspace.isRemote();
+            // When the agent runs on the node, it reads the reports there
+            boolean isSlaveMachine = workspace.isRemote() && !isRunningOnBuildNode();
             if (isSlaveMachine) {
                 // The execution is performed on the master..
                 copyFilesToMaster();
             }
 
-            boolean isSuccess = super.execute();
+            boolean isSuccess = uploadReports();
 
             if (isSuccess) {
                 if (isSlaveMachine) {
@@ -58,6 +82,185 @@ public class UploadReportsCommandExecutor extends AbstractCommandExecutor {
         return false;
     }
 
+    private boolean uploadReports() throws IOException, InterruptedException {
+        int shardsCount = uploadReportsCommandArguments.getShards();
+        if (shardsCount <= 1 || reportFiles.size() + reportFilesFolders.size() <= 1) {
+            return executeWithinCommandLineLimit();
+        }
+
+        List<ReportShardsPartitioner.Shard> shards = new ReportShardsPartitioner().partition(createShardItems(), shardsCount);
+        if (shards.size() <= 1) {
+            return executeWithinCommandLineLimit();
+        }
+        return uploadShards(shards);
+    }
+
+    /*
+    * All the shards but the last (and smallest) one are uploaded concurrently with 'hasMoreRequests=true',
+    * each one by its own agent process. The last shard is uploaded after they all finished, with the original
+    * 'hasMoreRequests' value, so the server never sees the final request before the others. If one of the
+    * shards failed, the last shard is still uploaded but with 'hasMoreRequests=true', so the server does not
+    * close the upload with missing reports.
+    * */
+    private boolean uploadShards(List<ReportShardsPartitioner.Shard> shards) throws InterruptedException {
+        final int shardsCount = shards.size();
+        int parallelism = uploadReportsCommandArguments.getParallelism();
+        if (parallelism <= 0 || parallelism > shardsCount - 1) {
+            parallelism = shardsCount - 1;
+        }
+        logger.info("Uploading the reports in " + shardsCount + " shards, up to " + parallelism + " at a time.");
+        long startTime = System.currentTimeMillis();
+
+        boolean isSuccess = true;
+        ExecutorService executorService = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < shardsCount - 1; i++) {
+                final UploadReportsCommandExecutor shardExecutor = createShardExecutor(shards.get(i), "shard", i + 1, shardsCount, true);
+                shardExecutor.setCommandRunner(createConcurrentShardRunner(shardExecutor.logger));
+                futures.add(executorService.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return shardExecutor.execute();
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                try {
+                    isSuccess &= future.get();
+                } catch (ExecutionException e) {
+                    logger.error("Failed to upload a reports shard. Error:", e.getCause());
+                    isSuccess = false;
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        boolean hasMoreRequests = uploadReportsCommandArguments.isHasMoreRequests();
+        if (!isSuccess && !hasMoreRequests) {
+            logger.warning("Some of the shards failed, uploading the last shard with 'hasMoreRequests=true'.");
+            hasMoreRequests = true;
+        }
+        UploadReportsCommandExecutor lastShardExecutor = createShardExecutor(shards.get(shardsCount - 1), "shard", shardsCount, shardsCount, hasMoreRequests);
+        lastShardExecutor.setCommandRunner(getCommandRunner());
+        isSuccess &= lastShardExecutor.execute();
+
+        logger.info("Finished uploading " + shardsCount + " shards in " + (System.currentTimeMillis() - startTime)
+                + "ms. Success: " + isSuccess);
+        return isSuccess;
+    }
+
+    /*
+    * Java 8 and older cannot read argument files, so a command line that is too long for them is split into parts of
+    * the report files and folders, uploaded one after the other. All the parts but the last one are uploaded with
+    * 'hasMoreRequests=true', and so is the last one if a previous part failed.
+    * */
+    private boolean executeWithinCommandLineLimit() throws IOException, InterruptedException {
+        if (isChunk || !isCommandLineTooLong(createExecutionCommand())) {
+            return super.execute();
+        }
+
+        List<ReportShardsPartitioner.Shard> chunks = createChunks();
+        logger.info("The command line is too long and '" + resolvedJavaPath() + "' does not support argument files,"
+                + " uploading the reports in " + chunks.size() + " parts.");
+        boolean isSuccess = true;
+        for (int i = 0; i < chunks.size(); i++) {
+            boolean hasMoreRequests = true;
+            if (i == chunks.size() - 1) {
+                hasMoreRequests = uploadReportsCommandArguments.isHasMoreRequests();
+                if (!isSuccess && !hasMoreRequests) {
+                    logger.warning("Some of the parts failed, uploading the last part with 'hasMoreRequests=true'.");
+                    hasMoreRequests = true;
+                }
+            }
+            UploadReportsCommandExecutor chunkExecutor = createShardExecutor(chunks.get(i), "part", i + 1, chunks.size(), hasMoreRequests);
+            chunkExecutor.isChunk = true;
+            chunkExecutor.setCommandRunner(getCommandRunner());
+            isSuccess &= chunkExecutor.execute();
+        }
+        return isSuccess;
+    }
+
+    /*
+    * Packs the report files and folders, in order, into parts whose command line is within the argument file
+    * threshold. A part has at least one item.
+    * */
+    private List<ReportShardsPartitioner.Shard> createChunks() {
+        List<ReportShardsPartitioner.Item> items = new ArrayList<>();
+        long itemsLength = 0;
+        for (String reportFile : reportFiles) {
+            long length = ArgumentFile.getLength(new String[]{"-reportFile", reportFile});
+            items.add(new ReportShardsPartitioner.Item(reportFile, false, length));
+            itemsLength += length;
+        }
+        for (String reportFolder : reportFilesFolders) {
+            String resolvedFolder = JenkinsUtils.resolveEnvVarsInString(baseArgs.getEnvVars(), reportFolder);
+            long length = ArgumentFile.getLength(new String[]{"-reportFilesFolder", resolvedFolder});
+            items.add(new ReportShardsPartitioner.Item(reportFolder, true, length));
+            itemsLength += length;
+        }
+        long baseLength = ArgumentFile.getLength(createExecutionCommand()) - itemsLength;
+        long maxItemsLength = ArgumentFile.getThreshold() - baseLength;
+
+        List<ReportShardsPartitioner.Shard> chunks = new ArrayList<>();
+        ReportShardsPartitioner.Shard chunk = null;
+        for (ReportShardsPartitioner.Item item : items) {
+            if (chunk == null || (chunk.getTotalSize() > 0 && chunk.getTotalSize() + item.getSize() > maxItemsLength)) {
+                chunk = new ReportShardsPartitioner.Shard();
+                chunks.add(chunk);
+            }
+            chunk.add(item);
+        }
+        return chunks;
+    }
+
+    private List<ReportShardsPartitioner.Item> createShardItems() throws IOException, InterruptedException {
+        List<ReportShardsPartitioner.Item> items = new ArrayList<>();
+        for (String reportFile : reportFiles) {
+            items.add(new ReportShardsPartitioner.Item(reportFile, false, getTotalSize(reportFile)));
+        }
+        for (String reportFolder : reportFilesFolders) {
+            items.add(toFilePath(reportFolder).act(new ReportFolderItemCallable()));
+        }
+        return items;
+    }
+
+    private long getTotalSize(String path) throws IOException, InterruptedException {
+        return toFilePath(path).act(new TotalSizeCallable());
+    }
+
+    private FilePath toFilePath(String path) {
+        if (isRunningOnBuildNode()) {
+            return new FilePath(baseArgs.getBuild().getWorkspace().getChannel(), path);
+        }
+        return new FilePath(new File(path));
+    }
+
+    /*
+    * The runners of the other execution modes share a single agent (a daemon, or the Jenkins JVM itself),
+    * which would run the concurrent shards one after the other, so those shards use separate java processes.
+    * */
+    private ICommandRunner createConcurrentShardRunner(Logger shardLogger) {
+        if (AgentExecutionMode.REMOTE.equals(baseArgs.getExecutionMode())) {
+            return new RemoteCommandRunner(shardLogger, baseArgs);
+        }
+        return null;
+    }
+
+    private UploadReportsCommandExecutor createShardExecutor(ReportShardsPartitioner.Shard shard, String shardName,
+            int shardIndex, int shardsCount, boolean hasMoreRequests) {
+        UploadReportsCommandArguments shardArguments = new UploadReportsCommandArguments(
+                null, null, hasMoreRequests, uploadReportsCommandArguments.getSource());
+        Logger shardLogger = logger.withPrefix("[" + shardName + " " + shardIndex + "/" + shardsCount + "]");
+        UploadReportsCommandExecutor shardExecutor = new UploadReportsCommandExecutor(shardLogger, baseArgs, shardArguments);
+        shardExecutor.isShard = true;
+        shardExecutor.setReportFiles(shard.getReportFiles());
+        shardExecutor.setReportFilesFolders(shard.getReportFilesFolders());
+        shardExecutor.setRuntime(getRuntime());
+        return shardExecutor;
+    }
+
     private List<String> resolveFilesList(String commaSeparatedToList) {
         List<String> tempList = StringUtils.commaSeparatedToList(commaSeparatedToList);
         List<String> returnedList = new ArrayList<>();
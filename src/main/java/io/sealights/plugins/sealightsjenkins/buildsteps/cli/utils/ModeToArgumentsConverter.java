@@ -3,12 +3,21 @@ package io.sealights.plugins.sealightsjenkins.buildsteps.cli.utils;
 import io.sealights.plugins.sealightsjenkins.buildsteps.cli.CommandMode;
 import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.*;
 import io.sealights.plugins.sealightsjenkins.utils.PropertiesUtils;
+import io.sealights.plugins.sealightsjenkins.utils.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
 
 /**
  * Created by shahar on 2/12/2017.
  */
 public class ModeToArgumentsConverter {
 
+    private static final List<CommandModes> BATCH_COMMANDS = Arrays.asList(
+            CommandModes.Config, CommandModes.Start, CommandModes.UploadReports, CommandModes.End);
+
     public AbstractCommandArgument convert(CommandMode mode){
         if (mode == null){
             return null;
@@ -24,6 +33,8 @@ public class ModeToArgumentsConverter {
             return toExternalReportArguments((CommandMode.ExternalReportView) mode);
         } else if (CommandModes.Config.equals(mode.getCurrentMode())) {
             return toConfigCommandArguments((CommandMode.ConfigView) mode);
+        } else if (CommandModes.Batch.equals(mode.getCurrentMode())) {
+            return toBatchCommandArguments((CommandMode.BatchView) mode);
         }
 
         throw new IllegalStateException("toCommandArgument() - The provided CommandMode is not one of the expected types");
@@ -38,12 +49,32 @@ public class ModeToArgumentsConverter {
     }
 
     private UploadReportsCommandArguments toUploadReportCommandArguments(CommandMode.UploadReportsView uploadReportsView){
-        String source = PropertiesUtils.toProperties(uploadReportsView.getAdditionalArguments()).getProperty("source");
+        Properties additionalProps = PropertiesUtils.toProperties(uploadReportsView.getAdditionalArguments());
         return new UploadReportsCommandArguments(
                 uploadReportsView.getReportFiles(),
                 uploadReportsView.getReportsFolders(),
                 uploadReportsView.getHasMoreRequests(),
-                source);
+                additionalProps.getProperty("source"),
+                toInt(additionalProps.getProperty("uploadshards"), 1),
+                toInt(additionalProps.getProperty("uploadparallelism"), 0));
+    }
+
+    private static boolean toBoolean(String value, boolean defaultValue) {
+        if (StringUtils.isNullOrEmpty(value)) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    private static int toInt(String value, int defaultValue) {
+        if (StringUtils.isNullOrEmpty(value)) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("'" + value + "' is not a valid number.", e);
+        }
     }
 
     private ExternalReportCommandArguments toExternalReportArguments(CommandMode.ExternalReportView externalReportView){
@@ -53,4 +84,48 @@ public class ModeToArgumentsConverter {
     private ConfigCommandArguments toConfigCommandArguments(CommandMode.ConfigView configView){
         return new ConfigCommandArguments(configView.getTechOptions());
     }
+
+    private BatchCommandArguments toBatchCommandArguments(CommandMode.BatchView batchView){
+        Properties additionalProps = PropertiesUtils.toProperties(batchView.getAdditionalArguments());
+        List<AbstractCommandArgument> commands = new ArrayList<>();
+        for (CommandModes commandMode : parseBatchCommands(batchView.getCommands())) {
+            if (CommandModes.Config.equals(commandMode)) {
+                commands.add(new ConfigCommandArguments(batchView.getTechOptions()));
+            } else if (CommandModes.Start.equals(commandMode)) {
+                commands.add(new StartCommandArguments(batchView.getTestStage()));
+            } else if (CommandModes.UploadReports.equals(commandMode)) {
+                commands.add(new UploadReportsCommandArguments(
+                        batchView.getReportFiles(), batchView.getReportsFolders(),
+                        toBoolean(additionalProps.getProperty("hasmorerequests"), true),
+                        additionalProps.getProperty("source"),
+                        toInt(additionalProps.getProperty("uploadshards"), 1),
+                        toInt(additionalProps.getProperty("uploadparallelism"), 0)));
+            } else {
+                commands.add(new EndCommandArguments());
+            }
+        }
+        return new BatchCommandArguments(commands);
+    }
+
+    /**
+     * @param commands comma separated list of command names (e.g. 'config, start, uploadReports, end'),
+     *                 or empty for {@link CommandMode.BatchView#DEFAULT_COMMANDS}
+     * @return the commands, in the given order
+     */
+    public static List<CommandModes> parseBatchCommands(String commands) {
+        if (StringUtils.isNullOrEmpty(commands) || StringUtils.isNullOrEmpty(commands.trim())) {
+            commands = CommandMode.BatchView.DEFAULT_COMMANDS;
+        }
+
+        List<CommandModes> modes = new ArrayList<>();
+        for (String commandName : StringUtils.commaSeparatedToList(commands.trim())) {
+            CommandModes mode = CommandModes.fromName(commandName);
+            if (!BATCH_COMMANDS.contains(mode)) {
+                throw new IllegalStateException("'" + commandName + "' cannot be used in a batch. " +
+                        "Supported commands: " + CommandMode.BatchView.DEFAULT_COMMANDS);
+            }
+            modes.add(mode);
+        }
+        return modes;
+    }
 }
@@ -0,0 +1,47 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.utils;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import io.sealights.plugins.sealightsjenkins.utils.TotalSizeCallable;
+import org.jenkinsci.remoting.RoleChecker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Returns a reports folder as a {@link ReportShardsPartitioner.Item}, computed on the machine that holds it.
+ * The report files of the folder are listed only when it has no sub folders, which could not be passed to the agent
+ * as report files. Other files are counted in the size of the folder, but not listed.
+ */
+public class ReportFolderItemCallable implements FilePath.FileCallable<ReportShardsPartitioner.Item> {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public ReportShardsPartitioner.Item invoke(File folder, VirtualChannel channel) throws IOException, InterruptedException {
+        List<ReportShardsPartitioner.Item> files = new ArrayList<>();
+        long size = 0;
+        File[] children = folder.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (!child.isFile()) {
+                    long totalSize = new TotalSizeCallable().invoke(folder, channel);
+                    return new ReportShardsPartitioner.Item(folder.getPath(), true, totalSize,
+                            Collections.<ReportShardsPartitioner.Item>emptyList());
+                }
+                if (ReportShardsPartitioner.isReportFile(child.getName())) {
+                    files.add(new ReportShardsPartitioner.Item(child.getPath(), false, child.length()));
+                }
+                size += child.length();
+            }
+        }
+        return new ReportShardsPartitioner.Item(folder.getPath(), true, size, files);
+    }
+
+    @Override
+    public void checkRoles(RoleChecker roleChecker) throws SecurityException {
+
+    }
+}
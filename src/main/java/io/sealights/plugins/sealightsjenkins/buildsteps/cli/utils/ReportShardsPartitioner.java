@@ -0,0 +1,166 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.utils;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Splits report files and folders into shards of (roughly) the same total size.
+ * <p>
+ * Uses the 'longest processing time' heuristic: the biggest items are placed first, each one into the
+ * shard that is currently the smallest. A folder that is bigger than an even share of the total size is
+ * replaced by its report files (when they are known), so a single big folder does not end up in a single shard.
+ * Only the '*.xml' files of a folder are reports (as the agent filters a reports folder), the other files of a split
+ * folder (e.g. surefire '*-output.txt' files) are not uploaded.
+ */
+public class ReportShardsPartitioner {
+
+    private static final String REPORT_FILE_EXTENSION = ".xml";
+
+    /**
+     * @return true if the agent treats the file as a report when it is found in a reports folder.
+     */
+    public static boolean isReportFile(String path) {
+        return path.toLowerCase().endsWith(REPORT_FILE_EXTENSION);
+    }
+
+    /**
+     * @return at most 'shardsCount' non empty shards, sorted from the biggest to the smallest.
+     */
+    public List<Shard> partition(List<Item> items, int shardsCount) {
+        if (shardsCount < 1) {
+            throw new IllegalArgumentException("shardsCount must be positive, got " + shardsCount);
+        }
+
+        List<Item> sortedItems = splitBigFolders(items, shardsCount);
+        Collections.sort(sortedItems, new Comparator<Item>() {
+            @Override
+            public int compare(Item first, Item second) {
+                return Long.compare(second.getSize(), first.getSize());
+            }
+        });
+
+        List<Shard> shards = new ArrayList<>();
+        for (int i = 0; i < Math.min(shardsCount, sortedItems.size()); i++) {
+            shards.add(new Shard());
+        }
+        for (Item item : sortedItems) {
+            Shard smallest = shards.get(0);
+            for (Shard shard : shards) {
+                if (shard.getTotalSize() < smallest.getTotalSize()) {
+                    smallest = shard;
+                }
+            }
+            smallest.add(item);
+        }
+
+        Collections.sort(shards, new Comparator<Shard>() {
+            @Override
+            public int compare(Shard first, Shard second) {
+                return Long.compare(second.getTotalSize(), first.getTotalSize());
+            }
+        });
+        return shards;
+    }
+
+    private List<Item> splitBigFolders(List<Item> items, int shardsCount) {
+        long totalSize = 0;
+        for (Item item : items) {
+            totalSize += item.getSize();
+        }
+        long shardSize = totalSize / shardsCount;
+
+        List<Item> splitItems = new ArrayList<>();
+        for (Item item : items) {
+            List<Item> reportFiles = getReportFiles(item);
+            if (item.isFolder() && item.getSize() > shardSize && !reportFiles.isEmpty()) {
+                splitItems.addAll(reportFiles);
+            } else {
+                splitItems.add(item);
+            }
+        }
+        return splitItems;
+    }
+
+    private static List<Item> getReportFiles(Item folder) {
+        List<Item> reportFiles = new ArrayList<>();
+        for (Item file : folder.getFiles()) {
+            if (isReportFile(file.getPath())) {
+                reportFiles.add(file);
+            }
+        }
+        return reportFiles;
+    }
+
+    /**
+     * A report file or a reports folder, with its size in bytes.
+     */
+    public static class Item implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String path;
+        private final boolean isFolder;
+        private final long size;
+        private final List<Item> files;
+
+        public Item(String path, boolean isFolder, long size) {
+            this(path, isFolder, size, Collections.<Item>emptyList());
+        }
+
+        /**
+         * @param files the files of a folder, whose report files may be uploaded separately instead of the whole folder.
+         *              Empty when the folder must be uploaded as a whole.
+         */
+        public Item(String path, boolean isFolder, long size, List<Item> files) {
+            this.path = path;
+            this.isFolder = isFolder;
+            this.size = size;
+            this.files = files;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public boolean isFolder() {
+            return isFolder;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public List<Item> getFiles() {
+            return files;
+        }
+    }
+
+    public static class Shard {
+        private final List<String> reportFiles = new ArrayList<>();
+        private final List<String> reportFilesFolders = new ArrayList<>();
+        private long totalSize = 0;
+
+        public void add(Item item) {
+            if (item.isFolder()) {
+                reportFilesFolders.add(item.getPath());
+            } else {
+                reportFiles.add(item.getPath());
+            }
+            totalSize += item.getSize();
+        }
+
+        public List<String> getReportFiles() {
+            return reportFiles;
+        }
+
+        public List<String> getReportFilesFolders() {
+            return reportFilesFolders;
+        }
+
+        public long getTotalSize() {
+            return totalSize;
+        }
+    }
+}
@@ -14,7 +14,7 @@ public class JarsHelper {
         OutputStream outputStream = null;
         try {
             outputStream = new FileOutputStream(targetFile);
-            byte[] buffer = new byte[1024];
+            byte[] buffer = new byte[64 * 1024];
             int len;
             while ((len = inputStream.read(buffer)) > 0) {
                 outputStream.write(buffer, 0, len);
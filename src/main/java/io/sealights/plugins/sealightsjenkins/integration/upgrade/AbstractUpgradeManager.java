@@ -9,17 +9,18 @@ import io.sealights.plugins.sealightsjenkins.utils.PathUtils;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.*;
-
-import static io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.ComponentName.BUILD_SCANNER_COMPONENT_NAME;
-import static io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.ComponentName.TEST_LISTENER_COMPONENT_NAME;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 public abstract class AbstractUpgradeManager {
 
     private UpgradeProxy upgradeProxy;
     protected UpgradeConfiguration upgradeConfiguration;
     protected final Logger logger;
-    private static final int VERSIONS_HISTORY_TO_SAVE_BESIDE_RECOMMENDED = 2;
+    private static final long DOWNLOAD_LOCK_TIMEOUT_MILLIS = 10 * 60 * 1000;
+    private static final long PARTIAL_DOWNLOAD_MAX_AGE_MILLIS = 7 * 24 * 60 * 60 * 1000L;
+    private static final String PARTIAL_DOWNLOADS_FOLDER_NAME = "downloads";
 
     public static final String SL_RELATIVE_CACHE_FOLDER = "sl-cache";
     public static final String MAVEN_PLUGIN_AGENTS_RELATIVE_CACHE_FOLDER = "maven-plugin";
@@ -38,8 +39,22 @@ public abstract class AbstractUpgradeManager {
      * @return the path to the JAR file
      */
     public String ensureLatestAgentPresentLocally() {
+        return ensureLatestAgentPresentLocally(null);
+    }
+
+    /**
+     * Same as {@link #ensureLatestAgentPresentLocally()}, but uses an already known recommended version
+     * (e.g. when several agents are resolved for the same build) instead of querying the server.
+     *
+     * @param knownUpgradeResponse the recommended version, or 'null' to query the server
+     * @return the path to the JAR file
+     */
+    public String ensureLatestAgentPresentLocally(UpgradeResponse knownUpgradeResponse) {
         try {
-            UpgradeResponse upgradeResponse = upgradeProxy.getRecommendedVersion("sealights-java");
+            UpgradeResponse upgradeResponse = knownUpgradeResponse;
+            if (upgradeResponse == null) {
+                upgradeResponse = upgradeProxy.getRecommendedVersion("sealights-java");
+            }
             if (!isValidResponse(upgradeResponse)) {
                 throw new Exception("Could not get latest version info from server. " +
                         "The response from the server has invalid fields.");
@@ -97,87 +112,6 @@ public abstract class AbstractUpgradeManager {
         return "sealights-java".equals(name);
     }
 
-    private void rearrangeJarsFolder(String jarsFolder) {
-        File folder = new File(jarsFolder);
-        File[] filesInFolder = folder.listFiles();
-        if (filesInFolder == null) {
-            logger.warning("Unable to rearrange the cache folder since 'filesInFolder' is null.");
-            return;
-        }
-        TreeMap<Version, List<File>> versions = createAgentsVersionsSortedMap(filesInFolder);
-        if (versions.size() > VERSIONS_HISTORY_TO_SAVE_BESIDE_RECOMMENDED) {
-            performJarsRearrangement(versions);
-        }
-    }
-
-    private void performJarsRearrangement(TreeMap<Version, List<File>> versions) {
-        versions = getVersionsToDelete(versions);
-        Iterator it = versions.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<Version, List<File>> pair = (Map.Entry<Version, List<File>>) it.next();
-            List<File> agentsToDelete = pair.getValue();
-            for (File agent : agentsToDelete)
-                tryDeleteFile(agent, "old agent");
-        }
-    }
-
-    private TreeMap<Version, List<File>> getVersionsToDelete(TreeMap<Version, List<File>> versions) {
-        for (int i = 0; i < VERSIONS_HISTORY_TO_SAVE_BESIDE_RECOMMENDED; i++) {
-            versions.remove(versions.lastKey());
-        }
-        return versions;
-    }
-
-    private TreeMap<Version, List<File>> createAgentsVersionsSortedMap(File[] filesInFolder) {
-        TreeMap<Version, List<File>> versionsTree = new TreeMap<>();
-        for (File f : filesInFolder) {
-
-            if (f == null || !f.isFile())
-                continue;
-
-            String filename = f.getName();
-            boolean isAgentJar = filename.startsWith("sl-") && filename.endsWith(".jar");
-            if (!isAgentJar)
-                continue;
-
-            String detectedVersion = detectVersionFromAgentFileName(filename);
-            if (!Version.isValidVersion(detectedVersion)) {
-                continue;
-            }
-            Version v = new Version(detectedVersion);
-            addAgentToVersionAgentTree(versionsTree, v, f);
-        }
-
-        return versionsTree;
-    }
-
-    private String detectVersionFromAgentFileName(String fileName) {
-        fileName = fileName.replace(BUILD_SCANNER_COMPONENT_NAME.toString() + "-", "");
-        fileName = fileName.replace(TEST_LISTENER_COMPONENT_NAME.toString() + "-", "");
-        return fileName.replace(".jar", "");
-    }
-
-    private void addAgentToVersionAgentTree(TreeMap<Version, List<File>> versionsTree, Version version, File agent) {
-        List<File> listToAdd = tryGetMatchingVersionInVersionAgentTree(versionsTree, version);
-
-        if (listToAdd != null) {
-            listToAdd.add(agent);
-        } else {
-            //create new version key
-            List<File> filesRelatedToVersion = new ArrayList<>();
-            filesRelatedToVersion.add(agent);
-            versionsTree.put(version, filesRelatedToVersion);
-        }
-    }
-
-    private List<File> tryGetMatchingVersionInVersionAgentTree(TreeMap<Version, List<File>> versionsTree, Version version) {
-        for (Version v : versionsTree.keySet()) {
-            if (v.equals(version))
-                return versionsTree.get(v);
-        }
-        return null;
-    }
-
     /**
      * Based on (@link upgradeResponse), checks if the file exists. If it doesn't, it downloads the file.
      *
@@ -195,16 +129,19 @@ public abstract class AbstractUpgradeManager {
         logger.info("Checking if agent '" + getComponentName()
                 + " with version '" + recommendedVersion + "' exists in files storage.");
 
-        jarFile = tryGetRecommendedAgentFromFolder(jarsFolder, recommendedVersion);
+        AgentStore store = new AgentStore(jarsFolder, logger);
+        jarFile = tryGetRecommendedAgentFromFolder(store, recommendedVersion);
         if (jarFile != null) {
+            AgentCacheManager.getInstance().recordHit();
             logger.info("Found '" + getComponentName()
                     + "' with version '" + recommendedVersion + "' in '" + jarFile + "'.");
             return jarFile;
         }
 
+        AgentCacheManager.getInstance().recordMiss();
         logger.info("Trying to get agent '" + getComponentName()
                 + "' with version '" + recommendedVersion + "' from remote storage.");
-        jarFile = tryGetRecommendedAgentFromServer(jarsFolder, upgradeResponse);
+        jarFile = tryGetRecommendedAgentFromServer(jarsFolder, store, upgradeResponse);
         if (jarFile != null) {
             logger.info("'" + getComponentName() + "' with version '" + recommendedVersion + "' has been downloaded to '" + jarFile + "'.");
             return jarFile;
@@ -213,7 +150,8 @@ public abstract class AbstractUpgradeManager {
         throw new RuntimeException("Could not download latest agent version.");
     }
 
-    protected String tryGetRecommendedAgentFromServer(String jarsFolder, UpgradeResponse upgradeResponse) throws IOException {
+    protected String tryGetRecommendedAgentFromServer(String jarsFolder, AgentStore store, UpgradeResponse upgradeResponse)
+            throws IOException {
 
         AgentInfo agentInfo = upgradeResponse.getAgent();
         if (agentInfo == null) {
@@ -222,64 +160,129 @@ public abstract class AbstractUpgradeManager {
             return null;
         }
         String version = agentInfo.getVersion();
-        String url = agentInfo.getUrl();
-        String zipFilePath = getAgentsTargetZipFilePath(jarsFolder);
+        String lockName = getFileToDownloadName() + "-" + version;
+
+        // Concurrent builds (and other processes sharing the folder) download each version once.
+        File folder = new File(jarsFolder);
+        if (AgentDownloadLock.isLockedByOtherBuild(folder, lockName)) {
+            logger.info("Another build is downloading version '" + version + "', waiting for it to finish.");
+        }
+        try (AgentDownloadLock ignored = AgentDownloadLock.acquire(folder, lockName, DOWNLOAD_LOCK_TIMEOUT_MILLIS)) {
+            File downloadedAgent = store.find(getAgentJarName(version));
+            if (downloadedAgent != null) {
+                logger.info("'" + getComponentName() + "' with version '" + version + "' was downloaded by another build.");
+                return downloadedAgent.getAbsolutePath();
+            }
+            return downloadAndPublishAgent(jarsFolder, store, agentInfo);
+        }
+    }
 
-        // try to download the agent to the target zip file.
-        logger.info("Trying to upgrade to version '" + version + "' from url '" + url + "'.");
-        if (!upgradeProxy.downloadAgent(url, zipFilePath)) {
-            logger.warning("Failed to download agent with version '" + version + "'.");
-        } else {
+    /*
+    * Downloads and unzips the agents into a unique temp folder (in one pass), then publishes the jars into the agents store, which
+    * verifies them and moves them in with an atomic rename, so other builds never see a partially written jar.
+    * */
+    private String downloadAndPublishAgent(String jarsFolder, AgentStore store, AgentInfo agentInfo) throws IOException {
+        String version = agentInfo.getVersion();
+        String url = agentInfo.getUrl();
+        File tempFolder = Files.createTempDirectory(Paths.get(jarsFolder), "." + getFileToDownloadName() + "-download-").toFile();
+        try {
+            // the zip is extracted while it is downloaded (the received bytes are kept only to resume an interrupted download).
+            final File extractedFolder = new File(tempFolder, "extracted");
+            final ArchiveUtils archiveUtils = new ArchiveUtils(logger);
+            UpgradeProxy.DownloadHandler unzipHandler = new UpgradeProxy.DownloadHandler() {
+                @Override
+                public void handle(InputStream responseStream) throws IOException {
+                    archiveUtils.unzip(responseStream, extractedFolder);
+                }
+            };
+            boolean isDownloaded = upgradeProxy.downloadAgentFromMirror(getFileToDownloadName(), version, unzipHandler);
+            if (!isDownloaded) {
+                // A failed mirror may have left some extracted files behind.
+                if (extractedFolder.exists()) {
+                    tryDeleteFolder(extractedFolder);
+                }
+                logger.info("Trying to upgrade to version '" + version + "' from url '" + url + "'.");
+                isDownloaded = upgradeProxy.downloadAgent(url, getPartialDownloadFile(jarsFolder, version), unzipHandler);
+            }
+            if (!isDownloaded) {
+                logger.warning("Failed to download agent with version '" + version + "'.");
+                return null;
+            }
             logger.info("Download completed successfully.");
-            rearrangeJarsFolder(jarsFolder);
 
-            // try to unzip the downloaded agent.
-            ArchiveUtils archiveUtils = new ArchiveUtils(logger);
-            archiveUtils.unzip(zipFilePath, jarsFolder);
-            tryDeleteDownloadedZip(zipFilePath);
+            publishJars(extractedFolder, store);
+            AgentCacheManager.getInstance().scheduleEviction(jarsFolder);
 
-            File newAgent = getDownloadedAgent(jarsFolder, version);
-            if (newAgent.isFile())
+            File newAgent = store.find(getAgentJarName(version));
+            if (newAgent != null)
                 return newAgent.getAbsolutePath();
 
             logger.warning("Failed to unzip agent with version '" + version + "'.");
+            return null;
+        } finally {
+            tryDeleteFolder(tempFolder);
         }
-        return null;
     }
 
-    private String tryGetRecommendedAgentFromFolder(String jarsFolder, String recommendedVersion) {
-        String jarNameToFind = getComponentNameDash() + recommendedVersion + ".jar";
-        File recommendedAgent = FileAndFolderUtils.findFileInFolder(jarsFolder, jarNameToFind);
+    private void publishJars(File extractedFolder, AgentStore store) throws IOException {
+        File[] extractedFiles = extractedFolder.listFiles();
+        if (extractedFiles == null) {
+            return;
+        }
+        for (File extractedFile : extractedFiles) {
+            String fileName = extractedFile.getName();
+            if (extractedFile.isFile() && fileName.startsWith("sl-") && fileName.endsWith(".jar")) {
+                store.publish(extractedFile);
+            }
+        }
+    }
+
+    private void tryDeleteFolder(File folder) {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    tryDeleteFolder(file);
+                } else {
+                    tryDeleteFile(file, "temporary download file");
+                }
+            }
+        }
+        tryDeleteFile(folder, "temporary download folder");
+    }
 
+    private String tryGetRecommendedAgentFromFolder(AgentStore store, String recommendedVersion) throws IOException {
+        String jarNameToFind = getAgentJarName(recommendedVersion);
+        File recommendedAgent = store.find(jarNameToFind);
         if (recommendedAgent == null) {
-            logger.info("Didn't find the recommended agent '" + jarNameToFind
-                    + "' in folder '" + jarsFolder + "'.");
-            return null;
+            // Agents cached by older plugin versions are kept directly in the cache folder.
+            store.importLegacyJars();
+            recommendedAgent = store.find(jarNameToFind);
         }
-        if (!recommendedAgent.isFile()) {
-            logger.warning("Didn't find the recommended agent '"
-                    + recommendedAgent.getAbsolutePath() + "' in file system or it is not a valid file.");
+
+        if (recommendedAgent == null) {
+            logger.info("Didn't find the recommended agent '" + jarNameToFind + "' in the agents store.");
             return null;
         }
 
         return recommendedAgent.getAbsolutePath();
     }
 
-    private void tryDeleteDownloadedZip(String zipFilePath) {
-        File zipFileToDelete = new File(zipFilePath);
-        tryDeleteFile(zipFileToDelete, "agent zip file");
-    }
-
-    private String getAgentsTargetZipFilePath(String jarsFolder) {
-        String fileName = getFileToDownloadName() + ".zip";
-        return PathUtils.join(jarsFolder, fileName);
+    /*
+    * Interrupted downloads are kept in the cache (under the download lock of the version), so the next attempt or
+    * build can resume them.
+    * */
+    private File getPartialDownloadFile(String jarsFolder, String version) throws IOException {
+        File folder = new File(jarsFolder, PARTIAL_DOWNLOADS_FOLDER_NAME);
+        if (!folder.isDirectory() && !folder.mkdirs() && !folder.isDirectory()) {
+            throw new IOException("Unable to create the folder '" + folder + "'.");
+        }
+        ResumableDownload.deleteStalePartialDownloads(folder, PARTIAL_DOWNLOAD_MAX_AGE_MILLIS);
+        return new File(folder, getFileToDownloadName() + "-" + new Version(version).get() + ".zip" + ResumableDownload.PART_SUFFIX);
     }
 
-    private File getDownloadedAgent(String jarsFolder, String version) {
-        Version recommendedVersion = new Version(version);
-        String newAgentName = getComponentNameDash() + recommendedVersion.get() + ".jar";
-        String pathToNewAgent = PathUtils.join(jarsFolder, newAgentName);
-        return new File(pathToNewAgent);
+    private String getAgentJarName(String version) {
+        return getComponentNameDash() + new Version(version).get() + ".jar";
     }
 
     private void tryDeleteFile(File oldAgent, String descriptor) {
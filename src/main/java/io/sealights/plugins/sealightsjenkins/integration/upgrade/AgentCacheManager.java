@@ -0,0 +1,204 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade;
+
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.AgentStoreEntry;
+import io.sealights.plugins.sealightsjenkins.utils.NullLogger;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Keeps the agents store (see {@link AgentStore}) within a size budget.
+ * <p>
+ * The least recently used jars are evicted when the store is larger than the budget (1GB by default, configured in
+ * the global configuration), and jars that were not used for 'sl.agentCache.maxIdleDays' (30 by default) are evicted
+ * anyway. Builds pin the jars they run, so a jar is never evicted while in use. Eviction runs in the background,
+ * after a new agent was published. The copies of the jars on the build nodes are kept within the same budget, see
+ * NodeAgentJarCache.
+ */
+public class AgentCacheManager {
+
+    public static final String MAX_IDLE_DAYS_PROPERTY = "sl.agentCache.maxIdleDays";
+    public static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+    private static final int DEFAULT_MAX_IDLE_DAYS = 30;
+
+    private static final java.util.logging.Logger LOGGER = java.util.logging.Logger.getLogger(AgentCacheManager.class.getName());
+    private static final AgentCacheManager instance = new AgentCacheManager(
+            Integer.getInteger(MAX_IDLE_DAYS_PROPERTY, DEFAULT_MAX_IDLE_DAYS) * 24 * 60 * 60 * 1000L);
+
+    private final long maxIdleMillis;
+    private volatile long maxBytes = DEFAULT_MAX_BYTES;
+    // Pin counts, by jar path.
+    private final ConcurrentHashMap<String, AtomicLong> pins = new ConcurrentHashMap<>();
+    private final Set<String> pendingEvictions = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final ExecutorService evictionExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "SeaLights agent cache eviction");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong evictedBytes = new AtomicLong();
+
+    AgentCacheManager(long maxIdleMillis) {
+        this.maxIdleMillis = maxIdleMillis;
+    }
+
+    public static AgentCacheManager getInstance() {
+        return instance;
+    }
+
+    /**
+     * Keeps the given jar in the store until the returned pin is closed.
+     */
+    public Pin pin(String jarPath) {
+        final String key = new File(jarPath).getAbsolutePath();
+        while (true) {
+            AtomicLong count = pins.get(key);
+            if (count == null) {
+                count = pins.putIfAbsent(key, new AtomicLong(1));
+                if (count == null) {
+                    break;
+                }
+            }
+            long current = count.get();
+            // A count of zero is being removed, so try again with a new one.
+            if (current > 0 && count.compareAndSet(current, current + 1)) {
+                break;
+            }
+        }
+        return new Pin(key);
+    }
+
+    public boolean isPinned(String jarPath) {
+        AtomicLong count = pins.get(new File(jarPath).getAbsolutePath());
+        return count != null && count.get() > 0;
+    }
+
+    /**
+     * Evicts the store of the given cache folder in the background. Requests for a folder that is already waiting to
+     * be evicted are ignored.
+     */
+    public void scheduleEviction(final String jarsFolder) {
+        if (!pendingEvictions.add(jarsFolder)) {
+            return;
+        }
+        evictionExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                pendingEvictions.remove(jarsFolder);
+                try {
+                    List<AgentStoreEntry> evicted = evictNow(new AgentStore(jarsFolder, new NullLogger()));
+                    if (!evicted.isEmpty()) {
+                        LOGGER.info("Evicted " + evicted.size() + " agents from '" + jarsFolder + "'.");
+                    }
+                } catch (Exception e) {
+                    LOGGER.log(Level.WARNING, "Failed to evict the agents store of '" + jarsFolder + "'.", e);
+                }
+            }
+        });
+    }
+
+    public List<AgentStoreEntry> evictNow(AgentStore store) throws IOException {
+        List<AgentStoreEntry> evicted = store.evict(maxBytes, maxIdleMillis, getPinnedJars());
+        for (AgentStoreEntry entry : evicted) {
+            evictions.incrementAndGet();
+            evictedBytes.addAndGet(entry.getSize());
+        }
+        return evicted;
+    }
+
+    public void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @param maxBytes the size budget of the store, or a negative value for no budget.
+     */
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the time after which an unused jar is evicted.
+     */
+    public long getMaxIdleMillis() {
+        return maxIdleMillis;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getEvictedBytes() {
+        return evictedBytes.get();
+    }
+
+    private Set<String> getPinnedJars() {
+        Set<String> pinnedJars = new HashSet<>();
+        for (String jarPath : pins.keySet()) {
+            if (isPinned(jarPath)) {
+                pinnedJars.add(jarPath);
+            }
+        }
+        return pinnedJars;
+    }
+
+    private void unpin(String key) {
+        AtomicLong count = pins.get(key);
+        if (count != null && count.decrementAndGet() == 0) {
+            pins.remove(key, count);
+        }
+    }
+
+    /**
+     * A jar that is in use. Closing the pin more than once has no effect.
+     */
+    public class Pin implements Closeable {
+        private final String jarPath;
+        private boolean closed;
+
+        private Pin(String jarPath) {
+            this.jarPath = jarPath;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                unpin(jarPath);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Makes sure a single build downloads a given agent version into a cache folder at a time, both within this JVM
+ * (using an in-memory lock) and across processes sharing the folder (using a file lock).
+ */
+public class AgentDownloadLock implements Closeable {
+
+    private static final long POLL_MILLIS = 200;
+    private static final ConcurrentMap<String, ReentrantLock> jvmLocks = new ConcurrentHashMap<>();
+
+    private final ReentrantLock jvmLock;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+
+    private AgentDownloadLock(ReentrantLock jvmLock, FileChannel channel, FileLock fileLock) {
+        this.jvmLock = jvmLock;
+        this.channel = channel;
+        this.fileLock = fileLock;
+    }
+
+    /**
+     * Waits until no other build downloads the given name into the folder.
+     *
+     * @throws IOException if the lock was not acquired within the timeout.
+     */
+    public static AgentDownloadLock acquire(File folder, String name, long timeoutMillis) throws IOException {
+        File lockFile = new File(folder, "." + name + ".lock");
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        ReentrantLock jvmLock = getJvmLock(lockFile);
+        try {
+            if (!jvmLock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Timed out waiting for another build to download '" + name + "'.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for another build to download '" + name + "'.");
+        }
+
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock fileLock = channel.tryLock();
+            while (fileLock == null) {
+                if (System.currentTimeMillis() >= deadline) {
+                    throw new IOException("Timed out waiting for another process to download '" + name + "'.");
+                }
+                Thread.sleep(POLL_MILLIS);
+                fileLock = channel.tryLock();
+            }
+            return new AgentDownloadLock(jvmLock, channel, fileLock);
+        } catch (InterruptedException e) {
+            closeQuietly(channel);
+            jvmLock.unlock();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for another process to download '" + name + "'.");
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(channel);
+            jvmLock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * @return true if another build of this JVM holds the lock right now (so the caller is going to wait).
+     */
+    public static boolean isLockedByOtherBuild(File folder, String name) {
+        ReentrantLock jvmLock = jvmLocks.get(new File(folder, "." + name + ".lock").getAbsolutePath());
+        return jvmLock != null && jvmLock.isLocked() && !jvmLock.isHeldByCurrentThread();
+    }
+
+    @Override
+    public void close() {
+        try {
+            fileLock.release();
+        } catch (IOException e) {
+            // Released when the channel is closed anyway.
+        } finally {
+            closeQuietly(channel);
+            jvmLock.unlock();
+        }
+    }
+
+    private static ReentrantLock getJvmLock(File lockFile) {
+        String key = lockFile.getAbsolutePath();
+        ReentrantLock lock = jvmLocks.get(key);
+        if (lock == null) {
+            ReentrantLock newLock = new ReentrantLock(true);
+            lock = jvmLocks.putIfAbsent(key, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing to do.
+        }
+    }
+}
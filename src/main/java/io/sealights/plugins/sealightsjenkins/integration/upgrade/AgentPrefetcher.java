@@ -0,0 +1,96 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade;
+
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.AgentPrefetchTarget;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.UpgradeConfiguration;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.UpgradeResponse;
+import io.sealights.plugins.sealightsjenkins.utils.Logger;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Resolves the recommended versions of the given targets ahead of time, and downloads the agents into the files
+ * storage, so the next build finds them in the caches.
+ */
+public class AgentPrefetcher {
+
+    public static final String SEALIGHTS_JAVA_COMPONENT = "sealights-java";
+    public static final String MAVEN_PLUGIN_COMPONENT = "sl-maven-plugin";
+
+    private final Logger logger;
+    private final Set<File> prefetchedAgents = new LinkedHashSet<>();
+
+    public AgentPrefetcher(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * @return the number of targets that were prefetched successfully.
+     */
+    public int prefetch(Collection<AgentPrefetchTarget> targets) {
+        // The versions of all the targets are requested at the same time, and the agents are then downloaded one by one.
+        Map<AgentPrefetchTarget, UpgradeProxy> proxies = new LinkedHashMap<>();
+        Map<AgentPrefetchTarget, Future<UpgradeResponse>> versions = new LinkedHashMap<>();
+        for (AgentPrefetchTarget target : targets) {
+            UpgradeProxy upgradeProxy = new UpgradeProxy(target.toUpgradeConfiguration(), logger);
+            proxies.put(target, upgradeProxy);
+            versions.put(target, upgradeProxy.getRecommendedVersionAsync(target.getComponentName()));
+        }
+
+        int succeeded = 0;
+        try {
+            for (Map.Entry<AgentPrefetchTarget, Future<UpgradeResponse>> version : versions.entrySet()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                try {
+                    prefetch(version.getKey(), proxies.get(version.getKey()), version.getValue());
+                    succeeded++;
+                } catch (Exception e) {
+                    logger.warning("Failed to prefetch " + version.getKey() + ". Error: " + e.getMessage());
+                }
+            }
+        } finally {
+            for (Future<UpgradeResponse> version : versions.values()) {
+                version.cancel(true);
+            }
+        }
+        return succeeded;
+    }
+
+    public void prefetch(AgentPrefetchTarget target) throws Exception {
+        UpgradeProxy upgradeProxy = new UpgradeProxy(target.toUpgradeConfiguration(), logger);
+        prefetch(target, upgradeProxy, upgradeProxy.getRecommendedVersionAsync(target.getComponentName()));
+    }
+
+    private void prefetch(AgentPrefetchTarget target, UpgradeProxy upgradeProxy, Future<UpgradeResponse> version) throws Exception {
+        logger.info("Prefetching " + target + ".");
+        UpgradeConfiguration upgradeConfiguration = upgradeProxy.upgradeConfiguration;
+        UpgradeResponse upgradeResponse;
+        try {
+            upgradeResponse = version.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+        if (SEALIGHTS_JAVA_COMPONENT.equals(target.getComponentName())) {
+            // Both agents are in the same archive, so the second call finds its agent in the store.
+            prefetchedAgents.add(new File(new TestListenerUpgradeManager(upgradeProxy, upgradeConfiguration, logger)
+                    .ensureLatestAgentPresentLocally(upgradeResponse)));
+            prefetchedAgents.add(new File(new BuildScannerUpgradeManager(upgradeProxy, upgradeConfiguration, logger)
+                    .ensureLatestAgentPresentLocally(upgradeResponse)));
+        }
+    }
+
+    /**
+     * @return the agent jars that were prefetched so far.
+     */
+    public Set<File> getPrefetchedAgents() {
+        return prefetchedAgents;
+    }
+}
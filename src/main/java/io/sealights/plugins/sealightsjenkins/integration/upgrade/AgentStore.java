@@ -0,0 +1,415 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade;
+
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.AgentStoreEntry;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.AgentStoreIndex;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.ComponentName;
+import io.sealights.plugins.sealightsjenkins.utils.ChecksumUtils;
+import io.sealights.plugins.sealightsjenkins.utils.JsonSerializer;
+import io.sealights.plugins.sealightsjenkins.utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.ZipFile;
+
+/**
+ * A content-addressed store of agent jars.
+ * <p>
+ * Each jar is kept in 'store/&lt;sha256&gt;/&lt;jar name&gt;' under the agents cache folder, and 'store/index.json'
+ * maps the jar name (component and version) to its digest, so a lookup does not list the cache folder.
+ * Jars are verified when they are published, and a jar that does not match its index entry (e.g. truncated by a
+ * crashed build) is removed from the store, so it is downloaded again.
+ * <p>
+ * Lookups are tracked in memory and written to the index when the store is evicted (see {@link AgentCacheManager}).
+ */
+public class AgentStore {
+
+    public static final String STORE_FOLDER_NAME = "store";
+    public static final String INDEX_FILE_NAME = "index.json";
+    private static final String INDEX_LOCK_NAME = "index";
+    private static final long INDEX_LOCK_TIMEOUT_MILLIS = 60 * 1000;
+    // Jars used this recently are never evicted, so a jar is not removed between its lookup and its use.
+    private static final long DEFAULT_EVICTION_GRACE_MILLIS = 10 * 60 * 1000;
+
+    // Copies of the parsed index files, by path. Reloaded when the file changes.
+    private static final ConcurrentMap<String, CachedIndex> indexCache = new ConcurrentHashMap<>();
+    // Jars whose digest was already verified by this JVM.
+    private static final Set<String> verifiedJars = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    // Last lookup time of each jar, by jar path. Kept in memory so a lookup does not write the index.
+    private static final ConcurrentMap<String, Long> accessTimes = new ConcurrentHashMap<>();
+
+    private final File jarsFolder;
+    private final File storeFolder;
+    private final File indexFile;
+    private final Logger logger;
+    private final long evictionGraceMillis;
+
+    public AgentStore(String jarsFolder, Logger logger) {
+        this(jarsFolder, logger, DEFAULT_EVICTION_GRACE_MILLIS);
+    }
+
+    AgentStore(String jarsFolder, Logger logger, long evictionGraceMillis) {
+        this.evictionGraceMillis = evictionGraceMillis;
+        this.jarsFolder = new File(jarsFolder);
+        this.storeFolder = new File(this.jarsFolder, STORE_FOLDER_NAME);
+        this.indexFile = new File(storeFolder, INDEX_FILE_NAME);
+        this.logger = logger;
+    }
+
+    /**
+     * @return the jar with the given name, or null if the store does not have it (or it was corrupt).
+     */
+    public File find(String jarName) throws IOException {
+        AgentStoreEntry entry = readIndex().getEntries().get(jarName);
+        if (entry == null) {
+            return null;
+        }
+        File jar = getJarFile(entry);
+        if (isIntact(entry, jar)) {
+            accessTimes.put(jar.getAbsolutePath(), System.currentTimeMillis());
+            return jar;
+        }
+        logger.warning("The cached agent '" + jar.getAbsolutePath() + "' is missing or corrupt, removing it from the cache.");
+        remove(jarName);
+        return null;
+    }
+
+    /**
+     * Moves the given jar into the store and adds it to the index.
+     *
+     * @return the jar in the store.
+     * @throws IOException if the jar is not a valid archive.
+     */
+    public File publish(File jar) throws IOException {
+        verifyArchive(jar);
+        String digest = ChecksumUtils.sha256(jar);
+        long size = jar.length();
+        File target = new File(new File(storeFolder, digest), jar.getName());
+        if (target.isFile() && target.length() == size) {
+            // Same content was already published.
+            Files.delete(jar.toPath());
+        } else {
+            if (!target.getParentFile().isDirectory() && !target.getParentFile().mkdirs()) {
+                throw new IOException("Unable to create the folder '" + target.getParent() + "'.");
+            }
+            moveAtomically(jar, target);
+        }
+        verifiedJars.add(getVerificationKey(target));
+
+        final AgentStoreEntry entry = new AgentStoreEntry(jar.getName(), parseComponentName(jar.getName()),
+                parseVersion(jar.getName()), digest, size, System.currentTimeMillis());
+        updateIndex(new IndexUpdate() {
+            @Override
+            public void apply(Map<String, AgentStoreEntry> entries) {
+                entries.put(entry.getFileName(), entry);
+            }
+        });
+        return target;
+    }
+
+    public void remove(final String jarName) throws IOException {
+        updateIndex(new IndexUpdate() {
+            @Override
+            public void apply(Map<String, AgentStoreEntry> entries) {
+                entries.remove(jarName);
+            }
+        });
+    }
+
+    /**
+     * Publishes the jars of the previous (flat) cache layout, which are kept directly in the cache folder.
+     */
+    public void importLegacyJars() throws IOException {
+        File[] files = jarsFolder.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (!file.isFile() || !name.startsWith("sl-") || !name.endsWith(".jar")) {
+                continue;
+            }
+            if (find(name) != null) {
+                Files.delete(file.toPath());
+                continue;
+            }
+            try {
+                publish(file);
+                logger.info("Moved the cached agent '" + name + "' into the agents store.");
+            } catch (IOException e) {
+                logger.warning("Deleting the invalid cached agent '" + file.getAbsolutePath() + "'. Error: " + e.getMessage());
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used jars from the store until it fits the given size, and the jars that were not
+     * used for longer than the given time. Pinned jars and jars that were used in the last few minutes are kept.
+     * The size of a jar includes the rest of its store folder, e.g. the class data sharing archives created next to
+     * it, which are removed with it.
+     *
+     * @param maxBytes      the size budget of the store, or a negative value for no budget
+     * @param maxIdleMillis the time after which an unused jar is removed, or a negative value to keep it
+     * @param pinnedJars    the absolute paths of jars that are in use
+     * @return the removed entries.
+     */
+    public List<AgentStoreEntry> evict(final long maxBytes, final long maxIdleMillis, final Set<String> pinnedJars)
+            throws IOException {
+        final List<AgentStoreEntry> evicted = new ArrayList<>();
+        final long now = System.currentTimeMillis();
+        updateIndex(new IndexUpdate() {
+            @Override
+            public void apply(Map<String, AgentStoreEntry> entries) {
+                long totalBytes = 0;
+                Map<String, Long> diskSizes = new HashMap<>();
+                List<AgentStoreEntry> candidates = new ArrayList<>();
+                for (AgentStoreEntry entry : entries.values()) {
+                    Long accessTime = accessTimes.get(getJarFile(entry).getAbsolutePath());
+                    if (accessTime != null && accessTime > entry.getLastAccessTime()) {
+                        entry.setLastAccessTime(accessTime);
+                    }
+                    long diskSize = Math.max(entry.getSize(), getTotalSize(getJarFile(entry).getParentFile()));
+                    diskSizes.put(entry.getFileName(), diskSize);
+                    totalBytes += diskSize;
+                    if (!pinnedJars.contains(getJarFile(entry).getAbsolutePath())
+                            && now - getLastUseTime(entry) > evictionGraceMillis) {
+                        candidates.add(entry);
+                    }
+                }
+                Collections.sort(candidates, new Comparator<AgentStoreEntry>() {
+                    @Override
+                    public int compare(AgentStoreEntry first, AgentStoreEntry second) {
+                        return Long.compare(getLastUseTime(first), getLastUseTime(second));
+                    }
+                });
+
+                for (AgentStoreEntry entry : candidates) {
+                    boolean overBudget = maxBytes >= 0 && totalBytes > maxBytes;
+                    boolean idle = maxIdleMillis >= 0 && now - getLastUseTime(entry) > maxIdleMillis;
+                    if (!overBudget && !idle) {
+                        continue;
+                    }
+                    long diskSize = diskSizes.get(entry.getFileName());
+                    logger.info("Evicting the agent '" + entry.getFileName() + "' (" + diskSize
+                            + " bytes) from the agents store.");
+                    entries.remove(entry.getFileName());
+                    accessTimes.remove(getJarFile(entry).getAbsolutePath());
+                    totalBytes -= diskSize;
+                    evicted.add(entry);
+                }
+            }
+        });
+        return evicted;
+    }
+
+    public List<AgentStoreEntry> getEntries() throws IOException {
+        return new ArrayList<>(readIndex().getEntries().values());
+    }
+
+    public File getJarFile(AgentStoreEntry entry) {
+        return new File(new File(storeFolder, entry.getDigest()), entry.getFileName());
+    }
+
+    private interface IndexUpdate {
+        void apply(Map<String, AgentStoreEntry> entries);
+    }
+
+    /*
+    * Read-modify-write of the index under a lock shared with other processes. Store folders that are not referenced
+    * by the index anymore are deleted.
+    * */
+    private void updateIndex(IndexUpdate update) throws IOException {
+        if (!storeFolder.isDirectory() && !storeFolder.mkdirs() && !storeFolder.isDirectory()) {
+            throw new IOException("Unable to create the folder '" + storeFolder + "'.");
+        }
+        try (AgentDownloadLock ignored = AgentDownloadLock.acquire(storeFolder, INDEX_LOCK_NAME, INDEX_LOCK_TIMEOUT_MILLIS)) {
+            AgentStoreIndex index = loadIndex();
+            update.apply(index.getEntries());
+            writeIndex(index);
+            deleteUnreferencedFolders(index);
+        }
+    }
+
+    /*
+    * Returns a copy of the index, from the memory while the file did not change. Otherwise the file is re-read
+    * under the index lock, so it is not read while another process replaces it.
+    * */
+    private AgentStoreIndex readIndex() throws IOException {
+        CachedIndex cached = indexCache.get(indexFile.getAbsolutePath());
+        if (cached != null && cached.isUpToDate(indexFile)) {
+            return cached.index.copy();
+        }
+        if (!indexFile.isFile()) {
+            return new AgentStoreIndex();
+        }
+        try (AgentDownloadLock ignored = AgentDownloadLock.acquire(storeFolder, INDEX_LOCK_NAME, INDEX_LOCK_TIMEOUT_MILLIS)) {
+            return loadIndex();
+        }
+    }
+
+    /*
+    * Must be called under the index lock.
+    * */
+    private AgentStoreIndex loadIndex() throws IOException {
+        if (!indexFile.isFile()) {
+            return new AgentStoreIndex();
+        }
+        BasicFileAttributes attributes = Files.readAttributes(indexFile.toPath(), BasicFileAttributes.class);
+        AgentStoreIndex index;
+        try {
+            index = JsonSerializer.deserialize(new String(Files.readAllBytes(indexFile.toPath()), "UTF-8"), AgentStoreIndex.class);
+        } catch (RuntimeException e) {
+            logger.warning("The agents store index '" + indexFile + "' is corrupt, starting a new one. Error: " + e.getMessage());
+            return new AgentStoreIndex();
+        }
+        indexCache.put(indexFile.getAbsolutePath(), new CachedIndex(index.copy(), attributes));
+        return index;
+    }
+
+    private void writeIndex(AgentStoreIndex index) throws IOException {
+        File tempFile = File.createTempFile(INDEX_FILE_NAME, ".tmp", storeFolder);
+        Files.write(tempFile.toPath(), JsonSerializer.serialize(index, true).getBytes("UTF-8"));
+        moveAtomically(tempFile, indexFile);
+        BasicFileAttributes attributes = Files.readAttributes(indexFile.toPath(), BasicFileAttributes.class);
+        indexCache.put(indexFile.getAbsolutePath(), new CachedIndex(index.copy(), attributes));
+    }
+
+    private void deleteUnreferencedFolders(AgentStoreIndex index) {
+        Set<String> referencedDigests = new HashSet<>();
+        for (AgentStoreEntry entry : index.getEntries().values()) {
+            referencedDigests.add(entry.getDigest());
+        }
+        File[] folders = storeFolder.listFiles();
+        if (folders == null) {
+            return;
+        }
+        for (File folder : folders) {
+            if (folder.isDirectory() && !referencedDigests.contains(folder.getName())) {
+                deleteRecursively(folder);
+            }
+        }
+    }
+
+    private boolean isIntact(AgentStoreEntry entry, File jar) throws IOException {
+        if (!jar.isFile() || jar.length() != entry.getSize()) {
+            return false;
+        }
+        String verificationKey = getVerificationKey(jar);
+        if (verifiedJars.contains(verificationKey)) {
+            return true;
+        }
+        if (!entry.getDigest().equals(ChecksumUtils.sha256(jar))) {
+            return false;
+        }
+        verifiedJars.add(verificationKey);
+        return true;
+    }
+
+    private static long getLastUseTime(AgentStoreEntry entry) {
+        return Math.max(entry.getLastAccessTime(), entry.getPublishTime());
+    }
+
+    private static String getVerificationKey(File jar) {
+        return jar.getAbsolutePath() + "|" + jar.length() + "|" + jar.lastModified();
+    }
+
+    private static void verifyArchive(File jar) throws IOException {
+        try (ZipFile ignored = new ZipFile(jar)) {
+            // Opening reads the central directory at the end of the file, which a truncated jar does not have.
+        } catch (IOException e) {
+            throw new IOException("'" + jar.getName() + "' is not a valid jar: " + e.getMessage(), e);
+        }
+    }
+
+    private static String parseComponentName(String jarName) {
+        for (ComponentName componentName : ComponentName.values()) {
+            if (jarName.startsWith(componentName.toString() + "-")) {
+                return componentName.toString();
+            }
+        }
+        int versionSeparatorIndex = jarName.lastIndexOf('-');
+        return versionSeparatorIndex < 0 ? jarName : jarName.substring(0, versionSeparatorIndex);
+    }
+
+    private static String parseVersion(String jarName) {
+        String name = jarName.endsWith(".jar") ? jarName.substring(0, jarName.length() - ".jar".length()) : jarName;
+        String componentName = parseComponentName(jarName);
+        return name.length() > componentName.length() ? name.substring(componentName.length() + 1) : "0";
+    }
+
+    private static void moveAtomically(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static long getTotalSize(File file) {
+        if (file.isFile()) {
+            return file.length();
+        }
+        long size = 0;
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                size += getTotalSize(child);
+            }
+        }
+        return size;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    /*
+    * The index is always replaced by moving a new file over it, so besides the modification time and the size, the
+    * file key (the inode, where the file system has one) changes on each write, even within the same second.
+    * */
+    private static class CachedIndex {
+        private final AgentStoreIndex index;
+        private final FileTime lastModified;
+        private final long length;
+        private final Object fileKey;
+
+        CachedIndex(AgentStoreIndex index, BasicFileAttributes attributes) {
+            this.index = index;
+            this.lastModified = attributes.lastModifiedTime();
+            this.length = attributes.size();
+            this.fileKey = attributes.fileKey();
+        }
+
+        boolean isUpToDate(File indexFile) {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(indexFile.toPath(), BasicFileAttributes.class);
+            } catch (IOException e) {
+                return false;
+            }
+            return attributes.lastModifiedTime().equals(lastModified) && attributes.size() == length
+                    && (fileKey == null ? attributes.fileKey() == null : fileKey.equals(attributes.fileKey()));
+        }
+    }
+}
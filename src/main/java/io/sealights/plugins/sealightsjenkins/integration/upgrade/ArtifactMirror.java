@@ -0,0 +1,21 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade;
+
+import java.io.IOException;
+
+/**
+ * A local copy of the agent archives (e.g. a shared folder or an http server on the LAN), which is checked before
+ * the agents are downloaded from the SeaLights server. See {@link ArtifactMirrors}.
+ * <p>
+ * The archive of each version is kept in '&lt;component&gt;/&lt;version&gt;/&lt;component&gt;-&lt;version&gt;.zip'.
+ */
+public interface ArtifactMirror {
+
+    /**
+     * Passes the archive of the given version to the handler.
+     *
+     * @return false if the mirror does not have the archive.
+     */
+    boolean fetch(String componentName, String version, UpgradeProxy.DownloadHandler handler) throws IOException;
+
+    String getLocation();
+}
@@ -0,0 +1,92 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade;
+
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.AgentInfo;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.AgentPrefetchTarget;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.UpgradeResponse;
+import io.sealights.plugins.sealightsjenkins.utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+
+/**
+ * Fills a {@link FileSystemArtifactMirror} with the recommended 'sealights-java' agents of the given targets.
+ * Versions that the mirror already has are skipped.
+ */
+public class ArtifactMirrorSync {
+
+    private static final String PARTIAL_DOWNLOADS_FOLDER_NAME = ".downloads";
+
+    private final FileSystemArtifactMirror mirror;
+    private final Logger logger;
+
+    public ArtifactMirrorSync(FileSystemArtifactMirror mirror, Logger logger) {
+        this.mirror = mirror;
+        this.logger = logger;
+    }
+
+    /**
+     * @return the number of targets whose recommended version is in the mirror.
+     */
+    public int sync(Collection<AgentPrefetchTarget> targets) {
+        int synced = 0;
+        for (AgentPrefetchTarget target : targets) {
+            if (!AgentPrefetcher.SEALIGHTS_JAVA_COMPONENT.equals(target.getComponentName())) {
+                // The maven plugin is resolved by maven, from the maven repositories.
+                continue;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            try {
+                sync(target);
+                synced++;
+            } catch (Exception e) {
+                logger.warning("Failed to sync " + target + ". Error: " + e.getMessage());
+            }
+        }
+        return synced;
+    }
+
+    /**
+     * @return true if the recommended version was downloaded, false if the mirror already had it.
+     */
+    public boolean sync(AgentPrefetchTarget target) throws IOException {
+        String componentName = target.getComponentName();
+        UpgradeProxy upgradeProxy = new UpgradeProxy(target.toUpgradeConfiguration(), logger);
+        UpgradeResponse upgradeResponse = upgradeProxy.getRecommendedVersion(componentName);
+        AgentInfo agentInfo = upgradeResponse == null ? null : upgradeResponse.getAgent();
+        if (agentInfo == null || agentInfo.getVersion() == null) {
+            throw new IOException("The server did not return a recommended version.");
+        }
+
+        final String version = agentInfo.getVersion();
+        if (mirror.contains(componentName, version)) {
+            logger.info("The mirror already has '" + componentName + "' with version '" + version + "'.");
+            return false;
+        }
+        return download(upgradeProxy, componentName, version, agentInfo.getUrl());
+    }
+
+    private boolean download(UpgradeProxy upgradeProxy, final String componentName, final String version, String url)
+            throws IOException {
+        File partialDownloadsFolder = new File(mirror.getLocation(), PARTIAL_DOWNLOADS_FOLDER_NAME);
+        if (!partialDownloadsFolder.isDirectory() && !partialDownloadsFolder.mkdirs() && !partialDownloadsFolder.isDirectory()) {
+            throw new IOException("Unable to create the folder '" + partialDownloadsFolder + "'.");
+        }
+        File partFile = new File(partialDownloadsFolder,
+                FileSystemArtifactMirror.getArchiveName(componentName, version) + ResumableDownload.PART_SUFFIX);
+        UpgradeProxy.DownloadHandler storeHandler = new UpgradeProxy.DownloadHandler() {
+            @Override
+            public void handle(InputStream responseStream) throws IOException {
+                mirror.store(componentName, version, responseStream);
+            }
+        };
+        if (!upgradeProxy.downloadAgent(url, partFile, storeHandler)) {
+            throw new IOException("Failed to download '" + componentName + "' with version '" + version + "'.");
+        }
+        logger.info("Added '" + componentName + "' with version '" + version + "' to the mirror '" + mirror.getLocation() + "'.");
+        return true;
+    }
+}
@@ -0,0 +1,56 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade;
+
+import io.sealights.plugins.sealightsjenkins.utils.StringUtils;
+
+import java.io.File;
+
+/**
+ * Holds the location of the agents mirror: the 'Agents mirror' of the global configuration, or the
+ * 'sl.artifactMirror' system property when it is not configured. An 'http://' or 'https://' location is an
+ * {@link HttpArtifactMirror}, and any other location is a {@link FileSystemArtifactMirror} folder.
+ */
+public class ArtifactMirrors {
+
+    public static final String LOCATION_PROPERTY = "sl.artifactMirror";
+
+    private static final ArtifactMirrors instance = new ArtifactMirrors();
+
+    private volatile String location;
+
+    public static ArtifactMirrors getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return the configured mirror, or null if there is none.
+     */
+    public ArtifactMirror getMirror() {
+        return create(getLocation());
+    }
+
+    public String getLocation() {
+        if (!StringUtils.isNullOrEmpty(location)) {
+            return location;
+        }
+        return System.getProperty(LOCATION_PROPERTY);
+    }
+
+    public void setLocation(String location) {
+        this.location = location == null ? null : location.trim();
+    }
+
+    public static ArtifactMirror create(String location) {
+        if (StringUtils.isNullOrEmpty(location)) {
+            return null;
+        }
+        if (isHttpLocation(location)) {
+            return new HttpArtifactMirror(location);
+        }
+        return new FileSystemArtifactMirror(new File(location));
+    }
+
+    public static boolean isHttpLocation(String location) {
+        String lowerCaseLocation = location.toLowerCase();
+        return lowerCaseLocation.startsWith("http://") || lowerCaseLocation.startsWith("https://");
+    }
+}
@@ -0,0 +1,116 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade;
+
+import io.sealights.onpremise.agents.java.agent.infra.logging.ILogger;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.AgentPrefetchTarget;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.UpgradeConfiguration;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.UpgradeResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Resolves the recommended versions of all the components a build needs, and keeps them for the build's steps.
+ * <p>
+ * The server returns one component per request, so the known components are requested concurrently up front
+ * ({@link #resolveInBackground}), and each step then waits only for its own component. Every version is requested
+ * once, even if several steps ask for it at the same time. Failed requests are not kept, so the next step retries.
+ */
+public class BatchVersionResolver {
+
+    private static final int PARALLELISM = 4;
+    private static final ExecutorService executor = Executors.newFixedThreadPool(PARALLELISM, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "SeaLights recommended version resolver");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final ConcurrentMap<AgentPrefetchTarget, FutureTask<UpgradeResponse>> versions = new ConcurrentHashMap<>();
+
+    /**
+     * Starts resolving the given targets, without waiting for them.
+     */
+    public void resolveInBackground(Collection<AgentPrefetchTarget> targets, ILogger logger) {
+        for (AgentPrefetchTarget target : targets) {
+            final FutureTask<UpgradeResponse> task = createTask(target, logger);
+            if (versions.putIfAbsent(target, task) == null) {
+                executor.execute(task);
+            }
+        }
+    }
+
+    public UpgradeResponse resolve(String componentName, UpgradeConfiguration configuration, ILogger logger)
+            throws IOException {
+        return resolve(AgentPrefetchTarget.fromUpgradeConfiguration(componentName, configuration), logger);
+    }
+
+    public UpgradeResponse resolve(AgentPrefetchTarget target, ILogger logger) throws IOException {
+        FutureTask<UpgradeResponse> task = createTask(target, logger);
+        FutureTask<UpgradeResponse> existingTask = versions.putIfAbsent(target, task);
+        if (existingTask == null) {
+            task.run();
+        } else {
+            task = existingTask;
+        }
+
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while getting the recommended version.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed to get the recommended version.", cause);
+        }
+    }
+
+    protected UpgradeResponse fetch(AgentPrefetchTarget target, ILogger logger) throws IOException {
+        UpgradeProxy upgradeProxy = new UpgradeProxy(target.toUpgradeConfiguration(), logger);
+        return upgradeProxy.getRecommendedVersion(target.getComponentName());
+    }
+
+    private FutureTask<UpgradeResponse> createTask(final AgentPrefetchTarget target, final ILogger logger) {
+        return new VersionTask(target, new Callable<UpgradeResponse>() {
+            @Override
+            public UpgradeResponse call() throws Exception {
+                return fetch(target, logger);
+            }
+        });
+    }
+
+    /*
+    * Removes itself (and not a newer task of the same target) from the versions when it fails.
+    * */
+    private class VersionTask extends FutureTask<UpgradeResponse> {
+        private final AgentPrefetchTarget target;
+
+        VersionTask(AgentPrefetchTarget target, Callable<UpgradeResponse> callable) {
+            super(callable);
+            this.target = target;
+        }
+
+        @Override
+        protected void setException(Throwable error) {
+            // Before the waiting steps are released, so their retries do not get this task again
+            versions.remove(target, this);
+            super.setException(error);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade;
+
+/**
+ * Aggregated data of the agent downloads since Jenkins started.
+ */
+public class DownloadMetrics {
+
+    private static final DownloadMetrics instance = new DownloadMetrics();
+
+    private long downloads;
+    private long failures;
+    private long resumes;
+    private long retries;
+    private long totalBytes;
+    private long totalMillis;
+    private long lastBytesPerSecond;
+
+    public static DownloadMetrics getInstance() {
+        return instance;
+    }
+
+    public synchronized void recordDownload(long bytes, long millis) {
+        downloads++;
+        totalBytes += bytes;
+        totalMillis += millis;
+        lastBytesPerSecond = DownloadProgress.getBytesPerSecond(bytes, millis);
+    }
+
+    public synchronized void recordFailure() {
+        failures++;
+    }
+
+    public synchronized void recordResume() {
+        resumes++;
+    }
+
+    public synchronized void recordRetry() {
+        retries++;
+    }
+
+    public synchronized long getDownloads() {
+        return downloads;
+    }
+
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    public synchronized long getResumes() {
+        return resumes;
+    }
+
+    public synchronized long getRetries() {
+        return retries;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized long getAverageBytesPerSecond() {
+        return DownloadProgress.getBytesPerSecond(totalBytes, totalMillis);
+    }
+
+    public synchronized long getLastBytesPerSecond() {
+        return lastBytesPerSecond;
+    }
+
+    public synchronized void reset() {
+        downloads = 0;
+        failures = 0;
+        resumes = 0;
+        retries = 0;
+        totalBytes = 0;
+        totalMillis = 0;
+        lastBytesPerSecond = 0;
+    }
+}
@@ -0,0 +1,101 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade;
+
+import io.sealights.onpremise.agents.java.agent.infra.logging.ILogger;
+
+import java.util.Locale;
+
+/**
+ * Logs the progress of a download (rate and estimated time left) at most once per interval.
+ */
+public class DownloadProgress {
+
+    public static final long UNKNOWN_LENGTH = -1;
+    private static final long LOG_INTERVAL_MILLIS = 5 * 1000;
+
+    private final ILogger logger;
+    private final long totalBytes;
+    private final long startTime;
+    private final long initialBytes;
+    private long bytes;
+    private long lastLogTime;
+
+    /**
+     * @param initialBytes bytes that were already downloaded before (by a previous attempt)
+     * @param totalBytes   the size of the whole file, or {@link #UNKNOWN_LENGTH}
+     */
+    public DownloadProgress(ILogger logger, long initialBytes, long totalBytes) {
+        this.logger = logger;
+        this.initialBytes = initialBytes;
+        this.bytes = initialBytes;
+        this.totalBytes = totalBytes;
+        this.startTime = System.currentTimeMillis();
+        this.lastLogTime = startTime;
+    }
+
+    public void update(long newBytes) {
+        bytes += newBytes;
+        long now = System.currentTimeMillis();
+        if (now - lastLogTime >= LOG_INTERVAL_MILLIS) {
+            lastLogTime = now;
+            logger.info(toString());
+        }
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the bytes downloaded by this attempt.
+     */
+    public long getTransferredBytes() {
+        return bytes - initialBytes;
+    }
+
+    public long getElapsedMillis() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    public long getBytesPerSecond() {
+        return getBytesPerSecond(getTransferredBytes(), getElapsedMillis());
+    }
+
+    /**
+     * @return the estimated seconds left, or -1 if unknown.
+     */
+    public long getEtaSeconds() {
+        long bytesPerSecond = getBytesPerSecond();
+        if (totalBytes == UNKNOWN_LENGTH || bytesPerSecond <= 0) {
+            return -1;
+        }
+        return Math.max(0, totalBytes - bytes) / bytesPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Downloaded ").append(formatBytes(bytes));
+        if (totalBytes != UNKNOWN_LENGTH) {
+            sb.append(" of ").append(formatBytes(totalBytes));
+        }
+        sb.append(" (").append(formatBytes(getBytesPerSecond())).append("/s");
+        long etaSeconds = getEtaSeconds();
+        if (etaSeconds >= 0) {
+            sb.append(", ETA ").append(etaSeconds).append("s");
+        }
+        return sb.append(").").toString();
+    }
+
+    static long getBytesPerSecond(long bytes, long millis) {
+        return millis <= 0 ? 0 : bytes * 1000 / millis;
+    }
+
+    static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1f KB", bytes / 1024.0);
+        }
+        return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024));
+    }
+}
@@ -0,0 +1,87 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.ZipFile;
+
+/**
+ * An {@link ArtifactMirror} in a local (or mounted) folder. This is also the mirror that {@link ArtifactMirrorSync}
+ * fills, and a folder that is served over http can be used as an {@link HttpArtifactMirror}.
+ */
+public class FileSystemArtifactMirror implements ArtifactMirror {
+
+    private final File rootFolder;
+
+    public FileSystemArtifactMirror(File rootFolder) {
+        this.rootFolder = rootFolder;
+    }
+
+    @Override
+    public boolean fetch(String componentName, String version, UpgradeProxy.DownloadHandler handler) throws IOException {
+        File archive = getArchiveFile(componentName, version);
+        if (!archive.isFile()) {
+            return false;
+        }
+        try (InputStream archiveStream = new FileInputStream(archive)) {
+            handler.handle(archiveStream);
+        }
+        return true;
+    }
+
+    public boolean contains(String componentName, String version) {
+        return getArchiveFile(componentName, version).isFile();
+    }
+
+    /**
+     * Writes the archive of the given version into the mirror. The archive is verified first and then moved in with
+     * an atomic rename, so builds never read a partially written archive.
+     *
+     * @throws IOException if the stream is not a valid zip.
+     */
+    public File store(String componentName, String version, InputStream archiveStream) throws IOException {
+        File archive = getArchiveFile(componentName, version);
+        File folder = archive.getParentFile();
+        if (!folder.isDirectory() && !folder.mkdirs() && !folder.isDirectory()) {
+            throw new IOException("Unable to create the folder '" + folder + "'.");
+        }
+        File tempFile = File.createTempFile(archive.getName(), ".tmp", folder);
+        try {
+            Files.copy(archiveStream, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            verifyArchive(tempFile);
+            try {
+                Files.move(tempFile.toPath(), archive.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return archive;
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    public File getArchiveFile(String componentName, String version) {
+        return new File(new File(new File(rootFolder, componentName), version), getArchiveName(componentName, version));
+    }
+
+    @Override
+    public String getLocation() {
+        return rootFolder.getAbsolutePath();
+    }
+
+    static String getArchiveName(String componentName, String version) {
+        return componentName + "-" + version + ".zip";
+    }
+
+    private static void verifyArchive(File archive) throws IOException {
+        try (ZipFile ignored = new ZipFile(archive)) {
+            // Opening reads the central directory at the end of the file, which a truncated zip does not have.
+        } catch (IOException e) {
+            throw new IOException("'" + archive.getName() + "' is not a valid zip: " + e.getMessage(), e);
+        }
+    }
+}
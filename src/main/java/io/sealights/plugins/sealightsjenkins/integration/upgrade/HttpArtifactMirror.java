@@ -0,0 +1,53 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade;
+
+import io.sealights.plugins.sealightsjenkins.services.ApacheHttpClient;
+import io.sealights.plugins.sealightsjenkins.services.HttpRequest;
+import io.sealights.plugins.sealightsjenkins.services.HttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An {@link ArtifactMirror} on an http server (e.g. a raw repository on the LAN). The mirror is accessed directly,
+ * without the proxy that is configured for the SeaLights server.
+ */
+public class HttpArtifactMirror implements ArtifactMirror {
+
+    private static final int NOT_FOUND = 404;
+
+    private final String baseUrl;
+    private final ApacheHttpClient client;
+
+    public HttpArtifactMirror(String baseUrl) {
+        this(baseUrl, new ApacheHttpClient());
+    }
+
+    HttpArtifactMirror(String baseUrl, ApacheHttpClient client) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.client = client;
+    }
+
+    @Override
+    public boolean fetch(String componentName, String version, UpgradeProxy.DownloadHandler handler) throws IOException {
+        try (HttpResponse response = client.getFile(new HttpRequest(getArchiveUrl(componentName, version), null))) {
+            InputStream responseStream = response.getResponseStream();
+            if (response.getStatusCode() == NOT_FOUND) {
+                return false;
+            }
+            if (!response.isStatusCodeOk() || responseStream == null) {
+                throw new ResumableDownload.HttpStatusException(response.getStatusCode());
+            }
+            handler.handle(responseStream);
+            return true;
+        }
+    }
+
+    public String getArchiveUrl(String componentName, String version) {
+        return baseUrl + "/" + componentName + "/" + version + "/" + FileSystemArtifactMirror.getArchiveName(componentName, version);
+    }
+
+    @Override
+    public String getLocation() {
+        return baseUrl;
+    }
+}
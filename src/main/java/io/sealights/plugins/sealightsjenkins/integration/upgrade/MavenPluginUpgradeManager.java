@@ -23,9 +23,21 @@ public class MavenPluginUpgradeManager {
     }
 
     public String queryServerForMavenPluginVersion() throws IOException {
+        return queryServerForMavenPluginVersion(null);
+    }
+
+    /**
+     * @param versionResolver the recommended versions of the current build, or 'null' to query the server directly
+     */
+    public String queryServerForMavenPluginVersion(BatchVersionResolver versionResolver) throws IOException {
         UpgradeConfiguration upgradeConfiguration = createUpgradeConfiguration();
-        UpgradeProxy upgradeProxy = new UpgradeProxy(upgradeConfiguration, logger);
-        UpgradeResponse upgradeResponse = upgradeProxy.getRecommendedVersion("sl-maven-plugin");
+        UpgradeResponse upgradeResponse;
+        if (versionResolver != null) {
+            upgradeResponse = versionResolver.resolve(AgentPrefetcher.MAVEN_PLUGIN_COMPONENT, upgradeConfiguration, logger);
+        } else {
+            UpgradeProxy upgradeProxy = new UpgradeProxy(upgradeConfiguration, logger);
+            upgradeResponse = upgradeProxy.getRecommendedVersion(AgentPrefetcher.MAVEN_PLUGIN_COMPONENT);
+        }
         return upgradeResponse.getAgent().getVersion();
     }
 
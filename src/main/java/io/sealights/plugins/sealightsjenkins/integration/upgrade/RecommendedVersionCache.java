@@ -0,0 +1,366 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.sealights.onpremise.agents.java.agent.infra.logging.ILogger;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.UpgradeResponse;
+import io.sealights.plugins.sealightsjenkins.services.HttpResponse;
+import io.sealights.plugins.sealightsjenkins.utils.ChecksumUtils;
+import io.sealights.plugins.sealightsjenkins.utils.JsonSerializer;
+import io.sealights.plugins.sealightsjenkins.utils.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Caches the recommended versions returned by the server, in memory and optionally on disk.
+ * <p>
+ * A cached version is returned as is for 'sl.recommendedVersion.ttlMinutes' (10 minutes by default). After that,
+ * and up to 'sl.recommendedVersion.maxStaleMinutes' (one day by default), it is still returned immediately while
+ * a fresh one is fetched in the background. Only older (or missing) versions are fetched while the caller waits,
+ * and if that fails, the last known version is used.
+ * <p>
+ * Expired versions are revalidated with the ETag and Last-Modified the server returned them with, so an unchanged
+ * version costs a '304 Not Modified' response rather than a new body.
+ */
+public class RecommendedVersionCache {
+
+    public static final String TTL_PROPERTY = "sl.recommendedVersion.ttlMinutes";
+    public static final String MAX_STALE_PROPERTY = "sl.recommendedVersion.maxStaleMinutes";
+    public static final String DISK_CACHE_FOLDER = "recommended-versions";
+    private static final int DEFAULT_TTL_MINUTES = 10;
+    private static final int DEFAULT_MAX_STALE_MINUTES = 24 * 60;
+    private static final int MAX_ERROR_BODY_CHARS = 500;
+
+    private static final java.util.logging.Logger LOGGER = java.util.logging.Logger.getLogger(RecommendedVersionCache.class.getName());
+    private static final RecommendedVersionCache instance = new RecommendedVersionCache(
+            Integer.getInteger(TTL_PROPERTY, DEFAULT_TTL_MINUTES) * 60 * 1000L,
+            Integer.getInteger(MAX_STALE_PROPERTY, DEFAULT_MAX_STALE_MINUTES) * 60 * 1000L);
+
+    private final long ttlMillis;
+    private final long maxStaleMillis;
+    private final ConcurrentMap<String, CachedVersion> versions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, FutureTask<UpgradeResponse>> inFlightLoads = new ConcurrentHashMap<>();
+    private final ExecutorService refreshExecutor = Executors.newFixedThreadPool(2, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "SeaLights recommended version refresh");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+
+    RecommendedVersionCache(long ttlMillis, long maxStaleMillis) {
+        this.ttlMillis = ttlMillis;
+        this.maxStaleMillis = Math.max(ttlMillis, maxStaleMillis);
+    }
+
+    public static RecommendedVersionCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Fetches the recommended version from the server.
+     */
+    public interface Loader {
+        /**
+         * @param cached the cached version, or null. If the response is '304 Not Modified', the cached version is
+         *               used. The returned response is closed by the cache.
+         */
+        HttpResponse load(CachedVersion cached) throws IOException;
+    }
+
+    /**
+     * @param key        identifies the request (server, customer, app, branch, component...)
+     * @param diskFolder the folder of the on-disk copy, or null to cache in memory only
+     * @return the recommended version, shared with the other callers so it must not be modified
+     */
+    public UpgradeResponse get(String key, File diskFolder, Loader loader, ILogger logger) throws IOException {
+        CachedVersion cached = versions.get(key);
+        if (cached == null && diskFolder != null) {
+            cached = readFromDisk(diskFolder, key);
+            if (cached != null) {
+                versions.putIfAbsent(key, cached);
+            }
+        }
+
+        long age = cached == null ? Long.MAX_VALUE : System.currentTimeMillis() - cached.getFetchTime();
+        if (age <= ttlMillis) {
+            hits.incrementAndGet();
+            return cached.getVersion();
+        }
+        if (age <= maxStaleMillis) {
+            staleHits.incrementAndGet();
+            refreshInBackground(key, diskFolder, loader, cached);
+            return cached.getVersion();
+        }
+
+        misses.incrementAndGet();
+        try {
+            return load(key, diskFolder, loader, cached);
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            if (cached == null) {
+                throw e;
+            }
+            logger.warning("Unable to get the recommended version from the server, using the version cached "
+                    + (age / 60000) + " minutes ago. Error: " + e.getMessage());
+            return cached.getVersion();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getStaleHits() {
+        return staleHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return how many expired versions the server confirmed were still valid.
+     */
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    public void clear() {
+        versions.clear();
+    }
+
+    private void refreshInBackground(final String key, final File diskFolder, final Loader loader,
+                                     final CachedVersion cached) {
+        if (inFlightLoads.containsKey(key)) {
+            return;
+        }
+        refreshExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    load(key, diskFolder, loader, cached);
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                    LOGGER.log(Level.FINE, "Failed to refresh the recommended version of '" + key + "'.", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Loads the version once, even if several builds ask for it at the same time.
+     */
+    private UpgradeResponse load(final String key, final File diskFolder, final Loader loader, final CachedVersion cached)
+            throws IOException {
+        FutureTask<UpgradeResponse> task = new FutureTask<>(new Callable<UpgradeResponse>() {
+            @Override
+            public UpgradeResponse call() throws Exception {
+                CachedVersion version;
+                try (HttpResponse response = loader.load(cached)) {
+                    if (cached != null && response.isNotModified()) {
+                        notModified.incrementAndGet();
+                        version = new CachedVersion(key, System.currentTimeMillis(), cached.getVersion(),
+                                cached.getEtag(), cached.getLastModified());
+                    } else {
+                        UpgradeResponse upgradeResponse = readVersion(response);
+                        if (!isCacheable(upgradeResponse)) {
+                            return upgradeResponse;
+                        }
+                        version = new CachedVersion(key, System.currentTimeMillis(), upgradeResponse,
+                                response.getETag(), response.getLastModified());
+                    }
+                }
+                versions.put(key, version);
+                if (diskFolder != null) {
+                    writeToDisk(diskFolder, key, version);
+                }
+                return version.getVersion();
+            }
+        });
+        FutureTask<UpgradeResponse> inFlightLoad = inFlightLoads.putIfAbsent(key, task);
+        if (inFlightLoad == null) {
+            inFlightLoad = task;
+            try {
+                task.run();
+            } finally {
+                inFlightLoads.remove(key, task);
+            }
+        }
+
+        try {
+            return inFlightLoad.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while getting the recommended version.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed to get the recommended version.", cause);
+        }
+    }
+
+    /**
+     * Deserializes the version while it is read from the response. Error statuses and bodies that are not JSON (e.g.
+     * an error page of a proxy) fail with the status and the start of the body.
+     */
+    private static UpgradeResponse readVersion(HttpResponse response) throws IOException {
+        if (!response.isStatusCodeOk()) {
+            throw new IOException("The server responded with status code " + response.getStatusCode() + ". Response: "
+                    + StreamUtils.toString(response.getResponseStream(), MAX_ERROR_BODY_CHARS));
+        }
+        if (response.getResponseStream() == null) {
+            throw new IOException("The server sent an empty response.");
+        }
+        try {
+            return JsonSerializer.deserialize(response.getResponseStream(), UpgradeResponse.class);
+        } catch (JsonProcessingException e) {
+            throw new IOException("The server sent an invalid response. Error: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    /**
+     * Server errors and invalid responses are not cached.
+     */
+    private static boolean isCacheable(UpgradeResponse response) {
+        return response != null && response.getAgent() != null && response.getAgent().getVersion() != null;
+    }
+
+    private static CachedVersion readFromDisk(File diskFolder, String key) {
+        try {
+            File file = getDiskFile(diskFolder, key);
+            if (!file.isFile()) {
+                return null;
+            }
+            CachedVersion version = JsonSerializer.deserialize(new String(Files.readAllBytes(file.toPath()), "UTF-8"), CachedVersion.class);
+            // Copies written by older versions of the plugin hold the version as a JSON string, and are not used.
+            return key.equals(version.getKey()) && isCacheable(version.getVersion()) ? version : null;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Failed to read the cached recommended version of '" + key + "'.", e);
+            return null;
+        }
+    }
+
+    private static void writeToDisk(File diskFolder, String key, CachedVersion version) {
+        try {
+            if (!diskFolder.isDirectory() && !diskFolder.mkdirs() && !diskFolder.isDirectory()) {
+                return;
+            }
+            File file = getDiskFile(diskFolder, key);
+            File tempFile = File.createTempFile(file.getName(), ".tmp", diskFolder);
+            Files.write(tempFile.toPath(), JsonSerializer.serialize(version).getBytes("UTF-8"));
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Failed to write the cached recommended version of '" + key + "'.", e);
+        }
+    }
+
+    private static File getDiskFile(File diskFolder, String key) throws IOException {
+        String fileName = ChecksumUtils.sha256(new ByteArrayInputStream(key.getBytes("UTF-8"))) + ".json";
+        return new File(diskFolder, fileName);
+    }
+
+    /**
+     * A recommended version, when it was fetched (or last revalidated) and its validators. Also the format of the
+     * on-disk copy.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class CachedVersion {
+        private String key;
+        private long fetchTime;
+        private UpgradeResponse version;
+        private String etag;
+        private String lastModified;
+
+        public CachedVersion() {
+        }
+
+        public CachedVersion(String key, long fetchTime, UpgradeResponse version) {
+            this(key, fetchTime, version, null, null);
+        }
+
+        public CachedVersion(String key, long fetchTime, UpgradeResponse version, String etag, String lastModified) {
+            this.key = key;
+            this.fetchTime = fetchTime;
+            this.version = version;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public void setKey(String key) {
+            this.key = key;
+        }
+
+        public long getFetchTime() {
+            return fetchTime;
+        }
+
+        public void setFetchTime(long fetchTime) {
+            this.fetchTime = fetchTime;
+        }
+
+        public UpgradeResponse getVersion() {
+            return version;
+        }
+
+        public void setVersion(UpgradeResponse version) {
+            this.version = version;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public void setEtag(String etag) {
+            this.etag = etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public void setLastModified(String lastModified) {
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade;
+
+import io.sealights.onpremise.agents.java.agent.infra.logging.ILogger;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.PartialDownloadState;
+import io.sealights.plugins.sealightsjenkins.services.ApacheHttpClient;
+import io.sealights.plugins.sealightsjenkins.services.HttpRequest;
+import io.sealights.plugins.sealightsjenkins.services.HttpResponse;
+import io.sealights.plugins.sealightsjenkins.utils.ChecksumUtils;
+import io.sealights.plugins.sealightsjenkins.utils.JsonSerializer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+
+/**
+ * Downloads a file and passes it to a {@link UpgradeProxy.DownloadHandler} while it arrives.
+ * <p>
+ * The received bytes are kept in a partial file as well. When the connection drops, the download is retried with
+ * a backoff, and resumed from the end of the partial file with an http 'Range' request (the partial file is also
+ * resumed by later builds). The handler then gets the partial file followed by the rest of the response, so it always
+ * reads the whole file. A partial file is resumed only when its digest matches the one recorded beside it, and only
+ * if the server still serves the same file ('If-Range').
+ * <p>
+ * Failures of the handler itself (e.g. an invalid archive) are not retried, and the partial file is deleted, since
+ * downloading the same bytes again would fail the same way.
+ */
+public class ResumableDownload {
+
+    public static final String PART_SUFFIX = ".part";
+    public static final String STATE_SUFFIX = ".part.json";
+    public static final String MAX_ATTEMPTS_PROPERTY = "sl.download.maxAttempts";
+    private static final int DEFAULT_MAX_ATTEMPTS = 4;
+    private static final long INITIAL_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 30 * 1000;
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_PARTIAL_CONTENT = 206;
+
+    private final ApacheHttpClient client;
+    private final String proxy;
+    private final ILogger logger;
+
+    public ResumableDownload(ApacheHttpClient client, String proxy, ILogger logger) {
+        this.client = client;
+        this.proxy = proxy;
+        this.logger = logger;
+    }
+
+    /**
+     * @param partFile the file that keeps the received bytes, deleted once the download completes.
+     * @throws IOException if all attempts failed.
+     */
+    public void download(String url, File partFile, UpgradeProxy.DownloadHandler handler) throws IOException {
+        int maxAttempts = Math.max(1, Integer.getInteger(MAX_ATTEMPTS_PROPERTY, DEFAULT_MAX_ATTEMPTS));
+        for (int attempt = 1; ; attempt++) {
+            try {
+                downloadOnce(url, partFile, handler);
+                deletePartialDownload(partFile);
+                return;
+            } catch (HandlerException e) {
+                deletePartialDownload(partFile);
+                DownloadMetrics.getInstance().recordFailure();
+                throw e;
+            } catch (IOException e) {
+                boolean isRetryable = !(e instanceof HttpStatusException) || ((HttpStatusException) e).isRetryable();
+                if (!isRetryable || attempt >= maxAttempts) {
+                    DownloadMetrics.getInstance().recordFailure();
+                    throw e;
+                }
+                long backoffMillis = getBackoffMillis(attempt);
+                logger.warning("Download attempt " + attempt + " of " + maxAttempts + " failed, retrying in "
+                        + backoffMillis + "ms. Error: " + e.getMessage());
+                DownloadMetrics.getInstance().recordRetry();
+                sleep(backoffMillis);
+            }
+        }
+    }
+
+    static long getBackoffMillis(int attempt) {
+        long backoff = INITIAL_BACKOFF_MILLIS << Math.min(attempt - 1, 16);
+        return Math.min(backoff, MAX_BACKOFF_MILLIS);
+    }
+
+    protected void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to retry the download.", e);
+        }
+    }
+
+    private void downloadOnce(String url, File partFile, UpgradeProxy.DownloadHandler handler) throws IOException {
+        MessageDigest digest = ChecksumUtils.createSha256Digest();
+        PartialDownloadState state = loadVerifiedState(url, partFile, digest);
+        long offset = 0;
+        if (state == null) {
+            digest = ChecksumUtils.createSha256Digest();
+        } else {
+            offset = state.getLength();
+        }
+
+        HttpRequest request = new HttpRequest(url, proxy);
+        if (offset > 0) {
+            String validator = state.getEtag() != null ? state.getEtag() : state.getLastModified();
+            request.withHeader("Range", "bytes=" + offset + "-").withHeader("If-Range", validator);
+        }
+        try (HttpResponse response = client.getFile(request);
+             InputStream responseStream = response.getResponseStream()) {
+            int statusCode = response.getStatusCode();
+            if (statusCode == HTTP_PARTIAL_CONTENT && offset > 0 && isRangeFrom(response, offset)) {
+                logger.info("Resuming the download from byte " + offset + ".");
+                DownloadMetrics.getInstance().recordResume();
+            } else if (statusCode == HTTP_OK) {
+                if (offset > 0) {
+                    logger.info("The server sent the whole file, restarting the download.");
+                }
+                offset = 0;
+                digest = ChecksumUtils.createSha256Digest();
+            } else {
+                // e.g. 416, when the partial file is not valid for the current file.
+                deletePartialDownload(partFile);
+                throw new HttpStatusException(statusCode);
+            }
+            if (responseStream == null) {
+                throw new IOException("The server sent an empty response.");
+            }
+
+            state = new PartialDownloadState(url, response.getHeader("ETag"), response.getHeader("Last-Modified"), offset, null);
+            DownloadProgress progress = new DownloadProgress(logger, offset, getTotalLength(response, offset));
+            try (OutputStream partOutput = new FileOutputStream(partFile, offset > 0)) {
+                TeeInputStream tee = new TeeInputStream(responseStream, partOutput, digest, progress);
+                InputStream fullStream = offset > 0 ? new SequenceInputStream(new FileInputStream(partFile), tee) : tee;
+                try {
+                    handler.handle(fullStream);
+                } catch (IOException | RuntimeException e) {
+                    if (tee.isReadFailed()) {
+                        throw e;
+                    }
+                    throw new HandlerException(e);
+                } finally {
+                    fullStream.close();
+                    state.setLength(offset + tee.getCount());
+                    state.setDigest(ChecksumUtils.toHex(cloneDigest(digest).digest()));
+                    saveState(partFile, state);
+                }
+            }
+            logger.info("Download completed. " + progress);
+            DownloadMetrics.getInstance().recordDownload(progress.getTransferredBytes(), progress.getElapsedMillis());
+        }
+    }
+
+    /*
+    * Returns the state of the partial file if it can be resumed, otherwise deletes it. The partial file is read into
+    * the given digest to verify it, so the download continues with that digest instead of reading the file again.
+    * */
+    private PartialDownloadState loadVerifiedState(String url, File partFile, MessageDigest digest) {
+        File stateFile = getStateFile(partFile);
+        if (!partFile.isFile() || !stateFile.isFile()) {
+            deletePartialDownload(partFile);
+            return null;
+        }
+        try {
+            PartialDownloadState state = JsonSerializer.deserialize(
+                    new String(Files.readAllBytes(stateFile.toPath()), "UTF-8"), PartialDownloadState.class);
+            boolean hasValidator = state.getEtag() != null || state.getLastModified() != null;
+            if (url.equals(state.getUrl()) && hasValidator && state.getLength() > 0
+                    && partFile.length() == state.getLength() && state.getDigest() != null
+                    && state.getDigest().equals(digestFile(partFile, digest))) {
+                return state;
+            }
+            logger.info("The partial download '" + partFile + "' cannot be resumed, starting from the beginning.");
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Unable to read the partial download state '" + stateFile + "'. Error: " + e.getMessage());
+        }
+        deletePartialDownload(partFile);
+        return null;
+    }
+
+    /*
+    * Adds the content of the file to the digest, and returns the (hex) digest so far.
+    * */
+    private static String digestFile(File file, MessageDigest digest) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(file)) {
+            int len;
+            while ((len = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, len);
+            }
+        }
+        return ChecksumUtils.toHex(cloneDigest(digest).digest());
+    }
+
+    private static boolean isRangeFrom(HttpResponse response, long offset) {
+        String contentRange = response.getHeader("Content-Range");
+        return contentRange != null && contentRange.trim().startsWith("bytes " + offset + "-");
+    }
+
+    private static long getTotalLength(HttpResponse response, long offset) {
+        try {
+            String contentRange = response.getHeader("Content-Range");
+            if (contentRange != null && contentRange.contains("/") && !contentRange.endsWith("/*")) {
+                return Long.parseLong(contentRange.substring(contentRange.lastIndexOf('/') + 1).trim());
+            }
+            String contentLength = response.getHeader("Content-Length");
+            if (contentLength != null) {
+                return offset + Long.parseLong(contentLength.trim());
+            }
+        } catch (NumberFormatException e) {
+            // Unknown.
+        }
+        return DownloadProgress.UNKNOWN_LENGTH;
+    }
+
+    private static MessageDigest cloneDigest(MessageDigest digest) throws IOException {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IOException("Unable to compute the digest of the partial download.", e);
+        }
+    }
+
+    private void saveState(File partFile, PartialDownloadState state) {
+        try {
+            Files.write(getStateFile(partFile).toPath(), JsonSerializer.serialize(state).getBytes("UTF-8"));
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Unable to save the partial download state of '" + partFile + "'. Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes partial downloads (of other versions) in the given folder that were not touched for the given time.
+     */
+    public static void deleteStalePartialDownloads(File folder, long maxAgeMillis) {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            if (file.getName().endsWith(PART_SUFFIX) && now - file.lastModified() > maxAgeMillis) {
+                deletePartialDownload(file);
+            }
+        }
+    }
+
+    private static void deletePartialDownload(File partFile) {
+        partFile.delete();
+        getStateFile(partFile).delete();
+    }
+
+    private static File getStateFile(File partFile) {
+        String name = partFile.getName();
+        if (name.endsWith(PART_SUFFIX)) {
+            name = name.substring(0, name.length() - PART_SUFFIX.length());
+        }
+        return new File(partFile.getParentFile(), name + STATE_SUFFIX);
+    }
+
+    public static class HttpStatusException extends IOException {
+        private final int statusCode;
+
+        public HttpStatusException(int statusCode) {
+            super("The server responded with status code " + statusCode + ".");
+            this.statusCode = statusCode;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        /**
+         * Server errors (and 'Range Not Satisfiable', after the partial file is dropped) may succeed on a retry.
+         */
+        public boolean isRetryable() {
+            return statusCode >= 500 || statusCode == 416 || statusCode == 408 || statusCode == 429;
+        }
+    }
+
+    /**
+     * The handler failed on the downloaded content (e.g. an invalid archive, a checksum mismatch), while the
+     * download itself did not.
+     */
+    public static class HandlerException extends IOException {
+        public HandlerException(Throwable cause) {
+            super("Failed to handle the downloaded file. Error: " + cause.getMessage(), cause);
+        }
+    }
+
+    /*
+    * Copies every byte read from the response into the partial file (and its digest).
+    * */
+    private static class TeeInputStream extends FilterInputStream {
+        private final OutputStream copy;
+        private final MessageDigest digest;
+        private final DownloadProgress progress;
+        private long count;
+        private boolean readFailed;
+
+        TeeInputStream(InputStream in, OutputStream copy, MessageDigest digest, DownloadProgress progress) {
+            super(in);
+            this.copy = copy;
+            this.digest = digest;
+            this.progress = progress;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b;
+            try {
+                b = super.read();
+            } catch (IOException e) {
+                readFailed = true;
+                throw e;
+            }
+            if (b != -1) {
+                copy.write(b);
+                digest.update((byte) b);
+                count++;
+                progress.update(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            int n;
+            try {
+                n = super.read(buffer, off, len);
+            } catch (IOException e) {
+                readFailed = true;
+                throw e;
+            }
+            if (n > 0) {
+                copy.write(buffer, off, n);
+                digest.update(buffer, off, n);
+                count += n;
+                progress.update(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes must be kept in the partial file as well.
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        /**
+         * @return true if reading the response failed (e.g. the connection dropped).
+         */
+        boolean isReadFailed() {
+            return readFailed;
+        }
+    }
+}
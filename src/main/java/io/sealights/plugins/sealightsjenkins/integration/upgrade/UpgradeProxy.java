@@ -1,20 +1,24 @@
 package io.sealights.plugins.sealightsjenkins.integration.upgrade;
 
 import io.sealights.onpremise.agents.java.agent.infra.logging.ILogger;
-import io.sealights.plugins.sealightsjenkins.integration.JarsHelper;
 import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.UpgradeConfiguration;
 import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.UpgradeResponse;
 import io.sealights.plugins.sealightsjenkins.services.ApacheHttpClient;
+import io.sealights.plugins.sealightsjenkins.services.BackgroundHttpExecutor;
 import io.sealights.plugins.sealightsjenkins.services.HttpRequest;
 import io.sealights.plugins.sealightsjenkins.services.HttpResponse;
-import io.sealights.plugins.sealightsjenkins.utils.JsonSerializer;
-import io.sealights.plugins.sealightsjenkins.utils.StreamUtils;
+import io.sealights.plugins.sealightsjenkins.utils.ChecksumUtils;
+import io.sealights.plugins.sealightsjenkins.utils.PathUtils;
+import io.sealights.plugins.sealightsjenkins.utils.StringUtils;
 import io.sealights.plugins.sealightsjenkins.utils.UrlBuilder;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 public class UpgradeProxy {
 
@@ -26,15 +30,67 @@ public class UpgradeProxy {
         this.logger = logger;
     }
 
+    /**
+     * Returns the recommended version, from the {@link RecommendedVersionCache} when a recent enough one is known.
+     */
     public UpgradeResponse getRecommendedVersion(String componentName) throws IOException {
-        String serverUrl = createUrlToGetRecommendedVersion(componentName);
+        final String serverUrl = createUrlToGetRecommendedVersion(componentName);
         logger.info("Trying to get recommended version. Url: '" + serverUrl + "'");
+        return RecommendedVersionCache.getInstance().get(
+                createCacheKey(serverUrl), getRecommendedVersionsCacheFolder(), new RecommendedVersionCache.Loader() {
+                    @Override
+                    public HttpResponse load(RecommendedVersionCache.CachedVersion cached) throws IOException {
+                        return fetchRecommendedVersion(serverUrl, cached);
+                    }
+                }, logger);
+    }
+
+    /**
+     * Runs {@link #getRecommendedVersion} on a background thread, see {@link BackgroundHttpExecutor}. Used to look up
+     * the versions of several agents at the same time.
+     */
+    public Future<UpgradeResponse> getRecommendedVersionAsync(final String componentName) {
+        return new BackgroundHttpExecutor().submit(new Callable<UpgradeResponse>() {
+            @Override
+            public UpgradeResponse call() throws Exception {
+                return getRecommendedVersion(componentName);
+            }
+        });
+    }
+
+    /**
+     * @param cached the cached version to revalidate, or null
+     */
+    protected HttpResponse fetchRecommendedVersion(String serverUrl, RecommendedVersionCache.CachedVersion cached)
+            throws IOException {
         ApacheHttpClient client = new ApacheHttpClient();
         HttpRequest request = new HttpRequest(serverUrl, upgradeConfiguration.getProxy(), upgradeConfiguration.getToken());
-        HttpResponse httpResponse = client.getJson(request);
-        String jsonOrServerError = StreamUtils.toString(httpResponse.getResponseStream());
-        UpgradeResponse upgradeResponse = JsonSerializer.deserialize(jsonOrServerError, UpgradeResponse.class);
-        return upgradeResponse;
+        if (cached != null) {
+            request.withValidators(cached.getEtag(), cached.getLastModified());
+        }
+        return client.getJson(request);
+    }
+
+    /*
+    * The url holds the server, customer, app, branch and component. The token is part of the key as well
+    * (hashed), since the customer may be known only from it.
+    * */
+    private String createCacheKey(String serverUrl) throws IOException {
+        String token = upgradeConfiguration.getToken();
+        if (StringUtils.isNullOrEmpty(token)) {
+            return serverUrl;
+        }
+        String tokenHash = ChecksumUtils.sha256(new ByteArrayInputStream(token.getBytes("UTF-8")));
+        return serverUrl + "|" + tokenHash.substring(0, 16);
+    }
+
+    private File getRecommendedVersionsCacheFolder() {
+        String filesStorage = upgradeConfiguration.getFilesStorage();
+        if (StringUtils.isNullOrEmpty(filesStorage)) {
+            return null;
+        }
+        return new File(PathUtils.join(filesStorage, AbstractUpgradeManager.SL_RELATIVE_CACHE_FOLDER,
+                RecommendedVersionCache.DISK_CACHE_FOLDER));
     }
 
     private String createUrlToGetRecommendedVersion(String componentName) throws MalformedURLException {
@@ -50,26 +106,50 @@ public class UpgradeProxy {
                 .toString();
     }
 
-    public boolean downloadAgent(String urlToAgent, String destFile) throws IOException {
-        boolean isSuccess = true;
-        logger.info("Trying to download agent from url '" + urlToAgent + "' to folder '" + destFile + "'.");
+    /**
+     * Downloads the agent and passes the response stream to the given handler while it arrives (e.g. to unzip it),
+     * so the downloaded zip does not have to be written to disk first. Interrupted downloads are retried and resumed
+     * from the given partial file (see {@link ResumableDownload}).
+     *
+     * @return false if the download failed (the error is logged).
+     */
+    public boolean downloadAgent(String urlToAgent, File partFile, DownloadHandler handler) throws IOException {
+        logger.info("Trying to download agent from url '" + urlToAgent + "'.");
         try {
-            File agentDestination = new File(destFile);
-            ApacheHttpClient client = new ApacheHttpClient();
-            HttpRequest request = new HttpRequest(urlToAgent, upgradeConfiguration.getProxy());
-            HttpResponse response = client.getFile(request);
-            InputStream responseStream = response.getResponseStream();
-            JarsHelper.copyInputStreamToFile(responseStream, new File(destFile));
+            ResumableDownload download = new ResumableDownload(new ApacheHttpClient(), upgradeConfiguration.getProxy(), logger);
+            download.download(urlToAgent, partFile, handler);
+        } catch (Exception e) {
+            logger.error("Error while trying to download recommended agent. Error: " + e.getMessage());
+            return false;
+        }
+
+        return true;
+    }
 
-            if (!agentDestination.exists()) {
-                logger.error("Failed to download recommended agent.");
-                isSuccess = false;
+    /**
+     * Passes the agent archive from the configured {@link ArtifactMirror} to the given handler.
+     *
+     * @return false if there is no mirror, the mirror does not have the version or it failed (the error is logged).
+     */
+    public boolean downloadAgentFromMirror(String componentName, String version, DownloadHandler handler) {
+        ArtifactMirror mirror = ArtifactMirrors.getInstance().getMirror();
+        if (mirror == null) {
+            return false;
+        }
+        try {
+            if (mirror.fetch(componentName, version, handler)) {
+                logger.info("Got '" + componentName + "' with version '" + version + "' from the mirror '" + mirror.getLocation() + "'.");
+                return true;
             }
+            logger.info("The mirror '" + mirror.getLocation() + "' does not have '" + componentName + "' with version '" + version + "'.");
         } catch (Exception e) {
-            logger.error("Error while trying to download recommended agent. Error: " + e.getMessage());
-            isSuccess = false;
+            logger.warning("Failed to get '" + componentName + "' with version '" + version + "' from the mirror '"
+                    + mirror.getLocation() + "'. Error: " + e.getMessage());
         }
+        return false;
+    }
 
-        return isSuccess;
+    public interface DownloadHandler {
+        void handle(InputStream responseStream) throws IOException;
     }
 }
@@ -0,0 +1,106 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade.entities;
+
+import java.util.Arrays;
+
+/**
+ * A component and the configuration (server, customer, app, branch...) that a job resolves its recommended version
+ * with. Jobs with the same values share the same cached recommended version, so targets are compared by value.
+ */
+public class AgentPrefetchTarget {
+
+    private final String componentName;
+    private final String token;
+    private final String customerId;
+    private final String appName;
+    private final String environmentName;
+    private final String branchName;
+    private final String server;
+    private final String proxy;
+    private final String filesStorage;
+
+    public AgentPrefetchTarget(String componentName, String token, String customerId, String appName,
+                               String environmentName, String branchName, String server, String proxy,
+                               String filesStorage) {
+        this.componentName = componentName;
+        this.token = token;
+        this.customerId = customerId;
+        this.appName = appName;
+        this.environmentName = environmentName;
+        this.branchName = branchName;
+        this.server = server;
+        this.proxy = proxy;
+        this.filesStorage = filesStorage;
+    }
+
+    public static AgentPrefetchTarget fromUpgradeConfiguration(String componentName, UpgradeConfiguration configuration) {
+        return new AgentPrefetchTarget(componentName, configuration.getToken(), configuration.getCustomerId(),
+                configuration.getAppName(), configuration.getEnvironmentName(), configuration.getBranchName(),
+                configuration.getServer(), configuration.getProxy(), configuration.getFilesStorage());
+    }
+
+    public String getComponentName() {
+        return componentName;
+    }
+
+    public String getAppName() {
+        return appName;
+    }
+
+    public String getBranchName() {
+        return branchName;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    /**
+     * @return false if a value is missing, or depends on build variables (e.g. '${BRANCH}') that are known
+     * only when the job runs.
+     */
+    public boolean isResolvable() {
+        if (isEmpty(server) || (isEmpty(token) && isEmpty(customerId))) {
+            return false;
+        }
+        for (String value : getValues()) {
+            if (value != null && value.contains("$")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public UpgradeConfiguration toUpgradeConfiguration() {
+        return new UpgradeConfiguration(token, customerId, null, appName, environmentName, branchName, server, proxy,
+                filesStorage);
+    }
+
+    private String[] getValues() {
+        return new String[]{componentName, token, customerId, appName, environmentName, branchName, server, proxy,
+                filesStorage};
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other)
+            return true;
+        if (other == null || getClass() != other.getClass())
+            return false;
+        return Arrays.equals(getValues(), ((AgentPrefetchTarget) other).getValues());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(getValues());
+    }
+
+    @Override
+    public String toString() {
+        return "{component: '" + componentName + "', server: '" + server + "', app: '" + appName
+                + "', branch: '" + branchName + "', environment: '" + environmentName + "'}";
+    }
+}
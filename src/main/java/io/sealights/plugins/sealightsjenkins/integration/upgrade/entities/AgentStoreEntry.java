@@ -0,0 +1,103 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade.entities;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * An agent jar in the local agents store, see {@link AgentStoreIndex}.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AgentStoreEntry {
+
+    private String fileName;
+    private String componentName;
+    private String version;
+    private String digest;
+    private long size;
+    private long publishTime;
+    private long lastAccessTime;
+
+    public AgentStoreEntry() {
+    }
+
+    public AgentStoreEntry(String fileName, String componentName, String version, String digest, long size, long publishTime) {
+        this.fileName = fileName;
+        this.componentName = componentName;
+        this.version = version;
+        this.digest = digest;
+        this.size = size;
+        this.publishTime = publishTime;
+        this.lastAccessTime = publishTime;
+    }
+
+    public AgentStoreEntry(AgentStoreEntry other) {
+        this.fileName = other.fileName;
+        this.componentName = other.componentName;
+        this.version = other.version;
+        this.digest = other.digest;
+        this.size = other.size;
+        this.publishTime = other.publishTime;
+        this.lastAccessTime = other.lastAccessTime;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getComponentName() {
+        return componentName;
+    }
+
+    public void setComponentName(String componentName) {
+        this.componentName = componentName;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    /**
+     * @return the SHA-256 digest of the jar, which is also the name of the store folder that holds it.
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    public void setDigest(String digest) {
+        this.digest = digest;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getPublishTime() {
+        return publishTime;
+    }
+
+    public void setPublishTime(long publishTime) {
+        this.publishTime = publishTime;
+    }
+
+    /**
+     * @return the last time the jar was looked up. Accesses are written to the index when the store is evicted.
+     */
+    public long getLastAccessTime() {
+        return lastAccessTime;
+    }
+
+    public void setLastAccessTime(long lastAccessTime) {
+        this.lastAccessTime = lastAccessTime;
+    }
+}
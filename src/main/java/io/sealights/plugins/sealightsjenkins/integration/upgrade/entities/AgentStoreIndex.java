@@ -0,0 +1,42 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade.entities;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The index file of the local agents store: maps an agent jar name (component and version) to the entry that
+ * holds its digest.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AgentStoreIndex {
+
+    private Map<String, AgentStoreEntry> entries = new HashMap<>();
+
+    public AgentStoreIndex() {
+    }
+
+    public AgentStoreIndex(Map<String, AgentStoreEntry> entries) {
+        this.entries = new HashMap<>(entries);
+    }
+
+    /**
+     * @return a deep copy of this index, which can be modified without affecting it.
+     */
+    public AgentStoreIndex copy() {
+        AgentStoreIndex copy = new AgentStoreIndex();
+        for (Map.Entry<String, AgentStoreEntry> entry : entries.entrySet()) {
+            copy.entries.put(entry.getKey(), new AgentStoreEntry(entry.getValue()));
+        }
+        return copy;
+    }
+
+    public Map<String, AgentStoreEntry> getEntries() {
+        return entries;
+    }
+
+    public void setEntries(Map<String, AgentStoreEntry> entries) {
+        this.entries = entries;
+    }
+}
@@ -0,0 +1,68 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade.entities;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Describes a partially downloaded file, so the download can be resumed by a later attempt (or build).
+ * The digest covers the first 'length' bytes of the partial file.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class PartialDownloadState {
+
+    private String url;
+    private String etag;
+    private String lastModified;
+    private long length;
+    private String digest;
+
+    public PartialDownloadState() {
+    }
+
+    public PartialDownloadState(String url, String etag, String lastModified, long length, String digest) {
+        this.url = url;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.length = length;
+        this.digest = digest;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public void setLength(long length) {
+        this.length = length;
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+
+    public void setDigest(String digest) {
+        this.digest = digest;
+    }
+}
@@ -1,22 +1,24 @@
 package io.sealights.plugins.sealightsjenkins.services;
 
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpHost;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.conn.DefaultProxyRoutePlanner;
 
+import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.io.InputStream;
+import java.util.Map;
 
 import static io.sealights.plugins.sealightsjenkins.utils.StringUtils.isNullOrEmpty;
 
 /**
- * Http client
+ * Http client. Requests are sent with the shared clients of {@link HttpClientPool}, and the returned
+ * {@link HttpResponse} must be closed to release its connection. Each request is recorded in the {@link HttpMetrics}
+ * once its response was read or closed.
  */
 public class ApacheHttpClient {
 
@@ -24,25 +26,44 @@ public class ApacheHttpClient {
     private final String BEARER = "Bearer ";
 
     public HttpResponse getJson(HttpRequest request) throws IOException {
-        HttpGet httpGet = new HttpGet(request.getUrl());
-        return get(request.getProxy(), request.getToken(), httpGet);
+        return get(request);
     }
 
     public HttpResponse getFile(HttpRequest request) throws IOException {
-        HttpGet httpGet = new HttpGet(request.getUrl());
-        return get(request.getProxy(), request.getToken(), httpGet);
+        return get(request);
     }
 
-    private HttpResponse get(String proxy, String token, HttpGet httpGet) throws IOException {
-        CloseableHttpClient httpClient = createHttpClient(proxy);
-        if (!isNullOrEmpty(token) ){
-            httpGet.setHeader(AUTHORIZATION_HEADER, BEARER + token);
+    private HttpResponse get(HttpRequest request) throws IOException {
+        HttpGet httpGet = new HttpGet(request.getUrl());
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            httpGet.setHeader(header.getKey(), header.getValue());
+        }
+        CloseableHttpClient httpClient = HttpClientPool.getInstance().getClient(request.getProxy());
+        if (!isNullOrEmpty(request.getToken()) ){
+            httpGet.setHeader(AUTHORIZATION_HEADER, BEARER + request.getToken());
         }
 
         trySetTimeout(httpGet);
 
-        CloseableHttpResponse response = httpClient.execute(httpGet);
-        return toHttpResponse(response);
+        HttpRequestTiming timing = new HttpRequestTiming(
+                HttpMetrics.toEndpointTemplate(request.getUrl()), !isNullOrEmpty(request.getProxy()));
+        timing.sending();
+        CloseableHttpResponse response;
+        try {
+            response = httpClient.execute(httpGet);
+        } catch (IOException | RuntimeException e) {
+            timing.failed();
+            throw e;
+        }
+        timing.responseReceived(response.getStatusLine().getStatusCode());
+
+        try {
+            return toHttpResponse(response, timing);
+        } catch (IOException | RuntimeException e) {
+            response.close();
+            timing.finish();
+            throw e;
+        }
     }
 
     private void trySetTimeout(HttpGet httpGet) {
@@ -60,40 +81,62 @@ public class ApacheHttpClient {
         httpGet.setConfig(requestConfig);
     }
 
-    private HttpResponse toHttpResponse(CloseableHttpResponse response) throws IOException {
+    private HttpResponse toHttpResponse(final CloseableHttpResponse response, final HttpRequestTiming timing)
+            throws IOException {
         HttpResponse httpResponse = new HttpResponse();
+        httpResponse.setConnection(new Closeable() {
+            @Override
+            public void close() throws IOException {
+                try {
+                    response.close();
+                } finally {
+                    timing.finish();
+                }
+            }
+        });
         httpResponse.setStatusCode(response.getStatusLine().getStatusCode());
+        for (Header header : response.getAllHeaders()) {
+            httpResponse.setHeader(header.getName(), header.getValue());
+        }
 
         HttpEntity responseHttpEntity = response.getEntity();
         if (responseHttpEntity != null){
-            httpResponse.setResponseStream(responseHttpEntity.getContent());
+            httpResponse.setResponseStream(new MeteredInputStream(responseHttpEntity.getContent(), timing));
         }
         return httpResponse;
     }
 
-    private CloseableHttpClient createHttpClient(String proxy) throws MalformedURLException {
-        CloseableHttpClient httpClient;
+    /**
+     * Counts the bytes of the response body, and finishes the timing when the body was read to its end.
+     */
+    private static class MeteredInputStream extends FilterInputStream {
+        private final HttpRequestTiming timing;
 
-        if (isNullOrEmpty(proxy)) {
-            httpClient = HttpClients.createDefault();
-        } else {
-            URL proxyUrl = new URL(proxy);
-            proxy = proxyUrl.toString();
-            if (proxyUrl.getPort() == -1) {
-                proxy += ":80";
-            }
-            DefaultProxyRoutePlanner proxyRoutePlanner = createProxyRoutePlanner(proxy);
-            httpClient = HttpClients.custom().setRoutePlanner(proxyRoutePlanner).build();
+        MeteredInputStream(InputStream in, HttpRequestTiming timing) {
+            super(in);
+            this.timing = timing;
         }
 
-        return httpClient;
-    }
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                timing.finish();
+            } else {
+                timing.addBytesIn(1);
+            }
+            return b;
+        }
 
-    private DefaultProxyRoutePlanner createProxyRoutePlanner(String proxy) throws MalformedURLException {
-        URL proxyUrl = new URL(proxy);
-        HttpHost proxyHost = new HttpHost(proxyUrl.getHost(), proxyUrl.getPort(), proxyUrl.getProtocol());
-        DefaultProxyRoutePlanner routePlanner = new DefaultProxyRoutePlanner(proxyHost);
-        return routePlanner;
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read == -1) {
+                timing.finish();
+            } else {
+                timing.addBytesIn(read);
+            }
+            return read;
+        }
     }
-
 }
@@ -0,0 +1,36 @@
+package io.sealights.plugins.sealightsjenkins.services;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs work that sends blocking {@link ApacheHttpClient} requests on a shared pool of background threads and returns
+ * its result as a future, so a caller can send several requests at the same time and wait for them together (e.g. the
+ * version lookups of the agent prefetch). This is not non-blocking I/O: each request holds a background thread until
+ * its response arrived.
+ * <p>
+ * All the work shares 'sl.httpClient.backgroundThreads' threads (8 by default) and the connections of the
+ * {@link HttpClientPool}. Work beyond that waits in a queue until a thread is free.
+ */
+public class BackgroundHttpExecutor {
+
+    public static final String THREADS_PROPERTY = "sl.httpClient.backgroundThreads";
+    private static final int DEFAULT_THREADS = 8;
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(1, Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS)), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "SeaLights background http");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    public <T> Future<T> submit(Callable<T> work) {
+        return executor.submit(work);
+    }
+}
@@ -0,0 +1,116 @@
+package io.sealights.plugins.sealightsjenkins.services;
+
+import org.apache.http.HttpHost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.DefaultProxyRoutePlanner;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import static io.sealights.plugins.sealightsjenkins.utils.StringUtils.isNullOrEmpty;
+
+/**
+ * The http clients of the plugin: one pooled client per proxy, shared by all requests, so connections (and their
+ * TLS sessions) are kept alive and reused.
+ * <p>
+ * The pool size is set by 'sl.httpClient.maxConnections' (20 by default) and 'sl.httpClient.maxConnectionsPerRoute'
+ * (10 by default). Connections that are idle for 'sl.httpClient.idleTimeoutSeconds' (30 by default) are closed.
+ * The clients are closed when Jenkins stops. The requests are measured, see {@link HttpMetrics}.
+ */
+public class HttpClientPool {
+
+    public static final String MAX_CONNECTIONS_PROPERTY = "sl.httpClient.maxConnections";
+    public static final String MAX_CONNECTIONS_PER_ROUTE_PROPERTY = "sl.httpClient.maxConnectionsPerRoute";
+    public static final String IDLE_TIMEOUT_PROPERTY = "sl.httpClient.idleTimeoutSeconds";
+    private static final int DEFAULT_MAX_CONNECTIONS = 20;
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 10;
+    private static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 30;
+    // Pooled connections that were not used for this long are checked before they are reused.
+    private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
+    private static final String NO_PROXY = "";
+
+    private static final java.util.logging.Logger LOGGER = java.util.logging.Logger.getLogger(HttpClientPool.class.getName());
+    private static final HttpClientPool instance = new HttpClientPool();
+
+    private final ConcurrentMap<String, CloseableHttpClient> clients = new ConcurrentHashMap<>();
+
+    HttpClientPool() {
+    }
+
+    public static HttpClientPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * @param proxy the proxy url, or null for direct connections
+     * @return the shared client of the given proxy. It must not be closed by the caller.
+     */
+    public CloseableHttpClient getClient(String proxy) throws MalformedURLException {
+        String key = isNullOrEmpty(proxy) ? NO_PROXY : proxy;
+        CloseableHttpClient client = clients.get(key);
+        if (client != null) {
+            return client;
+        }
+        synchronized (this) {
+            client = clients.get(key);
+            if (client == null) {
+                client = createClient(proxy);
+                clients.put(key, client);
+            }
+            return client;
+        }
+    }
+
+    /**
+     * Closes all the clients and their connections. Clients that are requested later are created again.
+     */
+    public synchronized void shutdown() {
+        List<CloseableHttpClient> clientsToClose = new ArrayList<>(clients.values());
+        clients.clear();
+        for (CloseableHttpClient client : clientsToClose) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Failed to close an http client.", e);
+            }
+        }
+    }
+
+    private static CloseableHttpClient createClient(String proxy) throws MalformedURLException {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+                HttpTransportInstrumentation.createSocketFactoryRegistry(), HttpTransportInstrumentation.createDnsResolver());
+        connectionManager.setMaxTotal(Integer.getInteger(MAX_CONNECTIONS_PROPERTY, DEFAULT_MAX_CONNECTIONS));
+        connectionManager.setDefaultMaxPerRoute(
+                Integer.getInteger(MAX_CONNECTIONS_PER_ROUTE_PROPERTY, DEFAULT_MAX_CONNECTIONS_PER_ROUTE));
+        connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+
+        HttpClientBuilder builder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .evictExpiredConnections()
+                .evictIdleConnections((long) Integer.getInteger(IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT_SECONDS),
+                        TimeUnit.SECONDS)
+                .setRetryHandler(HttpTransportInstrumentation.createRetryHandler())
+                .addInterceptorLast(HttpTransportInstrumentation.createBytesSentInterceptor());
+        if (!isNullOrEmpty(proxy)) {
+            builder.setRoutePlanner(createProxyRoutePlanner(proxy));
+        }
+        return builder.build();
+    }
+
+    private static DefaultProxyRoutePlanner createProxyRoutePlanner(String proxy) throws MalformedURLException {
+        URL proxyUrl = new URL(proxy);
+        int port = proxyUrl.getPort() == -1 ? 80 : proxyUrl.getPort();
+        HttpHost proxyHost = new HttpHost(proxyUrl.getHost(), port, proxyUrl.getProtocol());
+        return new DefaultProxyRoutePlanner(proxyHost);
+    }
+}
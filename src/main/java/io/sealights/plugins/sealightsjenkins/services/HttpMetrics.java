@@ -0,0 +1,218 @@
+package io.sealights.plugins.sealightsjenkins.services;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aggregated data of the http requests of the plugin since Jenkins started, per endpoint and proxy use.
+ * <p>
+ * An endpoint is the host and path of the request, without the query and with the path segments that look like
+ * versions or ids (e.g. 'sealights-java-3.1.2000.zip') replaced by '*', so all the downloads of an agent share an
+ * endpoint.
+ */
+public class HttpMetrics {
+
+    private static final HttpMetrics instance = new HttpMetrics();
+
+    private final Map<String, EndpointStats> statsByEndpoint = new TreeMap<>();
+
+    public static HttpMetrics getInstance() {
+        return instance;
+    }
+
+    public synchronized void record(HttpRequestTiming timing) {
+        String key = timing.getEndpoint() + (timing.isViaProxy() ? " (proxy)" : "");
+        EndpointStats stats = statsByEndpoint.get(key);
+        if (stats == null) {
+            stats = new EndpointStats(timing.getEndpoint(), timing.isViaProxy());
+            statsByEndpoint.put(key, stats);
+        }
+        stats.add(timing);
+    }
+
+    /**
+     * @return a copy of the current statistics, sorted by endpoint.
+     */
+    public synchronized List<EndpointStats> getStats() {
+        List<EndpointStats> stats = new ArrayList<>();
+        for (EndpointStats endpointStats : statsByEndpoint.values()) {
+            stats.add(endpointStats.copy());
+        }
+        return stats;
+    }
+
+    public synchronized void reset() {
+        statsByEndpoint.clear();
+    }
+
+    public static String toEndpointTemplate(String url) {
+        try {
+            URL parsedUrl = new URL(url);
+            StringBuilder template = new StringBuilder(parsedUrl.getHost());
+            if (parsedUrl.getPort() != -1) {
+                template.append(':').append(parsedUrl.getPort());
+            }
+            for (String segment : parsedUrl.getPath().split("/")) {
+                if (!segment.isEmpty()) {
+                    template.append('/').append(isVariable(segment) ? "*" : segment);
+                }
+            }
+            return template.toString();
+        } catch (MalformedURLException e) {
+            return "unknown";
+        }
+    }
+
+    /*
+    * Versions, numeric ids, UUIDs and hashes. Short segments such as 'v2' are kept.
+    * */
+    private static boolean isVariable(String segment) {
+        boolean hasDigit = false;
+        boolean allDigits = true;
+        for (char c : segment.toCharArray()) {
+            if (Character.isDigit(c)) {
+                hasDigit = true;
+            } else {
+                allDigits = false;
+            }
+        }
+        return hasDigit && (allDigits || segment.contains(".") || segment.contains("-") || segment.length() > 16);
+    }
+
+    public static class EndpointStats {
+        private final String endpoint;
+        private final boolean viaProxy;
+        private long count;
+        private long failures;
+        // By the first digit of the status code, where 0 is no response.
+        private long[] statusCounts = new long[6];
+        private long retries;
+        private long bytesIn;
+        private long bytesOut;
+        private long connections;
+        private LatencyHistogram dns = new LatencyHistogram();
+        private LatencyHistogram connect = new LatencyHistogram();
+        private LatencyHistogram tls = new LatencyHistogram();
+        private LatencyHistogram ttfb = new LatencyHistogram();
+        private LatencyHistogram total = new LatencyHistogram();
+
+        EndpointStats(String endpoint, boolean viaProxy) {
+            this.endpoint = endpoint;
+            this.viaProxy = viaProxy;
+        }
+
+        void add(HttpRequestTiming timing) {
+            count++;
+            int statusClass = timing.getStatusCode() / 100;
+            if (statusClass <= 0 || statusClass >= statusCounts.length) {
+                statusClass = 0;
+            }
+            statusCounts[statusClass]++;
+            if (statusClass == 0 || statusClass == 5) {
+                failures++;
+            }
+            retries += timing.getRetries();
+            bytesIn += timing.getBytesIn();
+            bytesOut += timing.getBytesOut();
+            // Only new connections have a setup time, so reused connections do not hide slow ones.
+            if (timing.getConnections() > 0) {
+                connections += timing.getConnections();
+                dns.record(timing.getDnsMillis());
+                connect.record(timing.getConnectMillis());
+                tls.record(timing.getTlsMillis());
+            }
+            if (timing.getStatusCode() != HttpRequestTiming.NO_STATUS_CODE) {
+                ttfb.record(timing.getTtfbMillis());
+            }
+            total.record(timing.getTotalMillis());
+        }
+
+        EndpointStats copy() {
+            EndpointStats copy = new EndpointStats(endpoint, viaProxy);
+            copy.count = count;
+            copy.failures = failures;
+            copy.statusCounts = statusCounts.clone();
+            copy.retries = retries;
+            copy.bytesIn = bytesIn;
+            copy.bytesOut = bytesOut;
+            copy.connections = connections;
+            copy.dns = dns.copy();
+            copy.connect = connect.copy();
+            copy.tls = tls.copy();
+            copy.ttfb = ttfb.copy();
+            copy.total = total.copy();
+            return copy;
+        }
+
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        public boolean isViaProxy() {
+            return viaProxy;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the requests that got no response or a server error (5xx).
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return the number of responses by status class ('2xx', '3xx'...), and of requests with no response.
+         */
+        public Map<String, Long> getStatusCounts() {
+            Map<String, Long> counts = new TreeMap<>();
+            counts.put("none", statusCounts[0]);
+            for (int statusClass = 1; statusClass < statusCounts.length; statusClass++) {
+                counts.put(statusClass + "xx", statusCounts[statusClass]);
+            }
+            return counts;
+        }
+
+        public long getRetries() {
+            return retries;
+        }
+
+        public long getBytesIn() {
+            return bytesIn;
+        }
+
+        public long getBytesOut() {
+            return bytesOut;
+        }
+
+        public long getConnections() {
+            return connections;
+        }
+
+        public LatencyHistogram getDns() {
+            return dns;
+        }
+
+        public LatencyHistogram getConnect() {
+            return connect;
+        }
+
+        public LatencyHistogram getTls() {
+            return tls;
+        }
+
+        public LatencyHistogram getTtfb() {
+            return ttfb;
+        }
+
+        public LatencyHistogram getTotal() {
+            return total;
+        }
+    }
+}
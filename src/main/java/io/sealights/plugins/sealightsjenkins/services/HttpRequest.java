@@ -1,5 +1,8 @@
 package io.sealights.plugins.sealightsjenkins.services;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Created by Ronis on 8/2/2017.
  */
@@ -7,6 +10,7 @@ public class HttpRequest {
     private String url;
     private String proxy;
     private String token;
+    private Map<String, String> headers = new LinkedHashMap<>();
 
     public HttpRequest(String url, String proxy, String token) {
         this.url = url;
@@ -30,4 +34,30 @@ public class HttpRequest {
     public String getToken() {
         return token;
     }
+
+    public HttpRequest withHeader(String name, String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    /**
+     * Makes the request conditional: the server responds with '304 Not Modified' (and no body) if the resource
+     * still has the given ETag or was not modified since the given time.
+     *
+     * @param etag         the ETag of the cached copy, or null
+     * @param lastModified the Last-Modified of the cached copy, or null
+     */
+    public HttpRequest withValidators(String etag, String lastModified) {
+        if (etag != null) {
+            withHeader("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            withHeader("If-Modified-Since", lastModified);
+        }
+        return this;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
 }
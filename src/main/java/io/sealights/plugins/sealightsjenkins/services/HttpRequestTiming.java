@@ -0,0 +1,183 @@
+package io.sealights.plugins.sealightsjenkins.services;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where the time of a single http request went: DNS lookup, connecting (TCP), the TLS handshake, waiting for the
+ * response headers (time to first byte, which includes the connection setup) and reading the whole response.
+ * <p>
+ * The connection pool reports the connection setup of the request that runs on the current thread (see
+ * {@link #current()}). Reused connections have no setup. When a proxy is used, the DNS lookup and the TCP
+ * connection are of the proxy, and the TLS handshake is of the server, through the proxy.
+ */
+public class HttpRequestTiming {
+
+    public static final int NO_STATUS_CODE = 0;
+
+    private static final ThreadLocal<HttpRequestTiming> current = new ThreadLocal<>();
+
+    private final String endpoint;
+    private final boolean viaProxy;
+    private final long startNanos;
+    private long dnsNanos;
+    private long connectNanos;
+    private long tlsNanos;
+    private int connections;
+    private long ttfbNanos;
+    private long totalNanos;
+    private int statusCode = NO_STATUS_CODE;
+    private long bytesIn;
+    private long bytesOut;
+    private int retries;
+    private boolean finished;
+
+    public HttpRequestTiming(String endpoint, boolean viaProxy) {
+        this.endpoint = endpoint;
+        this.viaProxy = viaProxy;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * @return the timing of the request that is being sent on the current thread, or null.
+     */
+    static HttpRequestTiming current() {
+        return current.get();
+    }
+
+    /**
+     * Makes this the timing of the request that is sent on the current thread, until {@link #responseReceived} or
+     * {@link #failed}.
+     */
+    void sending() {
+        current.set(this);
+    }
+
+    synchronized void addDns(long nanos) {
+        dnsNanos += nanos;
+    }
+
+    synchronized void addConnect(long nanos) {
+        connectNanos += nanos;
+        connections++;
+    }
+
+    synchronized void addTls(long nanos) {
+        tlsNanos += nanos;
+    }
+
+    synchronized void addBytesIn(long bytes) {
+        bytesIn += bytes;
+    }
+
+    synchronized void addBytesOut(long bytes) {
+        bytesOut += bytes;
+    }
+
+    synchronized void addRetry() {
+        retries++;
+    }
+
+    synchronized long getTlsNanos() {
+        return tlsNanos;
+    }
+
+    synchronized void responseReceived(int statusCode) {
+        current.remove();
+        this.statusCode = statusCode;
+        this.ttfbNanos = System.nanoTime() - startNanos;
+    }
+
+    void failed() {
+        current.remove();
+        finish();
+    }
+
+    /**
+     * Records the request in the {@link HttpMetrics}, once the response was read or closed (or the request failed).
+     */
+    void finish() {
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            totalNanos = System.nanoTime() - startNanos;
+        }
+        HttpMetrics.getInstance().record(this);
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public boolean isViaProxy() {
+        return viaProxy;
+    }
+
+    public synchronized long getDnsMillis() {
+        return toMillis(dnsNanos);
+    }
+
+    public synchronized long getConnectMillis() {
+        return toMillis(connectNanos);
+    }
+
+    public synchronized long getTlsMillis() {
+        return toMillis(tlsNanos);
+    }
+
+    /**
+     * @return the number of new connections the request made (0 when it reused a pooled connection).
+     */
+    public synchronized int getConnections() {
+        return connections;
+    }
+
+    public synchronized long getTtfbMillis() {
+        return toMillis(ttfbNanos);
+    }
+
+    public synchronized long getTotalMillis() {
+        return toMillis(totalNanos);
+    }
+
+    /**
+     * @return the status code, or {@link #NO_STATUS_CODE} if no response was received.
+     */
+    public synchronized int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return the bytes of the response body that were read.
+     */
+    public synchronized long getBytesIn() {
+        return bytesIn;
+    }
+
+    /**
+     * @return the bytes that were sent, including the request line and headers.
+     */
+    public synchronized long getBytesOut() {
+        return bytesOut;
+    }
+
+    public synchronized int getRetries() {
+        return retries;
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return endpoint + (viaProxy ? " (proxy)" : "") + ": status=" + statusCode +
+                ", dns=" + toMillis(dnsNanos) + "ms" +
+                ", connect=" + toMillis(connectNanos) + "ms" +
+                ", tls=" + toMillis(tlsNanos) + "ms" +
+                ", ttfb=" + toMillis(ttfbNanos) + "ms" +
+                ", total=" + toMillis(totalNanos) + "ms" +
+                ", in=" + bytesIn + "B, out=" + bytesOut + "B, retries=" + retries;
+    }
+}
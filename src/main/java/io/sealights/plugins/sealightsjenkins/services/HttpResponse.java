@@ -1,12 +1,23 @@
 package io.sealights.plugins.sealightsjenkins.services;
 
-
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Closing the response releases its connection. A response stream that was read to its end releases the connection
+ * by itself, and a stream that was not is discarded with its connection.
+ */
+public class HttpResponse implements Closeable {
 
-public class HttpResponse {
+    public static final int NOT_MODIFIED = 304;
 
     private int statusCode;
     private InputStream responseStream;
+    private Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private Closeable connection;
 
     public int getStatusCode() {
         return statusCode;
@@ -17,6 +28,12 @@ public class HttpResponse {
     public boolean isStatusCodeOk(){
         return (statusCode >= 200) && (statusCode < 400);
     }
+    /**
+     * @return true if the server responded to a conditional request that the cached copy is still valid.
+     */
+    public boolean isNotModified() {
+        return statusCode == NOT_MODIFIED;
+    }
     public InputStream getResponseStream() {
         return responseStream;
     }
@@ -24,6 +41,35 @@ public class HttpResponse {
         this.responseStream = responseStream;
     }
 
+    /**
+     * @return the value of the header (the name is case insensitive), or null.
+     */
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+    public void setHeader(String name, String value) {
+        headers.put(name, value);
+    }
+    public String getETag() {
+        return getHeader("ETag");
+    }
+    public String getLastModified() {
+        return getHeader("Last-Modified");
+    }
+
+    public void setConnection(Closeable connection) {
+        this.connection = connection;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (connection != null) {
+            connection.close();
+        } else if (responseStream != null) {
+            responseStream.close();
+        }
+    }
+
     @Override
     public String toString() {
         return "HttpResponse {statusCode:" + statusCode + ", responseStream:"
@@ -0,0 +1,144 @@
+package io.sealights.plugins.sealightsjenkins.services;
+
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.apache.http.ssl.SSLContexts;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+
+/**
+ * The parts of the pooled http clients (see {@link HttpClientPool}) that report the connection setup, bytes sent and
+ * retries of each request to its {@link HttpRequestTiming}. They behave like the http client defaults otherwise.
+ */
+class HttpTransportInstrumentation {
+
+    private HttpTransportInstrumentation() {
+    }
+
+    static Registry<ConnectionSocketFactory> createSocketFactoryRegistry() {
+        return RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", new TimedPlainSocketFactory())
+                .register("https", new TimedSSLSocketFactory())
+                .build();
+    }
+
+    static DnsResolver createDnsResolver() {
+        return new DnsResolver() {
+            @Override
+            public InetAddress[] resolve(String host) throws UnknownHostException {
+                long start = System.nanoTime();
+                try {
+                    return SystemDefaultDnsResolver.INSTANCE.resolve(host);
+                } finally {
+                    HttpRequestTiming timing = HttpRequestTiming.current();
+                    if (timing != null) {
+                        timing.addDns(System.nanoTime() - start);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Counts the bytes sent for each response (including redirects and proxy tunnels), and resets the counters of
+     * the connection for its next request.
+     */
+    static HttpResponseInterceptor createBytesSentInterceptor() {
+        return new HttpResponseInterceptor() {
+            @Override
+            public void process(org.apache.http.HttpResponse response, HttpContext context) {
+                HttpConnection connection = HttpCoreContext.adapt(context).getConnection();
+                if (connection == null || connection.getMetrics() == null) {
+                    return;
+                }
+                HttpRequestTiming timing = HttpRequestTiming.current();
+                if (timing != null) {
+                    timing.addBytesOut(connection.getMetrics().getSentBytesCount());
+                }
+                connection.getMetrics().reset();
+            }
+        };
+    }
+
+    static DefaultHttpRequestRetryHandler createRetryHandler() {
+        return new DefaultHttpRequestRetryHandler() {
+            @Override
+            public boolean retryRequest(IOException exception, int executionCount, HttpContext context) {
+                boolean retry = super.retryRequest(exception, executionCount, context);
+                HttpRequestTiming timing = HttpRequestTiming.current();
+                if (retry && timing != null) {
+                    timing.addRetry();
+                }
+                return retry;
+            }
+        };
+    }
+
+    private static class TimedPlainSocketFactory extends PlainConnectionSocketFactory {
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+                                    InetSocketAddress localAddress, HttpContext context) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+            } finally {
+                HttpRequestTiming timing = HttpRequestTiming.current();
+                if (timing != null) {
+                    timing.addConnect(System.nanoTime() - start);
+                }
+            }
+        }
+    }
+
+    /**
+     * Connecting includes the TLS handshake ({@link #createLayeredSocket}), which is reported on its own.
+     */
+    private static class TimedSSLSocketFactory extends SSLConnectionSocketFactory {
+        TimedSSLSocketFactory() {
+            super(SSLContexts.createDefault(), getDefaultHostnameVerifier());
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+                                    InetSocketAddress localAddress, HttpContext context) throws IOException {
+            HttpRequestTiming timing = HttpRequestTiming.current();
+            long tlsNanosBefore = timing == null ? 0 : timing.getTlsNanos();
+            long start = System.nanoTime();
+            try {
+                return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+            } finally {
+                if (timing != null) {
+                    timing.addConnect(System.nanoTime() - start - (timing.getTlsNanos() - tlsNanosBefore));
+                }
+            }
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.createLayeredSocket(socket, target, port, context);
+            } finally {
+                HttpRequestTiming timing = HttpRequestTiming.current();
+                if (timing != null) {
+                    timing.addTls(System.nanoTime() - start);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package io.sealights.plugins.sealightsjenkins.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts latencies in fixed buckets (from 5ms to 30s), so percentiles can be estimated without keeping every value.
+ * A percentile is reported as the upper bound of its bucket (or the maximum, for the last bucket). Not thread safe.
+ */
+public class LatencyHistogram {
+
+    static final long[] BUCKET_BOUNDS_MILLIS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+    // The last bucket holds everything above the last bound.
+    private final long[] counts = new long[BUCKET_BOUNDS_MILLIS.length + 1];
+    private long count;
+    private long totalMillis;
+    private long maxMillis;
+
+    public void record(long millis) {
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MILLIS.length && millis > BUCKET_BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        counts[bucket]++;
+        count++;
+        totalMillis += millis;
+        maxMillis = Math.max(maxMillis, millis);
+    }
+
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        System.arraycopy(counts, 0, copy.counts, 0, counts.length);
+        copy.count = count;
+        copy.totalMillis = totalMillis;
+        copy.maxMillis = maxMillis;
+        return copy;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getAverageMillis() {
+        return count == 0 ? 0 : totalMillis / count;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    public long getMedianMillis() {
+        return getPercentileMillis(50);
+    }
+
+    public long getP95Millis() {
+        return getPercentileMillis(95);
+    }
+
+    public long getP99Millis() {
+        return getPercentileMillis(99);
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     */
+    public long getPercentileMillis(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_BOUNDS_MILLIS.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(BUCKET_BOUNDS_MILLIS[bucket], maxMillis);
+            }
+        }
+        return maxMillis;
+    }
+
+    /**
+     * @return the count of each bucket, by its upper bound (e.g. '&lt;=250ms').
+     */
+    public Map<String, Long> getBuckets() {
+        Map<String, Long> buckets = new LinkedHashMap<>();
+        for (int bucket = 0; bucket < BUCKET_BOUNDS_MILLIS.length; bucket++) {
+            buckets.put("<=" + BUCKET_BOUNDS_MILLIS[bucket] + "ms", counts[bucket]);
+        }
+        buckets.put(">" + BUCKET_BOUNDS_MILLIS[BUCKET_BOUNDS_MILLIS.length - 1] + "ms", counts[BUCKET_BOUNDS_MILLIS.length]);
+        return buckets;
+    }
+}
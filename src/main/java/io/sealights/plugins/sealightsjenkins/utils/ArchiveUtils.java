@@ -1,12 +1,28 @@
 package io.sealights.plugins.sealightsjenkins.utils;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 public class ArchiveUtils {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // The 'end of central directory' record, which ends every zip, and may be followed by a comment of up to 64KB.
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_LENGTH = 22;
+    private static final int EOCD_MAX_COMMENT_LENGTH = 0xFFFF;
+    // Stands for 'see the zip64 record' in the entries count of the record.
+    private static final int ZIP64_ENTRIES_COUNT = 0xFFFF;
+
     private Logger logger;
 
     public ArchiveUtils(Logger logger) {
@@ -21,60 +37,142 @@ public class ArchiveUtils {
         if (StringUtils.isNullOrEmpty(destFolder)) {
             throw new IllegalArgumentException("Unable to unzip because the destination folder is null or empty.");
         }
-        ZipInputStream zis = null;
-        try {
-
-            byte[] buffer = new byte[1024];
+        try (InputStream zipStream = new FileInputStream(zipName)) {
+            unzip(zipStream, new File(destFolder));
+        } catch (Exception e) {
+            logger.error("Failed to unzip the current file. zipName: '" + zipName + "', destFolder: '" + destFolder + "'. Error", e);
+        }
+    }
 
-            //create output directory is not exists
-            FileAndFolderUtils.verifyFolderExists(destFolder);
+    /**
+     * Extracts the entries of the zip while they are read from the stream (e.g. an http response), so the zip itself
+     * is never written to disk. The stream is read to its end, but not closed.
+     * <p>
+     * A stream that ends right after an entry looks like a complete zip to {@link ZipInputStream}, so the zip must
+     * also end with its central directory, listing as many entries as were extracted.
+     *
+     * @return the extracted files
+     * @throws IOException if the stream is not a valid (and complete) zip, or an entry points outside the
+     *                     destination folder.
+     */
+    public List<File> unzip(InputStream zipStream, File destFolder) throws IOException {
+        if (!destFolder.isDirectory() && !destFolder.mkdirs()) {
+            throw new IOException("Unable to create the folder '" + destFolder + "'.");
+        }
+        String destFolderPath = destFolder.getCanonicalPath() + File.separator;
+        List<File> extractedFiles = new ArrayList<>();
+        byte[] buffer = new byte[BUFFER_SIZE];
 
-            //get the zip file content
-            zis = new ZipInputStream(new FileInputStream(zipName));
-            //get the zipped file list entry
-            ZipEntry ze = zis.getNextEntry();
+        TailInputStream tailStream = new TailInputStream(zipStream, EOCD_LENGTH + EOCD_MAX_COMMENT_LENGTH);
+        BufferedInputStream bufferedStream = new BufferedInputStream(tailStream, BUFFER_SIZE);
+        ZipInputStream zis = new ZipInputStream(bufferedStream);
+        ZipEntry ze;
+        int entriesCount = 0;
+        while ((ze = zis.getNextEntry()) != null) {
+            entriesCount++;
+            File entryFile = new File(destFolder, ze.getName());
+            // Guards against "zip slip": entries such as '../../file' must stay inside the destination folder.
+            if (!entryFile.getCanonicalPath().startsWith(destFolderPath)) {
+                throw new IOException("The zip entry '" + ze.getName() + "' is outside of the destination folder.");
+            }
+            if (ze.isDirectory()) {
+                entryFile.mkdirs();
+                continue;
+            }
+            entryFile.getParentFile().mkdirs();
+            logger.debug("File unzip : " + entryFile.getAbsoluteFile());
+            writeEntry(zis, entryFile, buffer);
+            extractedFiles.add(entryFile);
+        }
 
-            while (ze != null) {
-                String entryFileName = ze.getName();
-                try {
-                    String filePath = PathUtils.join(destFolder, entryFileName);
-                    File currentZippedFile = new File(filePath);
-                    logger.debug("File unzip : " + currentZippedFile.getAbsoluteFile());
+        // The rest of the stream is the central directory
+        while (bufferedStream.read(buffer) >= 0) {
+            // Skip
+        }
+        verifyEndOfCentralDirectory(tailStream.getTail(), entriesCount);
+        return extractedFiles;
+    }
 
-                    //create all non exists folders
-                    //else you will hit FileNotFoundException for compressed folder
-                    new File(currentZippedFile.getParent()).mkdirs();
+    private static void verifyEndOfCentralDirectory(byte[] tail, int entriesCount) throws IOException {
+        for (int i = tail.length - EOCD_LENGTH; i >= 0; i--) {
+            if (readInt(tail, i) == EOCD_SIGNATURE && i + EOCD_LENGTH + readShort(tail, i + 20) == tail.length) {
+                int totalEntries = readShort(tail, i + 10);
+                if (totalEntries != ZIP64_ENTRIES_COUNT && totalEntries != entriesCount) {
+                    throw new IOException("The zip is truncated, it has " + totalEntries + " entries but only "
+                            + entriesCount + " were read.");
+                }
+                return;
+            }
+        }
+        throw new IOException("The zip is truncated, its central directory is missing.");
+    }
 
-                    FileOutputStream fos = new FileOutputStream(currentZippedFile);
+    private static int readShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8;
+    }
 
-                    int len;
-                    while ((len = zis.read(buffer)) > 0) {
-                        fos.write(buffer, 0, len);
-                    }
+    private static int readInt(byte[] bytes, int offset) {
+        return readShort(bytes, offset) | readShort(bytes, offset + 2) << 16;
+    }
 
-                    fos.close();
-                    ze = zis.getNextEntry();
-                } catch (Exception e) {
-                    logger.error("Failed to process the current zip entry. entryFileName: '" + entryFileName + "'. Error", e);
+    private void writeEntry(ZipInputStream zis, File entryFile, byte[] buffer) throws IOException {
+        try (FileChannel channel = FileChannel.open(entryFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            int len;
+            while ((len = zis.read(buffer)) > 0) {
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, len);
+                while (byteBuffer.hasRemaining()) {
+                    channel.write(byteBuffer);
                 }
             }
-            zis.closeEntry();
-        } catch (Exception e) {
-            logger.error("Failed to unzip the current file. zipName: '" + zipName + "', destFolder: '" + destFolder + "'. Error", e);
-        } finally {
-            tryCloseStreamSafe(zis);
         }
     }
 
-    private void tryCloseStreamSafe(ZipInputStream zis) {
-        if (zis != null) {
-            try{
-                zis.close();
-            }catch (Exception e)
-            {
-                logger.error("Failed closing the stream. Error:", e);
+    /*
+    * Keeps the last bytes read from the stream.
+    * */
+    private static class TailInputStream extends FilterInputStream {
+        private final byte[] tail;
+        private long count;
+
+        TailInputStream(InputStream in, int tailSize) {
+            super(in);
+            this.tail = new byte[tailSize];
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                tail[(int) (count++ % tail.length)] = (byte) b;
             }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            int n = super.read(buffer, off, len);
+            for (int i = 0; i < n; i++) {
+                tail[(int) (count++ % tail.length)] = buffer[off + i];
+            }
+            return n;
+        }
 
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes must be recorded too
+            byte[] buffer = new byte[(int) Math.min(n, BUFFER_SIZE)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        byte[] getTail() {
+            int size = (int) Math.min(count, tail.length);
+            byte[] result = new byte[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = tail[(int) ((count - size + i) % tail.length)];
+            }
+            return result;
         }
     }
 }
@@ -0,0 +1,54 @@
+package io.sealights.plugins.sealightsjenkins.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Helper methods for calculating file checksums.
+ */
+public class ChecksumUtils {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
+    public static String sha256(File file) throws IOException {
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            return sha256(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    public static String sha256(InputStream inputStream) throws IOException {
+        MessageDigest digest = createSha256Digest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int len;
+        while ((len = inputStream.read(buffer)) != -1) {
+            digest.update(buffer, 0, len);
+        }
+        return toHex(digest.digest());
+    }
+
+    public static MessageDigest createSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM.", e);
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xFF;
+            chars[i * 2] = HEX_CHARS[b >>> 4];
+            chars[i * 2 + 1] = HEX_CHARS[b & 0x0F];
+        }
+        return new String(chars);
+    }
+}
@@ -1,8 +1,6 @@
 package io.sealights.plugins.sealightsjenkins.utils;
 
-import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.File;
 
 public class FileAndFolderUtils {
 
@@ -17,21 +15,4 @@ public class FileAndFolderUtils {
 
         return f.isDirectory() || f.mkdirs();
     }
-
-
-    public static File findFileInFolder(String folder, String fileName) {
-        File folderFile = new File(folder);
-        File[] files = folderFile.listFiles();
-
-        if (files == null)
-            return null;
-
-        for (File f : files) {
-            if (f.getName().equals(fileName))
-                return f;
-        }
-
-        return null;
-    }
-
 }
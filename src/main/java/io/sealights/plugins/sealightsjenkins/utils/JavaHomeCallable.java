@@ -0,0 +1,24 @@
+package io.sealights.plugins.sealightsjenkins.utils;
+
+import hudson.remoting.Callable;
+import org.jenkinsci.remoting.RoleChecker;
+
+import java.io.IOException;
+
+/**
+ * Returns the path of the 'java' executable of the JVM the callable runs in (e.g. the one of a remote node).
+ */
+public class JavaHomeCallable implements Callable<String, IOException> {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public String call() throws IOException {
+        String javaHome = System.getProperty("java.home");
+        return PathUtils.join(javaHome, "bin", "java");
+    }
+
+    @Override
+    public void checkRoles(RoleChecker roleChecker) throws SecurityException {
+
+    }
+}
@@ -0,0 +1,30 @@
+package io.sealights.plugins.sealightsjenkins.utils;
+
+import hudson.remoting.Callable;
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution.JavaVersionDetector;
+import org.jenkinsci.remoting.RoleChecker;
+
+import java.io.IOException;
+
+/**
+ * Returns the major version of the given 'java' executable of the machine the callable runs on (e.g. a remote node).
+ */
+public class JavaVersionCallable implements Callable<Integer, IOException> {
+    private static final long serialVersionUID = 1L;
+
+    private final String javaPath;
+
+    public JavaVersionCallable(String javaPath) {
+        this.javaPath = javaPath;
+    }
+
+    @Override
+    public Integer call() throws IOException {
+        return JavaVersionDetector.getMajorVersion(javaPath);
+    }
+
+    @Override
+    public void checkRoles(RoleChecker roleChecker) throws SecurityException {
+
+    }
+}
@@ -4,6 +4,7 @@ import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Util;
 import hudson.model.*;
+import hudson.slaves.WorkspaceList;
 import jenkins.model.Jenkins;
 
 import java.io.File;
@@ -58,6 +59,14 @@ public class JenkinsUtils {
         return envVars.expand(envVarKey);
     }
 
+    /**
+     * @return the temporary folder of the given workspace ('&lt;workspace&gt;@tmp'), where build steps keep their scratch
+     * files. Same as 'WorkspaceList.tempDir', which is newer than the Jenkins version this plugin supports.
+     */
+    public static FilePath getWorkspaceTempDir(FilePath workspace) {
+        return workspace.sibling(workspace.getName() + System.getProperty(WorkspaceList.class.getName(), "@") + "tmp");
+    }
+
     public static String getUpstreamBuildName(AbstractBuild<?, ?> build, String upstreamProjectName, Logger logger) {
         String finalBuildName = getBuildNumberFromUpstreamBuild(build.getCauses(), upstreamProjectName);
         if (StringUtils.isNullOrEmpty(finalBuildName)) {
@@ -5,14 +5,20 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class JsonSerializer {
     private static ObjectMapper objectMapper = new ObjectMapper();
+    // Readers are immutable and thread safe, so each type's reader is built once and shared.
+    private static final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
 
     public static String serialize(Object target, boolean prettyPrint) {
         try {
@@ -35,7 +41,7 @@ public class JsonSerializer {
     public static <T> T deserialize(String json, Class<T> targetType) {
         T deserializedObject = null;
         try {
-            deserializedObject = objectMapper.readValue(json, targetType);
+            deserializedObject = getReader(targetType).readValue(json);
         } catch (JsonParseException | JsonMappingException e) {
             throw new RuntimeException("Failed during JSON deserialization. Error: " + e.toString(), e);
         } catch (IOException e) {
@@ -45,6 +51,16 @@ public class JsonSerializer {
         return deserializedObject;
     }
 
+    /**
+     * Deserializes the JSON while it is read from the stream, without reading it into a string first. The encoding
+     * (UTF-8, UTF-16 or UTF-32) is detected from the stream.
+     *
+     * @throws IOException if the stream failed or does not hold valid JSON of the target type
+     */
+    public static <T> T deserialize(InputStream stream, Class<T> targetType) throws IOException {
+        return getReader(targetType).readValue(stream);
+    }
+
     public static <T1, T2> Map<T1, T2> deserializeMap(String json) {
         Map<T1, T2> deserializedObject = null;
         try {
@@ -72,6 +88,15 @@ public class JsonSerializer {
         return deserializedObject;
     }
 
+    private static ObjectReader getReader(Class<?> targetType) {
+        ObjectReader reader = readers.get(targetType);
+        if (reader == null) {
+            reader = objectMapper.readerFor(targetType);
+            readers.putIfAbsent(targetType, reader);
+        }
+        return reader;
+    }
+
     public static void serializeToFile(File file, Object obj){
         try {
             ObjectMapper om = new ObjectMapper();
@@ -28,6 +28,14 @@ public class Logger implements ILogger {
         this(printStream, "SeaLights Jenkins Plugin");
     }
 
+    /**
+     * @return a logger that writes to the same stream, with the given text appended to the prefix
+     * (e.g. to tell apart messages of concurrent tasks).
+     */
+    public Logger withPrefix(String prefixSuffix) {
+        return new Logger(printStream, PREFIX + " " + prefixSuffix);
+    }
+
     // The methods below implement the bridge to the ILogger interface
     @Override
     public void trace(String string) {
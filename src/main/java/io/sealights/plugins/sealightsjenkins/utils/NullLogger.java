@@ -9,6 +9,11 @@ public class NullLogger extends Logger {
         super(null);
     }
 
+    @Override
+    public Logger withPrefix(String prefixSuffix){
+        return this;
+    }
+
     @Override
     public void debug(String message){}
 
@@ -35,6 +35,20 @@ public class PropertiesUtils {
         return p;
     }
 
+    /**
+     * @return the value as a number, or the default value when it is empty.
+     */
+    public static long toLong(String value, long defaultValue) {
+        if (StringUtils.isNullOrEmpty(value)) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("'" + value + "' is not a valid number.", e);
+        }
+    }
+
     private static boolean isValidKey(String key) {
         return !key.contains(" ");
     }
@@ -0,0 +1,29 @@
+package io.sealights.plugins.sealightsjenkins.utils;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import org.jenkinsci.remoting.RoleChecker;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Returns the SHA-256 checksum of a file, computed on the machine that holds it.
+ * Returns null when the file does not exist.
+ */
+public class Sha256Callable implements FilePath.FileCallable<String> {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public String invoke(File file, VirtualChannel channel) throws IOException, InterruptedException {
+        if (!file.isFile()) {
+            return null;
+        }
+        return ChecksumUtils.sha256(file);
+    }
+
+    @Override
+    public void checkRoles(RoleChecker roleChecker) throws SecurityException {
+
+    }
+}
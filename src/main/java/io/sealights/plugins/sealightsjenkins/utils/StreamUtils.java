@@ -1,8 +1,10 @@
 package io.sealights.plugins.sealightsjenkins.utils;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 
 public class StreamUtils {
 	public static String toString(InputStream stream)
@@ -30,4 +32,26 @@ public class StreamUtils {
 		
 		return sb.toString();
 	}
+
+	/**
+	 * Reads up to the given number of characters (UTF-8) from the stream, e.g. to show an error response. Longer
+	 * content is cut and ends with '...'. The stream is not closed.
+	 */
+	public static String toString(InputStream stream, int maxChars) throws IOException
+	{
+		if (stream == null)
+			return null;
+
+		Reader reader = new InputStreamReader(stream, "UTF-8");
+		char[] buffer = new char[maxChars + 1];
+		int length = 0;
+		int read;
+		while (length < buffer.length && (read = reader.read(buffer, length, buffer.length - length)) != -1) {
+			length += read;
+		}
+
+		if (length > maxChars)
+			return new String(buffer, 0, maxChars) + "...";
+		return new String(buffer, 0, length);
+	}
 }
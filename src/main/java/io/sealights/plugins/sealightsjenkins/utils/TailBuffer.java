@@ -0,0 +1,61 @@
+package io.sealights.plugins.sealightsjenkins.utils;
+
+/**
+ * A ring buffer that keeps only the last characters written to it.
+ * Used to keep a bounded summary of long process outputs.
+ */
+public class TailBuffer {
+
+    private final char[] buffer;
+    private int start = 0;
+    private int size = 0;
+    private long totalChars = 0;
+
+    public TailBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive, got " + capacity);
+        }
+        this.buffer = new char[capacity];
+    }
+
+    public synchronized void append(String text) {
+        int length = text.length();
+        totalChars += length;
+        // Only the last 'capacity' characters of the text can survive.
+        int offset = Math.max(0, length - buffer.length);
+        for (int i = offset; i < length; i++) {
+            int end = (start + size) % buffer.length;
+            buffer[end] = text.charAt(i);
+            if (size < buffer.length) {
+                size++;
+            } else {
+                start = (start + 1) % buffer.length;
+            }
+        }
+    }
+
+    public synchronized void appendLine(String line) {
+        append(line);
+        append("\n");
+    }
+
+    /**
+     * @return true if older characters were dropped from the buffer.
+     */
+    public synchronized boolean isTruncated() {
+        return totalChars > size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder(size);
+        for (int i = 0; i < size; i++) {
+            sb.append(buffer[(start + i) % buffer.length]);
+        }
+        return sb.toString();
+    }
+}
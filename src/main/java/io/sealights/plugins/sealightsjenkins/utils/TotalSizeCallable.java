@@ -0,0 +1,40 @@
+package io.sealights.plugins.sealightsjenkins.utils;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import org.jenkinsci.remoting.RoleChecker;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Returns the size in bytes of a file, or of all the files in a folder (recursively).
+ * Returns 0 when the file does not exist.
+ */
+public class TotalSizeCallable implements FilePath.FileCallable<Long> {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public Long invoke(File file, VirtualChannel channel) throws IOException, InterruptedException {
+        return totalSize(file);
+    }
+
+    private static long totalSize(File file) {
+        if (file.isFile()) {
+            return file.length();
+        }
+        long size = 0;
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                size += totalSize(child);
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void checkRoles(RoleChecker roleChecker) throws SecurityException {
+
+    }
+}
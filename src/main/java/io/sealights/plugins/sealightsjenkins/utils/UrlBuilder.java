@@ -4,14 +4,15 @@ import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLEncoder;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class UrlBuilder {
 
     private String host = "";
     private String path = "";
-    private Map<String, String> paramsMap = new HashMap<>();
+    // Sorted, so the same parameters always give the same url (which is also used as a cache key).
+    private Map<String, String> paramsMap = new TreeMap<>();
 
     public UrlBuilder withHost(String host) throws MalformedURLException {
         this.host = resolveUrl(host);
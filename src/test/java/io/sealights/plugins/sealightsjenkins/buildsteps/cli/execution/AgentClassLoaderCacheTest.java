@@ -0,0 +1,56 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.AgentCacheManager;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+public class AgentClassLoaderCacheTest {
+
+    private AgentClassLoaderCache cache = new AgentClassLoaderCache();
+
+    @Test
+    public void lease_evictedWhileLeased_shouldCloseWhenReleased() throws Exception {
+        //Arrange
+        File firstJar = createJar(0);
+        AgentClassLoaderCache.Lease firstLease = cache.lease(firstJar);
+
+        //Act
+        for (int i = 1; i <= AgentClassLoaderCache.MAX_CACHED_LOADERS; i++) {
+            cache.lease(createJar(i)).close();
+        }
+
+        //Assert
+        Assert.assertEquals(AgentClassLoaderCache.MAX_CACHED_LOADERS, cache.size());
+        Assert.assertTrue("A leased class loader should stay open", AgentCacheManager.getInstance().isPinned(firstJar.getPath()));
+        firstLease.close();
+        Assert.assertFalse(AgentCacheManager.getInstance().isPinned(firstJar.getPath()));
+    }
+
+    @Test
+    public void lease_afterInvalidate_shouldCreateNewClassLoader() throws Exception {
+        //Arrange
+        File jar = createJar(0);
+        AgentClassLoaderCache.Lease stuckLease = cache.lease(jar);
+
+        //Act
+        stuckLease.invalidate();
+        AgentClassLoaderCache.Lease newLease = cache.lease(jar);
+
+        //Assert
+        Assert.assertNotSame(stuckLease.getClassLoader(), newLease.getClassLoader());
+        Assert.assertNotSame(stuckLease.getRunLock(), newLease.getRunLock());
+        newLease.close();
+        stuckLease.close();
+        Assert.assertEquals(1, cache.size());
+    }
+
+    private static File createJar(int index) throws Exception {
+        File jar = File.createTempFile("agent", ".jar");
+        jar.deleteOnExit();
+        Files.write(jar.toPath(), ("agent " + index).getBytes("UTF-8"));
+        return jar;
+    }
+}
@@ -0,0 +1,50 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+public class AgentDaemonRegistryTest {
+
+    @Test
+    public void createKey_differentVersionsOfSameComponent_shouldReturnSameKey() {
+        //Arrange
+        File oldJar = new File("/sl-cache/maven-plugin/sl-test-listener-1.2.3.jar");
+        File newJar = new File("/sl-cache/maven-plugin/sl-test-listener-1.3.0.jar");
+
+        //Act
+        String oldKey = AgentDaemonRegistry.createKey("java", oldJar);
+        String newKey = AgentDaemonRegistry.createKey("java", newJar);
+
+        //Assert
+        Assert.assertEquals(oldKey, newKey);
+    }
+
+    @Test
+    public void createKey_differentComponents_shouldReturnDifferentKeys() {
+        //Arrange
+        File testListener = new File("/sl-cache/maven-plugin/sl-test-listener-1.2.3.jar");
+        File buildScanner = new File("/sl-cache/maven-plugin/sl-build-scanner-1.2.3.jar");
+
+        //Act
+        String testListenerKey = AgentDaemonRegistry.createKey("java", testListener);
+        String buildScannerKey = AgentDaemonRegistry.createKey("java", buildScanner);
+
+        //Assert
+        Assert.assertNotEquals(testListenerKey, buildScannerKey);
+    }
+
+    @Test
+    public void createKey_differentJavaPaths_shouldReturnDifferentKeys() {
+        //Arrange
+        File agentJar = new File("/sl-cache/maven-plugin/sl-test-listener-1.2.3.jar");
+
+        //Act
+        String key1 = AgentDaemonRegistry.createKey("/jdk7/bin/java", agentJar);
+        String key2 = AgentDaemonRegistry.createKey("/jdk8/bin/java", agentJar);
+
+        //Assert
+        Assert.assertNotEquals(key1, key2);
+    }
+}
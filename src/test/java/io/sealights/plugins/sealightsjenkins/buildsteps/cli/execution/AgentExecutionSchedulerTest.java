@@ -0,0 +1,77 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class AgentExecutionSchedulerTest {
+
+    @Test
+    public void acquire_limitReached_shouldServePriorityLaneFirst() throws Exception {
+        //Arrange
+        final AgentExecutionScheduler scheduler = new AgentExecutionScheduler();
+        scheduler.setMaxConcurrentProcesses(1);
+        AgentExecutionScheduler.Slot runningSlot = scheduler.acquire("master", false);
+        final List<String> startOrder = new CopyOnWriteArrayList<>();
+        Thread upload = startWaiting(scheduler, "uploadReports", false, startOrder);
+        waitUntilQueued(scheduler, 1);
+        Thread end = startWaiting(scheduler, "end", true, startOrder);
+        waitUntilQueued(scheduler, 2);
+
+        //Act
+        runningSlot.release();
+        upload.join(5000);
+        end.join(5000);
+
+        //Assert
+        Assert.assertEquals(Arrays.asList("end", "uploadReports"), startOrder);
+        AgentExecutionScheduler.NodeStats stats = scheduler.getStats().get(0);
+        Assert.assertEquals(0, stats.getRunning());
+        Assert.assertEquals(0, stats.getQueued());
+        Assert.assertEquals(3, stats.getStarted());
+    }
+
+    @Test
+    public void acquire_noLimit_shouldNotWait() throws Exception {
+        //Arrange
+        AgentExecutionScheduler scheduler = new AgentExecutionScheduler();
+
+        //Act
+        AgentExecutionScheduler.Slot first = scheduler.acquire("master", false);
+        AgentExecutionScheduler.Slot second = scheduler.acquire("master", false);
+
+        //Assert
+        Assert.assertEquals(2, scheduler.getStats().get(0).getRunning());
+        first.release();
+        second.release();
+        Assert.assertEquals(0, scheduler.getStats().get(0).getRunning());
+    }
+
+    private static Thread startWaiting(final AgentExecutionScheduler scheduler, final String name,
+                                       final boolean isPriority, final List<String> startOrder) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    AgentExecutionScheduler.Slot slot = scheduler.acquire("master", isPriority);
+                    startOrder.add(name);
+                    slot.release();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void waitUntilQueued(AgentExecutionScheduler scheduler, int queued) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.getStats().get(0).getQueued() < queued && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
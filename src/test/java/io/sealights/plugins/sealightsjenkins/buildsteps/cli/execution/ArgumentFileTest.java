@@ -0,0 +1,34 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ArgumentFileTest {
+
+    @Test
+    public void quote_pathWithSpacesAndBackslashes_shouldEscape() {
+        //Act
+        String quoted = ArgumentFile.quote("C:\\my reports\\\"a\".xml");
+
+        //Assert
+        Assert.assertEquals("\"C:\\\\my reports\\\\\\\"a\\\".xml\"", quoted);
+    }
+
+    @Test
+    public void isNeeded_shortCommand_shouldReturnFalse() {
+        //Arrange
+        String[] command = {"path/to/java", "-jar", "agent.jar", "uploadReports", "-reportFile", "report.xml"};
+
+        //Act + Assert
+        Assert.assertFalse(ArgumentFile.isNeeded(command));
+    }
+
+    @Test
+    public void parseMajorVersion_legacyAndModernFormats_shouldReturnMajor() {
+        //Act + Assert
+        Assert.assertEquals(8, JavaVersionDetector.parseMajorVersion("openjdk version \"1.8.0_392\"\nOpenJDK Runtime"));
+        Assert.assertEquals(11, JavaVersionDetector.parseMajorVersion("openjdk version \"11.0.21\" 2023-10-17"));
+        Assert.assertEquals(21, JavaVersionDetector.parseMajorVersion("java version \"21\" 2023-09-19"));
+        Assert.assertEquals(JavaVersionDetector.UNKNOWN_VERSION, JavaVersionDetector.parseMajorVersion("garbage"));
+    }
+}
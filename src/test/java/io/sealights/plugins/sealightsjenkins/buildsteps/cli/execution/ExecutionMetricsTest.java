@@ -0,0 +1,35 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class ExecutionMetricsTest {
+
+    @Test
+    public void record_severalExecutions_shouldAggregatePerCommand() {
+        //Arrange
+        ExecutionMetrics metrics = new ExecutionMetrics();
+
+        //Act
+        metrics.record(new ExecutionTiming("start", 10, 100, 1000, 0, false));
+        metrics.record(new ExecutionTiming("start", 30, ExecutionTiming.UNKNOWN, 3000, ExecutionTiming.NO_EXIT_CODE, true));
+        metrics.record(new ExecutionTiming("end", 5, 50, 500, 1, false));
+        List<ExecutionMetrics.CommandStats> stats = metrics.getStats();
+
+        //Assert
+        Assert.assertEquals(2, stats.size());
+        ExecutionMetrics.CommandStats end = stats.get(0);
+        ExecutionMetrics.CommandStats start = stats.get(1);
+        Assert.assertEquals("end", end.getCommandName());
+        Assert.assertEquals(1, end.getFailures());
+        Assert.assertEquals(2, start.getCount());
+        Assert.assertEquals(1, start.getFailures());
+        Assert.assertEquals(1, start.getTimeouts());
+        Assert.assertEquals(20, start.getAverageQueueMillis());
+        Assert.assertEquals(100, start.getAverageSpawnMillis());
+        Assert.assertEquals(2000, start.getAverageRunMillis());
+        Assert.assertEquals(3000, start.getMaxRunMillis());
+    }
+}
@@ -0,0 +1,49 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.AgentExecutionMode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+public class InProcessCommandRunnerTest {
+
+    private InProcessCommandRunner runner = new InProcessCommandRunner();
+
+    @Test(expected = CommandRunnerUnavailableException.class)
+    public void run_agentJarDoesNotExist_shouldThrowUnavailable() throws Exception {
+        //Arrange
+        String[] command = {"path/to/java", "-jar", "/fake/path/to/agent.jar", "start", "-labid", "fake-env"};
+
+        //Act
+        runner.run(command);
+    }
+
+    @Test(expected = CommandRunnerUnavailableException.class)
+    public void run_commandWithJvmOptions_shouldThrowUnavailable() throws Exception {
+        //Arrange
+        File agentJar = File.createTempFile("agent", ".jar");
+        agentJar.deleteOnExit();
+        String[] command = {"path/to/java", "-Xmx256m", "-jar", agentJar.getAbsolutePath(), "start"};
+
+        //Act
+        runner.run(command);
+    }
+
+    @Test(expected = CommandRunnerUnavailableException.class)
+    public void run_commandWithoutJar_shouldThrowUnavailable() throws Exception {
+        //Arrange
+        String[] command = {"path/to/java", "-version"};
+
+        //Act
+        runner.run(command);
+    }
+
+    @Test
+    public void fromName_unknownOrEmptyName_shouldReturnFork() {
+        //Act + Assert
+        Assert.assertEquals(AgentExecutionMode.FORK, AgentExecutionMode.fromName(null));
+        Assert.assertEquals(AgentExecutionMode.FORK, AgentExecutionMode.fromName("unknown"));
+        Assert.assertEquals(AgentExecutionMode.IN_PROCESS, AgentExecutionMode.fromName(" InProcess "));
+    }
+}
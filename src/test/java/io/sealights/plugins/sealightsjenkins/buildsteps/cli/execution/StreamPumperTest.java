@@ -0,0 +1,31 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.execution;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+
+public class StreamPumperTest {
+
+    @Test
+    public void run_lineLongerThanMax_shouldTruncateIt() throws Exception {
+        //Arrange
+        StringBuilder hugeLine = new StringBuilder();
+        for (int i = 0; i < StreamPumper.MAX_LINE_LENGTH * 2; i++) {
+            hugeLine.append('x');
+        }
+        ProcessOutputCollector collector = Mockito.mock(ProcessOutputCollector.class);
+        byte[] output = ("first\r\n" + hugeLine + "\nlast").getBytes("UTF-8");
+
+        //Act
+        StreamPumper pumper = StreamPumper.start("stdout", new ByteArrayInputStream(output), collector, false);
+        pumper.join();
+
+        //Assert
+        Assert.assertNull(pumper.getFailure());
+        Mockito.verify(collector).onOutputLine("first");
+        Mockito.verify(collector).onOutputLine(hugeLine.substring(0, StreamPumper.MAX_LINE_LENGTH) + " ... (line truncated)");
+        Mockito.verify(collector).onOutputLine("last");
+    }
+}
@@ -0,0 +1,44 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.utils;
+
+import io.sealights.plugins.sealightsjenkins.buildsteps.cli.entities.CommandModes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class ModeToArgumentsConverterTest {
+
+    @Test
+    public void parseBatchCommands_emptyCommands_shouldReturnDefaultCommands() {
+        //Act
+        List<CommandModes> modes = ModeToArgumentsConverter.parseBatchCommands("  ");
+
+        //Assert
+        List<CommandModes> expected = Arrays.asList(
+                CommandModes.Config, CommandModes.Start, CommandModes.UploadReports, CommandModes.End);
+        Assert.assertEquals(expected, modes);
+    }
+
+    @Test
+    public void parseBatchCommands_customOrderAndCase_shouldKeepTheOrder() {
+        //Act
+        List<CommandModes> modes = ModeToArgumentsConverter.parseBatchCommands("Start ,uploadreports,END");
+
+        //Assert
+        List<CommandModes> expected = Arrays.asList(CommandModes.Start, CommandModes.UploadReports, CommandModes.End);
+        Assert.assertEquals(expected, modes);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void parseBatchCommands_unknownCommand_shouldThrow() {
+        //Act
+        ModeToArgumentsConverter.parseBatchCommands("start, deploy");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void parseBatchCommands_nestedBatch_shouldThrow() {
+        //Act
+        ModeToArgumentsConverter.parseBatchCommands("start, batch");
+    }
+}
@@ -0,0 +1,115 @@
+package io.sealights.plugins.sealightsjenkins.buildsteps.cli.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class ReportShardsPartitionerTest {
+
+    private ReportShardsPartitioner partitioner = new ReportShardsPartitioner();
+
+    @Test
+    public void partition_itemsOfDifferentSizes_shouldBalanceShards() {
+        //Arrange
+        List<ReportShardsPartitioner.Item> items = Arrays.asList(
+                new ReportShardsPartitioner.Item("a.xml", false, 70),
+                new ReportShardsPartitioner.Item("b.xml", false, 50),
+                new ReportShardsPartitioner.Item("reports", true, 40),
+                new ReportShardsPartitioner.Item("c.xml", false, 30),
+                new ReportShardsPartitioner.Item("d.xml", false, 10));
+
+        //Act
+        List<ReportShardsPartitioner.Shard> shards = partitioner.partition(items, 2);
+
+        //Assert
+        Assert.assertEquals(2, shards.size());
+        Assert.assertEquals(100, shards.get(0).getTotalSize());
+        Assert.assertEquals(100, shards.get(1).getTotalSize());
+        Assert.assertEquals(Arrays.asList("reports"),
+                shards.get(0).getReportFilesFolders().isEmpty() ? shards.get(1).getReportFilesFolders() : shards.get(0).getReportFilesFolders());
+    }
+
+    @Test
+    public void partition_moreShardsThanItems_shouldReturnOneShardPerItem() {
+        //Arrange
+        List<ReportShardsPartitioner.Item> items = Arrays.asList(
+                new ReportShardsPartitioner.Item("a.xml", false, 1),
+                new ReportShardsPartitioner.Item("b.xml", false, 5));
+
+        //Act
+        List<ReportShardsPartitioner.Shard> shards = partitioner.partition(items, 4);
+
+        //Assert
+        Assert.assertEquals(2, shards.size());
+        Assert.assertEquals(Arrays.asList("b.xml"), shards.get(0).getReportFiles());
+        Assert.assertEquals(Arrays.asList("a.xml"), shards.get(1).getReportFiles());
+    }
+
+    @Test
+    public void partition_bigFolderWithFiles_shouldSplitTheFolderFiles() {
+        //Arrange
+        List<ReportShardsPartitioner.Item> files = Arrays.asList(
+                new ReportShardsPartitioner.Item("reports/a.xml", false, 40),
+                new ReportShardsPartitioner.Item("reports/b.xml", false, 30),
+                new ReportShardsPartitioner.Item("reports/c.xml", false, 20),
+                new ReportShardsPartitioner.Item("reports/d.xml", false, 10));
+        List<ReportShardsPartitioner.Item> items = Arrays.asList(
+                new ReportShardsPartitioner.Item("reports", true, 100, files));
+
+        //Act
+        List<ReportShardsPartitioner.Shard> shards = partitioner.partition(items, 2);
+
+        //Assert
+        Assert.assertEquals(2, shards.size());
+        Assert.assertEquals(50, shards.get(0).getTotalSize());
+        Assert.assertEquals(50, shards.get(1).getTotalSize());
+        Assert.assertTrue(shards.get(0).getReportFilesFolders().isEmpty());
+        Assert.assertTrue(shards.get(1).getReportFilesFolders().isEmpty());
+    }
+
+    @Test
+    public void partition_bigFolderWithMixedFiles_shouldSplitOnlyTheReportFiles() {
+        //Arrange
+        List<ReportShardsPartitioner.Item> files = Arrays.asList(
+                new ReportShardsPartitioner.Item("reports/TEST-a.xml", false, 40),
+                new ReportShardsPartitioner.Item("reports/a-output.txt", false, 30),
+                new ReportShardsPartitioner.Item("reports/TEST-b.XML", false, 20),
+                new ReportShardsPartitioner.Item("reports/b.txt", false, 10));
+        List<ReportShardsPartitioner.Item> items = Arrays.asList(
+                new ReportShardsPartitioner.Item("reports", true, 100, files));
+
+        //Act
+        List<ReportShardsPartitioner.Shard> shards = partitioner.partition(items, 2);
+
+        //Assert
+        Assert.assertEquals(2, shards.size());
+        Assert.assertEquals(Arrays.asList("reports/TEST-a.xml"), shards.get(0).getReportFiles());
+        Assert.assertEquals(Arrays.asList("reports/TEST-b.XML"), shards.get(1).getReportFiles());
+        Assert.assertTrue(shards.get(0).getReportFilesFolders().isEmpty());
+        Assert.assertTrue(shards.get(1).getReportFilesFolders().isEmpty());
+    }
+
+    @Test
+    public void partition_bigFolderWithoutFiles_shouldKeepTheFolder() {
+        //Arrange
+        List<ReportShardsPartitioner.Item> items = Arrays.asList(
+                new ReportShardsPartitioner.Item("reports", true, 100),
+                new ReportShardsPartitioner.Item("a.xml", false, 10));
+
+        //Act
+        List<ReportShardsPartitioner.Shard> shards = partitioner.partition(items, 2);
+
+        //Assert
+        Assert.assertEquals(2, shards.size());
+        Assert.assertEquals(Arrays.asList("reports"), shards.get(0).getReportFilesFolders());
+        Assert.assertEquals(Arrays.asList("a.xml"), shards.get(1).getReportFiles());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void partition_zeroShards_shouldThrow() {
+        //Act
+        partitioner.partition(Arrays.<ReportShardsPartitioner.Item>asList(), 0);
+    }
+}
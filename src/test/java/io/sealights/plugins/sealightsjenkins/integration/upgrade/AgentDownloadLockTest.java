@@ -0,0 +1,55 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class AgentDownloadLockTest {
+
+    @Test
+    public void acquire_heldByAnotherThread_shouldTimeOut() throws Exception {
+        //Arrange
+        final File folder = Files.createTempDirectory("agents").toFile();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        //Act
+        try (AgentDownloadLock ignored = AgentDownloadLock.acquire(folder, "sealights-java-1.2.3", 1000)) {
+            Future<Boolean> secondAcquire = executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    try (AgentDownloadLock lock = AgentDownloadLock.acquire(folder, "sealights-java-1.2.3", 100)) {
+                        return true;
+                    } catch (IOException e) {
+                        return false;
+                    }
+                }
+            });
+
+            //Assert
+            Assert.assertFalse(secondAcquire.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void acquire_afterRelease_shouldSucceed() throws Exception {
+        //Arrange
+        File folder = Files.createTempDirectory("agents").toFile();
+        AgentDownloadLock.acquire(folder, "sealights-java-1.2.3", 1000).close();
+
+        //Act
+        AgentDownloadLock lock = AgentDownloadLock.acquire(folder, "sealights-java-1.2.3", 1000);
+
+        //Assert
+        Assert.assertNotNull(lock);
+        lock.close();
+    }
+}
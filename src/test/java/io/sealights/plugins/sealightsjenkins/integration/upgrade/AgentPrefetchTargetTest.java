@@ -0,0 +1,47 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade;
+
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.AgentPrefetchTarget;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class AgentPrefetchTargetTest {
+
+    @Test
+    public void equals_sameConfiguration_shouldBeDistinctOnce() {
+        //Arrange
+        Set<AgentPrefetchTarget> targets = new HashSet<>();
+
+        //Act
+        targets.add(createTarget("app", "master"));
+        targets.add(createTarget("app", "master"));
+        targets.add(createTarget("app", "develop"));
+
+        //Assert
+        Assert.assertEquals(2, targets.size());
+    }
+
+    @Test
+    public void isResolvable_buildVariable_shouldReturnFalse() {
+        //Act + Assert
+        Assert.assertTrue(createTarget("app", "master").isResolvable());
+        Assert.assertFalse(createTarget("app", "${GIT_BRANCH}").isResolvable());
+    }
+
+    @Test
+    public void isResolvable_noServer_shouldReturnFalse() {
+        //Arrange
+        AgentPrefetchTarget target = new AgentPrefetchTarget(
+                AgentPrefetcher.SEALIGHTS_JAVA_COMPONENT, null, "customer", "app", null, "master", null, null, "/tmp");
+
+        //Act + Assert
+        Assert.assertFalse(target.isResolvable());
+    }
+
+    private static AgentPrefetchTarget createTarget(String appName, String branchName) {
+        return new AgentPrefetchTarget(AgentPrefetcher.SEALIGHTS_JAVA_COMPONENT, null, "customer", appName, null,
+                branchName, "https://customer.sealights.co/api", null, "/tmp");
+    }
+}
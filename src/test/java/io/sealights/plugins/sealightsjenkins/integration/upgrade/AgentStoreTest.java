@@ -0,0 +1,181 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade;
+
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.AgentStoreEntry;
+import io.sealights.plugins.sealightsjenkins.utils.NullLogger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class AgentStoreTest {
+
+    @Test
+    public void find_publishedJar_shouldReturnJarInStore() throws Exception {
+        //Arrange
+        File folder = Files.createTempDirectory("agents").toFile();
+        AgentStore store = new AgentStore(folder.getAbsolutePath(), new NullLogger());
+        File jar = createJar(folder, "sl-test-listener-1.2.3.jar");
+
+        //Act
+        File published = store.publish(jar);
+        File found = store.find("sl-test-listener-1.2.3.jar");
+
+        //Assert
+        Assert.assertEquals(published, found);
+        Assert.assertFalse("The jar should be moved into the store", jar.exists());
+    }
+
+    @Test
+    public void find_truncatedJar_shouldRemoveItFromStore() throws Exception {
+        //Arrange
+        File folder = Files.createTempDirectory("agents").toFile();
+        AgentStore store = new AgentStore(folder.getAbsolutePath(), new NullLogger());
+        File published = store.publish(createJar(folder, "sl-test-listener-1.2.3.jar"));
+        try (RandomAccessFile file = new RandomAccessFile(published, "rw")) {
+            file.setLength(file.length() / 2);
+        }
+
+        //Act
+        File found = store.find("sl-test-listener-1.2.3.jar");
+
+        //Assert
+        Assert.assertNull(found);
+        Assert.assertTrue(store.getEntries().isEmpty());
+        Assert.assertFalse(published.exists());
+    }
+
+    @Test
+    public void getEntries_modifiedEntry_shouldNotChangeTheStore() throws Exception {
+        //Arrange
+        File folder = Files.createTempDirectory("agents").toFile();
+        AgentStore store = new AgentStore(folder.getAbsolutePath(), new NullLogger());
+        store.publish(createJar(folder, "sl-test-listener-1.2.3.jar"));
+
+        //Act
+        store.getEntries().get(0).setDigest("modified");
+
+        //Assert
+        Assert.assertNotEquals("modified", store.getEntries().get(0).getDigest());
+        Assert.assertNotNull(store.find("sl-test-listener-1.2.3.jar"));
+    }
+
+    @Test(expected = IOException.class)
+    public void publish_invalidJar_shouldThrow() throws Exception {
+        //Arrange
+        File folder = Files.createTempDirectory("agents").toFile();
+        AgentStore store = new AgentStore(folder.getAbsolutePath(), new NullLogger());
+        File jar = new File(folder, "sl-test-listener-1.2.3.jar");
+        Files.write(jar.toPath(), "not a jar".getBytes("UTF-8"));
+
+        //Act
+        store.publish(jar);
+    }
+
+    @Test
+    public void importLegacyJars_flatJars_shouldMoveThemIntoStore() throws Exception {
+        //Arrange
+        File folder = Files.createTempDirectory("agents").toFile();
+        AgentStore store = new AgentStore(folder.getAbsolutePath(), new NullLogger());
+        File legacyJar = createJar(folder, "sl-build-scanner-1.2.3.jar");
+
+        //Act
+        store.importLegacyJars();
+
+        //Assert
+        Assert.assertFalse(legacyJar.exists());
+        Assert.assertNotNull(store.find("sl-build-scanner-1.2.3.jar"));
+    }
+
+    @Test
+    public void evict_overBudget_shouldRemoveLeastRecentlyUsedJars() throws Exception {
+        //Arrange
+        File folder = Files.createTempDirectory("agents").toFile();
+        AgentStore store = new AgentStore(folder.getAbsolutePath(), new NullLogger(), 0);
+        File usedJar = store.publish(createJar(folder, "sl-test-listener-1.0.0.jar"));
+        Thread.sleep(10);
+        store.publish(createJar(folder, "sl-test-listener-1.1.0.jar"));
+        Thread.sleep(10);
+        File newestJar = store.publish(createJar(folder, "sl-test-listener-1.2.0.jar"));
+        Thread.sleep(10);
+        store.find("sl-test-listener-1.0.0.jar");
+        long budget = usedJar.length() + newestJar.length();
+
+        //Act
+        List<AgentStoreEntry> evicted = store.evict(budget, -1, Collections.<String>emptySet());
+
+        //Assert
+        Assert.assertEquals(1, evicted.size());
+        Assert.assertEquals("sl-test-listener-1.1.0.jar", evicted.get(0).getFileName());
+        Assert.assertNotNull(store.find("sl-test-listener-1.0.0.jar"));
+        Assert.assertNotNull(store.find("sl-test-listener-1.2.0.jar"));
+    }
+
+    @Test
+    public void evict_cdsArchivesOverBudget_shouldRemoveJarWithItsArchives() throws Exception {
+        //Arrange
+        File folder = Files.createTempDirectory("agents").toFile();
+        AgentStore store = new AgentStore(folder.getAbsolutePath(), new NullLogger(), 0);
+        File jar = store.publish(createJar(folder, "sl-test-listener-1.0.0.jar"));
+        File archivesFolder = new File(jar.getParentFile(), "cds");
+        Assert.assertTrue(archivesFolder.mkdirs());
+        Files.write(new File(archivesFolder, "sl-test-listener-1.0.0-0123456789abcdef.jsa").toPath(), new byte[4096]);
+        Thread.sleep(10);
+
+        //Act
+        List<AgentStoreEntry> evicted = store.evict(jar.length() + 1024, -1, Collections.<String>emptySet());
+
+        //Assert
+        Assert.assertEquals(1, evicted.size());
+        Assert.assertFalse(archivesFolder.exists());
+    }
+
+    @Test
+    public void evict_pinnedJar_shouldKeepIt() throws Exception {
+        //Arrange
+        File folder = Files.createTempDirectory("agents").toFile();
+        AgentStore store = new AgentStore(folder.getAbsolutePath(), new NullLogger(), 0);
+        File pinned = store.publish(createJar(folder, "sl-test-listener-1.0.0.jar"));
+        Thread.sleep(10);
+        store.publish(createJar(folder, "sl-test-listener-1.1.0.jar"));
+
+        //Act
+        store.evict(0, -1, Collections.singleton(pinned.getAbsolutePath()));
+
+        //Assert
+        Assert.assertNotNull(store.find("sl-test-listener-1.0.0.jar"));
+        Assert.assertNull(store.find("sl-test-listener-1.1.0.jar"));
+    }
+
+    @Test
+    public void evict_recentlyUsedJar_shouldKeepItWithinGracePeriod() throws Exception {
+        //Arrange
+        File folder = Files.createTempDirectory("agents").toFile();
+        AgentStore store = new AgentStore(folder.getAbsolutePath(), new NullLogger());
+        store.publish(createJar(folder, "sl-test-listener-1.0.0.jar"));
+
+        //Act
+        List<AgentStoreEntry> evicted = store.evict(0, 0, Collections.<String>emptySet());
+
+        //Assert
+        Assert.assertTrue(evicted.isEmpty());
+        Assert.assertNotNull(store.find("sl-test-listener-1.0.0.jar"));
+    }
+
+    private static File createJar(File folder, String name) throws IOException {
+        File jar = new File(folder, name);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry(name + ".txt"));
+            out.write(name.getBytes("UTF-8"));
+            out.closeEntry();
+        }
+        return jar;
+    }
+}
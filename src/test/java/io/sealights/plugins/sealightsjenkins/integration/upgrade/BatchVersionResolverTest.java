@@ -0,0 +1,92 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade;
+
+import io.sealights.onpremise.agents.java.agent.infra.logging.ILogger;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.AgentPrefetchTarget;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.UpgradeResponse;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchVersionResolverTest {
+
+    private ILogger logger = Mockito.mock(ILogger.class);
+
+    @Test
+    public void resolve_targetResolvedInBackground_shouldNotCallServerAgain() throws IOException {
+        //Arrange
+        CountingResolver resolver = new CountingResolver();
+        AgentPrefetchTarget agentTarget = createTarget(AgentPrefetcher.SEALIGHTS_JAVA_COMPONENT);
+        AgentPrefetchTarget mavenPluginTarget = createTarget(AgentPrefetcher.MAVEN_PLUGIN_COMPONENT);
+        resolver.resolveInBackground(Arrays.asList(agentTarget, mavenPluginTarget), logger);
+
+        //Act
+        UpgradeResponse agentResponse = resolver.resolve(agentTarget, logger);
+        UpgradeResponse mavenPluginResponse = resolver.resolve(mavenPluginTarget, logger);
+        resolver.resolve(agentTarget, logger);
+
+        //Assert
+        Assert.assertNotNull(agentResponse);
+        Assert.assertNotNull(mavenPluginResponse);
+        Assert.assertEquals(2, resolver.calls.get());
+    }
+
+    @Test
+    public void resolve_failedRequest_shouldRetryOnNextCall() throws IOException {
+        //Arrange
+        CountingResolver resolver = new CountingResolver();
+        resolver.failures.set(1);
+        AgentPrefetchTarget target = createTarget(AgentPrefetcher.SEALIGHTS_JAVA_COMPONENT);
+        try {
+            resolver.resolve(target, logger);
+            Assert.fail("The first request should fail.");
+        } catch (IOException e) {
+            // expected
+        }
+
+        //Act
+        UpgradeResponse response = resolver.resolve(target, logger);
+
+        //Assert
+        Assert.assertNotNull(response);
+        Assert.assertEquals(2, resolver.calls.get());
+    }
+
+    @Test
+    public void resolveInBackground_sameTargetTwice_shouldCallServerOnce() throws IOException {
+        //Arrange
+        CountingResolver resolver = new CountingResolver();
+        AgentPrefetchTarget target = createTarget(AgentPrefetcher.SEALIGHTS_JAVA_COMPONENT);
+
+        //Act
+        resolver.resolveInBackground(Collections.singletonList(target), logger);
+        resolver.resolveInBackground(Collections.singletonList(createTarget(AgentPrefetcher.SEALIGHTS_JAVA_COMPONENT)), logger);
+        resolver.resolve(target, logger);
+
+        //Assert
+        Assert.assertEquals(1, resolver.calls.get());
+    }
+
+    private static AgentPrefetchTarget createTarget(String componentName) {
+        return new AgentPrefetchTarget(componentName, "token", "customer", "app", null, "master",
+                "https://server", null, "/tmp");
+    }
+
+    private static class CountingResolver extends BatchVersionResolver {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+
+        @Override
+        protected UpgradeResponse fetch(AgentPrefetchTarget target, ILogger logger) throws IOException {
+            calls.incrementAndGet();
+            if (failures.getAndDecrement() > 0) {
+                throw new IOException("Connection refused");
+            }
+            return new UpgradeResponse();
+        }
+    }
+}
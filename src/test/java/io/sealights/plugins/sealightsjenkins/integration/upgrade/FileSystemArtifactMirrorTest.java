@@ -0,0 +1,100 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class FileSystemArtifactMirrorTest {
+
+    @Test
+    public void fetch_storedArchive_shouldPassItToHandler() throws Exception {
+        //Arrange
+        FileSystemArtifactMirror mirror = new FileSystemArtifactMirror(Files.createTempDirectory("mirror").toFile());
+        byte[] archive = createZip("sl-test-listener-1.2.3.jar");
+        mirror.store("sealights-java", "1.2.3", new ByteArrayInputStream(archive));
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+        //Act
+        boolean isFetched = mirror.fetch("sealights-java", "1.2.3", new UpgradeProxy.DownloadHandler() {
+            @Override
+            public void handle(InputStream responseStream) throws IOException {
+                byte[] buffer = new byte[1024];
+                int len;
+                while ((len = responseStream.read(buffer)) > 0) {
+                    received.write(buffer, 0, len);
+                }
+            }
+        });
+
+        //Assert
+        Assert.assertTrue(isFetched);
+        Assert.assertArrayEquals(archive, received.toByteArray());
+        Assert.assertTrue(mirror.getArchiveFile("sealights-java", "1.2.3").getPath()
+                .endsWith("sealights-java" + File.separator + "1.2.3" + File.separator + "sealights-java-1.2.3.zip"));
+    }
+
+    @Test
+    public void fetch_missingVersion_shouldReturnFalse() throws Exception {
+        //Arrange
+        FileSystemArtifactMirror mirror = new FileSystemArtifactMirror(Files.createTempDirectory("mirror").toFile());
+
+        //Act
+        boolean isFetched = mirror.fetch("sealights-java", "1.2.3", new UpgradeProxy.DownloadHandler() {
+            @Override
+            public void handle(InputStream responseStream) {
+                Assert.fail("The handler should not be called.");
+            }
+        });
+
+        //Assert
+        Assert.assertFalse(isFetched);
+    }
+
+    @Test
+    public void store_invalidArchive_shouldNotAddIt() throws Exception {
+        //Arrange
+        FileSystemArtifactMirror mirror = new FileSystemArtifactMirror(Files.createTempDirectory("mirror").toFile());
+        byte[] archive = createZip("sl-test-listener-1.2.3.jar");
+        byte[] truncatedArchive = new byte[archive.length / 2];
+        System.arraycopy(archive, 0, truncatedArchive, 0, truncatedArchive.length);
+
+        //Act
+        try {
+            mirror.store("sealights-java", "1.2.3", new ByteArrayInputStream(truncatedArchive));
+            Assert.fail("A truncated archive should be rejected.");
+        } catch (IOException e) {
+            // expected
+        }
+
+        //Assert
+        Assert.assertFalse(mirror.contains("sealights-java", "1.2.3"));
+        File[] leftovers = mirror.getArchiveFile("sealights-java", "1.2.3").getParentFile().listFiles();
+        Assert.assertEquals(0, leftovers == null ? 0 : leftovers.length);
+    }
+
+    @Test
+    public void create_httpLocation_shouldReturnHttpMirror() {
+        //Act + Assert
+        Assert.assertTrue(ArtifactMirrors.create("https://mirror.local/agents") instanceof HttpArtifactMirror);
+        Assert.assertTrue(ArtifactMirrors.create("/mnt/agents") instanceof FileSystemArtifactMirror);
+        Assert.assertNull(ArtifactMirrors.create(""));
+    }
+
+    private static byte[] createZip(String entryName) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            out.putNextEntry(new ZipEntry(entryName));
+            out.write(entryName.getBytes("UTF-8"));
+            out.closeEntry();
+        }
+        return bytes.toByteArray();
+    }
+}
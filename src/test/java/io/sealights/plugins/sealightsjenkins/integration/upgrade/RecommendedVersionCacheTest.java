@@ -0,0 +1,168 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade;
+
+import io.sealights.onpremise.agents.java.agent.infra.logging.ILogger;
+import io.sealights.plugins.sealightsjenkins.integration.upgrade.entities.UpgradeResponse;
+import io.sealights.plugins.sealightsjenkins.services.HttpResponse;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RecommendedVersionCacheTest {
+
+    private static final String VERSION_JSON = "{\"agent\":{\"name\":\"sealights-java\",\"version\":\"1.2.3\"}}";
+
+    private ILogger logger = Mockito.mock(ILogger.class);
+
+    @Test
+    public void get_freshVersion_shouldNotCallServerAgain() throws IOException {
+        //Arrange
+        RecommendedVersionCache cache = new RecommendedVersionCache(60000, 60000);
+        CountingLoader loader = new CountingLoader(VERSION_JSON);
+
+        //Act
+        cache.get("key", null, loader, logger);
+        UpgradeResponse version = cache.get("key", null, loader, logger);
+
+        //Assert
+        Assert.assertEquals("1.2.3", version.getAgent().getVersion());
+        Assert.assertEquals(1, loader.calls.get());
+        Assert.assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void get_serverErrorResponse_shouldNotBeCached() throws IOException {
+        //Arrange
+        RecommendedVersionCache cache = new RecommendedVersionCache(60000, 60000);
+        CountingLoader loader = new CountingLoader("{\"error\":\"unauthorized\"}");
+
+        //Act
+        cache.get("key", null, loader, logger);
+        cache.get("key", null, loader, logger);
+
+        //Assert
+        Assert.assertEquals(2, loader.calls.get());
+    }
+
+    @Test
+    public void get_expiredVersionAndServerDown_shouldReturnLastKnownVersion() throws IOException {
+        //Arrange
+        RecommendedVersionCache cache = new RecommendedVersionCache(-1, -1);
+        cache.get("key", null, new CountingLoader(VERSION_JSON), logger);
+
+        //Act
+        UpgradeResponse version = cache.get("key", null, new RecommendedVersionCache.Loader() {
+            @Override
+            public HttpResponse load(RecommendedVersionCache.CachedVersion cached) throws IOException {
+                throw new IOException("Connection refused");
+            }
+        }, logger);
+
+        //Assert
+        Assert.assertEquals("1.2.3", version.getAgent().getVersion());
+        Assert.assertEquals(1, cache.getFailures());
+    }
+
+    @Test
+    public void get_versionOnDisk_shouldBeUsedByNewCache() throws IOException {
+        //Arrange
+        File diskFolder = Files.createTempDirectory("recommended-versions").toFile();
+        new RecommendedVersionCache(60000, 60000).get("key", diskFolder, new CountingLoader(VERSION_JSON), logger);
+        CountingLoader loader = new CountingLoader(VERSION_JSON);
+
+        //Act
+        UpgradeResponse version = new RecommendedVersionCache(60000, 60000).get("key", diskFolder, loader, logger);
+
+        //Assert
+        Assert.assertEquals("1.2.3", version.getAgent().getVersion());
+        Assert.assertEquals(0, loader.calls.get());
+    }
+
+    @Test
+    public void get_expiredVersionNotModified_shouldKeepCachedVersionAndValidators() throws IOException {
+        //Arrange
+        RecommendedVersionCache cache = new RecommendedVersionCache(-1, -1);
+        CountingLoader loader = new CountingLoader(VERSION_JSON);
+        loader.etag = "\"v1\"";
+        cache.get("key", null, loader, logger);
+        loader.statusCode = HttpResponse.NOT_MODIFIED;
+        loader.json = "";
+
+        //Act
+        UpgradeResponse version = cache.get("key", null, loader, logger);
+
+        //Assert
+        Assert.assertEquals("1.2.3", version.getAgent().getVersion());
+        Assert.assertEquals("\"v1\"", loader.lastCached.getEtag());
+        Assert.assertEquals(1, cache.getNotModified());
+    }
+
+    @Test
+    public void get_errorPageResponse_shouldFailWithStatusAndStartOfBody() throws IOException {
+        //Arrange
+        RecommendedVersionCache cache = new RecommendedVersionCache(60000, 60000);
+        StringBuilder errorPage = new StringBuilder("<html><body>Bad Gateway");
+        for (int i = 0; i < 1000; i++) {
+            errorPage.append(' ');
+        }
+        CountingLoader loader = new CountingLoader(errorPage.append("</body></html>").toString());
+        loader.statusCode = 502;
+
+        //Act
+        try {
+            cache.get("key", null, loader, logger);
+            Assert.fail("Expected the request to fail.");
+        } catch (IOException e) {
+            //Assert
+            Assert.assertTrue(e.getMessage().contains("502"));
+            Assert.assertTrue(e.getMessage().contains("<html><body>Bad Gateway"));
+            Assert.assertFalse(e.getMessage().contains("</html>"));
+        }
+    }
+
+    @Test
+    public void get_invalidJsonResponse_shouldFailWithIOException() throws IOException {
+        //Arrange
+        RecommendedVersionCache cache = new RecommendedVersionCache(60000, 60000);
+        CountingLoader loader = new CountingLoader("Service temporarily unavailable");
+
+        //Act
+        try {
+            cache.get("key", null, loader, logger);
+            Assert.fail("Expected the request to fail.");
+        } catch (IOException e) {
+            //Assert
+            Assert.assertTrue(e.getMessage().startsWith("The server sent an invalid response."));
+        }
+    }
+
+    private static class CountingLoader implements RecommendedVersionCache.Loader {
+        private String json;
+        private String etag;
+        private int statusCode = 200;
+        private RecommendedVersionCache.CachedVersion lastCached;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        CountingLoader(String json) {
+            this.json = json;
+        }
+
+        @Override
+        public HttpResponse load(RecommendedVersionCache.CachedVersion cached) throws IOException {
+            calls.incrementAndGet();
+            lastCached = cached;
+            HttpResponse response = new HttpResponse();
+            response.setStatusCode(statusCode);
+            response.setResponseStream(new ByteArrayInputStream(json.getBytes("UTF-8")));
+            if (etag != null) {
+                response.setHeader("ETag", etag);
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package io.sealights.plugins.sealightsjenkins.integration.upgrade;
+
+import io.sealights.plugins.sealightsjenkins.services.ApacheHttpClient;
+import io.sealights.plugins.sealightsjenkins.services.HttpRequest;
+import io.sealights.plugins.sealightsjenkins.services.HttpResponse;
+import io.sealights.plugins.sealightsjenkins.utils.NullLogger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+public class ResumableDownloadTest {
+
+    private static final String URL = "https://agents.sealights.co/sealights-java-1.2.3.zip";
+
+    @Test
+    public void download_connectionDropped_shouldResumeFromPartialFile() throws Exception {
+        //Arrange
+        byte[] content = "0123456789abcdefghij".getBytes("UTF-8");
+        HttpResponse firstResponse = createResponse(200, new DroppingInputStream(Arrays.copyOf(content, 8)));
+        firstResponse.setHeader("ETag", "\"v1\"");
+        HttpResponse secondResponse = createResponse(206, new ByteArrayInputStream(Arrays.copyOfRange(content, 8, content.length)));
+        secondResponse.setHeader("Content-Range", "bytes 8-19/20");
+        ApacheHttpClient client = Mockito.mock(ApacheHttpClient.class);
+        Mockito.when(client.getFile(Mockito.any(HttpRequest.class))).thenReturn(firstResponse, secondResponse);
+        File partFile = new File(Files.createTempDirectory("downloads").toFile(), "agent.zip.part");
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+        //Act
+        createDownload(client).download(URL, partFile, new UpgradeProxy.DownloadHandler() {
+            @Override
+            public void handle(InputStream responseStream) throws IOException {
+                received.reset();
+                copy(responseStream, received);
+            }
+        });
+
+        //Assert
+        ArgumentCaptor<HttpRequest> requests = ArgumentCaptor.forClass(HttpRequest.class);
+        Mockito.verify(client, Mockito.times(2)).getFile(requests.capture());
+        List<HttpRequest> allRequests = requests.getAllValues();
+        Assert.assertEquals("bytes=8-", allRequests.get(1).getHeaders().get("Range"));
+        Assert.assertEquals("\"v1\"", allRequests.get(1).getHeaders().get("If-Range"));
+        Assert.assertArrayEquals(content, received.toByteArray());
+        Assert.assertFalse("The partial file should be deleted", partFile.exists());
+    }
+
+    @Test
+    public void download_notFound_shouldNotRetry() throws Exception {
+        //Arrange
+        ApacheHttpClient client = Mockito.mock(ApacheHttpClient.class);
+        Mockito.when(client.getFile(Mockito.any(HttpRequest.class)))
+                .thenReturn(createResponse(404, new ByteArrayInputStream(new byte[0])));
+        File partFile = new File(Files.createTempDirectory("downloads").toFile(), "agent.zip.part");
+
+        //Act
+        try {
+            createDownload(client).download(URL, partFile, Mockito.mock(UpgradeProxy.DownloadHandler.class));
+            Assert.fail("Expected the download to fail");
+        } catch (ResumableDownload.HttpStatusException e) {
+            //Assert
+            Assert.assertEquals(404, e.getStatusCode());
+        }
+        Mockito.verify(client, Mockito.times(1)).getFile(Mockito.any(HttpRequest.class));
+    }
+
+    @Test
+    public void download_handlerFailed_shouldNotRetryAndDeletePartialFile() throws Exception {
+        //Arrange
+        ApacheHttpClient client = Mockito.mock(ApacheHttpClient.class);
+        Mockito.when(client.getFile(Mockito.any(HttpRequest.class)))
+                .thenReturn(createResponse(200, new ByteArrayInputStream("not a zip".getBytes("UTF-8"))));
+        File partFile = new File(Files.createTempDirectory("downloads").toFile(), "agent.zip.part");
+
+        //Act
+        try {
+            createDownload(client).download(URL, partFile, new UpgradeProxy.DownloadHandler() {
+                @Override
+                public void handle(InputStream responseStream) throws IOException {
+                    copy(responseStream, new ByteArrayOutputStream());
+                    throw new IOException("invalid zip");
+                }
+            });
+            Assert.fail("Expected the download to fail");
+        } catch (ResumableDownload.HandlerException e) {
+            //Assert
+            Assert.assertEquals("invalid zip", e.getCause().getMessage());
+        }
+        Mockito.verify(client, Mockito.times(1)).getFile(Mockito.any(HttpRequest.class));
+        Assert.assertFalse("The partial file should be deleted", partFile.exists());
+    }
+
+    @Test
+    public void getBackoffMillis_attempts_shouldGrowUpToMax() {
+        //Act + Assert
+        Assert.assertEquals(1000, ResumableDownload.getBackoffMillis(1));
+        Assert.assertEquals(2000, ResumableDownload.getBackoffMillis(2));
+        Assert.assertEquals(4000, ResumableDownload.getBackoffMillis(3));
+        Assert.assertEquals(30 * 1000, ResumableDownload.getBackoffMillis(20));
+    }
+
+    private static ResumableDownload createDownload(ApacheHttpClient client) {
+        return new ResumableDownload(client, null, new NullLogger()) {
+            @Override
+            protected void sleep(long millis) {
+            }
+        };
+    }
+
+    private static HttpResponse createResponse(int statusCode, InputStream stream) {
+        HttpResponse response = new HttpResponse();
+        response.setStatusCode(statusCode);
+        response.setResponseStream(stream);
+        return response;
+    }
+
+    private static void copy(InputStream in, ByteArrayOutputStream out) throws IOException {
+        byte[] buffer = new byte[4];
+        int len;
+        while ((len = in.read(buffer)) > 0) {
+            out.write(buffer, 0, len);
+        }
+    }
+
+    /*
+    * Returns the given bytes, then fails like a dropped connection.
+    * */
+    private static class DroppingInputStream extends FilterInputStream {
+        DroppingInputStream(byte[] bytes) {
+            super(new ByteArrayInputStream(bytes));
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                throw new IOException("Connection reset");
+            }
+            return n;
+        }
+    }
+}
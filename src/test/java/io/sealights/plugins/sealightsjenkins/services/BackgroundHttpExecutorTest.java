@@ -0,0 +1,51 @@
+package io.sealights.plugins.sealightsjenkins.services;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+public class BackgroundHttpExecutorTest {
+
+    @Test
+    public void submit_shouldReturnResultOfWork() throws Exception {
+        //Arrange
+        final HttpResponse response = new HttpResponse();
+
+        //Act
+        Future<HttpResponse> future = new BackgroundHttpExecutor().submit(new Callable<HttpResponse>() {
+            @Override
+            public HttpResponse call() throws Exception {
+                return response;
+            }
+        });
+
+        //Assert
+        Assert.assertSame(response, future.get());
+    }
+
+    @Test
+    public void submit_workFails_shouldFailFuture() throws Exception {
+        //Arrange
+        Callable<HttpResponse> failingWork = new Callable<HttpResponse>() {
+            @Override
+            public HttpResponse call() throws Exception {
+                throw new IOException("Connection refused");
+            }
+        };
+
+        //Act
+        Future<HttpResponse> future = new BackgroundHttpExecutor().submit(failingWork);
+
+        //Assert
+        try {
+            future.get();
+            Assert.fail("Expected the work to fail.");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package io.sealights.plugins.sealightsjenkins.services;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.Closeable;
+import java.io.InputStream;
+
+public class HttpClientPoolTest {
+
+    @Test
+    public void getClient_sameProxy_shouldReturnSharedClient() throws Exception {
+        //Arrange
+        HttpClientPool pool = new HttpClientPool();
+
+        //Act
+        CloseableHttpClient first = pool.getClient(null);
+        CloseableHttpClient second = pool.getClient("");
+        CloseableHttpClient withProxy = pool.getClient("http://proxy.local");
+
+        //Assert
+        Assert.assertSame(first, second);
+        Assert.assertNotSame(first, withProxy);
+        pool.shutdown();
+    }
+
+    @Test
+    public void getClient_afterShutdown_shouldCreateNewClient() throws Exception {
+        //Arrange
+        HttpClientPool pool = new HttpClientPool();
+        CloseableHttpClient beforeShutdown = pool.getClient(null);
+
+        //Act
+        pool.shutdown();
+        CloseableHttpClient afterShutdown = pool.getClient(null);
+
+        //Assert
+        Assert.assertNotSame(beforeShutdown, afterShutdown);
+        pool.shutdown();
+    }
+
+    @Test
+    public void close_responseWithConnection_shouldCloseConnectionOnly() throws Exception {
+        //Arrange
+        HttpResponse response = new HttpResponse();
+        Closeable connection = Mockito.mock(Closeable.class);
+        InputStream responseStream = Mockito.mock(InputStream.class);
+        response.setConnection(connection);
+        response.setResponseStream(responseStream);
+
+        //Act
+        response.close();
+
+        //Assert
+        Mockito.verify(connection).close();
+        Mockito.verify(responseStream, Mockito.never()).close();
+    }
+}
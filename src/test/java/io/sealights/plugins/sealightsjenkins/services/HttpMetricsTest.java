@@ -0,0 +1,92 @@
+package io.sealights.plugins.sealightsjenkins.services;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class HttpMetricsTest {
+
+    @Test
+    public void toEndpointTemplate_versionedFile_shouldReplaceVersionAndDropQuery() {
+        //Act
+        String template = HttpMetrics.toEndpointTemplate(
+                "https://agents.sealights.co/sealights-java/sealights-java-3.1.2000.zip?token=abc");
+
+        //Assert
+        Assert.assertEquals("agents.sealights.co/sealights-java/*", template);
+    }
+
+    @Test
+    public void toEndpointTemplate_apiPath_shouldKeepApiVersion() {
+        //Act
+        String template = HttpMetrics.toEndpointTemplate("http://server:8080/v2/agents/sl-maven-plugin/recommended");
+
+        //Assert
+        Assert.assertEquals("server:8080/v2/agents/sl-maven-plugin/recommended", template);
+    }
+
+    @Test
+    public void record_sameEndpointWithAndWithoutProxy_shouldBeSeparate() {
+        //Arrange
+        HttpMetrics metrics = new HttpMetrics();
+
+        //Act
+        metrics.record(createTiming("server/v2/agents", false, 200));
+        metrics.record(createTiming("server/v2/agents", true, 200));
+        metrics.record(createTiming("server/v2/agents", true, 503));
+
+        //Assert
+        List<HttpMetrics.EndpointStats> stats = metrics.getStats();
+        Assert.assertEquals(2, stats.size());
+        Assert.assertFalse(stats.get(0).isViaProxy());
+        Assert.assertEquals(1, stats.get(0).getCount());
+        Assert.assertTrue(stats.get(1).isViaProxy());
+        Assert.assertEquals(2, stats.get(1).getCount());
+        Assert.assertEquals(1, stats.get(1).getFailures());
+        Assert.assertEquals(Long.valueOf(1), stats.get(1).getStatusCounts().get("5xx"));
+    }
+
+    @Test
+    public void record_reusedConnection_shouldNotRecordConnectionSetup() {
+        //Arrange
+        HttpMetrics metrics = new HttpMetrics();
+        HttpRequestTiming newConnection = createTiming("server/v2/agents", false, 200);
+        newConnection.addConnect(1000000);
+
+        //Act
+        metrics.record(newConnection);
+        metrics.record(createTiming("server/v2/agents", false, 200));
+
+        //Assert
+        HttpMetrics.EndpointStats stats = metrics.getStats().get(0);
+        Assert.assertEquals(1, stats.getConnections());
+        Assert.assertEquals(1, stats.getConnect().getCount());
+        Assert.assertEquals(2, stats.getTotal().getCount());
+    }
+
+    @Test
+    public void getPercentileMillis_shouldReturnUpperBoundOfBucket() {
+        //Arrange
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 95; i++) {
+            histogram.record(20);
+        }
+        for (int i = 0; i < 5; i++) {
+            histogram.record(4000);
+        }
+
+        //Act + Assert
+        Assert.assertEquals(25, histogram.getMedianMillis());
+        Assert.assertEquals(25, histogram.getP95Millis());
+        Assert.assertEquals(4000, histogram.getP99Millis());
+        Assert.assertEquals(4000, histogram.getMaxMillis());
+    }
+
+    private static HttpRequestTiming createTiming(String endpoint, boolean viaProxy, int statusCode) {
+        HttpRequestTiming timing = new HttpRequestTiming(endpoint, viaProxy);
+        timing.responseReceived(statusCode);
+        timing.addBytesIn(100);
+        return timing;
+    }
+}
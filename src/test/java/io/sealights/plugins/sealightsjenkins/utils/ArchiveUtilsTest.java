@@ -0,0 +1,78 @@
+package io.sealights.plugins.sealightsjenkins.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ArchiveUtilsTest {
+
+    private ArchiveUtils archiveUtils = new ArchiveUtils(new NullLogger());
+
+    @Test
+    public void unzip_stream_shouldExtractEntries() throws Exception {
+        //Arrange
+        File destFolder = Files.createTempDirectory("extracted").toFile();
+        byte[] zip = createZip("sl-test-listener-1.2.3.jar", "folder/sl-build-scanner-1.2.3.jar");
+
+        //Act
+        List<File> extractedFiles = archiveUtils.unzip(new ByteArrayInputStream(zip), destFolder);
+
+        //Assert
+        Assert.assertEquals(2, extractedFiles.size());
+        Assert.assertEquals("sl-test-listener-1.2.3.jar",
+                new String(Files.readAllBytes(new File(destFolder, "sl-test-listener-1.2.3.jar").toPath()), "UTF-8"));
+        Assert.assertTrue(new File(destFolder, "folder/sl-build-scanner-1.2.3.jar").isFile());
+    }
+
+    @Test(expected = IOException.class)
+    public void unzip_entryOutsideDestination_shouldThrow() throws Exception {
+        //Arrange
+        File destFolder = Files.createTempDirectory("extracted").toFile();
+        byte[] zip = createZip("../evil.jar");
+
+        //Act
+        archiveUtils.unzip(new ByteArrayInputStream(zip), destFolder);
+    }
+
+    @Test(expected = IOException.class)
+    public void unzip_truncatedAfterEntry_shouldThrow() throws Exception {
+        //Arrange
+        File destFolder = Files.createTempDirectory("extracted").toFile();
+        byte[] zip = createZip("sl-test-listener-1.2.3.jar", "sl-build-scanner-1.2.3.jar");
+        byte[] secondEntryHeader = new byte[]{'P', 'K', 3, 4};
+        int secondEntryOffset = indexOf(zip, secondEntryHeader, 1);
+
+        //Act
+        archiveUtils.unzip(new ByteArrayInputStream(Arrays.copyOf(zip, secondEntryOffset)), destFolder);
+    }
+
+    private static int indexOf(byte[] bytes, byte[] pattern, int fromIndex) {
+        for (int i = fromIndex; i <= bytes.length - pattern.length; i++) {
+            if (Arrays.equals(pattern, Arrays.copyOfRange(bytes, i, i + pattern.length))) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Pattern not found");
+    }
+
+    private static byte[] createZip(String... entryNames) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            for (String entryName : entryNames) {
+                out.putNextEntry(new ZipEntry(entryName));
+                out.write(new File(entryName).getName().getBytes("UTF-8"));
+                out.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,60 @@
+package io.sealights.plugins.sealightsjenkins.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TailBufferTest {
+
+    @Test
+    public void append_lessThanCapacity_shouldKeepEverything() {
+        //Arrange
+        TailBuffer tailBuffer = new TailBuffer(10);
+
+        //Act
+        tailBuffer.append("abc");
+        tailBuffer.append("def");
+
+        //Assert
+        Assert.assertEquals("abcdef", tailBuffer.toString());
+        Assert.assertFalse(tailBuffer.isTruncated());
+    }
+
+    @Test
+    public void append_moreThanCapacity_shouldKeepOnlyTheTail() {
+        //Arrange
+        TailBuffer tailBuffer = new TailBuffer(5);
+
+        //Act
+        tailBuffer.append("abcd");
+        tailBuffer.append("efgh");
+
+        //Assert
+        Assert.assertEquals("defgh", tailBuffer.toString());
+        Assert.assertTrue(tailBuffer.isTruncated());
+    }
+
+    @Test
+    public void append_singleTextLongerThanCapacity_shouldKeepOnlyTheTail() {
+        //Arrange
+        TailBuffer tailBuffer = new TailBuffer(3);
+
+        //Act
+        tailBuffer.append("abcdefgh");
+
+        //Assert
+        Assert.assertEquals("fgh", tailBuffer.toString());
+    }
+
+    @Test
+    public void appendLine_shouldKeepLineSeparators() {
+        //Arrange
+        TailBuffer tailBuffer = new TailBuffer(100);
+
+        //Act
+        tailBuffer.appendLine("line1");
+        tailBuffer.appendLine("line2");
+
+        //Assert
+        Assert.assertEquals("line1\nline2\n", tailBuffer.toString());
+    }
+}
@@ -0,0 +1,39 @@
+package io.sealights.plugins.sealightsjenkins.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.MalformedURLException;
+
+public class UrlBuilderTest {
+
+    @Test
+    public void toString_queryParamsAddedInDifferentOrder_shouldReturnSameUrl() throws MalformedURLException {
+        //Arrange
+        UrlBuilder first = new UrlBuilder().withHost("https://server").withPath("v2", "agents")
+                .withQueryParam("customerId", "c").withQueryParam("appName", "a").withQueryParam("branch", "b");
+        UrlBuilder second = new UrlBuilder().withHost("https://server").withPath("v2", "agents")
+                .withQueryParam("branch", "b").withQueryParam("customerId", "c").withQueryParam("appName", "a");
+
+        //Act
+        String firstUrl = first.toString();
+        String secondUrl = second.toString();
+
+        //Assert
+        Assert.assertEquals("https://server/v2/agents/?appName=a&branch=b&customerId=c", firstUrl);
+        Assert.assertEquals(firstUrl, secondUrl);
+    }
+
+    @Test
+    public void toString_emptyQueryParam_shouldBeOmitted() throws MalformedURLException {
+        //Arrange
+        UrlBuilder builder = new UrlBuilder().withHost("server").withPath("v1", "agents")
+                .withQueryParam("appName", "my app").withQueryParam("envName", null);
+
+        //Act
+        String url = builder.toString();
+
+        //Assert
+        Assert.assertEquals("http://server/v1/agents/?appName=my+app", url);
+    }
+}